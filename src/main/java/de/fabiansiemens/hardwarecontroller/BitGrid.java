@@ -0,0 +1,309 @@
+package de.fabiansiemens.hardwarecontroller;
+
+import java.util.Arrays;
+
+/**
+ * Zweidimensionales Bitfeld beliebiger Größe, z.B. Belegung einer Sensormatrix oder Bildspeicher einer LED Matrix.
+ *
+ * Die Bits werden zeilenweise in einem long[] gepackt, Bit (y * Breite + x) gehört zur Position X/Y. Das entspricht dem
+ * Bitindex der Belegung einer Sensormatrix ({@link de.fabiansiemens.hardwarecontroller.sensor.SensorMatrix#index(int, int)}).
+ * Bei einem 8x8 Feld liegt das ganze Feld in einem einzigen Wort, das mit {@link #toLong()} und {@link #setLong(long)} direkt gelesen und
+ * geschrieben werden kann. Zeilen und Spalten werden als Bitmasken übertragen, Bit n ist Position n der Zeile bzw. Spalte.
+ * Instanzen dieser Klasse sind nicht threadsicher.
+ */
+public final class BitGrid {
+
+	private final int width;
+	private final int height;
+	private final long[] words;
+
+	/**
+	 * Erzeugt ein leeres Bitfeld
+	 * @param width - Breite, höchstens 64 für Zeilenzugriffe
+	 * @param height - Höhe, höchstens 64 für Spaltenzugriffe
+	 */
+	public BitGrid(int width, int height) {
+		if(width < 1 || height < 1 || width > 64 || height > 64)
+			throw new IllegalArgumentException("Width and height must be in the range 1-64");
+
+		this.width = width;
+		this.height = height;
+		this.words = new long[(width * height + 63) >>> 6];
+	}
+
+	/**
+	 * Erzeugt ein Bitfeld mit höchstens 64 Positionen aus einem einzelnen Wort
+	 * @param word - Bits des Felds, Bit (y * Breite + x) gehört zur Position X/Y
+	 */
+	public static BitGrid of(int width, int height, long word) {
+		BitGrid grid = new BitGrid(width, height);
+		grid.setLong(word);
+		return grid;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return Anzahl der Positionen
+	 */
+	public int size() {
+		return width * height;
+	}
+
+	/**
+	 * @return true, wenn das ganze Feld in einem Wort liegt (höchstens 64 Positionen)
+	 */
+	public boolean isSingleWord() {
+		return words.length == 1;
+	}
+
+	/**
+	 * @return Bitindex der Position X/Y
+	 */
+	public int index(int x, int y) {
+		return y * width + x;
+	}
+
+	public boolean get(int x, int y) {
+		int index = index(x, y);
+		return (words[index >>> 6] & (1L << index)) != 0;
+	}
+
+	public void set(int x, int y, boolean value) {
+		int index = index(x, y);
+		if(value)
+			words[index >>> 6] |= 1L << index;
+		else
+			words[index >>> 6] &= ~(1L << index);
+	}
+
+	/**
+	 * @param y - Zeile
+	 * @return Bitmaske der Zeile, Bit x gehört zur Position X
+	 */
+	public long getRow(int y) {
+		return getBits(y * width, width);
+	}
+
+	/**
+	 * @param y - Zeile
+	 * @param bits - Bitmaske der Zeile, Bit x gehört zur Position X, Bits außerhalb der Breite werden ignoriert
+	 */
+	public void setRow(int y, long bits) {
+		setBits(y * width, width, bits);
+	}
+
+	/**
+	 * @param x - Spalte
+	 * @return Bitmaske der Spalte, Bit y gehört zur Position Y
+	 */
+	public long getColumn(int x) {
+		long bits = 0;
+		for(int y = 0; y < height; y++)
+			if(get(x, y))
+				bits |= 1L << y;
+
+		return bits;
+	}
+
+	/**
+	 * @param x - Spalte
+	 * @param bits - Bitmaske der Spalte, Bit y gehört zur Position Y
+	 */
+	public void setColumn(int x, long bits) {
+		for(int y = 0; y < height; y++)
+			set(x, y, (bits & (1L << y)) != 0);
+	}
+
+	/**
+	 * @return erstes Wort des Felds, bei höchstens 64 Positionen das ganze Feld
+	 */
+	public long toLong() {
+		return words[0];
+	}
+
+	/**
+	 * Überschreibt das erste Wort des Felds, bei höchstens 64 Positionen das ganze Feld
+	 * @param word - Bits des Felds, Bits außerhalb des Felds werden ignoriert
+	 */
+	public void setLong(long word) {
+		words[0] = words.length == 1 ? word & lastWordMask() : word;
+	}
+
+	public int getWordCount() {
+		return words.length;
+	}
+
+	public long getWord(int index) {
+		return words[index];
+	}
+
+	/**
+	 * @param index - Wortindex
+	 * @param word - Bits ab Bitindex (index * 64), Bits außerhalb des Felds werden ignoriert
+	 */
+	public void setWord(int index, long word) {
+		words[index] = index == words.length - 1 ? word & lastWordMask() : word;
+	}
+
+	public void clear() {
+		Arrays.fill(words, 0L);
+	}
+
+	/**
+	 * Setzt alle Positionen
+	 */
+	public void fill() {
+		Arrays.fill(words, -1L);
+		words[words.length - 1] &= lastWordMask();
+	}
+
+	public boolean isEmpty() {
+		for(long word : words)
+			if(word != 0)
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * @return Anzahl der gesetzten Positionen
+	 */
+	public int cardinality() {
+		int count = 0;
+		for(long word : words)
+			count += Long.bitCount(word);
+
+		return count;
+	}
+
+	/**
+	 * Sucht den nächsten gesetzten Bitindex, z.B. um alle geänderten Felder zu durchlaufen
+	 * @param from - erster zu prüfender Bitindex
+	 * @return Bitindex (y * Breite + x) oder -1, wenn kein weiteres Bit gesetzt ist
+	 */
+	public int nextSetBit(int from) {
+		int word = from >>> 6;
+		if(word >= words.length)
+			return -1;
+
+		long bits = words[word] & (-1L << from);
+		while(bits == 0) {
+			if(++word == words.length)
+				return -1;
+			bits = words[word];
+		}
+
+		return (word << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * @param other - Bitfeld gleicher Größe
+	 * @return neues Bitfeld mit allen Positionen, die sich zwischen beiden Feldern unterscheiden
+	 */
+	public BitGrid xor(BitGrid other) {
+		if(other.width != width || other.height != height)
+			throw new IllegalArgumentException("Grids must have the same size");
+
+		BitGrid result = new BitGrid(width, height);
+		for(int i = 0; i < words.length; i++)
+			result.words[i] = words[i] ^ other.words[i];
+
+		return result;
+	}
+
+	public BitGrid copy() {
+		BitGrid copy = new BitGrid(width, height);
+		System.arraycopy(words, 0, copy.words, 0, words.length);
+		return copy;
+	}
+
+	/**
+	 * Übernimmt den Inhalt eines anderen Bitfelds. Bei abweichender Größe wird nur der gemeinsame Bereich ab 0/0 übernommen,
+	 * der Rest bleibt unverändert.
+	 * @param other - Quelle
+	 */
+	public void copyFrom(BitGrid other) {
+		if(other.width == width && other.height == height) {
+			System.arraycopy(other.words, 0, words, 0, words.length);
+			return;
+		}
+
+		int columns = Math.min(width, other.width);
+		long mask = columns == 64 ? -1L : (1L << columns) - 1;
+		for(int y = 0; y < height && y < other.height; y++)
+			setRow(y, (getRow(y) & ~mask) | (other.getRow(y) & mask));
+	}
+
+	/**
+	 * Liest bis zu 64 Bits ab einem Bitindex, auch über eine Wortgrenze hinweg
+	 */
+	private long getBits(int index, int count) {
+		int word = index >>> 6;
+		int shift = index & 63;
+		long bits = words[word] >>> shift;
+		if(shift + count > 64)
+			bits |= words[word + 1] << (64 - shift);
+
+		return count == 64 ? bits : bits & ((1L << count) - 1);
+	}
+
+	/**
+	 * Schreibt bis zu 64 Bits ab einem Bitindex, auch über eine Wortgrenze hinweg
+	 */
+	private void setBits(int index, int count, long bits) {
+		long mask = count == 64 ? -1L : (1L << count) - 1;
+		int word = index >>> 6;
+		int shift = index & 63;
+		bits &= mask;
+
+		words[word] = (words[word] & ~(mask << shift)) | (bits << shift);
+		if(shift + count > 64) {
+			int low = 64 - shift;
+			words[word + 1] = (words[word + 1] & ~(mask >>> low)) | (bits >>> low);
+		}
+	}
+
+	/**
+	 * @return Maske der gültigen Bits im letzten Wort
+	 */
+	private long lastWordMask() {
+		int used = size() & 63;
+		return used == 0 ? -1L : (1L << used) - 1;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+
+		if(!(obj instanceof BitGrid))
+			return false;
+
+		BitGrid other = (BitGrid) obj;
+		return width == other.width && height == other.height && Arrays.equals(words, other.words);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * width + height) + Arrays.hashCode(words);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(size() + height);
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++)
+				builder.append(get(x, y) ? '#' : '.');
+			builder.append('\n');
+		}
+
+		return builder.toString();
+	}
+}
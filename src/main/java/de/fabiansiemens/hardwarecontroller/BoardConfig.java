@@ -0,0 +1,190 @@
+package de.fabiansiemens.hardwarecontroller;
+
+import de.fabiansiemens.hardwarecontroller.pigpio.PigpioSocket;
+
+/**
+ * Hardware Konfiguration eines Bretts: GPIOs der Sensormatrix, GPIO des Confirm-Move Knopfs und SPI Kanal der LED Matrix.
+ *
+ * Betreibt ein Prozess mehrere Bretter, braucht jedes Brett eigene GPIOs und einen eigenen SPI Kanal (Chip-Select).
+ * Der Name wird den Pi4J IDs der GPIOs vorangestellt, damit sich die Bretter im gemeinsamen Pi4J Kontext nicht überschneiden.
+ * Die Sensormatrix kann beliebig groß sein (Spalten x Zeilen), die LED Matrix besteht aus einem oder mehreren 8x8 Modulen.
+ * Standardmäßig lädt der Prozess die native pigpio Bibliothek, mit {@link #withDaemon(String, int)} verbindet er sich stattdessen
+ * mit einem laufenden pigpio Daemon.
+ * Instanzen dieser Klasse sind unveränderlich.
+ */
+public final class BoardConfig {
+
+	/**
+	 * SPI Baudrate der LED Matrix
+	 */
+	public static final int DEFAULT_SPI_BAUD = 8_000_000;
+
+	/**
+	 * Verdrahtung des ursprünglichen Einzelbretts
+	 */
+	public static final BoardConfig DEFAULT = new BoardConfig("",
+			new int[] {26,21,20,16,12,7,25,24},		//Reihenfolge wichtig
+			new int[] {19,13,6,5,27,9,17,22},
+			18, 0);
+
+	private final String name;
+	private final int[] outputPins;
+	private final int[] inputPins;
+	private final int buttonPin;
+	private final int spiChannel;
+	private final int spiBaud;
+	private final int displayModulesX;
+	private final int displayModulesY;
+	private final String daemonHost;
+	private final int daemonPort;
+	private final boolean fastStartup;
+
+	/**
+	 * @param name - eindeutiger Name des Bretts, wird den Pi4J IDs vorangestellt ("" für ein einzelnes Brett)
+	 * @param outputPins - BCM Nummern der Spalten GPIOs, Reihenfolge wichtig
+	 * @param inputPins - BCM Nummern der Zeilen GPIOs, Reihenfolge wichtig
+	 * @param buttonPin - BCM Nummer des Confirm-Move Knopfs
+	 * @param spiChannel - SPI Kanal (Chip-Select) der LED Matrix
+	 */
+	public BoardConfig(String name, int[] outputPins, int[] inputPins, int buttonPin, int spiChannel) {
+		this(name, outputPins, inputPins, buttonPin, spiChannel, DEFAULT_SPI_BAUD);
+	}
+
+	/**
+	 * @param spiBaud - SPI Baudrate der LED Matrix
+	 * @see #BoardConfig(String, int[], int[], int, int)
+	 */
+	public BoardConfig(String name, int[] outputPins, int[] inputPins, int buttonPin, int spiChannel, int spiBaud) {
+		this(name, outputPins, inputPins, buttonPin, spiChannel, spiBaud, 1, 1, null, PigpioSocket.DEFAULT_PORT, false);
+	}
+
+	private BoardConfig(String name, int[] outputPins, int[] inputPins, int buttonPin, int spiChannel, int spiBaud,
+			int displayModulesX, int displayModulesY, String daemonHost, int daemonPort, boolean fastStartup) {
+		if(name == null)
+			throw new IllegalArgumentException("Name must not be null");
+
+		this.name = name;
+		this.outputPins = outputPins.clone();
+		this.inputPins = inputPins.clone();
+		this.buttonPin = buttonPin;
+		this.spiChannel = spiChannel;
+		this.spiBaud = spiBaud;
+		this.displayModulesX = displayModulesX;
+		this.displayModulesY = displayModulesY;
+		this.daemonHost = daemonHost;
+		this.daemonPort = daemonPort;
+		this.fastStartup = fastStartup;
+	}
+
+	/**
+	 * Erzeugt eine Konfiguration mit einer LED Matrix aus mehreren 8x8 Modulen, z.B. für 10x10 Bretter
+	 * @param modulesX - Anzahl der Module nebeneinander
+	 * @param modulesY - Anzahl der Module untereinander
+	 * @return neue Konfiguration, alle übrigen Werte bleiben gleich
+	 */
+	public BoardConfig withDisplay(int modulesX, int modulesY) {
+		return new BoardConfig(name, outputPins, inputPins, buttonPin, spiChannel, spiBaud, modulesX, modulesY,
+				daemonHost, daemonPort, fastStartup);
+	}
+
+	/**
+	 * Erzeugt eine Konfiguration, die sich mit einem laufenden pigpio Daemon verbindet, statt die native Bibliothek zu laden.
+	 * Der Prozess braucht dann keine Root Rechte, startet ohne Initialisierung der Hardware und mehrere Prozesse können
+	 * gleichzeitig auf die GPIOs zugreifen. Die Sensormatrix wird gebündelt angesteuert, ein Scan kostet einen Roundtrip.
+	 * @param host - Hostname des Daemons, im Normalfall {@link PigpioSocket#DEFAULT_HOST}
+	 * @param port - Port des Daemons, im Normalfall {@link PigpioSocket#DEFAULT_PORT}
+	 * @return neue Konfiguration, alle übrigen Werte bleiben gleich
+	 */
+	public BoardConfig withDaemon(String host, int port) {
+		if(host == null)
+			throw new IllegalArgumentException("Host must not be null");
+
+		return new BoardConfig(name, outputPins, inputPins, buttonPin, spiChannel, spiBaud, displayModulesX, displayModulesY,
+				host, port, fastStartup);
+	}
+
+	/**
+	 * Erzeugt eine Konfiguration für einen schnellen Start: die GPIOs der Sensormatrix werden erst bei ihrer ersten Verwendung
+	 * konfiguriert, z.B. beim ersten Scan, und der Konstruktor des Controllers wartet nicht auf sie. Wer die Zeit nicht im ersten
+	 * Scan verlieren möchte, ruft {@link de.fabiansiemens.hardwarecontroller.sensor.SensorMatrix#provision()} selbst auf,
+	 * z.B. in einem eigenen Thread.
+	 * @return neue Konfiguration, alle übrigen Werte bleiben gleich
+	 */
+	public BoardConfig withFastStartup() {
+		return new BoardConfig(name, outputPins, inputPins, buttonPin, spiChannel, spiBaud, displayModulesX, displayModulesY,
+				daemonHost, daemonPort, true);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int[] getOutputPins() {
+		return outputPins.clone();
+	}
+
+	public int[] getInputPins() {
+		return inputPins.clone();
+	}
+
+	public int getButtonPin() {
+		return buttonPin;
+	}
+
+	public int getSpiChannel() {
+		return spiChannel;
+	}
+
+	public int getSpiBaud() {
+		return spiBaud;
+	}
+
+	public int getDisplayModulesX() {
+		return displayModulesX;
+	}
+
+	public int getDisplayModulesY() {
+		return displayModulesY;
+	}
+
+	/**
+	 * @return true, wenn sich der Prozess mit einem pigpio Daemon verbindet
+	 */
+	public boolean isDaemonMode() {
+		return daemonHost != null;
+	}
+
+	/**
+	 * @return Hostname des pigpio Socket Interfaces, ohne Daemon das der nativen Bibliothek
+	 */
+	public String getPigpioHost() {
+		return daemonHost == null ? PigpioSocket.DEFAULT_HOST : daemonHost;
+	}
+
+	/**
+	 * @return Port des pigpio Socket Interfaces
+	 */
+	public int getPigpioPort() {
+		return daemonPort;
+	}
+
+	/**
+	 * @return true, wenn die Sensormatrix beim Start parallel und verzögert konfiguriert wird
+	 */
+	public boolean isFastStartup() {
+		return fastStartup;
+	}
+
+	/**
+	 * @param id - Pi4J ID eines Geräts dieses Bretts
+	 * @return ID mit vorangestelltem Namen des Bretts
+	 */
+	public String id(String id) {
+		return name.isEmpty() ? id : name + "-" + id;
+	}
+
+	@Override
+	public String toString() {
+		return "BoardConfig[" + (name.isEmpty() ? "default" : name) + ", spi=" + spiChannel + ", button=" + buttonPin + "]";
+	}
+}
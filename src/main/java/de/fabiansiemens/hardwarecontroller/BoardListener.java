@@ -0,0 +1,27 @@
+package de.fabiansiemens.hardwarecontroller;
+
+import de.fabiansiemens.hardwarecontroller.sensor.ScanResult;
+import de.fabiansiemens.hardwarecontroller.sensor.SensorMatrix;
+
+/**
+ * Implementiere dieses Interface um die Klasse als BoardListener im HardwareController registrieren zu können.
+ * Der Listener wird immer dann benachrichtigt, wenn der Scanner eine Änderung der Belegung des Bretts feststellt.
+ * Dafür muss der Scanner mit {@link HardwareController#startScanner()} gestartet worden sein.
+ */
+public interface BoardListener {
+	/**
+	 * Diese Funktion wird aufgerufen, sobald sich die Belegung des Bretts geändert hat.
+	 * Bitindex eines Felds in der Belegung siehe {@link SensorMatrix#index(int, int)}, er hängt von der Spaltenanzahl der Matrix ab.
+	 * @param controller - Instanz des HardwareControllers für einfachen Zugriff auf weitere Funktionen
+	 * @param result - Scan mit vorheriger und neuer Belegung sowie den Erfassungszeitpunkten
+	 */
+	public void onBoardChanged(HardwareController controller, ScanResult result);
+
+	/**
+	 * Diese Funktion wird nach {@link #onBoardChanged(HardwareController, ScanResult)} für jedes geänderte Feld aufgerufen.
+	 * @param controller - Instanz des HardwareControllers für einfachen Zugriff auf weitere Funktionen
+	 * @param event - Änderung des Felds mit Erfassungszeitpunkt
+	 */
+	public default void onSquareChanged(HardwareController controller, SquareEvent event) {
+	}
+}
@@ -0,0 +1,49 @@
+package de.fabiansiemens.hardwarecontroller;
+
+/**
+ * Flanke oder Geste des Confirm-Move Knopfs mit dem monotonen Zeitpunkt der Erfassung.
+ * Der Zeitpunkt wird direkt im GPIO Listener mit {@link System#nanoTime()} genommen und kann mit
+ * {@link #getAgeNanos()} zur Messung der Reaktionszeit verwendet werden.
+ */
+public final class ButtonEvent {
+
+	private final ButtonGesture gesture;
+	private final long timestampNanos;
+	private final long durationNanos;
+
+	/**
+	 * @param gesture - Art des Events
+	 * @param timestampNanos - Zeitpunkt der Flanke (System.nanoTime)
+	 * @param durationNanos - bei {@link ButtonGesture#RELEASE} und {@link ButtonGesture#LONG_PRESS} die Dauer des Drückens,
+	 * bei {@link ButtonGesture#DOUBLE_PRESS} der Abstand zum vorherigen Drücken, sonst 0
+	 */
+	public ButtonEvent(ButtonGesture gesture, long timestampNanos, long durationNanos) {
+		this.gesture = gesture;
+		this.timestampNanos = timestampNanos;
+		this.durationNanos = durationNanos;
+	}
+
+	public ButtonGesture getGesture() {
+		return gesture;
+	}
+
+	public long getTimestampNanos() {
+		return timestampNanos;
+	}
+
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	/**
+	 * @return Zeit seit der Erfassung der Flanke in Nanosekunden
+	 */
+	public long getAgeNanos() {
+		return System.nanoTime() - timestampNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "ButtonEvent[" + gesture + ", duration=" + durationNanos / 1_000_000 + "ms]";
+	}
+}
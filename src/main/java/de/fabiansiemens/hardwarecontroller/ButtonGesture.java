@@ -0,0 +1,23 @@
+package de.fabiansiemens.hardwarecontroller;
+
+/**
+ * Art eines {@link ButtonEvent}
+ */
+public enum ButtonGesture {
+	/**
+	 * Knopf wurde gedrückt
+	 */
+	PRESS,
+	/**
+	 * Knopf wurde losgelassen
+	 */
+	RELEASE,
+	/**
+	 * Knopf wurde kurz nach dem vorherigen Drücken erneut gedrückt. Wird zusätzlich zu {@link #PRESS} gemeldet.
+	 */
+	DOUBLE_PRESS,
+	/**
+	 * Knopf wurde nach langem Drücken losgelassen. Wird zusätzlich zu {@link #RELEASE} gemeldet.
+	 */
+	LONG_PRESS
+}
@@ -0,0 +1,53 @@
+package de.fabiansiemens.hardwarecontroller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Erkennt Doppel- und Langdrücken anhand der Zeitstempel der Knopf-Flanken
+ */
+class ButtonGestureDetector {
+
+	static final long DOUBLE_PRESS_NANOS = 400_000_000L;
+	static final long LONG_PRESS_NANOS = 800_000_000L;
+
+	private boolean pressed;
+	private boolean hasPressed;
+	private boolean lastWasDouble;
+	private long lastPress;
+
+	/**
+	 * Verarbeitet eine Flanke des Knopfs
+	 * @param pressed - true, wenn der Knopf gedrückt wurde
+	 * @param timestampNanos - Zeitpunkt der Flanke (System.nanoTime)
+	 * @return alle daraus entstehenden Events, leer wenn sich der Zustand nicht geändert hat
+	 */
+	synchronized List<ButtonEvent> onEdge(boolean pressed, long timestampNanos) {
+		List<ButtonEvent> events = new ArrayList<ButtonEvent>(2);
+		if(pressed == this.pressed)
+			return events;
+
+		this.pressed = pressed;
+
+		if(pressed) {
+			events.add(new ButtonEvent(ButtonGesture.PRESS, timestampNanos, 0));
+
+			long interval = timestampNanos - lastPress;
+			boolean isDouble = hasPressed && !lastWasDouble && interval <= DOUBLE_PRESS_NANOS;
+			if(isDouble)
+				events.add(new ButtonEvent(ButtonGesture.DOUBLE_PRESS, timestampNanos, interval));
+
+			lastWasDouble = isDouble;
+			hasPressed = true;
+			lastPress = timestampNanos;
+		}
+		else {
+			long duration = timestampNanos - lastPress;
+			events.add(new ButtonEvent(ButtonGesture.RELEASE, timestampNanos, duration));
+			if(duration >= LONG_PRESS_NANOS)
+				events.add(new ButtonEvent(ButtonGesture.LONG_PRESS, timestampNanos, duration));
+		}
+
+		return events;
+	}
+}
@@ -1,15 +1,19 @@
 package de.fabiansiemens.hardwarecontroller;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
-import java.util.Vector;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 import com.pi4j.Pi4J;
 import com.pi4j.context.Context;
 import com.pi4j.io.gpio.digital.DigitalInput;
 import com.pi4j.io.gpio.digital.DigitalInputConfigBuilder;
-import com.pi4j.io.gpio.digital.DigitalOutput;
-import com.pi4j.io.gpio.digital.DigitalOutputConfigBuilder;
 import com.pi4j.io.gpio.digital.DigitalState;
 import com.pi4j.io.gpio.digital.PullResistance;
 import com.pi4j.library.pigpio.PiGpio;
@@ -17,127 +21,630 @@ import com.pi4j.plugin.pigpio.provider.gpio.digital.PiGpioDigitalInputProvider;
 import com.pi4j.plugin.pigpio.provider.gpio.digital.PiGpioDigitalOutputProvider;
 import com.pi4j.plugin.pigpio.provider.spi.PiGpioSpiProvider;
 
+import de.fabiansiemens.hardwarecontroller.chess.ChessClock;
+import de.fabiansiemens.hardwarecontroller.chess.ChessGame;
+import de.fabiansiemens.hardwarecontroller.chess.MoveDetected;
+import de.fabiansiemens.hardwarecontroller.chess.MoveDetector;
+import de.fabiansiemens.hardwarecontroller.chess.MoveListener;
+import de.fabiansiemens.hardwarecontroller.chess.PositionIndex;
+import de.fabiansiemens.hardwarecontroller.engine.EngineBridge;
+import de.fabiansiemens.hardwarecontroller.engine.UciEngine;
+import de.fabiansiemens.hardwarecontroller.flow.BoardStreams;
+import de.fabiansiemens.hardwarecontroller.ipc.SharedBoardState;
 import de.fabiansiemens.hardwarecontroller.led.LedMatrixController;
+import de.fabiansiemens.hardwarecontroller.led.Timeline;
+import de.fabiansiemens.hardwarecontroller.net.BoardServer;
+import de.fabiansiemens.hardwarecontroller.persist.GameRecorder;
+import de.fabiansiemens.hardwarecontroller.persist.JournalRecorder;
+import de.fabiansiemens.hardwarecontroller.persist.StateJournal;
+import de.fabiansiemens.hardwarecontroller.pigpio.PigpioBank;
+import de.fabiansiemens.hardwarecontroller.sensor.BoardScanner;
+import de.fabiansiemens.hardwarecontroller.sensor.ScanMode;
+import de.fabiansiemens.hardwarecontroller.sensor.ScanResult;
+import de.fabiansiemens.hardwarecontroller.sensor.ScanScheduler;
+import de.fabiansiemens.hardwarecontroller.sensor.SensorMatrix;
+import de.fabiansiemens.hardwarecontroller.sensor.WaveformScan;
 
 /**
  * Core.
  * 
  * Diese Klasse stellt Funktionen zum Lesen des Feldes und zum Ändern von LEDs, sowie eine Listener/Observer Schnittstelle zur Verfügung
  * Eine Instanz dieser Klasse kann mit {@link HardwareController#getInstance()} abgerufen werden.
+ * Weitere Bretter werden mit {@link HardwareController#HardwareController(BoardConfig, ScanScheduler)} und einem gemeinsamen
+ * {@link ScanScheduler} betrieben.
  * Alle weiteren Operationen finden nicht statisch, sondern auf dieser HardwareController Instanz statt.
  * Am Ende der Nutzung sollte {@link HardwareController#shutdown()} aufgerufen werden um den HardwareController ordnungsgemäß zu beenden
  * @author Fabian Siemens
  */
 public class HardwareController {
 	
-	//Hardware Konstanten
+	//Größe des Schachbretts, Züge und Stellungen werden nur auf Brettern dieser Größe erkannt
 	private static final int FIELD_SIZE = 8;
-	private static final int READ_SLEEP_MILLIS = 50;
-	static final int[] OUTPUT_PINS = {26,21,20,16,12,7,25,24};	//Reihenfolge wichtig
-	static final int[] INPUT_PINS = {19,13,6,5,27,9,17,22};
-	static final int BUTTON_PIN = 18;
-	
 	
 	private static HardwareController INSTANCE;
 	
+	//Pi4J Kontext, den sich alle Bretter des Prozesses teilen
+	private static Context sharedContext;
+	private static String contextDaemon;
+	private static int contextUsers;
+	
+	private final BoardConfig config;
+	private final ScanScheduler scheduler;
 	private List<HardwareListener> listener;
-	private LinkedList<DigitalOutput> outputs;
-	private LinkedList<DigitalInput> inputs;
+	private List<BoardListener> boardListener;
 	private DigitalInput button;
 	private Context pi4j;
-	private PiGpio pigpio;
 	private LedMatrixController matrix;
+	private SensorMatrix sensors;
+	private BoardScanner scanner;
+	private MoveDetector moves;
+	private ChessGame game;
+	private PositionIndex positions;
+	private EngineBridge engine;
+	private BoardServer server;
+	private SharedBoardState sharedState;
+	private Consumer<BitGrid> sharedFrames;
+	private BoardStreams streams;
+	private ExecutorService streamsExecutor;
+	private boolean chessEnabled;
+	private StateJournal journal;
+	private JournalRecorder recorder;
+	private GameRecorder gameRecorder;
+	private ChessClock clock;
+	private ButtonGestureDetector gestures;
+	private LatencyMonitor latency;
+	private StartupReport startup;
 	private volatile boolean enabled;
 	
 	/**
-	 * Erzeugt eine neue Instanz und konfiguriert die GPIOS
+	 * Erzeugt einen Controller für ein einzelnes Brett mit eigenem Scanner Thread
+	 * @param config - Hardware Konfiguration des Bretts
 	 */
-	private HardwareController() {
-		INSTANCE = this;
+	public HardwareController(BoardConfig config) {
+		this(config, null);
+	}
+	
+	/**
+	 * Erzeugt einen Controller für ein Brett und konfiguriert die GPIOS.
+	 * Alle Controller eines Prozesses teilen sich einen Pi4J Kontext. Wird ein gemeinsamer Taktgeber übergeben, laufen
+	 * Scans und LED Aktualisierungen auf dessen Thread Pool, sodass mehrere Bretter ohne einen Thread pro Brett betrieben werden.
+	 * Im schnellen Start ({@link BoardConfig#withFastStartup()}) werden die GPIOs der Sensormatrix erst bei ihrer ersten
+	 * Verwendung konfiguriert, der Konstruktor wartet nicht auf sie. Die Dauer der einzelnen Phasen liefert {@link #getStartupReport()}.
+	 * @param config - Hardware Konfiguration des Bretts, jedes Brett braucht eigene GPIOs und einen eigenen SPI Kanal
+	 * @param scheduler - gemeinsamer Taktgeber, null für einen eigenen Scanner Thread @Nullable
+	 */
+	public HardwareController(BoardConfig config, ScanScheduler scheduler) {
+		this.config = config;
+		this.scheduler = scheduler;
 		enabled = true;
 	
-		this.outputs = new LinkedList<DigitalOutput>();
-		this.inputs = new LinkedList<DigitalInput>();
-		this.listener = new LinkedList<HardwareListener>();
-		this.pigpio = PiGpio.newNativeInstance();
-		this.pi4j = Pi4J.newContextBuilder()
-				.noAutoDetect()
-				.add(	PiGpioSpiProvider.newInstance(pigpio),
-						PiGpioDigitalInputProvider.newInstance(pigpio),
-						PiGpioDigitalOutputProvider.newInstance(pigpio)
-				)
-				.build();
-		
-		this.matrix = new LedMatrixController(pi4j);
-		
-		//Erstelle Config für Output GPIOs
-		DigitalOutputConfigBuilder outputConfig = DigitalOutput.newConfigBuilder(pi4j)
-		        .shutdown(DigitalState.LOW)
-		        .initial(DigitalState.LOW)
-		        .provider("pigpio-digital-output");
-		
-		//Erstelle Config für Input GPIOs
-		DigitalInputConfigBuilder inputConfig = DigitalInput.newConfigBuilder(pi4j)
-				.debounce(3000L)
-				.pull(PullResistance.PULL_DOWN)		//Trotz externer Pull_downs ist das aktivieren der internen Pull_downs zum Vermeiden von Fehlern wichtig
-		        .provider("pigpio-digital-input");
+		this.listener = new CopyOnWriteArrayList<HardwareListener>();
+		this.boardListener = new CopyOnWriteArrayList<BoardListener>();
+		this.gestures = new ButtonGestureDetector();
+		this.latency = new LatencyMonitor();
+		this.startup = new StartupReport();
+		
+		long begin = System.nanoTime();
+		this.pi4j = acquireContext(config);
+		startup.record("context", begin);
+		
+		//Im schnellen Start werden die GPIOs erst beim ersten Scan konfiguriert, im Daemon Modus dann gebündelt über die Verbindung
+		begin = System.nanoTime();
+		this.sensors = new SensorMatrix(pi4j, config.getOutputPins(), config.getInputPins(), config.id(""), config.isFastStartup());
+		connectBank();
+		startup.record("sensors", begin);
+		this.scanner = new BoardScanner(sensors);
+		
+		//LED Matrix aktivieren
+		begin = System.nanoTime();
+		this.matrix = new LedMatrixController(pi4j, config.getSpiChannel(), config.getSpiBaud(),
+				config.getDisplayModulesX(), config.getDisplayModulesY());
+		if(scheduler != null)
+			matrix.setRefreshExecutor(scheduler);
+		matrix.setEnabled(true);
+		matrix.clear();
+		matrix.refresh();
+		startup.record("leds", begin);
+		
+		begin = System.nanoTime();
+		
+		//Scanner Ergebnisse an die BoardListener weitergeben, wenn sich die Belegung geändert hat
+		scanner.addListener(result -> {
+			if(result.hasChanged())
+				dispatchBoardChange(result);
+		});
+		
+		//Die Schachfunktionen werden erst mit enableChess() mit dem Scanner verbunden
+		//Wird eine Stellung aufgebaut, die nicht der Partie entspricht, beginnt die Partie von dieser Stellung
+		this.positions = PositionIndex.withDefaults();
+		positions.addListener(known -> {
+			if(!known.hasPosition() || game.getPosition().getOccupancy() == known.getOccupancy())
+				return;
+			
+			game.setPosition(known.getPosition());
+			moves.reset(known.getOccupancy());
+		});
+		
+		this.moves = new MoveDetector();
+		this.game = new ChessGame(matrix);
+		game.setHintsEnabled(false);
+		moves.addListener(game);
+		
+		//Nach einem nicht legalen Zug vergleicht der Zugdetektor wieder mit dem Spielstand, nicht mit der Belegung nach dem Zug
+		//Stellt der Spieler die Figur zurück, entspricht das Brett wieder der Ausgangsstellung und es wird kein Zug erkannt
+		game.addListener(new MoveListener() {
+			@Override
+			public void onMoveDetected(MoveDetected move) {
+			}
+			
+			@Override
+			public void onIllegalMove(MoveDetected move) {
+				moves.reset(game.getPosition().getOccupancy());
+			}
+		});
+		
+		//Reaktive Streams, ohne Abonnenten kostet das Veröffentlichen nur einen Blick in eine leere Liste
+		//Die Threads der Abonnenten werden erst mit dem ersten Abonnement erzeugt
+		this.streams = new BoardStreams(this::executeStream);
+		scanner.addListener(streams);
+		moves.addListener(streams);
+		addBoardListener(streams);
+		addListener(streams);
+		startup.record("listeners", begin);
 		
 		//Erstelle Config für ConfirmMove GPIO
+		begin = System.nanoTime();
 		DigitalInputConfigBuilder buttonConfig = DigitalInput.newConfigBuilder(pi4j)
 				.name("Confirm-Move Button")
-				.id("button")
-				.address(BUTTON_PIN)
+				.id(config.id("button"))
+				.address(config.getButtonPin())
 				.debounce(3000L)
 				.pull(PullResistance.PULL_UP)
 		        .provider("pigpio-digital-input");
 		
 		button = pi4j.create(buttonConfig);
 		
-		int i = 1;
-		
-		//Config anwenden und Ausgangs GPIOS registrieren
-		for(int id : OUTPUT_PINS) {
-			outputs.add(pi4j.create(outputConfig.id("column" + i).name("Column " + i).address(id)));
-			i++;
-		}
-		
-		i = 1;
-		
-		//Config anwenden und Eingangs GPIOS registrieren
-		for(int id : INPUT_PINS) {
-			inputs.add(pi4j.create(inputConfig.id("row" + i).name("Row " + i).address(id)));
-			i++;
-		}
-		
 		//Listener auf GPIO Input registrieren, welcher die HardwareListener benachrichtigt, wenn der Zustand des Pins auf LOW ist
+		//Jede Flanke des Knopfs weckt außerdem den Scanner aus dem Ruhemodus
+		//Der Zeitstempel wird so früh wie möglich genommen und an die Listener weitergegeben
 		button.addListener(pin -> {
-			if(pin.state() == DigitalState.LOW)
+			long timestamp = System.nanoTime();
+			boolean pressed = pin.state() == DigitalState.LOW;
+			scanner.wake();
+			
+			for(ButtonEvent event : gestures.onEdge(pressed, timestamp))
+				for(HardwareListener lis : listener)
+					lis.onButtonEvent(this, event);
+			
+			//Ein Knopfdruck schließt die aktuelle Zugfolge ab
+			if(pressed) {
+				moves.flush();
 				for(HardwareListener lis : listener) {
 					lis.onConfirmButtonPressed(this);
 				}
+			}
+			
+			latency.record("button", timestamp);
 		});
+		startup.record("button", begin);
+		startup.ready();
+	}
+	
+	/**
+	 * Führt eine Aufgabe der Streams aus. Jeder aktive Abonnent wird in einem eigenen Thread beliefert, damit ein langsamer
+	 * Abonnent die schnellen nicht aufhält. Der Thread Pool wird beim ersten Aufruf erzeugt und in {@link #shutdown()} beendet.
+	 */
+	private void executeStream(Runnable task) {
+		ExecutorService executor;
+		synchronized(this) {
+			if(streamsExecutor == null)
+				streamsExecutor = Executors.newCachedThreadPool(runnable -> {
+					Thread thread = new Thread(runnable, "BoardStreams");
+					thread.setDaemon(true);
+					return thread;
+				});
+			executor = streamsExecutor;
+		}
+		executor.execute(task);
+	}
+	
+	/**
+	 * Verbindet die Sensormatrix im Daemon Modus mit einer eigenen Verbindung, über die sie gebündelt angesteuert wird
+	 */
+	private void connectBank() {
+		if(!config.isDaemonMode())
+			return;
 		
-		//LED Matrix aktivieren
-		matrix.setEnabled(true);
-		matrix.clear();
-		matrix.refresh();
+		try {
+			sensors.setBank(PigpioBank.connect(config.getPigpioHost(), config.getPigpioPort()));
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
 	}
 	
 	/**
-	 * Gibt die Singleton Instanz dieses Controllers zurück
-	 * @return Instanz dieses Controllers
+	 * Gibt den Controller des Standard-Bretts ({@link BoardConfig#DEFAULT}) zurück und erzeugt ihn beim ersten Aufruf.
+	 * Für weitere Bretter werden eigene Instanzen mit {@link #HardwareController(BoardConfig, ScanScheduler)} erzeugt.
+	 * @return Controller des Standard-Bretts
 	 */
-	public static HardwareController getInstance() {
+	public static synchronized HardwareController getInstance() {
 		if(INSTANCE == null)
-			return new HardwareController();
+			INSTANCE = new HardwareController(BoardConfig.DEFAULT);
 		
 		return INSTANCE;
 	}
 	
+	/**
+	 * Gibt den gemeinsamen Pi4J Kontext zurück und erzeugt ihn, falls noch kein Brett ihn verwendet.
+	 * Je nach Konfiguration lädt der Kontext die native pigpio Bibliothek oder verbindet sich mit dem pigpio Daemon,
+	 * alle Bretter eines Prozesses müssen dieselbe Variante verwenden.
+	 */
+	private static synchronized Context acquireContext(BoardConfig config) {
+		String daemon = config.isDaemonMode() ? config.getPigpioHost() + ":" + config.getPigpioPort() : null;
+		if(sharedContext != null && !Objects.equals(daemon, contextDaemon))
+			throw new IllegalStateException("All boards must use the same pigpio connection, already using "
+					+ (contextDaemon == null ? "native library" : contextDaemon));
+		
+		if(sharedContext == null) {
+			PiGpio pigpio = config.isDaemonMode()
+					? PiGpio.newSocketInstance(config.getPigpioHost(), config.getPigpioPort())
+					: PiGpio.newNativeInstance();
+			sharedContext = Pi4J.newContextBuilder()
+					.noAutoDetect()
+					.add(	PiGpioSpiProvider.newInstance(pigpio),
+							PiGpioDigitalInputProvider.newInstance(pigpio),
+							PiGpioDigitalOutputProvider.newInstance(pigpio)
+					)
+					.build();
+			contextDaemon = daemon;
+		}
+		
+		contextUsers++;
+		return sharedContext;
+	}
+	
+	/**
+	 * Gibt den gemeinsamen Pi4J Kontext frei. Das letzte Brett beendet ihn.
+	 */
+	private static synchronized void releaseContext() {
+		if(--contextUsers > 0)
+			return;
+		
+		sharedContext.shutdown();
+		sharedContext = null;
+		contextDaemon = null;
+	}
+	
+	private static synchronized void clearInstance(HardwareController controller) {
+		if(INSTANCE == controller)
+			INSTANCE = null;
+	}
+	
+	public BoardConfig getConfig() {
+		return config;
+	}
+	
+	/**
+	 * Gibt die Zeitaufschlüsselung des Starts zurück. Im schnellen Start enthält sie die Konfiguration der Sensormatrix nicht.
+	 * @return Phasen des Starts dieses Controllers
+	 */
+	public StartupReport getStartupReport() {
+		return startup;
+	}
+	
 	public LedMatrixController getLedMatrix() {
 		return matrix;
 	}
 	
+	/**
+	 * Gibt die Sensormatrix des Bretts zurück, z.B. um das Scan-Zeitverhalten anzupassen
+	 * @return Sensormatrix dieses Controllers
+	 */
+	public SensorMatrix getSensorMatrix() {
+		return sensors;
+	}
+	
+	/**
+	 * Gibt den kontinuierlichen Scanner des Bretts zurück, z.B. um die Scanraten einzustellen oder Kennzahlen abzurufen
+	 * @return Scanner dieses Controllers
+	 */
+	public BoardScanner getScanner() {
+		return scanner;
+	}
+	
+	/**
+	 * Startet den kontinuierlichen Scanner. Danach werden registrierte {@link BoardListener} bei jeder Änderung benachrichtigt.
+	 */
+	public void startScanner() {
+		if(scheduler != null)
+			scanner.start(scheduler);
+		else
+			scanner.start();
+	}
+	
+	/**
+	 * Schaltet den Scanner auf hardware-zeitgesteuertes Scannen per pigpio Wellenform um.
+	 * Dafür wird das Socket Interface von pigpio verwendet, das auch von der nativen Bibliothek bereitgestellt wird.
+	 * @throws IOException wenn keine Verbindung zum pigpio Socket Interface aufgebaut werden kann
+	 */
+	public void useWaveformScan() throws IOException {
+		scanner.setWaveformScan(WaveformScan.connect(sensors, config.getPigpioHost(), config.getPigpioPort()));
+		scanner.setMode(ScanMode.WAVEFORM);
+	}
+	
+	/**
+	 * Verbindet die Schachfunktionen mit dem Scanner: Erkennung bekannter Stellungen, Zugerkennung und Spielstand.
+	 * Ohne diesen Aufruf bleibt die LED Matrix vollständig dem Anwender überlassen. Mehrfache Aufrufe ändern nur die Zughinweise.
+	 * @param hints - true, wenn beim Anheben einer Figur ihre Zielfelder auf der LED Matrix angezeigt werden sollen
+	 * @throws IllegalStateException wenn das Brett nicht 8x8 Felder groß ist
+	 */
+	public synchronized void enableChess(boolean hints) {
+		//Schachfunktionen arbeiten mit 64 Bit Belegungen und werden nur bei einem 8x8 Brett mit dem Scanner verbunden
+		if(sensors.getColumns() != FIELD_SIZE || sensors.getRows() != FIELD_SIZE)
+			throw new IllegalStateException("Chess functions require an 8x8 board");
+		
+		if(!chessEnabled) {
+			//Bekannte Stellungen vor dem Zugdetektor, der Spielstand nach dem Zugdetektor
+			scanner.addListener(positions);
+			scanner.addListener(moves);
+			scanner.addListener(game);
+			chessEnabled = true;
+		}
+		game.setHintsEnabled(hints);
+	}
+	
+	/**
+	 * @return true, wenn die Schachfunktionen mit {@link #enableChess(boolean)} verbunden wurden
+	 */
+	public synchronized boolean isChessEnabled() {
+		return chessEnabled;
+	}
+	
+	/**
+	 * Gibt den Zugdetektor zurück, bei dem {@link de.fabiansiemens.hardwarecontroller.chess.MoveListener} registriert werden können.
+	 * Der Detektor arbeitet nur, wenn der Scanner gestartet und {@link #enableChess(boolean)} aufgerufen wurde.
+	 * @return Zugdetektor dieses Controllers
+	 */
+	public MoveDetector getMoveDetector() {
+		return moves;
+	}
+	
+	/**
+	 * Gibt die Partie zurück, die legale Züge auf den Spielstand anwendet und bei aktivierten Hinweisen beim Anheben einer Figur
+	 * ihre Zielfelder anzeigt
+	 * @return Partie dieses Controllers
+	 */
+	public ChessGame getChessGame() {
+		return game;
+	}
+	
+	/**
+	 * Gibt die Streams für Belegungs-Snapshots, Feldänderungen, Züge und Knopf-Ereignisse zurück. Die Abonnenten werden in
+	 * eigenen Threads benachrichtigt und steuern über ihre Nachfrage, wie viele Werte sie erhalten.
+	 * @return Streams dieses Controllers
+	 */
+	public BoardStreams getStreams() {
+		return streams;
+	}
+	
+	/**
+	 * Gibt das Verzeichnis bekannter Stellungen zurück, in dem z.B. Puzzle Aufstellungen hinterlegt werden können.
+	 * Wird eine hinterlegte Stellung auf dem Brett aufgebaut, wird die Partie auf diese Stellung gesetzt.
+	 * @return Verzeichnis bekannter Stellungen dieses Controllers
+	 */
+	public PositionIndex getPositionIndex() {
+		return positions;
+	}
+	
+	/**
+	 * Startet eine UCI Engine als lokalen Prozess und verbindet sie mit der Partie. Nach jedem Zug wird die Stellung analysiert
+	 * und der beste Zug als Spur angezeigt. Eine bereits laufende Engine wird vorher beendet.
+	 * Züge werden nur erkannt, wenn {@link #enableChess(boolean)} aufgerufen wurde.
+	 * @param command - Programm und Argumente der Engine, z.B. {@code List.of("stockfish")}
+	 * @return Verbindung zwischen Partie und Engine
+	 * @throws IOException wenn die Engine nicht gestartet werden kann
+	 */
+	public EngineBridge startEngine(List<String> command) throws IOException {
+		stopEngine();
+		
+		engine = new EngineBridge(new UciEngine(command), game, matrix);
+		engine.analyze();
+		return engine;
+	}
+	
+	/**
+	 * Beendet eine mit {@link #startEngine(List)} gestartete Engine
+	 */
+	public void stopEngine() {
+		if(engine == null)
+			return;
+		
+		engine.close();
+		engine = null;
+	}
+	
+	/**
+	 * Startet einen Server, über den entfernte Clients Belegung, Züge und Knopf-Ereignisse verfolgen und die LED Matrix
+	 * ansteuern können. Ein bereits laufender Server wird vorher beendet.
+	 * @param port - TCP Port, 0 für einen freien Port
+	 * @return gestarteter Server
+	 * @throws IOException wenn der Port nicht geöffnet werden kann
+	 */
+	public BoardServer startServer(int port) throws IOException {
+		stopServer();
+		
+		server = new BoardServer(port, scanner.getGrid(), matrix);
+		addBoardListener(server);
+		addListener(server);
+		game.addListener(server);
+		return server;
+	}
+	
+	/**
+	 * Beendet einen mit {@link #startServer(int)} gestarteten Server und trennt alle Clients
+	 */
+	public void stopServer() {
+		if(server == null)
+			return;
+		
+		removeBoardListener(server);
+		removeListener(server);
+		game.removeListener(server);
+		try {
+			server.close();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+		server = null;
+	}
+	
+	/**
+	 * Veröffentlicht Belegung, Knopf und angezeigtes LED Bild in einer in den Speicher abgebildeten Datei, aus der andere
+	 * Prozesse ohne Systemaufruf lesen und über die sie LED Bilder anfordern können. Eine bereits laufende Veröffentlichung
+	 * wird vorher beendet.
+	 * @param path - Pfad der Datei, z.B. {@link SharedBoardState#DEFAULT_PATH}
+	 * @return veröffentlichter Zustand
+	 * @throws IOException wenn die Datei nicht erstellt werden kann
+	 */
+	public SharedBoardState startSharedState(Path path) throws IOException {
+		stopSharedState();
+		
+		sharedState = new SharedBoardState(path, scanner.getGrid(), matrix);
+		addBoardListener(sharedState);
+		addListener(sharedState);
+		sharedFrames = sharedState::publishLedFrame;
+		matrix.addFlushListener(sharedFrames);
+		return sharedState;
+	}
+	
+	/**
+	 * Beendet eine mit {@link #startSharedState(Path)} gestartete Veröffentlichung, die Datei bleibt bestehen
+	 */
+	public void stopSharedState() {
+		if(sharedState == null)
+			return;
+		
+		matrix.removeFlushListener(sharedFrames);
+		removeBoardListener(sharedState);
+		removeListener(sharedState);
+		sharedState.close();
+		sharedState = null;
+	}
+	
+	/**
+	 * Öffnet ein Journal, in dem Spielstand, Belegung und angezeigtes LED Bild laufend gespeichert werden, und setzt eine darin
+	 * gespeicherte Partie fort. Das LED Bild wird sofort wiederhergestellt, ein einzelner Scan prüft, ob das Brett noch der
+	 * gespeicherten Stellung entspricht. Ist das nicht der Fall, wird die Partie fortgesetzt, sobald die Stellung wieder
+	 * aufgebaut ist. Sollte vor {@link #startScanner()} und nach {@link #enableChess(boolean)} aufgerufen werden.
+	 * @param path - Pfad der Journal Datei
+	 * @return true, wenn die gespeicherte Partie sofort fortgesetzt wurde
+	 * @throws IOException wenn das Journal nicht geschrieben werden kann
+	 */
+	public boolean startJournal(Path path) throws IOException {
+		stopJournal();
+		
+		journal = new StateJournal(path);
+		BitGrid frame = journal.getLedFrame();
+		if(frame != null) {
+			matrix.overwriteBuffer(frame);
+			matrix.refresh();
+		}
+		
+		recorder = new JournalRecorder(journal, game, moves);
+		boolean resumed = recorder.resume(readGrid());
+		
+		addBoardListener(recorder);
+		game.addListener(recorder);
+		positions.addListener(recorder);
+		matrix.addFlushListener(recorder);
+		return resumed;
+	}
+	
+	/**
+	 * Beendet ein mit {@link #startJournal(Path)} geöffnetes Journal und schreibt es auf den Datenträger
+	 */
+	public void stopJournal() {
+		if(journal == null)
+			return;
+		
+		removeBoardListener(recorder);
+		game.removeListener(recorder);
+		positions.removeListener(recorder);
+		matrix.removeFlushListener(recorder);
+		journal.close();
+		journal = null;
+		recorder = null;
+	}
+	
+	/**
+	 * Zeichnet die gespielten Partien als PGN mit FEN Stellungen auf. Die Züge werden in einem eigenen Thread gesammelt
+	 * angehängt, beim {@link #shutdown()} werden alle Züge geschrieben. Eine bereits laufende Aufzeichnung wird vorher beendet.
+	 * Züge werden nur erkannt, wenn {@link #enableChess(boolean)} aufgerufen wurde.
+	 * @param path - PGN Datei, wird angelegt oder fortgeschrieben
+	 * @return gestartete Aufzeichnung
+	 * @throws IOException wenn die Datei nicht geöffnet werden kann
+	 */
+	public GameRecorder startRecorder(Path path) throws IOException {
+		stopRecorder();
+		
+		gameRecorder = new GameRecorder(path, game);
+		game.addListener(gameRecorder);
+		positions.addListener(gameRecorder);
+		return gameRecorder;
+	}
+	
+	/**
+	 * Beendet eine mit {@link #startRecorder(Path)} gestartete Aufzeichnung, eine laufende Partie wird mit "*" abgeschlossen
+	 */
+	public void stopRecorder() {
+		if(gameRecorder == null)
+			return;
+		
+		game.removeListener(gameRecorder);
+		positions.removeListener(gameRecorder);
+		gameRecorder.close();
+		gameRecorder = null;
+	}
+	
+	/**
+	 * Zeigt eine Schachuhr auf der LED Matrix an, jeder Druck auf den Confirm-Move Knopf wechselt die Seite. Die Uhr belegt die
+	 * ganze Matrix, bis sie mit {@link #stopClock()} beendet wird. Eine bereits laufende Uhr wird vorher beendet.
+	 * @param time - Bedenkzeit je Seite
+	 * @param increment - Zeitgutschrift je Zug, {@link Duration#ZERO} für keine
+	 * @return gestartete Uhr, sie läuft ab dem ersten Knopfdruck für Weiß
+	 */
+	public ChessClock startClock(Duration time, Duration increment) {
+		stopClock();
+		
+		clock = new ChessClock(matrix, time, increment);
+		addListener(clock);
+		return clock;
+	}
+	
+	/**
+	 * Beendet eine mit {@link #startClock(Duration, Duration)} gestartete Uhr und leert die LED Matrix
+	 */
+	public void stopClock() {
+		if(clock == null)
+			return;
+		
+		removeListener(clock);
+		clock.close();
+		clock = null;
+		clearLeds();
+	}
+	
+	/**
+	 * Gibt den Monitor für die Reaktionszeiten zurück. Gemessen wird jeweils von der Erfassung einer Knopf-Flanke bzw.
+	 * einer Feldänderung bis alle Listener das Event abgearbeitet haben.
+	 * @return Latenz Monitor dieses Controllers
+	 */
+	public LatencyMonitor getLatencyMonitor() {
+		return latency;
+	}
+	
 	public boolean isShutdown() {
 		return !enabled;
 	}
@@ -154,15 +661,103 @@ public class HardwareController {
 		this.listener.add(listener);
 	}
 	
+	/**
+	 * Registriert einen BoardListener im Controller. Der Listener wird benachrichtigt, sobald der Scanner eine Änderung feststellt.
+	 * Wenn der übergebene Listener null ist, wird nichts hinzugefügt.
+	 * @param listener - Objekt vom Typ {@link BoardListener} @Nullable
+	 */
+	public void addBoardListener(BoardListener listener) {
+		if(listener == null)
+			return;
+		
+		this.boardListener.add(listener);
+	}
+	
+	public void removeListener(HardwareListener listener) {
+		this.listener.remove(listener);
+	}
+	
+	public void removeBoardListener(BoardListener listener) {
+		this.boardListener.remove(listener);
+	}
+	
 	/**
 	 * Diese Methode sollte vor Beenden des Programms aufgerufen werden um den HardwareController und alle zugehörigen GPIOS ordnungsgemäß
 	 * zu beenden.
 	 */
 	public void shutdown() {
+		scanner.stop();
+		stopServer();
+		stopSharedState();
+		stopEngine();
+		stopJournal();
+		stopRecorder();
+		stopClock();
+		streams.close();
+		synchronized(this) {
+			if(streamsExecutor != null)
+				streamsExecutor.shutdown();
+		}
+		closeWaveformScan();
+		closeBank();
 		clearLeds();
 		getLedMatrix().setEnabled(false);
-		pi4j.shutdown();
 		enabled = false;
+		clearInstance(this);
+		releaseContext();
+	}
+	
+	/**
+	 * Benachrichtigt alle BoardListener über eine Änderung der Belegung, zuerst für das ganze Brett und danach für jedes Feld
+	 * @param result - Scan mit geänderter Belegung
+	 */
+	private void dispatchBoardChange(ScanResult result) {
+		for(BoardListener lis : boardListener)
+			lis.onBoardChanged(this, result);
+		
+		BitGrid changed = result.getChangedGrid();
+		long earliest = result.getTimestampNanos();
+		for(int square = changed.nextSetBit(0); square >= 0; square = changed.nextSetBit(square + 1)) {
+			int col = square % changed.getWidth();
+			int row = square / changed.getWidth();
+			SquareEvent event = new SquareEvent(col, row, result.isOccupied(col, row),
+					result.getTimestampNanos(col), result.getSequence());
+			
+			for(BoardListener lis : boardListener)
+				lis.onSquareChanged(this, event);
+			
+			if(event.getTimestampNanos() - earliest < 0)
+				earliest = event.getTimestampNanos();
+		}
+		
+		latency.record("board", earliest);
+	}
+	
+	private void closeBank() {
+		PigpioBank bank = sensors.getBank();
+		if(bank == null)
+			return;
+		
+		sensors.setBank(null);
+		try {
+			bank.close();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	private void closeWaveformScan() {
+		WaveformScan waveform = scanner.getWaveformScan();
+		if(waveform == null)
+			return;
+		
+		try {
+			waveform.close();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
 	}
 	
 	/**
@@ -192,28 +787,19 @@ public class HardwareController {
 	 * @param amount - Wie oft geblinkt werden soll
 	 */
 	public void blinkFast(int x, int y, int amount) {
-		byte[] originalbuffer = getLedMatrix().getBuffer().clone();	//Nach blinken kann der vorherige Zustand des Bretts verändert sein
-		
-		for(; amount > 0; amount --) {
-			setLed(x, y, true);
-			sleep(100);
-			setLed(x, y, false);
-			sleep(100);
-		}
-		
-		getLedMatrix().overwriteBuffer(originalbuffer);				//Daher wird der vorherige Zustand manuell wiederhergestellt
-		getLedMatrix().refresh();
+		//Die Frames werden einmal berechnet und zwischengespeichert, nach dem Abspielen wird der vorherige Zustand wiederhergestellt
+		play(Timeline.blink(x, y, 100, 100, amount));
 	}
 	
 	public void setColumn(int x, boolean state) {
-		for(int i = 0; i < LedMatrixController.WIDTH; i++)
+		for(int i = 0; i < getLedMatrix().getHeight(); i++)
 			getLedMatrix().setPixel(x, i, state);
 		
 		getLedMatrix().refresh();
 	}
 	
 	public void setRow(int y, boolean state) {
-		for(int i = 0; i < LedMatrixController.HEIGHT; i++)
+		for(int i = 0; i < getLedMatrix().getWidth(); i++)
 			getLedMatrix().setPixel(i, y, state);
 		
 		getLedMatrix().refresh();
@@ -228,43 +814,16 @@ public class HardwareController {
 	 * @param amount - Wie oft diese Spur aufblinken soll
 	 */
 	public void blinkTrace(int startX, int startY, int destX, int destY, int amount) {
-		byte[] originalbuffer = getLedMatrix().getBuffer().clone();
-		float steps;
-		float dx = destX - startX;
-		float dy = destY - startY;
-		
-		if(Math.abs(dx) > Math.abs(dy))
-			steps = Math.abs(dx);
-		else
-			steps = Math.abs(dy);
-		
-		dx = dx/steps;
-		dy = dy/steps;
-		
-		for(; amount > 0; amount--) {
-			float x = startX;
-			float y = startY;
-			
-			for (int i = 0 ; i <= steps; i++) {
-				setLed(Math.round(x), Math.round(y), true);
-				sleep(200);
-				setLed(Math.round(x), Math.round(y), false);
-				x += dx;
-				y += dy;
-			}
-		}
-		
-		getLedMatrix().overwriteBuffer(originalbuffer);
-		getLedMatrix().refresh();
+		play(Timeline.trace(startX, startY, destX, destY, 200, amount));
 	}
 	
-	private void sleep(long millis) {
-		try {
-			Thread.sleep(millis);
-		}
-		catch(InterruptedException e) {
-			e.printStackTrace();
-		}
+	/**
+	 * Spielt eine Animation auf der LED Matrix ab und stellt danach den vorherigen Zustand wieder her
+	 * @param timeline - Animation, wird beim ersten Abspielen für die Größe der Matrix kompiliert
+	 */
+	public void play(Timeline timeline) {
+		LedMatrixController leds = getLedMatrix();
+		timeline.compile(leds.getWidth(), leds.getHeight()).play(leds);
 	}
 	
 	@Deprecated
@@ -278,44 +837,66 @@ public class HardwareController {
 	 * Die Ausführung dieser Funktion kann einen Moment dauern, da alle Spielfeldspalten nacheinander abgefragt werden.
 	 * Eine Verzögerung von ca. 1,5 Sekunden ist zu erwarten
 	 * @NotNull
-	 * @return Zustand des Spielfelds als 2D Boolean Array
+	 * @return Zustand des Spielfelds als 2D Boolean Array [Spalte][Zeile], Größe entsprechend der Sensormatrix
 	 */
 	public boolean[][] readField(){
-		boolean[][] matrix = new boolean[FIELD_SIZE][FIELD_SIZE];
+		boolean[][] matrix = new boolean[sensors.getColumns()][sensors.getRows()];
 		
-		if(pi4j.isShutdown())
+		if(!enabled)
 			return matrix;
 		
-	    for(int col = 0; col < FIELD_SIZE; col++)
-	        readColumn(col, matrix);
+	    for(int col = 0; col < sensors.getColumns(); col++)
+	        sensors.readColumn(col, matrix);
 	    return matrix;
 	}
 	
 	/**
-	 * Liest eine einzelne spezifizierte Spalte ein
-	 * @param col - Spaltenindex
-	 * @param matrix - 2D Boolean Matrix wo die eingelesenen Werte eingetragen werden.
+	 * Liest den aktuellen Zustand des Felds als gepackte Belegung ein, für Bretter beliebiger Größe
+	 * @return Belegung, Bit (Zeile * Spalten + Spalte) ist gesetzt, wenn das Feld belegt ist
 	 */
-	private void readColumn(int col, boolean[][] matrix){
-		outputs.get(col).high();
+	public BitGrid readGrid() {
+		if(!enabled)
+			return sensors.newGrid();
 		
-		try {
-			Thread.sleep(READ_SLEEP_MILLIS);
-		}
-		catch(InterruptedException e) {
-			e.printStackTrace();
-		}
+		return sensors.readGrid(sensors.newGrid(), null);
+	}
+	
+	/**
+	 * Liest ein einzelnes Feld ein, z.B. um nach einem Hinweis nur das Zielfeld zu bestätigen. Es wird nur die Spalte des
+	 * Felds angesteuert.
+	 * @param x - X Position des Felds
+	 * @param y - Y Position des Felds
+	 * @return true, wenn das Feld belegt ist
+	 */
+	public boolean readSquare(int x, int y) {
+		if(!enabled)
+			return false;
 		
-	    for(int row = 0; row < FIELD_SIZE; row++)
-	        matrix[col][row] = inputs.get(row).state().isHigh();
-	    
-	    try {
-			Thread.sleep(READ_SLEEP_MILLIS);
-		}
-		catch(InterruptedException e) {
-			e.printStackTrace();
-		}
-	    
-	    outputs.get(col).low();
+		return sensors.readSquare(x, y);
+	}
+	
+	/**
+	 * Liest nur die ausgewählten Spalten ein, z.B. die beiden Spalten eines Zugs
+	 * @param columns - Bitmaske der Spalten, Bit n für Spalte n
+	 * @return Belegung, in der nur die ausgewählten Spalten gesetzt sein können
+	 */
+	public BitGrid readColumns(long columns) {
+		if(!enabled)
+			return sensors.newGrid();
+		
+		return sensors.readColumns(columns);
+	}
+	
+	/**
+	 * Prüft, ob das Brett der erwarteten Belegung entspricht. Der Scan endet bei der ersten abweichenden Spalte.
+	 * @param expected - erwartete Belegung mit der Größe der Sensormatrix
+	 * @return true, wenn alle Felder übereinstimmen
+	 * @throws IllegalArgumentException wenn die Belegung nicht die Größe der Sensormatrix hat
+	 */
+	public boolean verifyExpected(BitGrid expected) {
+		if(!enabled)
+			return false;
+		
+		return sensors.verifyExpected(expected);
 	}
 }
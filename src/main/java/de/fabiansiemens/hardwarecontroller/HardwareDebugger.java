@@ -1,6 +1,16 @@
 package de.fabiansiemens.hardwarecontroller;
 
+import de.fabiansiemens.hardwarecontroller.chess.Position;
+import de.fabiansiemens.hardwarecontroller.diagnostics.SelfTest;
+import de.fabiansiemens.hardwarecontroller.diagnostics.SelfTestReport;
+import de.fabiansiemens.hardwarecontroller.led.Timeline;
+import de.fabiansiemens.hardwarecontroller.led.print.Direction;
+import de.fabiansiemens.hardwarecontroller.led.print.MessageTemplate;
+
 public class HardwareDebugger implements HardwareListener {
+	private static final long HEATMAP_MILLIS = 5000;
+	private static final MessageTemplate WINS = MessageTemplate.compile("{PLAYER:text} wins");
+	
 	private int debugStep;
 	private HardwareController controller;
 	
@@ -24,6 +34,24 @@ public class HardwareDebugger implements HardwareListener {
 		controller.addListener(new HardwareDebugger(controller));
 	}
 	
+	/**
+	 * Führt den automatischen Selbsttest ohne Tastendruck durch. Das Brett muss dafür leer sein.
+	 * Der Bericht wird als JSON auf der Konsole ausgegeben und die Einschwingzeiten als Heatmap auf den LEDs angezeigt.
+	 * @param controller - HardwareController instanz
+	 * @param applyTiming - true, wenn das empfohlene Zeitverhalten direkt für den Scanner übernommen werden soll
+	 * @return Ergebnis des Selbsttests
+	 */
+	public static SelfTestReport runSelfTest(HardwareController controller, boolean applyTiming) {
+		SelfTestReport report = new SelfTest(controller.getSensorMatrix(), controller.getLedMatrix()).run();
+		System.out.println(report.toJson());
+		report.showHeatmap(controller.getLedMatrix(), HEATMAP_MILLIS);
+		
+		if(applyTiming && report.isPassed())
+			controller.getSensorMatrix().setTiming(report.recommendedTiming());
+		
+		return report;
+	}
+	
 	/**
 	 * Führt einen Debug Schritt durch.
 	 * 0 -> Alle LEDs aufleuchten lassen
@@ -38,6 +66,7 @@ public class HardwareDebugger implements HardwareListener {
 	 * 9 -> Trace einzelnes Feld
 	 * 10 -> Trace Illegal Coordinates
 	 * 11 -> Print Text
+	 * 12 -> Automatischer Selbsttest (leeres Brett)
 	 * @param step
 	 */
 	public void executeDebugStep(int step) {
@@ -46,25 +75,13 @@ public class HardwareDebugger implements HardwareListener {
 			controller.getLedMatrix().enableAll();
 		break;
 		case 1:	//Schachaufstellung
-			controller.clearLeds();
-			controller.setRow(0, true);
-			controller.setRow(1, true);
-			controller.setRow(6, true);
-			controller.setRow(7, true);
+			controller.getLedMatrix().drawBitboard(Position.startPosition().getOccupancy());
 		break;
 		case 2:	//Row für Row
-			for(int i = 0; i < 8; i++) {
-				controller.setRow(i, true);
-				sleep(100);
-				controller.setRow(i, false);
-			}
+			controller.play(Timeline.sweep(Direction.DOWN, 100));
 		break;
 		case 3:	//Column für Column
-			for(int i = 0; i < 8; i++) {
-				controller.setColumn(i, true);
-				sleep(100);
-				controller.setColumn(i, false);
-			}
+			controller.play(Timeline.sweep(Direction.RIGHT, 100));
 		break;
 		case 4:	//Fast Blink
 			controller.blinkFast(4, 4, 10);
@@ -88,25 +105,15 @@ public class HardwareDebugger implements HardwareListener {
 			controller.blinkTrace(-1, -1, -2, -2, -3);
 		break;
 		case 11:
-			controller.getLedMatrix().print("White wins");
+			controller.getLedMatrix().print(WINS, "White");
+		break;
+		case 12:	//Selbsttest
+			runSelfTest(controller, false);
 		break;
 		default: controller.shutdown();
 		}
 	}
 	
-	/**
-	 * Lässt den Thread temporär warten
-	 * @param millis - Zeit in Millisekunden
-	 */
-	private void sleep(int millis) {
-		try {
-			Thread.sleep(millis);
-		}
-		catch(InterruptedException e) {
-			e.printStackTrace();
-		}
-	}
-
 	/**
 	 * Wird ausgelöst, sobalt der Knopf am Schachbrett gedrückt wurde
 	 */
@@ -11,4 +11,13 @@ public interface HardwareListener {
 	 * @param controller - Instanz des HardwareControllers für einfachen Zugriff auf weitere Funktionen
 	 */
 	public void onConfirmButtonPressed(HardwareController controller);
+	
+	/**
+	 * Diese Funktion wird bei jeder Flanke des Confirm-Move Knopfs sowie bei erkannten Doppel- und Langdrücken aufgerufen.
+	 * Das Event enthält den Zeitpunkt der Flanke, sodass Reaktionszeiten und Gesten genau bestimmt werden können.
+	 * @param controller - Instanz des HardwareControllers für einfachen Zugriff auf weitere Funktionen
+	 * @param event - Flanke oder Geste des Knopfs
+	 */
+	public default void onButtonEvent(HardwareController controller, ButtonEvent event) {
+	}
 }
@@ -0,0 +1,112 @@
+package de.fabiansiemens.hardwarecontroller;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Misst die Zeit zwischen der Erfassung eines Hardware Events und dem Ende der Reaktion der Anwendung.
+ * Der HardwareController meldet automatisch, wann alle Listener eines Events abgearbeitet sind.
+ * Überschreitet eine Messung den eingestellten Grenzwert, werden registrierte {@link AlertListener} benachrichtigt.
+ */
+public class LatencyMonitor {
+
+	/**
+	 * Standard Grenzwert, ab dem eine Reaktion als zu langsam gilt
+	 */
+	public static final long DEFAULT_THRESHOLD_MILLIS = 50;
+
+	/**
+	 * Wird benachrichtigt, wenn eine Reaktion länger als der Grenzwert gedauert hat
+	 */
+	public interface AlertListener {
+		/**
+		 * @param source - Art des Events, z.B. "button" oder "board"
+		 * @param latencyNanos - gemessene Zeit von der Erfassung bis zum Ende der Reaktion
+		 */
+		public void onLatencyExceeded(String source, long latencyNanos);
+	}
+
+	private final List<AlertListener> listener;
+	private final LongAdder count;
+	private final LongAdder sum;
+	private final AtomicLong max;
+	private final LongAdder exceeded;
+	private volatile long thresholdNanos;
+
+	public LatencyMonitor() {
+		this.listener = new CopyOnWriteArrayList<AlertListener>();
+		this.count = new LongAdder();
+		this.sum = new LongAdder();
+		this.max = new AtomicLong();
+		this.exceeded = new LongAdder();
+		this.thresholdNanos = DEFAULT_THRESHOLD_MILLIS * 1_000_000L;
+	}
+
+	/**
+	 * Registriert einen Listener. Wenn der übergebene Listener null ist, wird nichts hinzugefügt.
+	 * @param listener - Objekt vom Typ {@link AlertListener} @Nullable
+	 */
+	public void addListener(AlertListener listener) {
+		if(listener == null)
+			return;
+
+		this.listener.add(listener);
+	}
+
+	/**
+	 * @param millis - Grenzwert, ab dem eine Reaktion als zu langsam gilt
+	 */
+	public void setThreshold(long millis) {
+		this.thresholdNanos = millis * 1_000_000L;
+	}
+
+	/**
+	 * Erfasst eine Messung von der Erfassung eines Events bis jetzt
+	 * @param source - Art des Events
+	 * @param eventTimestampNanos - Erfassungszeitpunkt des Events (System.nanoTime)
+	 * @return gemessene Zeit in Nanosekunden
+	 */
+	public long record(String source, long eventTimestampNanos) {
+		long latency = System.nanoTime() - eventTimestampNanos;
+
+		count.increment();
+		sum.add(latency);
+		max.accumulateAndGet(latency, Math::max);
+
+		if(latency > thresholdNanos) {
+			exceeded.increment();
+			for(AlertListener lis : listener)
+				lis.onLatencyExceeded(source, latency);
+		}
+
+		return latency;
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMaxNanos() {
+		return max.get();
+	}
+
+	public long getAverageNanos() {
+		long n = count.sum();
+		return n == 0 ? 0 : sum.sum() / n;
+	}
+
+	/**
+	 * @return Anzahl der Messungen über dem Grenzwert
+	 */
+	public long getExceeded() {
+		return exceeded.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LatencyMonitor[count=%d, avg=%.2fms, max=%.2fms, exceeded=%d]",
+				getCount(), getAverageNanos() / 1e6, getMaxNanos() / 1e6, getExceeded());
+	}
+}
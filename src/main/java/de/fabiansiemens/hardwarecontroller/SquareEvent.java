@@ -0,0 +1,60 @@
+package de.fabiansiemens.hardwarecontroller;
+
+/**
+ * Änderung eines einzelnen Felds mit dem monotonen Zeitpunkt, an dem die Spalte des Felds eingelesen wurde.
+ */
+public final class SquareEvent {
+
+	private final int col;
+	private final int row;
+	private final boolean occupied;
+	private final long timestampNanos;
+	private final long sequence;
+
+	/**
+	 * @param col - Spaltenindex (0-7)
+	 * @param row - Zeilenindex (0-7)
+	 * @param occupied - true, wenn eine Figur auf das Feld gestellt wurde, false wenn sie entfernt wurde
+	 * @param timestampNanos - Erfassungszeitpunkt (System.nanoTime)
+	 * @param sequence - Nummer des Scans, in dem die Änderung erkannt wurde
+	 */
+	public SquareEvent(int col, int row, boolean occupied, long timestampNanos, long sequence) {
+		this.col = col;
+		this.row = row;
+		this.occupied = occupied;
+		this.timestampNanos = timestampNanos;
+		this.sequence = sequence;
+	}
+
+	public int getCol() {
+		return col;
+	}
+
+	public int getRow() {
+		return row;
+	}
+
+	public boolean isOccupied() {
+		return occupied;
+	}
+
+	public long getTimestampNanos() {
+		return timestampNanos;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return Zeit seit der Erfassung in Nanosekunden
+	 */
+	public long getAgeNanos() {
+		return System.nanoTime() - timestampNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "SquareEvent[" + (char) ('A' + col) + (row + 1) + (occupied ? " placed" : " lifted") + ", scan=" + sequence + "]";
+	}
+}
@@ -0,0 +1,121 @@
+package de.fabiansiemens.hardwarecontroller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Zeitaufschlüsselung des Starts eines {@link HardwareController}, z.B. um zu sehen, wo beim Booten eines Kiosk Bretts die
+ * Zeit verloren geht.
+ *
+ * Jede Phase wird mit Beginn (relativ zum Start) und Dauer erfasst. Im schnellen Start ({@link BoardConfig#withFastStartup()})
+ * werden die GPIOs der Sensormatrix erst bei ihrer ersten Verwendung konfiguriert, die Phase "sensors" enthält dann nur die
+ * Verbindung zum pigpio Daemon.
+ */
+public class StartupReport {
+
+	/**
+	 * Eine erfasste Phase des Starts
+	 */
+	public static final class Phase {
+		private final String name;
+		private final long offsetNanos;
+		private final long durationNanos;
+		private final String thread;
+
+		Phase(String name, long offsetNanos, long durationNanos, String thread) {
+			this.name = name;
+			this.offsetNanos = offsetNanos;
+			this.durationNanos = durationNanos;
+			this.thread = thread;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return Beginn der Phase relativ zum Start des Controllers
+		 */
+		public long getOffsetNanos() {
+			return offsetNanos;
+		}
+
+		public long getDurationNanos() {
+			return durationNanos;
+		}
+
+		/**
+		 * @return Name des Threads, in dem die Phase lief
+		 */
+		public String getThread() {
+			return thread;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-10s +%4d ms %5d ms [%s]", name, offsetNanos / 1_000_000, durationNanos / 1_000_000, thread);
+		}
+	}
+
+	private final long startNanos;
+	private final List<Phase> phases;
+	private volatile long readyNanos;
+
+	StartupReport() {
+		this.startNanos = System.nanoTime();
+		this.phases = new ArrayList<Phase>();
+	}
+
+	/**
+	 * Erfasst eine abgeschlossene Phase
+	 * @param name - Name der Phase, z.B. "leds"
+	 * @param beginNanos - Beginn der Phase (System.nanoTime)
+	 */
+	synchronized void record(String name, long beginNanos) {
+		long now = System.nanoTime();
+		phases.add(new Phase(name, beginNanos - startNanos, now - beginNanos, Thread.currentThread().getName()));
+	}
+
+	/**
+	 * Markiert das Ende des Konstruktors
+	 */
+	void ready() {
+		readyNanos = System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * @return alle bisher erfassten Phasen in der Reihenfolge ihres Endes
+	 */
+	public synchronized List<Phase> getPhases() {
+		return new ArrayList<Phase>(phases);
+	}
+
+	/**
+	 * @return Zeit vom Start bis zur Rückkehr des Konstruktors
+	 */
+	public long getReadyNanos() {
+		return readyNanos;
+	}
+
+	/**
+	 * @return Zeit vom Start bis zum Ende der zuletzt abgeschlossenen Phase
+	 */
+	public synchronized long getTotalNanos() {
+		long total = readyNanos;
+		for(Phase phase : phases)
+			total = Math.max(total, phase.offsetNanos + phase.durationNanos);
+
+		return total;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Startup ready after ").append(readyNanos / 1_000_000).append(" ms, complete after ")
+				.append(getTotalNanos() / 1_000_000).append(" ms");
+		for(Phase phase : phases)
+			sb.append(System.lineSeparator()).append("  ").append(phase);
+
+		return sb.toString();
+	}
+}
@@ -0,0 +1,240 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+/**
+ * Vorberechnete Angriffstabellen auf 64 Bit Bitboards (Feldindizes wie in {@link Squares}).
+ *
+ * Springer, König und Bauern werden direkt aus Tabellen gelesen. Für Läufer und Türme werden Magic Bitboards verwendet:
+ * Die relevanten Blocker eines Felds werden maskiert, mit einer feldspezifischen Magic Zahl multipliziert und die oberen
+ * Bits als Index in die Angriffstabelle des Felds verwendet. Ein Angriff kostet damit ein AND, eine Multiplikation,
+ * einen Shift und einen Tabellenzugriff.
+ * Die Magic Zahlen sind vorab mit {@link #findMagic(int, int[][], long, long[])} gesucht worden und werden beim Laden der Klasse nur
+ * noch geprüft. Sollte eine Zahl nicht passen, wird für dieses Feld erneut gesucht.
+ */
+public final class Attacks {
+
+	private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+	private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+	private static final int[][] KNIGHT_STEPS = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+	private static final int[][] KING_STEPS = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+
+	private static final long[] KNIGHT = new long[64];
+	private static final long[] KING = new long[64];
+	private static final long[][] PAWN = new long[2][64];
+
+	private static final long[] ROOK_MAGICS = {
+			0x008000908064C000L, 0x0040200040001000L, 0x0180100080A0010AL, 0x8880041000800800L,
+			0x1200100201200804L, 0x0200020004011008L, 0x2180010000800600L, 0x0200005088210204L,
+			0x0000800080204001L, 0x1000804000802001L, 0x8240801000200080L, 0x8611001004200900L,
+			0x008180800C001800L, 0x0100800200800400L, 0x0A02000102000408L, 0x8020802300104280L,
+			0x0080004000402000L, 0xE010104000402000L, 0x0800808010002000L, 0xA280210008100100L,
+			0x0001818014000800L, 0xA002010100080400L, 0x0008040088020130L, 0x0001020004048845L,
+			0x0081826280004004L, 0x2020810900284000L, 0x0200100080802000L, 0x0200080080100080L,
+			0x8083080100100500L, 0x4406000901000400L, 0x0005020080800100L, 0x0090204200008114L,
+			0x0010400094800420L, 0x0900804000802002L, 0x0201001841002000L, 0x4100080080801000L,
+			0x4540040080800800L, 0x0000800400800200L, 0x9281800100808200L, 0x8004048102000854L,
+			0x4420802040008006L, 0x0880500020004002L, 0x0801200241050010L, 0x8400080010008080L,
+			0x0008000500090010L, 0x0082009084020008L, 0x4012000108020004L, 0x9000104D08860004L,
+			0x2004204114800100L, 0x0148802112400300L, 0x0202842000100880L, 0x001B080080900080L,
+			0x001A002008100600L, 0x0004008004020080L, 0x5181000600040300L, 0x0000044401128A00L,
+			0x8044110480002441L, 0x1023012082044112L, 0x00804080200A0012L, 0x000420310A004A42L,
+			0x0023001004020801L, 0x0882001008040102L, 0x000230088118020CL, 0x0000019025040042L
+	};
+
+	private static final long[] BISHOP_MAGICS = {
+			0x1010220204082A00L, 0x80E0020202002804L, 0x2008480104200020L, 0x000220920280002DL,
+			0x32040421000B0284L, 0x1002080404000400L, 0x0004160892080040L, 0x2203024206204201L,
+			0x0002404264010200L, 0x1120908408428124L, 0xB100424403002280L, 0x240008060440C288L,
+			0x2040040420490400L, 0x0100620210040022L, 0x0400084104202028L, 0x0010050080908820L,
+			0x0C90A04490824802L, 0x000200A008210130L, 0x0C08001000204010L, 0x0008000186014480L,
+			0x0601044820080021L, 0x0002000101013100L, 0x1400A08108080204L, 0x0250401104485410L,
+			0x4820240810142843L, 0x0009142A20182200L, 0x0848140048440020L, 0x2020120000400440L,
+			0x0108840200802003L, 0x0009070082009492L, 0x020C0C0038424245L, 0xCA44005808210410L,
+			0x8011212000500404L, 0x2028840510101008L, 0x0004042A00041400L, 0x0624020080980080L,
+			0x1820410040840040L, 0x2201004202050100L, 0x402A088A24040224L, 0x0242061040002400L,
+			0x90020202400821A0L, 0x00C9009004E01002L, 0x58C2060202023100L, 0x0000012214040800L,
+			0x0210846810100200L, 0x0004208081010200L, 0x01A4108404442100L, 0x8054082C80280106L,
+			0x0004144904104208L, 0x00324C0A11104000L, 0x1000020231040100L, 0x2080001042020004L,
+			0x0544021020288104L, 0x1103501408083020L, 0x4010451004960002L, 0x003010091C44902CL,
+			0x0102402884202000L, 0x0480804C00841086L, 0x04602C8602210400L, 0x0000004000420200L,
+			0x0040000020442C18L, 0x4483804089094100L, 0x80000B0248020400L, 0x0045010808008680L
+	};
+
+	private static final Magic[] ROOK = new Magic[64];
+	private static final Magic[] BISHOP = new Magic[64];
+
+	/**
+	 * Magic Bitboard eines Felds
+	 */
+	private static final class Magic {
+		final long mask;
+		final long magic;
+		final int shift;
+		final long[] attacks;
+
+		Magic(long mask, long magic, int shift, long[] attacks) {
+			this.mask = mask;
+			this.magic = magic;
+			this.shift = shift;
+			this.attacks = attacks;
+		}
+
+		long get(long occupancy) {
+			return attacks[(int) (((occupancy & mask) * magic) >>> shift)];
+		}
+	}
+
+	static {
+		long[] seed = {0x2545F4914F6CDD1DL};
+
+		for(int square = 0; square < 64; square++) {
+			KNIGHT[square] = steps(square, KNIGHT_STEPS);
+			KING[square] = steps(square, KING_STEPS);
+			PAWN[Side.WHITE.ordinal()][square] = steps(square, new int[][] {{1, 1}, {-1, 1}});
+			PAWN[Side.BLACK.ordinal()][square] = steps(square, new int[][] {{1, -1}, {-1, -1}});
+			ROOK[square] = findMagic(square, ROOK_DIRECTIONS, ROOK_MAGICS[square], seed);
+			BISHOP[square] = findMagic(square, BISHOP_DIRECTIONS, BISHOP_MAGICS[square], seed);
+		}
+	}
+
+	private Attacks() {
+	}
+
+	public static long knight(int square) {
+		return KNIGHT[square];
+	}
+
+	public static long king(int square) {
+		return KING[square];
+	}
+
+	/**
+	 * @param side - Farbe des angreifenden Bauern
+	 * @return Felder, die ein Bauer dieser Farbe auf dem Feld schlagen kann
+	 */
+	public static long pawn(Side side, int square) {
+		return PAWN[side.ordinal()][square];
+	}
+
+	public static long bishop(int square, long occupancy) {
+		return BISHOP[square].get(occupancy);
+	}
+
+	public static long rook(int square, long occupancy) {
+		return ROOK[square].get(occupancy);
+	}
+
+	public static long queen(int square, long occupancy) {
+		return BISHOP[square].get(occupancy) | ROOK[square].get(occupancy);
+	}
+
+	private static long steps(int square, int[][] steps) {
+		long attacks = 0;
+		for(int[] step : steps) {
+			int col = Squares.col(square) + step[0];
+			int row = Squares.row(square) + step[1];
+			if(Squares.isValid(col, row))
+				attacks |= Squares.bit(Squares.of(col, row));
+		}
+
+		return attacks;
+	}
+
+	/**
+	 * Berechnet die Angriffe einer Langschrittigen Figur durch Ablaufen der Strahlen (nur zum Aufbau der Tabellen)
+	 */
+	private static long slide(int square, long occupancy, int[][] directions) {
+		long attacks = 0;
+		for(int[] direction : directions) {
+			int col = Squares.col(square) + direction[0];
+			int row = Squares.row(square) + direction[1];
+
+			while(Squares.isValid(col, row)) {
+				long bit = Squares.bit(Squares.of(col, row));
+				attacks |= bit;
+				if((occupancy & bit) != 0)
+					break;
+
+				col += direction[0];
+				row += direction[1];
+			}
+		}
+
+		return attacks;
+	}
+
+	/**
+	 * Relevante Blocker eines Felds: alle Strahlenfelder ohne das jeweils letzte Feld am Rand
+	 */
+	private static long relevantMask(int square, int[][] directions) {
+		long mask = 0;
+		for(int[] direction : directions) {
+			int col = Squares.col(square) + direction[0];
+			int row = Squares.row(square) + direction[1];
+
+			while(Squares.isValid(col + direction[0], row + direction[1])) {
+				mask |= Squares.bit(Squares.of(col, row));
+				col += direction[0];
+				row += direction[1];
+			}
+		}
+
+		return mask;
+	}
+
+	/**
+	 * Baut die Angriffstabelle eines Felds auf
+	 * @param candidate - zuerst geprüfte Magic Zahl
+	 * @param seed - Zustand des Zufallsgenerators, falls die Kandidatin nicht passt
+	 */
+	private static Magic findMagic(int square, int[][] directions, long candidate, long[] seed) {
+		long mask = relevantMask(square, directions);
+		int bits = Long.bitCount(mask);
+		int size = 1 << bits;
+		long[] occupancies = new long[size];
+		long[] reference = new long[size];
+
+		//Alle Teilmengen der Maske aufzählen (Carry-Rippler)
+		long subset = 0;
+		for(int i = 0; i < size; i++) {
+			occupancies[i] = subset;
+			reference[i] = slide(square, subset, directions);
+			subset = (subset - mask) & mask;
+		}
+
+		long[] attacks = new long[size];
+		int[] epoch = new int[size];
+		int shift = 64 - bits;
+
+		for(int attempt = 1; ; attempt++) {
+			long magic = attempt == 1 ? candidate : random(seed) & random(seed) & random(seed);
+			if(attempt > 1 && Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6)
+				continue;
+
+			boolean collision = false;
+			for(int i = 0; i < size && !collision; i++) {
+				int index = (int) ((occupancies[i] * magic) >>> shift);
+				if(epoch[index] < attempt) {
+					epoch[index] = attempt;
+					attacks[index] = reference[i];
+				}
+				else if(attacks[index] != reference[i])
+					collision = true;
+			}
+
+			if(!collision)
+				return new Magic(mask, magic, shift, attacks);
+		}
+	}
+
+	/**
+	 * Xorshift Zufallszahlen mit festem Startwert
+	 */
+	private static long random(long[] seed) {
+		long x = seed[0];
+		x ^= x >>> 12;
+		x ^= x << 25;
+		x ^= x >>> 27;
+		seed[0] = x;
+		return x * 0x2545F4914F6CDD1DL;
+	}
+}
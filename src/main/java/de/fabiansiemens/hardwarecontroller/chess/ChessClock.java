@@ -0,0 +1,278 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+import de.fabiansiemens.hardwarecontroller.HardwareController;
+import de.fabiansiemens.hardwarecontroller.HardwareListener;
+import de.fabiansiemens.hardwarecontroller.led.LedMatrixController;
+import de.fabiansiemens.hardwarecontroller.led.print.Symbol;
+
+/**
+ * Schachuhr für zwei Spieler auf der LED Matrix. Jeder Druck auf den Confirm-Move Knopf beendet den Zug der laufenden Seite
+ * und startet die Uhr der anderen Seite.
+ *
+ * Die Restzeit wird nie hochgezählt, sondern immer aus {@link System#nanoTime()} und dem Beginn des laufenden Zugs berechnet,
+ * daher läuft die Uhr auch bei verspätetem Zeichnen nicht weg. Ein eigener Thread wartet bis zum nächsten Zeitpunkt, an dem
+ * sich die Anzeige ändert, und schreibt nur die geänderten Zeilen ({@link LedMatrixController#refreshChanged()}). Scans und
+ * Listener laufen in anderen Threads und verzögern die Anzeige daher nicht.
+ *
+ * Aufbau eines 8x8 Moduls: Zeilen 0-4 zeigen zwei kompakte Ziffern ({@link Symbol#getSmallDigit(int)}), ab einer Minute die
+ * Minuten mit einem Punkt unten rechts, darunter die Sekunden ohne Punkt. Zeile 7 zeigt, welche Seite am Zug ist: links Weiß,
+ * rechts Schwarz. Ist die Matrix mindestens 16 Pixel breit, bekommt jede Seite ein eigenes Modul, sonst wird die Zeit der
+ * laufenden Seite angezeigt. Die Seite, deren Zeit abgelaufen ist, bekommt zusätzlich Zeile 6.
+ */
+public class ChessClock implements HardwareListener, Closeable {
+
+	private static final int PANEL_SIZE = 8;
+
+	private final LedMatrixController leds;
+	private final long incrementNanos;
+	private final List<Consumer<Side>> flagListener;
+	private final Thread thread;
+
+	//Restzeit jeder Seite zu Beginn ihres aktuellen bzw. nächsten Zugs
+	private final long[] budgetNanos;
+	private Side running;
+	private Side next;
+	private Side flagged;
+	private long turnStartNanos;
+	private volatile boolean closed;
+
+	/**
+	 * Startet den Anzeige-Thread, die Uhr selbst steht bis zum ersten Knopfdruck bzw. {@link #start(Side)}
+	 * @param leds - LED Matrix, die während des Betriebs vollständig von der Uhr belegt wird
+	 * @param time - Bedenkzeit je Seite
+	 * @param increment - Zeit, die nach jedem Zug gutgeschrieben wird, {@link Duration#ZERO} für keine
+	 */
+	public ChessClock(LedMatrixController leds, Duration time, Duration increment) {
+		this.leds = leds;
+		this.incrementNanos = increment.toNanos();
+		this.flagListener = new CopyOnWriteArrayList<Consumer<Side>>();
+		this.budgetNanos = new long[] { time.toNanos(), time.toNanos() };
+		this.next = Side.WHITE;
+
+		this.thread = new Thread(this::run, "ChessClock");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Startet die Uhr einer Seite, eine laufende Uhr wird dabei ohne Zeitgutschrift angehalten
+	 * @param side - Seite, deren Zeit ab jetzt läuft
+	 */
+	public synchronized void start(Side side) {
+		if(flagged != null)
+			return;
+
+		long now = System.nanoTime();
+		stopRunning(now);
+		running = side;
+		turnStartNanos = now;
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Beendet den Zug der laufenden Seite, schreibt ihr das Inkrement gut und startet die Uhr der anderen Seite.
+	 * Steht die Uhr, wird sie für die Seite gestartet, die als nächstes am Zug ist.
+	 */
+	public synchronized void press() {
+		if(flagged != null)
+			return;
+
+		if(running == null) {
+			start(next);
+			return;
+		}
+
+		long now = System.nanoTime();
+		Side moved = running;
+		stopRunning(now);
+		budgetNanos[moved.ordinal()] += incrementNanos;
+		running = moved.opposite();
+		turnStartNanos = now;
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Hält die Uhr an, {@link #press()} setzt sie für dieselbe Seite fort
+	 */
+	public synchronized void pause() {
+		if(running == null)
+			return;
+
+		next = running;
+		stopRunning(System.nanoTime());
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * @return Seite, deren Zeit gerade läuft, null wenn die Uhr steht
+	 */
+	public synchronized Side getRunning() {
+		return running;
+	}
+
+	/**
+	 * @return Seite, deren Zeit abgelaufen ist, sonst null
+	 */
+	public synchronized Side getFlagged() {
+		return flagged;
+	}
+
+	/**
+	 * @param side - Seite
+	 * @return verbleibende Zeit der Seite in Millisekunden, nicht negativ
+	 */
+	public synchronized long getRemainingMillis(Side side) {
+		return Math.max(0, remainingNanos(side, System.nanoTime())) / 1_000_000;
+	}
+
+	/**
+	 * Registriert einen Listener, der im Thread der Uhr benachrichtigt wird, sobald die Zeit einer Seite abgelaufen ist.
+	 * Wenn der übergebene Listener null ist, wird nichts hinzugefügt.
+	 */
+	public void addFlagListener(Consumer<Side> listener) {
+		if(listener == null)
+			return;
+
+		flagListener.add(listener);
+	}
+
+	public void removeFlagListener(Consumer<Side> listener) {
+		flagListener.remove(listener);
+	}
+
+	@Override
+	public void onConfirmButtonPressed(HardwareController controller) {
+		press();
+	}
+
+	/**
+	 * Beendet den Anzeige-Thread, die Anzeige bleibt stehen
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(thread);
+		try {
+			thread.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void stopRunning(long now) {
+		if(running == null)
+			return;
+
+		budgetNanos[running.ordinal()] -= now - turnStartNanos;
+		running = null;
+	}
+
+	private long remainingNanos(Side side, long now) {
+		long remaining = budgetNanos[side.ordinal()];
+		if(side == running)
+			remaining -= now - turnStartNanos;
+
+		return remaining;
+	}
+
+	private void run() {
+		BitGrid frame = new BitGrid(leds.getWidth(), leds.getHeight());
+
+		while(!closed) {
+			long deadline;
+			Side fell = null;
+			synchronized(this) {
+				long now = System.nanoTime();
+				if(running != null && remainingNanos(running, now) <= 0) {
+					//Die Zeit ist genau beim Ablauf verbraucht, nicht erst beim verspäteten Aufwachen
+					budgetNanos[running.ordinal()] = 0;
+					flagged = fell = running;
+					running = null;
+				}
+
+				render(frame, now);
+				deadline = nextChange(now);
+			}
+
+			leds.overwriteBuffer(frame);
+			leds.refreshChanged();
+
+			if(fell != null)
+				for(Consumer<Side> lis : flagListener)
+					lis.accept(fell);
+
+			//Wartet bis zum nächsten Sekundenwechsel der laufenden Seite oder bis zum nächsten Knopfdruck
+			long wait = deadline - System.nanoTime();
+			if(deadline == Long.MAX_VALUE)
+				LockSupport.park(this);
+			else if(wait > 0)
+				LockSupport.parkNanos(this, wait);
+		}
+	}
+
+	/**
+	 * @return Zeitpunkt, an dem die angezeigten Sekunden der laufenden Seite wechseln, Long.MAX_VALUE wenn die Uhr steht
+	 */
+	private long nextChange(long now) {
+		if(running == null)
+			return Long.MAX_VALUE;
+
+		//Angezeigt wird die aufgerundete Sekunde, sie wechselt, sobald die Restzeit die nächstkleinere volle Sekunde erreicht
+		long remaining = remainingNanos(running, now);
+		long shown = (remaining + 999_999_999L) / 1_000_000_000L;
+		return now + remaining - (shown - 1) * 1_000_000_000L;
+	}
+
+	private void render(BitGrid frame, long now) {
+		frame.clear();
+		if(frame.getWidth() >= 2 * PANEL_SIZE) {
+			renderPanel(frame, 0, Side.WHITE, now);
+			renderPanel(frame, PANEL_SIZE, Side.BLACK, now);
+		}
+		else {
+			renderPanel(frame, 0, running != null ? running : flagged != null ? flagged : next, now);
+		}
+	}
+
+	private void renderPanel(BitGrid frame, int x, Side side, long now) {
+		long seconds = (Math.max(0, remainingNanos(side, now)) + 999_999_999L) / 1_000_000_000L;
+		boolean minutes = seconds >= 60;
+		long value = Math.min(99, minutes ? seconds / 60 : seconds);
+
+		drawDigit(frame, x, Symbol.getSmallDigit((int) (value / 10)));
+		drawDigit(frame, x + 4, Symbol.getSmallDigit((int) (value % 10)));
+		if(minutes)
+			frame.set(x + 7, 4, true);
+
+		//Zeile 7 zeigt die Seite am Zug, bei einem eigenen Modul je Seite das ganze Modul
+		if(side == running) {
+			boolean own = frame.getWidth() >= 2 * PANEL_SIZE;
+			int from = own || side == Side.WHITE ? 0 : PANEL_SIZE / 2;
+			int to = own || side == Side.BLACK ? PANEL_SIZE : PANEL_SIZE / 2;
+			for(int i = from; i < to; i++)
+				frame.set(x + i, 7, true);
+		}
+
+		if(side == flagged)
+			for(int i = 0; i < PANEL_SIZE; i++)
+				frame.set(x + i, 6, true);
+	}
+
+	private static void drawDigit(BitGrid frame, int x, Symbol digit) {
+		byte[] rows = digit.getRows();
+		for(int y = 0; y < 5; y++) {
+			//Im Symbol ist Bit 7 die linke Spalte, im Buffer Pixel X das Bit X
+			long pixels = Integer.reverse(rows[y] & 0xFF) >>> 24;
+			frame.setRow(y, frame.getRow(y) | (pixels << x));
+		}
+	}
+}
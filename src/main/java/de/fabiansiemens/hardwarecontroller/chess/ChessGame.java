@@ -0,0 +1,186 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+import de.fabiansiemens.hardwarecontroller.led.LedMatrixController;
+import de.fabiansiemens.hardwarecontroller.sensor.ScanListener;
+import de.fabiansiemens.hardwarecontroller.sensor.ScanResult;
+
+/**
+ * Führt den Spielstand parallel zur Belegung der Sensormatrix.
+ *
+ * Erkannte Züge eines {@link MoveDetector} werden auf Legalität geprüft und auf die {@link Position} angewendet.
+ * Ein Bauer auf der letzten Reihe wird immer in eine Dame umgewandelt, da die Sensormatrix nur die Belegung und nicht die Figur
+ * erkennt. Andere Umwandlungen können mit {@link #setPosition(Position)} korrigiert werden.
+ * Bei einem nicht legalen Zug bleibt der Spielstand unverändert, der Besitzer des Zugdetektors muss dessen Ausgangsstellung
+ * dann auf die Belegung des Spielstands zurücksetzen ({@link MoveDetector#reset(long)}), wie es der
+ * {@link de.fabiansiemens.hardwarecontroller.HardwareController} tut.
+ * Wird eine Figur der Seite am Zug angehoben, werden ihre legalen Zielfelder sofort auf der LED Matrix angezeigt.
+ * Die Zielfelder werden als Bitboard berechnet und ohne Umweg über einzelne Pixel in den LED Buffer geschrieben.
+ * Sobald die Figur abgestellt oder der Zug erkannt wurde, wird der vorherige Inhalt der Matrix wiederhergestellt.
+ *
+ * Die Partie ist der einzige Besitzer ihrer Anzeigen auf der Matrix: Zughinweise und eine Spur, z.B. der beste Zug einer Engine
+ * ({@link #showTrace(long)}), sind zwei Ebenen über demselben gesicherten Inhalt. Angezeigt wird die Vereinigung beider Ebenen,
+ * der gesicherte Inhalt wird erst wiederhergestellt, wenn beide Ebenen leer sind.
+ */
+public class ChessGame implements ScanListener, MoveListener {
+
+	private final LedMatrixController leds;
+	private final List<MoveListener> listener;
+
+	private Position position;
+	private volatile boolean hintsEnabled;
+	private long hints;
+	private long trace;
+	private BitGrid originalbuffer;
+
+	/**
+	 * @param leds - LED Matrix für die Zughinweise, null wenn keine Hinweise angezeigt werden sollen @Nullable
+	 */
+	public ChessGame(LedMatrixController leds) {
+		this.leds = leds;
+		this.listener = new CopyOnWriteArrayList<MoveListener>();
+		this.position = Position.startPosition();
+		this.hintsEnabled = leds != null;
+	}
+
+	/**
+	 * Registriert einen Listener, der über ausgeführte und nicht legale Züge benachrichtigt wird.
+	 * Wenn der übergebene Listener null ist, wird nichts hinzugefügt.
+	 * @param listener - Objekt vom Typ {@link MoveListener} @Nullable
+	 */
+	public void addListener(MoveListener listener) {
+		if(listener == null)
+			return;
+
+		this.listener.add(listener);
+	}
+
+	public void removeListener(MoveListener listener) {
+		this.listener.remove(listener);
+	}
+
+	/**
+	 * @return Kopie des aktuellen Spielstands
+	 */
+	public synchronized Position getPosition() {
+		return position.copy();
+	}
+
+	/**
+	 * Setzt den Spielstand, z.B. für eine neue Partie oder eine geladene Stellung
+	 * @param position - neuer Spielstand
+	 */
+	public synchronized void setPosition(Position position) {
+		this.position = position.copy();
+		clearHints();
+	}
+
+	public void setHintsEnabled(boolean enabled) {
+		this.hintsEnabled = enabled && leds != null;
+	}
+
+	public boolean isHintsEnabled() {
+		return hintsEnabled;
+	}
+
+	/**
+	 * Zeigt eine Spur zusätzlich zu eventuellen Zughinweisen an, bis sie mit {@link #clearTrace()} entfernt oder ersetzt wird
+	 * @param trace - Bitboard der Spur, Bit (y * 8 + x) für das Pixel X/Y
+	 */
+	public synchronized void showTrace(long trace) {
+		if(leds == null || trace == this.trace)
+			return;
+
+		this.trace = trace;
+		redraw();
+	}
+
+	/**
+	 * Entfernt die mit {@link #showTrace(long)} angezeigte Spur, Zughinweise bleiben erhalten
+	 */
+	public synchronized void clearTrace() {
+		if(trace == 0)
+			return;
+
+		trace = 0;
+		redraw();
+	}
+
+	@Override
+	public synchronized void onScan(ScanResult result) {
+		if(!result.hasChanged())
+			return;
+
+		long lifted = position.getOccupancy() & ~result.getOccupancy();
+		long own = lifted & position.getPieces(position.getSideToMove());
+
+		if(hintsEnabled && Long.bitCount(own) == 1)
+			showHints(position.legalTargets(Long.numberOfTrailingZeros(own)));
+		else if(lifted == 0 || !hintsEnabled)
+			clearHints();
+	}
+
+	@Override
+	public synchronized void onMoveDetected(MoveDetected move) {
+		clearHints();
+
+		if(!position.isLegal(move.getFrom(), move.getTo())) {
+			for(MoveListener lis : listener)
+				lis.onIllegalMove(move);
+			return;
+		}
+
+		//Umwandlungen werden immer in eine Dame ausgeführt
+		position.play(move.getFrom(), move.getTo(), null);
+		for(MoveListener lis : listener)
+			lis.onMoveDetected(move);
+	}
+
+	@Override
+	public synchronized void onSequenceAborted(long occupancy) {
+		clearHints();
+
+		for(MoveListener lis : listener)
+			lis.onSequenceAborted(occupancy);
+	}
+
+	private void showHints(long targets) {
+		if(targets == hints)
+			return;
+
+		hints = targets;
+		redraw();
+	}
+
+	private void clearHints() {
+		if(hints == 0)
+			return;
+
+		hints = 0;
+		redraw();
+	}
+
+	/**
+	 * Zeichnet beide Ebenen über den gesicherten Inhalt oder stellt ihn wieder her, wenn keine Ebene mehr etwas anzeigt
+	 */
+	private void redraw() {
+		long overlay = hints | trace;
+		if(overlay == 0) {
+			if(originalbuffer == null)
+				return;
+
+			leds.overwriteBuffer(originalbuffer);
+			leds.refresh();
+			originalbuffer = null;
+			return;
+		}
+
+		if(originalbuffer == null)
+			originalbuffer = leds.getGrid().copy();
+
+		leds.drawBitboard(overlay);
+	}
+}
@@ -0,0 +1,49 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+/**
+ * Eine im {@link PositionIndex} hinterlegte Stellung oder Belegung
+ */
+public final class KnownPosition {
+
+	private final String name;
+	private final long occupancy;
+	private final Position position;
+
+	/**
+	 * @param name - Name, z.B. "start" oder der Name eines Puzzles
+	 * @param occupancy - Belegung des Bretts
+	 * @param position - zugehöriger Spielstand, null für reine Belegungsmuster (z.B. leeres Brett) @Nullable
+	 */
+	public KnownPosition(String name, long occupancy, Position position) {
+		this.name = name;
+		this.occupancy = occupancy;
+		this.position = position == null ? null : position.copy();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getOccupancy() {
+		return occupancy;
+	}
+
+	/**
+	 * @return true, wenn zu diesem Eintrag ein Spielstand gehört
+	 */
+	public boolean hasPosition() {
+		return position != null;
+	}
+
+	/**
+	 * @return Kopie des Spielstands oder null für reine Belegungsmuster
+	 */
+	public Position getPosition() {
+		return position == null ? null : position.copy();
+	}
+
+	@Override
+	public String toString() {
+		return "KnownPosition[" + name + "]";
+	}
+}
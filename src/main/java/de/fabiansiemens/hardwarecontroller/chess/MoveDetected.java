@@ -0,0 +1,82 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+/**
+ * Ein aus den Feldänderungen abgeleiteter Zug.
+ * Die Felder sind Indizes im Format von {@link Squares}.
+ */
+public final class MoveDetected {
+
+	private final MoveType type;
+	private final int from;
+	private final int to;
+	private final int captured;
+	private final int rookFrom;
+	private final int rookTo;
+	private final long occupancy;
+	private final long timestampNanos;
+
+	/**
+	 * @param type - Art des Zugs
+	 * @param from - Startfeld der ziehenden Figur (bei Rochade des Königs)
+	 * @param to - Zielfeld der ziehenden Figur (bei Rochade des Königs)
+	 * @param captured - Feld der geschlagenen Figur, -1 wenn keine
+	 * @param rookFrom - Startfeld des Turms bei Rochade, sonst -1
+	 * @param rookTo - Zielfeld des Turms bei Rochade, sonst -1
+	 * @param occupancy - Belegung des Bretts nach dem Zug
+	 * @param timestampNanos - Erfassungszeitpunkt der letzten Feldänderung des Zugs (System.nanoTime)
+	 */
+	public MoveDetected(MoveType type, int from, int to, int captured, int rookFrom, int rookTo, long occupancy, long timestampNanos) {
+		this.type = type;
+		this.from = from;
+		this.to = to;
+		this.captured = captured;
+		this.rookFrom = rookFrom;
+		this.rookTo = rookTo;
+		this.occupancy = occupancy;
+		this.timestampNanos = timestampNanos;
+	}
+
+	public MoveType getType() {
+		return type;
+	}
+
+	public int getFrom() {
+		return from;
+	}
+
+	public int getTo() {
+		return to;
+	}
+
+	public int getCaptured() {
+		return captured;
+	}
+
+	public int getRookFrom() {
+		return rookFrom;
+	}
+
+	public int getRookTo() {
+		return rookTo;
+	}
+
+	public long getOccupancy() {
+		return occupancy;
+	}
+
+	public long getTimestampNanos() {
+		return timestampNanos;
+	}
+
+	/**
+	 * @return Zug in Koordinatennotation, z.B. "e2e4"
+	 */
+	public String toCoordinateNotation() {
+		return Squares.name(from) + Squares.name(to);
+	}
+
+	@Override
+	public String toString() {
+		return "MoveDetected[" + type + " " + toCoordinateNotation() + "]";
+	}
+}
@@ -0,0 +1,340 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.fabiansiemens.hardwarecontroller.sensor.ScanListener;
+import de.fabiansiemens.hardwarecontroller.sensor.ScanResult;
+
+/**
+ * Leitet aus den Scan Ergebnissen fortlaufend Züge ab.
+ *
+ * Ausgehend von einer stabilen Ausgangsstellung werden alle Feldänderungen (Figur angehoben / abgestellt) gesammelt und nach
+ * jeder Änderung ausgewertet. Sobald die Folge eindeutig einem Zug entspricht, wird ein {@link MoveDetected} gemeldet und die
+ * aktuelle Belegung wird zur neuen Ausgangsstellung. Erkannt werden:
+ * <ul>
+ * <li>Normale Züge: ein Feld geleert, ein anderes belegt</li>
+ * <li>Schlagzüge: zwei Felder geleert, eines davon wieder belegt</li>
+ * <li>Rochaden: König und Turm geleert, beide Zielfelder belegt (beliebige Reihenfolge)</li>
+ * <li>En passant: Bauer und geschlagener Bauer geleert, das Feld hinter dem geschlagenen Bauern belegt</li>
+ * </ul>
+ * Ein normaler Zug, der auch der Anfang einer Rochade oder eines En passant Schlags sein kann, wird zurückgehalten, bis die
+ * nächste Änderung ihn bestätigt oder widerlegt, höchstens aber für die eingestellte Wartezeit.
+ * Der Detektor kennt keine Figuren, sondern nur die Belegung. Für die Prüfung auf Legalität ist die Anwendung zuständig.
+ */
+public class MoveDetector implements ScanListener {
+
+	/**
+	 * Standard Wartezeit für mehrdeutige Züge
+	 */
+	public static final long DEFAULT_AMBIGUITY_TIMEOUT_MILLIS = 1000;
+
+	/**
+	 * Rochaden als {Königsfeld, Königsziel, Turmfeld, Turmziel}
+	 */
+	private static final int[][] CASTLINGS = {
+			{Squares.E1, Squares.G1, Squares.H1, Squares.F1},
+			{Squares.E1, Squares.C1, Squares.A1, Squares.D1},
+			{Squares.E8, Squares.G8, Squares.H8, Squares.F8},
+			{Squares.E8, Squares.C8, Squares.A8, Squares.D8}
+	};
+
+	private enum State {
+		/** Brett entspricht der Ausgangsstellung */
+		IDLE,
+		/** Figuren in der Hand, Folge noch nicht abgeschlossen */
+		PENDING,
+		/** Zug erkannt, kann aber noch zu Rochade oder En passant erweitert werden */
+		AMBIGUOUS,
+		/** Zug eindeutig erkannt */
+		RESOLVED,
+		/** Folge entspricht keinem Zug */
+		INVALID
+	}
+
+	private final List<MoveListener> listener;
+	private volatile long ambiguityTimeoutNanos;
+
+	private boolean initialized;
+	private long baseline;
+	private long current;
+	private long lifted;
+	private MoveDetected candidate;
+	private MoveDetected held;
+	private long heldSince;
+
+	public MoveDetector() {
+		this.listener = new CopyOnWriteArrayList<MoveListener>();
+		this.ambiguityTimeoutNanos = DEFAULT_AMBIGUITY_TIMEOUT_MILLIS * 1_000_000L;
+	}
+
+	/**
+	 * Registriert einen Listener. Wenn der übergebene Listener null ist, wird nichts hinzugefügt.
+	 * @param listener - Objekt vom Typ {@link MoveListener} @Nullable
+	 */
+	public void addListener(MoveListener listener) {
+		if(listener == null)
+			return;
+
+		this.listener.add(listener);
+	}
+
+	public void removeListener(MoveListener listener) {
+		this.listener.remove(listener);
+	}
+
+	/**
+	 * @param millis - maximale Wartezeit, bevor ein mehrdeutiger Zug als normaler Zug gemeldet wird
+	 */
+	public void setAmbiguityTimeout(long millis) {
+		this.ambiguityTimeoutNanos = millis * 1_000_000L;
+	}
+
+	/**
+	 * Setzt die Ausgangsstellung und verwirft alle bisher gesammelten Änderungen
+	 * @param occupancy - aktuelle Belegung
+	 */
+	public synchronized void reset(long occupancy) {
+		initialized = true;
+		baseline = occupancy;
+		current = occupancy;
+		lifted = 0;
+		held = null;
+	}
+
+	/**
+	 * @return aktuelle Ausgangsstellung
+	 */
+	public synchronized long getBaseline() {
+		return baseline;
+	}
+
+	@Override
+	public synchronized void onScan(ScanResult result) {
+		if(!initialized) {
+			reset(result.getOccupancy());
+			return;
+		}
+
+		long changed = result.getOccupancy() ^ current;
+		while(changed != 0) {
+			int square = nextByTimestamp(changed, result);
+			changed &= ~Squares.bit(square);
+			transition(square, (result.getOccupancy() & Squares.bit(square)) != 0, result.getTimestampNanos(Squares.col(square)));
+		}
+
+		if(held != null && System.nanoTime() - heldSince > ambiguityTimeoutNanos)
+			emitHeld();
+	}
+
+	/**
+	 * Schließt die aktuelle Folge ab, z.B. wenn der Confirm-Move Knopf gedrückt wurde. Ein zurückgehaltener Zug wird sofort
+	 * gemeldet, eine unvollständige oder ungültige Folge wird verworfen.
+	 */
+	public synchronized void flush() {
+		if(held != null) {
+			emitHeld();
+			return;
+		}
+
+		if(current != baseline || lifted != 0) {
+			reset(current);
+			for(MoveListener lis : listener)
+				lis.onSequenceAborted(current);
+		}
+	}
+
+	/**
+	 * Sucht unter den geänderten Feldern das zuerst erfasste
+	 */
+	private static int nextByTimestamp(long changed, ScanResult result) {
+		int best = Long.numberOfTrailingZeros(changed);
+		for(long rest = changed & (changed - 1); rest != 0; rest &= rest - 1) {
+			int square = Long.numberOfTrailingZeros(rest);
+			if(result.getTimestampNanos(Squares.col(square)) - result.getTimestampNanos(Squares.col(best)) < 0)
+				best = square;
+		}
+
+		return best;
+	}
+
+	/**
+	 * Verarbeitet die Änderung eines Felds
+	 */
+	private void transition(int square, boolean occupied, long timestampNanos) {
+		long before = current;
+
+		if(occupied)
+			current |= Squares.bit(square);
+		else {
+			current &= ~Squares.bit(square);
+			lifted |= Squares.bit(square);
+		}
+
+		State state = interpret(timestampNanos);
+
+		//Ein zurückgehaltener Zug, der durch diese Änderung nicht erweitert wird, war ein normaler Zug.
+		//Er wird gemeldet, alle späteren Änderungen gehören zur nächsten Folge.
+		if(held != null && state == State.INVALID) {
+			emitHeld();
+			current = before;
+			lifted = baseline & ~current;
+			transition(square, occupied, timestampNanos);
+			return;
+		}
+
+		switch(state) {
+		case IDLE:
+			lifted = 0;
+			held = null;
+		break;
+		case AMBIGUOUS:
+			held = candidate;
+			heldSince = System.nanoTime();
+		break;
+		case RESOLVED:
+			held = null;
+			emit(candidate);
+		break;
+		default:
+		}
+	}
+
+	/**
+	 * Ordnet die bisher gesammelten Änderungen einem Zustand zu. Bei {@link State#AMBIGUOUS} und {@link State#RESOLVED}
+	 * enthält {@link #candidate} den erkannten Zug.
+	 */
+	private State interpret(long timestampNanos) {
+		long removed = baseline & ~current;
+		long added = current & ~baseline;
+		long replaced = lifted & current & baseline;
+		int nRemoved = Long.bitCount(removed);
+		int nAdded = Long.bitCount(added);
+		int nReplaced = Long.bitCount(replaced);
+		candidate = null;
+
+		if(removed == 0 && added == 0)
+			return State.IDLE;
+
+		if(nReplaced == 0 && nAdded == 0 && nRemoved <= 2)
+			return State.PENDING;
+
+		if(nRemoved == 1 && nAdded == 1 && nReplaced == 0) {
+			int from = Long.numberOfTrailingZeros(removed);
+			int to = Long.numberOfTrailingZeros(added);
+			candidate = move(MoveType.NORMAL, from, to, -1, -1, -1, timestampNanos);
+			return isCastlingPrefix(from, to) || isEnPassantPrefix(from, to) ? State.AMBIGUOUS : State.RESOLVED;
+		}
+
+		if(nRemoved == 1 && nAdded == 0 && nReplaced == 1) {
+			int from = Long.numberOfTrailingZeros(removed);
+			int to = Long.numberOfTrailingZeros(replaced);
+			candidate = move(MoveType.CAPTURE, from, to, to, -1, -1, timestampNanos);
+			return State.RESOLVED;
+		}
+
+		if(nRemoved == 2 && nAdded == 1 && nReplaced == 0 && resolveEnPassant(removed, added, timestampNanos))
+			return State.RESOLVED;
+
+		if(nReplaced == 0) {
+			for(int[] castling : CASTLINGS) {
+				long kingAndRook = Squares.bit(castling[0]) | Squares.bit(castling[2]);
+				long targets = Squares.bit(castling[1]) | Squares.bit(castling[3]);
+
+				if(removed == kingAndRook && added == targets) {
+					candidate = move(MoveType.CASTLING, castling[0], castling[1], -1, castling[2], castling[3], timestampNanos);
+					return State.RESOLVED;
+				}
+
+				if((removed & ~kingAndRook) == 0 && (added & ~targets) == 0)
+					return State.PENDING;
+			}
+		}
+
+		return State.INVALID;
+	}
+
+	/**
+	 * @return true, wenn der Zug der erste Teil einer Rochade sein kann
+	 */
+	private boolean isCastlingPrefix(int from, int to) {
+		for(int[] castling : CASTLINGS) {
+			boolean kingFirst = from == castling[0] && to == castling[1]
+					&& (current & Squares.bit(castling[2])) != 0 && (current & Squares.bit(castling[3])) == 0;
+			boolean rookFirst = from == castling[2] && to == castling[3]
+					&& (current & Squares.bit(castling[0])) != 0 && (current & Squares.bit(castling[1])) == 0;
+
+			if(kingFirst || rookFirst)
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return true, wenn der Zug der diagonale Schritt eines En passant Schlags sein kann, dessen geschlagener Bauer noch steht
+	 */
+	private boolean isEnPassantPrefix(int from, int to) {
+		int captured = enPassantVictim(from, to);
+		return captured >= 0 && (current & Squares.bit(captured)) != 0;
+	}
+
+	/**
+	 * Prüft zwei geleerte Felder und ein belegtes Feld auf En passant
+	 */
+	private boolean resolveEnPassant(long removed, long added, long timestampNanos) {
+		int a = Long.numberOfTrailingZeros(removed);
+		int b = 63 - Long.numberOfLeadingZeros(removed);
+		int to = Long.numberOfTrailingZeros(added);
+
+		if(enPassantVictim(a, to) == b) {
+			candidate = move(MoveType.EN_PASSANT, a, to, b, -1, -1, timestampNanos);
+			return true;
+		}
+
+		if(enPassantVictim(b, to) == a) {
+			candidate = move(MoveType.EN_PASSANT, b, to, a, -1, -1, timestampNanos);
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return Feld des geschlagenen Bauern, wenn from -> to ein En passant Schlag sein kann, sonst -1
+	 */
+	private static int enPassantVictim(int from, int to) {
+		int row = Squares.row(from);
+		int dRow = Squares.row(to) - row;
+		int dCol = Math.abs(Squares.col(to) - Squares.col(from));
+
+		boolean white = row == 4 && dRow == 1;
+		boolean black = row == 3 && dRow == -1;
+		if(dCol != 1 || !(white || black))
+			return -1;
+
+		return Squares.of(Squares.col(to), row);
+	}
+
+	private MoveDetected move(MoveType type, int from, int to, int captured, int rookFrom, int rookTo, long timestampNanos) {
+		return new MoveDetected(type, from, to, captured, rookFrom, rookTo, current, timestampNanos);
+	}
+
+	/**
+	 * Meldet den zurückgehaltenen Zug. Die Ausgangsstellung wird auf die Belegung nach diesem Zug gesetzt.
+	 */
+	private void emitHeld() {
+		MoveDetected move = held;
+		held = null;
+		emit(move);
+	}
+
+	private void emit(MoveDetected move) {
+		baseline = move.getOccupancy();
+		current = move.getOccupancy();
+		lifted = 0;
+
+		for(MoveListener lis : listener)
+			lis.onMoveDetected(move);
+	}
+}
@@ -0,0 +1,30 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+/**
+ * Implementiere dieses Interface um über erkannte Züge eines {@link MoveDetector} oder über ausgeführte Züge eines
+ * {@link ChessGame} benachrichtigt zu werden.
+ */
+public interface MoveListener {
+	/**
+	 * Wird aufgerufen, sobald eine Folge von Feldänderungen eindeutig einem Zug zugeordnet werden konnte.
+	 * Die Methode wird im Thread des Scanners ausgeführt.
+	 * @param move - erkannter Zug
+	 */
+	public void onMoveDetected(MoveDetected move);
+
+	/**
+	 * Wird aufgerufen, wenn eine Folge von Feldänderungen keinem Zug entspricht und verworfen wurde
+	 * (z.B. nach Drücken des Confirm-Move Knopfs). Die aktuelle Belegung gilt danach als neue Ausgangsstellung.
+	 * @param occupancy - aktuelle Belegung
+	 */
+	public default void onSequenceAborted(long occupancy) {
+	}
+
+	/**
+	 * Wird von einem {@link ChessGame} aufgerufen, wenn ein erkannter Zug in der aktuellen Stellung nicht legal ist.
+	 * Der Zug wird nicht ausgeführt, der Spielstand bleibt bis zum nächsten legalen Zug unverändert.
+	 * @param move - erkannter, aber nicht legaler Zug
+	 */
+	public default void onIllegalMove(MoveDetected move) {
+	}
+}
@@ -0,0 +1,15 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+/**
+ * Art eines erkannten Zugs
+ */
+public enum MoveType {
+	/** Zug auf ein leeres Feld */
+	NORMAL,
+	/** Schlagzug: die geschlagene Figur wurde vom Zielfeld entfernt */
+	CAPTURE,
+	/** Rochade: König und Turm wurden bewegt */
+	CASTLING,
+	/** En passant: der geschlagene Bauer stand neben dem Startfeld */
+	EN_PASSANT
+}
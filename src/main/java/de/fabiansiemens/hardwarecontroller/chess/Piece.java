@@ -0,0 +1,39 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+/**
+ * Figurentyp unabhängig von der Farbe
+ */
+public enum Piece {
+	PAWN('p'),
+	KNIGHT('n'),
+	BISHOP('b'),
+	ROOK('r'),
+	QUEEN('q'),
+	KING('k');
+
+	private final char symbol;
+
+	private Piece(char symbol) {
+		this.symbol = symbol;
+	}
+
+	/**
+	 * @return Buchstabe der Figur in FEN, Kleinbuchstabe
+	 */
+	public char getSymbol() {
+		return symbol;
+	}
+
+	/**
+	 * @param symbol - Buchstabe der Figur in FEN (Groß- oder Kleinbuchstabe)
+	 * @return Figurentyp oder null, wenn der Buchstabe keine Figur bezeichnet
+	 */
+	public static Piece bySymbol(char symbol) {
+		char lower = Character.toLowerCase(symbol);
+		for(Piece piece : values())
+			if(piece.symbol == lower)
+				return piece;
+
+		return null;
+	}
+}
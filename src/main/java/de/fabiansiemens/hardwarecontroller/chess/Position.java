@@ -0,0 +1,495 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+import java.util.Arrays;
+
+/**
+ * Spielstand einer Schachpartie auf Bitboards.
+ *
+ * Für jede Farbe und jeden Figurentyp wird ein Bitboard geführt (Feldindizes wie in {@link Squares}), dazu Zugrecht,
+ * Rochaderechte, En passant Feld und Zugzähler. Die Gesamtbelegung entspricht direkt der Belegung der Sensormatrix,
+ * sodass Scan Ergebnisse ohne Umrechnung mit dem Spielstand verglichen werden können.
+ * Zusätzlich wird ein Zobrist Hash des gesamten Spielstands mitgeführt ({@link #getHash()}).
+ * Instanzen sind nicht threadsicher.
+ */
+public class Position {
+
+	public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	/**
+	 * Rochaderechte als Bitmaske
+	 */
+	public static final int WHITE_KINGSIDE = 1, WHITE_QUEENSIDE = 2, BLACK_KINGSIDE = 4, BLACK_QUEENSIDE = 8;
+
+	/**
+	 * Rochaderechte, die nach einem Zug von oder auf ein Feld erhalten bleiben
+	 */
+	private static final int[] CASTLING_KEPT = new int[64];
+
+	static {
+		Arrays.fill(CASTLING_KEPT, 15);
+		CASTLING_KEPT[Squares.E1] = ~(WHITE_KINGSIDE | WHITE_QUEENSIDE) & 15;
+		CASTLING_KEPT[Squares.H1] = ~WHITE_KINGSIDE & 15;
+		CASTLING_KEPT[Squares.A1] = ~WHITE_QUEENSIDE & 15;
+		CASTLING_KEPT[Squares.E8] = ~(BLACK_KINGSIDE | BLACK_QUEENSIDE) & 15;
+		CASTLING_KEPT[Squares.H8] = ~BLACK_KINGSIDE & 15;
+		CASTLING_KEPT[Squares.A8] = ~BLACK_QUEENSIDE & 15;
+	}
+
+	private final long[][] pieces;
+	private final long[] sides;
+	private Side sideToMove;
+	private int castling;
+	private int enPassant;
+	private int halfmoveClock;
+	private int fullmoveNumber;
+	private long hash;
+
+	/**
+	 * Erzeugt ein leeres Brett, Weiß am Zug
+	 */
+	public Position() {
+		this.pieces = new long[2][Piece.values().length];
+		this.sides = new long[2];
+		this.sideToMove = Side.WHITE;
+		this.enPassant = -1;
+		this.fullmoveNumber = 1;
+	}
+
+	/**
+	 * @return Grundstellung
+	 */
+	public static Position startPosition() {
+		return fromFen(START_FEN);
+	}
+
+	/**
+	 * Liest eine Stellung in Forsyth-Edwards-Notation ein. Fehlende Felder am Ende (Zugzähler etc.) werden mit
+	 * Standardwerten belegt.
+	 * @param fen - Stellung in FEN
+	 * @return eingelesene Stellung
+	 */
+	public static Position fromFen(String fen) {
+		String[] parts = fen.trim().split("\\s+");
+		Position position = new Position();
+
+		int row = 7;
+		int col = 0;
+		for(char c : parts[0].toCharArray()) {
+			if(c == '/') {
+				row--;
+				col = 0;
+			}
+			else if(c >= '1' && c <= '8')
+				col += c - '0';
+			else {
+				Piece piece = Piece.bySymbol(c);
+				if(piece == null || !Squares.isValid(col, row))
+					throw new IllegalArgumentException("Invalid FEN: " + fen);
+
+				position.put(Character.isUpperCase(c) ? Side.WHITE : Side.BLACK, piece, Squares.of(col, row));
+				col++;
+			}
+		}
+
+		position.hash ^= position.stateKey();
+
+		if(parts.length > 1)
+			position.sideToMove = parts[1].equals("b") ? Side.BLACK : Side.WHITE;
+
+		if(parts.length > 2)
+			for(char c : parts[2].toCharArray())
+				position.castling |= "KQkq".indexOf(c) >= 0 ? 1 << "KQkq".indexOf(c) : 0;
+
+		if(parts.length > 3 && !parts[3].equals("-"))
+			position.enPassant = Squares.parse(parts[3]);
+
+		if(parts.length > 5) {
+			position.halfmoveClock = Integer.parseInt(parts[4]);
+			position.fullmoveNumber = Integer.parseInt(parts[5]);
+		}
+
+		position.hash ^= position.stateKey();
+		return position;
+	}
+
+	/**
+	 * @return Stellung in Forsyth-Edwards-Notation
+	 */
+	public String toFen() {
+		StringBuilder fen = new StringBuilder();
+
+		for(int row = 7; row >= 0; row--) {
+			int empty = 0;
+			for(int col = 0; col < 8; col++) {
+				int square = Squares.of(col, row);
+				Piece piece = pieceAt(square);
+
+				if(piece == null) {
+					empty++;
+					continue;
+				}
+
+				if(empty > 0)
+					fen.append(empty);
+				empty = 0;
+				fen.append(sideAt(square) == Side.WHITE ? Character.toUpperCase(piece.getSymbol()) : piece.getSymbol());
+			}
+
+			if(empty > 0)
+				fen.append(empty);
+			if(row > 0)
+				fen.append('/');
+		}
+
+		fen.append(sideToMove == Side.WHITE ? " w " : " b ");
+
+		if(castling == 0)
+			fen.append('-');
+		for(int i = 0; i < 4; i++)
+			if((castling & (1 << i)) != 0)
+				fen.append("KQkq".charAt(i));
+
+		fen.append(' ').append(enPassant < 0 ? "-" : Squares.name(enPassant));
+		fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+		return fen.toString();
+	}
+
+	/**
+	 * @return Kopie dieser Stellung
+	 */
+	public Position copy() {
+		Position copy = new Position();
+		for(int side = 0; side < 2; side++)
+			System.arraycopy(pieces[side], 0, copy.pieces[side], 0, pieces[side].length);
+		System.arraycopy(sides, 0, copy.sides, 0, 2);
+		copy.sideToMove = sideToMove;
+		copy.castling = castling;
+		copy.enPassant = enPassant;
+		copy.halfmoveClock = halfmoveClock;
+		copy.fullmoveNumber = fullmoveNumber;
+		copy.hash = hash;
+		return copy;
+	}
+
+	/**
+	 * @return Belegung aller Felder, vergleichbar mit der Belegung der Sensormatrix
+	 */
+	public long getOccupancy() {
+		return sides[0] | sides[1];
+	}
+
+	public long getPieces(Side side) {
+		return sides[side.ordinal()];
+	}
+
+	public long getPieces(Side side, Piece piece) {
+		return pieces[side.ordinal()][piece.ordinal()];
+	}
+
+	/**
+	 * @return Figurentyp auf dem Feld oder null, wenn das Feld leer ist
+	 */
+	public Piece pieceAt(int square) {
+		long bit = Squares.bit(square);
+		if((getOccupancy() & bit) == 0)
+			return null;
+
+		long[] own = pieces[(sides[0] & bit) != 0 ? 0 : 1];
+		for(Piece piece : Piece.values())
+			if((own[piece.ordinal()] & bit) != 0)
+				return piece;
+
+		return null;
+	}
+
+	/**
+	 * @return Farbe der Figur auf dem Feld oder null, wenn das Feld leer ist
+	 */
+	public Side sideAt(int square) {
+		long bit = Squares.bit(square);
+		if((sides[0] & bit) != 0)
+			return Side.WHITE;
+		if((sides[1] & bit) != 0)
+			return Side.BLACK;
+
+		return null;
+	}
+
+	public Side getSideToMove() {
+		return sideToMove;
+	}
+
+	/**
+	 * @return Rochaderechte als Bitmaske aus {@link #WHITE_KINGSIDE}, {@link #WHITE_QUEENSIDE}, {@link #BLACK_KINGSIDE}, {@link #BLACK_QUEENSIDE}
+	 */
+	public int getCastlingRights() {
+		return castling;
+	}
+
+	/**
+	 * @return Feld, auf dem en passant geschlagen werden kann, -1 wenn keins
+	 */
+	public int getEnPassantSquare() {
+		return enPassant;
+	}
+
+	public int getHalfmoveClock() {
+		return halfmoveClock;
+	}
+
+	public int getFullmoveNumber() {
+		return fullmoveNumber;
+	}
+
+	/**
+	 * Zobrist Hash aus Figuren, Rochaderechten, En passant Linie und Seite am Zug.
+	 * Gleiche Spielstände haben unabhängig von der Zugfolge den gleichen Hash, Zugzähler fließen nicht ein.
+	 * @return Hash des Spielstands
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * @return true, wenn der König der Seite am Zug angegriffen wird
+	 */
+	public boolean isInCheck() {
+		return isAttacked(kingSquare(sideToMove), sideToMove.opposite(), getOccupancy(), 0);
+	}
+
+	/**
+	 * @return true, wenn die Seite am Zug mindestens einen legalen Zug hat
+	 */
+	public boolean hasLegalMoves() {
+		for(long own = sides[sideToMove.ordinal()]; own != 0; own &= own - 1)
+			if(legalTargets(Long.numberOfTrailingZeros(own)) != 0)
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Berechnet alle legalen Zielfelder der Figur auf dem Feld. Nur Figuren der Seite am Zug haben Zielfelder.
+	 * Das Ergebnis kann direkt als LED Bild angezeigt werden ({@link de.fabiansiemens.hardwarecontroller.led.LedMatrixController#drawBitboard(long)}).
+	 * @param from - Startfeld
+	 * @return Bitboard der legalen Zielfelder, bei Rochade das Zielfeld des Königs
+	 */
+	public long legalTargets(int from) {
+		long bit = Squares.bit(from);
+		int us = sideToMove.ordinal();
+		if((sides[us] & bit) == 0)
+			return 0;
+
+		Piece piece = pieceAt(from);
+		long occupancy = getOccupancy();
+		long targets = pseudoTargets(piece, from, occupancy) & ~sides[us];
+
+		if(piece == Piece.KING)
+			targets |= castlingTargets(occupancy);
+
+		int king = piece == Piece.KING ? -1 : kingSquare(sideToMove);
+		long legal = 0;
+
+		for(long rest = targets; rest != 0; rest &= rest - 1) {
+			int to = Long.numberOfTrailingZeros(rest);
+			long toBit = Squares.bit(to);
+			long captured = toBit;
+
+			if(piece == Piece.PAWN && to == enPassant)
+				captured = Squares.bit(Squares.of(Squares.col(to), Squares.row(from)));
+
+			long after = (occupancy & ~bit & ~captured) | toBit;
+			if(!isAttacked(king < 0 ? to : king, sideToMove.opposite(), after, captured))
+				legal |= toBit;
+		}
+
+		return legal;
+	}
+
+	/**
+	 * @return true, wenn der Zug in dieser Stellung legal ist
+	 */
+	public boolean isLegal(int from, int to) {
+		return (legalTargets(from) & Squares.bit(to)) != 0;
+	}
+
+	/**
+	 * Führt einen legalen Zug aus. Rochaden werden als Königszug angegeben, der Turm wird mitgezogen.
+	 * @param from - Startfeld
+	 * @param to - Zielfeld
+	 * @param promotion - Figur bei Bauernumwandlung, null für Dame
+	 * @return geschlagene Figur oder null
+	 * @throws IllegalArgumentException wenn der Zug nicht legal ist
+	 */
+	public Piece play(int from, int to, Piece promotion) {
+		if(!isLegal(from, to))
+			throw new IllegalArgumentException("Illegal move " + Squares.name(from) + Squares.name(to) + " in " + toFen());
+
+		Side us = sideToMove;
+		Side them = us.opposite();
+		Piece piece = pieceAt(from);
+		Piece captured = pieceAt(to);
+		int capturedSquare = to;
+
+		if(piece == Piece.PAWN && to == enPassant) {
+			capturedSquare = Squares.of(Squares.col(to), Squares.row(from));
+			captured = Piece.PAWN;
+		}
+
+		if(captured != null)
+			remove(them, captured, capturedSquare);
+
+		remove(us, piece, from);
+		if(piece == Piece.PAWN && (Squares.row(to) == 0 || Squares.row(to) == 7))
+			put(us, promotion == null ? Piece.QUEEN : promotion, to);
+		else
+			put(us, piece, to);
+
+		//Rochade: Turm mitziehen
+		if(piece == Piece.KING && Math.abs(to - from) == 2) {
+			boolean kingside = to > from;
+			int row = Squares.row(from);
+			remove(us, Piece.ROOK, Squares.of(kingside ? 7 : 0, row));
+			put(us, Piece.ROOK, Squares.of(kingside ? 5 : 3, row));
+		}
+
+		hash ^= stateKey();
+		enPassant = piece == Piece.PAWN && Math.abs(to - from) == 16 ? (from + to) / 2 : -1;
+		castling &= CASTLING_KEPT[from] & CASTLING_KEPT[to];
+		halfmoveClock = piece == Piece.PAWN || captured != null ? 0 : halfmoveClock + 1;
+		if(us == Side.BLACK)
+			fullmoveNumber++;
+		sideToMove = them;
+		hash ^= stateKey();
+
+		return captured;
+	}
+
+	/**
+	 * Setzt eine Figur auf ein Feld, ohne Zugrecht oder Rechte zu verändern (z.B. zum Aufbau einer Stellung)
+	 */
+	public void put(Side side, Piece piece, int square) {
+		long bit = Squares.bit(square);
+		if((pieces[side.ordinal()][piece.ordinal()] & bit) != 0)
+			return;
+
+		pieces[side.ordinal()][piece.ordinal()] |= bit;
+		sides[side.ordinal()] |= bit;
+		hash ^= Zobrist.PIECES[side.ordinal()][piece.ordinal()][square];
+	}
+
+	/**
+	 * Entfernt eine Figur von einem Feld, ohne Zugrecht oder Rechte zu verändern
+	 */
+	public void remove(Side side, Piece piece, int square) {
+		long bit = Squares.bit(square);
+		if((pieces[side.ordinal()][piece.ordinal()] & bit) == 0)
+			return;
+
+		pieces[side.ordinal()][piece.ordinal()] &= ~bit;
+		sides[side.ordinal()] &= ~bit;
+		hash ^= Zobrist.PIECES[side.ordinal()][piece.ordinal()][square];
+	}
+
+	/**
+	 * Prüft, ob ein Feld von einer Seite angegriffen wird
+	 * @param square - geprüftes Feld
+	 * @param by - angreifende Seite
+	 * @param occupancy - Belegung, die für Langschrittige Figuren verwendet wird
+	 * @param ignored - Felder, deren Figuren nicht angreifen (z.B. gerade geschlagen)
+	 */
+	private boolean isAttacked(int square, Side by, long occupancy, long ignored) {
+		if(square >= 64)	//Kein König auf dem Brett
+			return false;
+
+		long[] attacker = pieces[by.ordinal()];
+		long queens = attacker[Piece.QUEEN.ordinal()];
+
+		long attacks = (Attacks.knight(square) & attacker[Piece.KNIGHT.ordinal()])
+				| (Attacks.king(square) & attacker[Piece.KING.ordinal()])
+				| (Attacks.pawn(by.opposite(), square) & attacker[Piece.PAWN.ordinal()])
+				| (Attacks.bishop(square, occupancy) & (attacker[Piece.BISHOP.ordinal()] | queens))
+				| (Attacks.rook(square, occupancy) & (attacker[Piece.ROOK.ordinal()] | queens));
+
+		return (attacks & ~ignored) != 0;
+	}
+
+	private long pseudoTargets(Piece piece, int from, long occupancy) {
+		switch(piece) {
+		case PAWN:
+			return pawnTargets(from, occupancy);
+		case KNIGHT:
+			return Attacks.knight(from);
+		case BISHOP:
+			return Attacks.bishop(from, occupancy);
+		case ROOK:
+			return Attacks.rook(from, occupancy);
+		case QUEEN:
+			return Attacks.queen(from, occupancy);
+		case KING:
+			return Attacks.king(from);
+		default:
+			return 0;
+		}
+	}
+
+	private long pawnTargets(int from, long occupancy) {
+		boolean white = sideToMove == Side.WHITE;
+		long enemies = sides[sideToMove.opposite().ordinal()];
+		if(enPassant >= 0)
+			enemies |= Squares.bit(enPassant);
+
+		long targets = Attacks.pawn(sideToMove, from) & enemies;
+		int single = white ? from + 8 : from - 8;
+
+		if((occupancy & Squares.bit(single)) == 0) {
+			targets |= Squares.bit(single);
+
+			int startRow = white ? 1 : 6;
+			int twoSteps = white ? from + 16 : from - 16;
+			if(Squares.row(from) == startRow && (occupancy & Squares.bit(twoSteps)) == 0)
+				targets |= Squares.bit(twoSteps);
+		}
+
+		return targets;
+	}
+
+	private long castlingTargets(long occupancy) {
+		boolean white = sideToMove == Side.WHITE;
+		int king = white ? Squares.E1 : Squares.E8;
+		int kingside = white ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+		int queenside = white ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+		Side them = sideToMove.opposite();
+		long targets = 0;
+
+		if((castling & (kingside | queenside)) == 0 || kingSquare(sideToMove) != king || isAttacked(king, them, occupancy, 0))
+			return 0;
+
+		if((castling & kingside) != 0 && (occupancy & (Squares.bit(king + 1) | Squares.bit(king + 2))) == 0
+				&& !isAttacked(king + 1, them, occupancy, 0))
+			targets |= Squares.bit(king + 2);
+
+		if((castling & queenside) != 0 && (occupancy & (Squares.bit(king - 1) | Squares.bit(king - 2) | Squares.bit(king - 3))) == 0
+				&& !isAttacked(king - 1, them, occupancy, 0))
+			targets |= Squares.bit(king - 2);
+
+		return targets;
+	}
+
+	/**
+	 * @return Anteil von Rochaderechten, En passant Linie und Seite am Zug am Hash
+	 */
+	private long stateKey() {
+		long key = Zobrist.CASTLING[castling];
+		if(enPassant >= 0)
+			key ^= Zobrist.EN_PASSANT[Squares.col(enPassant)];
+		if(sideToMove == Side.BLACK)
+			key ^= Zobrist.BLACK_TO_MOVE;
+
+		return key;
+	}
+
+	private int kingSquare(Side side) {
+		return Long.numberOfTrailingZeros(pieces[side.ordinal()][Piece.KING.ordinal()]);
+	}
+}
@@ -0,0 +1,209 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.fabiansiemens.hardwarecontroller.sensor.ScanListener;
+import de.fabiansiemens.hardwarecontroller.sensor.ScanResult;
+
+/**
+ * Verzeichnis bekannter Stellungen (z.B. Grundstellung, Puzzle Aufstellungen, leeres Brett).
+ *
+ * Stellungen werden über zwei Hashtabellen gefunden: nach Belegung (Bitboard der Sensormatrix) und nach Zobrist Hash des
+ * Spielstands ({@link Position#getHash()}). Beide Tabellen verwenden offene Adressierung auf primitiven long Schlüsseln,
+ * eine Abfrage kostet daher unabhängig von der Anzahl hinterlegter Stellungen nur wenige Vergleiche und erzeugt keine Objekte.
+ * Als {@link ScanListener} registriert, wird jede geänderte Belegung nachgeschlagen, sodass eine aufgebaute oder
+ * fortgesetzte Stellung innerhalb eines Scans erkannt wird.
+ * Bei mehreren Stellungen mit gleicher Belegung gilt die zuerst hinterlegte.
+ */
+public class PositionIndex implements ScanListener {
+
+	public static final String START = "start";
+	public static final String EMPTY = "empty";
+
+	private final List<PositionListener> listener;
+	private final Table byOccupancy;
+	private final Table byHash;
+	private KnownPosition recognized;
+	private boolean scanned;
+
+	/**
+	 * Erzeugt ein leeres Verzeichnis
+	 */
+	public PositionIndex() {
+		this.listener = new CopyOnWriteArrayList<PositionListener>();
+		this.byOccupancy = new Table(true);
+		this.byHash = new Table(false);
+	}
+
+	/**
+	 * @return Verzeichnis mit Grundstellung ({@link #START}) und leerem Brett ({@link #EMPTY})
+	 */
+	public static PositionIndex withDefaults() {
+		PositionIndex index = new PositionIndex();
+		index.add(START, Position.startPosition());
+		index.addOccupancy(EMPTY, 0L);
+		return index;
+	}
+
+	/**
+	 * Registriert einen Listener. Wenn der übergebene Listener null ist, wird nichts hinzugefügt.
+	 * @param listener - Objekt vom Typ {@link PositionListener} @Nullable
+	 */
+	public void addListener(PositionListener listener) {
+		if(listener == null)
+			return;
+
+		this.listener.add(listener);
+	}
+
+	public void removeListener(PositionListener listener) {
+		this.listener.remove(listener);
+	}
+
+	/**
+	 * Hinterlegt einen Spielstand. Er wird über seine Belegung und seinen Zobrist Hash gefunden.
+	 * @param name - Name der Stellung
+	 * @param position - Spielstand
+	 * @return hinterlegter Eintrag
+	 */
+	public synchronized KnownPosition add(String name, Position position) {
+		KnownPosition known = new KnownPosition(name, position.getOccupancy(), position);
+		byOccupancy.putIfAbsent(known.getOccupancy(), known);
+		byHash.putIfAbsent(position.getHash(), known);
+		return known;
+	}
+
+	/**
+	 * Hinterlegt eine Belegung ohne Spielstand, z.B. ein leeres Brett
+	 * @param name - Name der Belegung
+	 * @param occupancy - Belegung
+	 * @return hinterlegter Eintrag
+	 */
+	public synchronized KnownPosition addOccupancy(String name, long occupancy) {
+		KnownPosition known = new KnownPosition(name, occupancy, null);
+		byOccupancy.putIfAbsent(occupancy, known);
+		return known;
+	}
+
+	/**
+	 * @param occupancy - Belegung, z.B. aus einem Scan
+	 * @return Eintrag mit dieser Belegung oder null
+	 */
+	public synchronized KnownPosition lookup(long occupancy) {
+		return byOccupancy.get(occupancy);
+	}
+
+	/**
+	 * @param position - Spielstand
+	 * @return Eintrag mit gleichem Spielstand (Figuren, Rechte, Seite am Zug) oder null
+	 */
+	public synchronized KnownPosition lookup(Position position) {
+		return byHash.get(position.getHash());
+	}
+
+	/**
+	 * @return zuletzt erkannter Eintrag, solange die Belegung unverändert ist, sonst null
+	 */
+	public synchronized KnownPosition getRecognized() {
+		return recognized;
+	}
+
+	@Override
+	public void onScan(ScanResult result) {
+		KnownPosition known;
+		synchronized(this) {
+			//Der erste Scan wird immer nachgeschlagen, danach nur geänderte Belegungen
+			if(scanned && !result.hasChanged())
+				return;
+
+			scanned = true;
+			known = lookup(result.getOccupancy());
+			if(known == recognized)
+				return;
+
+			recognized = known;
+		}
+
+		if(known != null)
+			for(PositionListener lis : listener)
+				lis.onPositionRecognized(known);
+	}
+
+	/**
+	 * Verteilt die Bits einer Belegung auf den ganzen Schlüssel (Finalizer von MurmurHash3).
+	 * Zobrist Hashes sind bereits gleichverteilt und werden direkt verwendet.
+	 */
+	private static long mix(long occupancy) {
+		long h = occupancy;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Hashtabelle mit offener Adressierung und linearer Sondierung auf long Schlüsseln
+	 */
+	private static final class Table {
+		private static final int INITIAL_CAPACITY = 16;
+
+		private final boolean mixed;
+		private long[] keys;
+		private KnownPosition[] values;
+		private int size;
+
+		/**
+		 * @param mixed - true, wenn die Schlüssel vor der Adressierung gemischt werden müssen
+		 */
+		Table(boolean mixed) {
+			this.mixed = mixed;
+			this.keys = new long[INITIAL_CAPACITY];
+			this.values = new KnownPosition[INITIAL_CAPACITY];
+		}
+
+		KnownPosition get(long key) {
+			int mask = keys.length - 1;
+			for(int i = slot(key, mask); values[i] != null; i = (i + 1) & mask)
+				if(keys[i] == key)
+					return values[i];
+
+			return null;
+		}
+
+		void putIfAbsent(long key, KnownPosition value) {
+			if(get(key) != null)
+				return;
+
+			if((size + 1) * 2 > keys.length)
+				grow();
+
+			int mask = keys.length - 1;
+			int i = slot(key, mask);
+			while(values[i] != null)
+				i = (i + 1) & mask;
+
+			keys[i] = key;
+			values[i] = value;
+			size++;
+		}
+
+		private int slot(long key, int mask) {
+			return (int) (mixed ? mix(key) : key) & mask;
+		}
+
+		private void grow() {
+			long[] oldKeys = keys;
+			KnownPosition[] oldValues = values;
+			keys = new long[oldKeys.length * 2];
+			values = new KnownPosition[oldValues.length * 2];
+			size = 0;
+
+			for(int i = 0; i < oldKeys.length; i++)
+				if(oldValues[i] != null)
+					putIfAbsent(oldKeys[i], oldValues[i]);
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+/**
+ * Implementiere dieses Interface um von einem {@link PositionIndex} über erkannte Stellungen benachrichtigt zu werden.
+ */
+public interface PositionListener {
+	/**
+	 * Wird aufgerufen, sobald die Belegung des Bretts einer hinterlegten Stellung entspricht.
+	 * Bleibt die Belegung unverändert, wird die Stellung nicht erneut gemeldet.
+	 * Die Methode wird im Thread des Scanners ausgeführt.
+	 * @param known - erkannte Stellung
+	 */
+	public void onPositionRecognized(KnownPosition known);
+}
@@ -0,0 +1,13 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+/**
+ * Farbe eines Spielers
+ */
+public enum Side {
+	WHITE,
+	BLACK;
+
+	public Side opposite() {
+		return this == WHITE ? BLACK : WHITE;
+	}
+}
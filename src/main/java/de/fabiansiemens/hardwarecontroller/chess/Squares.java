@@ -0,0 +1,63 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+/**
+ * Hilfsfunktionen für Feldindizes und Bitboards.
+ *
+ * Ein Feld wird als Index 0-63 dargestellt, Index = Zeile * 8 + Spalte. Spalte 0 entspricht der Linie a,
+ * Zeile 0 der ersten Reihe (weiße Grundreihe). Diese Zuordnung entspricht der Belegungs-Bitmaske der Sensormatrix,
+ * sodass Scan Ergebnisse direkt als Bitboard verwendet werden können.
+ */
+public final class Squares {
+
+	public static final int A1 = 0, B1 = 1, C1 = 2, D1 = 3, E1 = 4, F1 = 5, G1 = 6, H1 = 7;
+	public static final int A8 = 56, B8 = 57, C8 = 58, D8 = 59, E8 = 60, F8 = 61, G8 = 62, H8 = 63;
+
+	private Squares() {
+	}
+
+	public static int of(int col, int row) {
+		return row * 8 + col;
+	}
+
+	public static int col(int square) {
+		return square & 7;
+	}
+
+	public static int row(int square) {
+		return square >>> 3;
+	}
+
+	public static long bit(int square) {
+		return 1L << square;
+	}
+
+	/**
+	 * @return true, wenn die Koordinaten auf dem Brett liegen
+	 */
+	public static boolean isValid(int col, int row) {
+		return col >= 0 && col < 8 && row >= 0 && row < 8;
+	}
+
+	/**
+	 * @return Name des Felds in algebraischer Notation, z.B. "e4"
+	 */
+	public static String name(int square) {
+		return String.valueOf((char) ('a' + col(square))) + (char) ('1' + row(square));
+	}
+
+	/**
+	 * @param name - Feld in algebraischer Notation, z.B. "e4"
+	 * @return Index des Felds
+	 */
+	public static int parse(String name) {
+		if(name.length() != 2)
+			throw new IllegalArgumentException("Invalid square: " + name);
+
+		int col = name.charAt(0) - 'a';
+		int row = name.charAt(1) - '1';
+		if(!isValid(col, row))
+			throw new IllegalArgumentException("Invalid square: " + name);
+
+		return of(col, row);
+	}
+}
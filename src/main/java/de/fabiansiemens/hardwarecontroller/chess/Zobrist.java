@@ -0,0 +1,46 @@
+package de.fabiansiemens.hardwarecontroller.chess;
+
+/**
+ * Zufallsschlüssel für Zobrist Hashes von Stellungen.
+ *
+ * Der Hash einer Stellung ist das XOR der Schlüssel aller Figuren auf ihren Feldern, der Rochaderechte, der Linie des
+ * En passant Felds und der Seite am Zug. Jeder Zug ändert den Hash daher mit wenigen XOR Operationen.
+ * Die Schlüssel werden mit festem Startwert erzeugt und sind bei jedem Start identisch.
+ */
+final class Zobrist {
+
+	static final long[][][] PIECES = new long[2][Piece.values().length][64];
+	static final long[] CASTLING = new long[16];
+	static final long[] EN_PASSANT = new long[8];
+	static final long BLACK_TO_MOVE;
+
+	static {
+		long state = 0;
+
+		for(long[][] side : PIECES)
+			for(long[] piece : side)
+				for(int square = 0; square < 64; square++)
+					piece[square] = mix(state += 0x9E3779B97F4A7C15L);
+
+		//Ohne Rochaderechte bleibt der Hash unverändert
+		for(int i = 1; i < CASTLING.length; i++)
+			CASTLING[i] = mix(state += 0x9E3779B97F4A7C15L);
+
+		for(int i = 0; i < EN_PASSANT.length; i++)
+			EN_PASSANT[i] = mix(state += 0x9E3779B97F4A7C15L);
+
+		BLACK_TO_MOVE = mix(state + 0x9E3779B97F4A7C15L);
+	}
+
+	private Zobrist() {
+	}
+
+	/**
+	 * Mischfunktion von SplitMix64
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,221 @@
+package de.fabiansiemens.hardwarecontroller.diagnostics;
+
+import java.util.Arrays;
+
+import de.fabiansiemens.hardwarecontroller.led.LedMatrixController;
+import de.fabiansiemens.hardwarecontroller.sensor.SensorMatrix;
+
+/**
+ * Automatischer Hardware Selbsttest.
+ *
+ * Der Test steuert jede Spalte einzeln an und liest die Zeilen so schnell wie möglich wiederholt ein, bis sie stabil sind.
+ * Daraus ergeben sich pro Feld Ansprech-, Einschwing- und Abfallzeit. Zusätzlich werden hängende, kurzgeschlossene und
+ * übersprechende Felder erkannt und die SPI Zeiten der LED Matrix gemessen.
+ * Während des Tests sollte kein anderer Thread die Sensormatrix oder die LED Matrix verwenden.
+ */
+public class SelfTest {
+
+	/**
+	 * Maximale Wartezeit, bis eine Spalte als stabil gilt
+	 */
+	private static final long TIMEOUT_NANOS = 20_000_000L;
+	/**
+	 * Zeit ohne Änderung, nach der die Zeilen als stabil gelten
+	 */
+	private static final long STABLE_NANOS = 500_000L;
+	/**
+	 * Anzahl der Messungen für die SPI Zeiten
+	 */
+	private static final int SPI_SAMPLES = 50;
+	/**
+	 * Felder, die länger als dieses Vielfache des Medians zum Einschwingen brauchen, gelten als langsam
+	 */
+	private static final int SLOW_FACTOR = 4;
+	private static final long SLOW_MIN_NANOS = 500_000L;
+
+	private final SensorMatrix sensors;
+	private final LedMatrixController leds;
+
+	/**
+	 * @param sensors - zu testende Sensormatrix
+	 * @param leds - zu testende LED Matrix, null wenn die SPI Zeiten nicht gemessen werden sollen
+	 */
+	public SelfTest(SensorMatrix sensors, LedMatrixController leds) {
+		this.sensors = sensors;
+		this.leds = leds;
+	}
+
+	/**
+	 * Führt den Selbsttest auf einem leeren Brett durch
+	 * @return Ergebnis des Tests
+	 */
+	public SelfTestReport run() {
+		return run(new boolean[sensors.getColumns()][sensors.getRows()]);
+	}
+
+	/**
+	 * Führt den Selbsttest durch
+	 * @param expected - erwartete Belegung des Bretts [Spalte][Zeile], im Normalfall leer
+	 * @return Ergebnis des Tests
+	 */
+	public SelfTestReport run(boolean[][] expected) {
+		int columns = sensors.getColumns();
+		int rows = sensors.getRows();
+		SelfTestReport report = new SelfTestReport(columns, rows, sensors.getTiming());
+
+		for(int col = 0; col < columns; col++)
+			sensors.driveColumn(col, false);
+
+		int stuckRows = waitForStableRows(System.nanoTime(), null, null);
+		report.stuckRows = stuckRows;
+
+		for(int col = 0; col < columns; col++)
+			measureColumn(col, expected[col], stuckRows, report);
+
+		classifySlowSquares(report);
+
+		if(leds != null)
+			measureSpi(report);
+
+		return report;
+	}
+
+	/**
+	 * Steuert eine Spalte an, misst die Zeiten aller Zeilen und klassifiziert die Felder der Spalte
+	 */
+	private void measureColumn(int col, boolean[] expected, int stuckRows, SelfTestReport report) {
+		long[] firstHigh = new long[sensors.getRows()];
+		long[] lastChange = new long[sensors.getRows()];
+		int[] seenHigh = new int[1];
+
+		sensors.driveColumn(col, true);
+		long start = System.nanoTime();
+		int settled = waitForStableRows(start, firstHigh, lastChange, seenHigh);
+
+		sensors.driveColumn(col, false);
+		long[] release = new long[sensors.getRows()];
+		long releaseStart = System.nanoTime();
+		int remaining = waitForStableRows(releaseStart, null, release);
+
+		for(int row = 0; row < sensors.getRows(); row++) {
+			int bit = 1 << row;
+			report.response[col][row] = firstHigh[row];
+			report.settle[col][row] = lastChange[row];
+			report.release[col][row] = release[row];
+
+			SquareStatus status;
+			if((stuckRows & bit) != 0)
+				status = SquareStatus.STUCK;
+			else if((remaining & bit) != 0)
+				status = SquareStatus.SHORTED;
+			else if((settled & bit) != 0)
+				status = expected[row] ? SquareStatus.OK : SquareStatus.SHORTED;
+			else if(expected[row])
+				status = SquareStatus.STUCK;
+			else if((seenHigh[0] & bit) != 0)
+				status = SquareStatus.GHOSTING;
+			else
+				status = SquareStatus.OK;
+
+			report.status[col][row] = status;
+		}
+	}
+
+	private int waitForStableRows(long start, long[] firstHigh, long[] lastChange) {
+		return waitForStableRows(start, firstHigh, lastChange, new int[1]);
+	}
+
+	/**
+	 * Liest die Zeilen wiederholt ein, bis sich für {@link #STABLE_NANOS} nichts mehr ändert oder {@link #TIMEOUT_NANOS} erreicht ist.
+	 * @param start - Startzeitpunkt der Messung (System.nanoTime)
+	 * @param firstHigh - Zeitpunkt relativ zu start, an dem jede Zeile zum ersten Mal HIGH war (-1 = nie) @Nullable
+	 * @param lastChange - Zeitpunkt relativ zu start, an dem sich jede Zeile zum letzten Mal geändert hat @Nullable
+	 * @param seenHigh - [0] enthält nach dem Aufruf alle Zeilen, die zu irgendeinem Zeitpunkt HIGH waren
+	 * @return stabiler Zustand der Zeilen als Bitmaske
+	 */
+	private int waitForStableRows(long start, long[] firstHigh, long[] lastChange, int[] seenHigh) {
+		if(firstHigh != null)
+			Arrays.fill(firstHigh, -1);
+
+		int last = sensors.readRows();
+		long now = System.nanoTime();
+		long stableSince = now;
+		seenHigh[0] = last;
+		markFirstHigh(firstHigh, last, now - start);
+
+		while(now - start < TIMEOUT_NANOS && now - stableSince < STABLE_NANOS) {
+			int rows = sensors.readRows();
+			now = System.nanoTime();
+			int changed = rows ^ last;
+
+			if(changed != 0) {
+				stableSince = now;
+				if(lastChange != null)
+					for(int row = 0; row < lastChange.length; row++)
+						if((changed & (1 << row)) != 0)
+							lastChange[row] = now - start;
+			}
+
+			markFirstHigh(firstHigh, rows, now - start);
+			seenHigh[0] |= rows;
+			last = rows;
+		}
+
+		return last;
+	}
+
+	private static void markFirstHigh(long[] firstHigh, int rows, long elapsed) {
+		if(firstHigh == null)
+			return;
+
+		for(int row = 0; row < firstHigh.length; row++)
+			if(firstHigh[row] < 0 && (rows & (1 << row)) != 0)
+				firstHigh[row] = elapsed;
+	}
+
+	/**
+	 * Markiert funktionierende Felder, die deutlich länger als der Median zum Einschwingen benötigen
+	 */
+	private void classifySlowSquares(SelfTestReport report) {
+		long median = report.medianSettleNanos();
+		long limit = Math.max(median * SLOW_FACTOR, SLOW_MIN_NANOS);
+
+		for(int col = 0; col < report.getColumns(); col++)
+			for(int row = 0; row < report.getRows(); row++)
+				if(report.status[col][row] == SquareStatus.OK
+						&& Math.max(report.settle[col][row], report.release[col][row]) > limit)
+					report.status[col][row] = SquareStatus.SLOW;
+	}
+
+	/**
+	 * Misst die Zeit für einzelne SPI Übertragungen und komplette Frames. Der Inhalt der LED Matrix bleibt erhalten.
+	 */
+	private void measureSpi(SelfTestReport report) {
+		long min = Long.MAX_VALUE;
+		long max = 0;
+		long sum = 0;
+
+		//Ohne Begrenzung schreibt flushNow() jedes Mal alle Zeilen synchron, refresh() könnte verzögert oder zusammengefasst werden
+		int fps = leds.getMaxFrameRate();
+		leds.setMaxFrameRate(0);
+		try {
+			for(int i = 0; i < SPI_SAMPLES; i++) {
+				long start = System.nanoTime();
+				leds.flushNow();
+				long duration = System.nanoTime() - start;
+
+				min = Math.min(min, duration);
+				max = Math.max(max, duration);
+				sum += duration;
+			}
+		}
+		finally {
+			leds.setMaxFrameRate(fps);
+		}
+
+		report.frameMinNanos = min;
+		report.frameMaxNanos = max;
+		report.frameAvgNanos = sum / SPI_SAMPLES;
+		report.spiTransferNanos = report.frameAvgNanos / LedMatrixController.HEIGHT;
+	}
+}
@@ -0,0 +1,273 @@
+package de.fabiansiemens.hardwarecontroller.diagnostics;
+
+import java.util.Arrays;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+import de.fabiansiemens.hardwarecontroller.led.LedMatrixController;
+import de.fabiansiemens.hardwarecontroller.sensor.ScanTiming;
+
+/**
+ * Ergebnis eines {@link SelfTest}.
+ *
+ * Enthält pro Feld die gemessenen Zeiten und den Status, sowie die SPI Zeiten der LED Matrix.
+ * Der Bericht kann mit {@link #toJson()} maschinenlesbar ausgegeben, mit {@link #showHeatmap(LedMatrixController, long)}
+ * auf den LEDs angezeigt und mit {@link #recommendedTiming()} an den Scanner zurückgegeben werden.
+ * Alle Zeiten sind in Nanosekunden angegeben, -1 bedeutet "nicht gemessen".
+ */
+public class SelfTestReport {
+
+	/**
+	 * Sicherheitsfaktor und -abstand, mit dem die gemessenen Zeiten in ein Scan-Zeitverhalten übernommen werden
+	 */
+	private static final double TIMING_SAFETY_FACTOR = 1.5;
+	private static final long TIMING_MARGIN_MICROS = 100;
+	private static final long TIMING_MIN_SETTLE_MICROS = 200;
+
+	/**
+	 * Anzahl der Helligkeitsstufen und Dauer eines Teilbilds der Heatmap
+	 */
+	private static final int HEATMAP_LEVELS = 4;
+	private static final long HEATMAP_FRAME_MILLIS = 4;
+
+	private final int columns;
+	private final int rows;
+	private final ScanTiming testedTiming;
+	private final long timestamp;
+
+	final SquareStatus[][] status;
+	final long[][] response;
+	final long[][] settle;
+	final long[][] release;
+	int stuckRows;
+	long frameMinNanos = -1;
+	long frameAvgNanos = -1;
+	long frameMaxNanos = -1;
+	long spiTransferNanos = -1;
+
+	SelfTestReport(int columns, int rows, ScanTiming testedTiming) {
+		this.columns = columns;
+		this.rows = rows;
+		this.testedTiming = testedTiming;
+		this.timestamp = System.currentTimeMillis();
+		this.status = new SquareStatus[columns][rows];
+		this.response = new long[columns][rows];
+		this.settle = new long[columns][rows];
+		this.release = new long[columns][rows];
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public SquareStatus getStatus(int col, int row) {
+		return status[col][row];
+	}
+
+	/**
+	 * @return Zeit vom Ansteuern der Spalte bis das Feld zum ersten Mal HIGH war, -1 wenn nie
+	 */
+	public long getResponseNanos(int col, int row) {
+		return response[col][row];
+	}
+
+	/**
+	 * @return Zeit vom Ansteuern der Spalte bis zur letzten Änderung des Felds
+	 */
+	public long getSettleNanos(int col, int row) {
+		return settle[col][row];
+	}
+
+	/**
+	 * @return Zeit vom Abschalten der Spalte bis das Feld wieder LOW war
+	 */
+	public long getReleaseNanos(int col, int row) {
+		return release[col][row];
+	}
+
+	/**
+	 * @return Bitmaske aller Zeilen, die ohne angesteuerte Spalte HIGH sind
+	 */
+	public int getStuckRows() {
+		return stuckRows;
+	}
+
+	public long getFrameAvgNanos() {
+		return frameAvgNanos;
+	}
+
+	public long getSpiTransferNanos() {
+		return spiTransferNanos;
+	}
+
+	/**
+	 * @return true, wenn kein Feld fehlerhaft ist
+	 */
+	public boolean isPassed() {
+		for(SquareStatus[] column : status)
+			for(SquareStatus square : column)
+				if(square.isFaulty())
+					return false;
+
+		return true;
+	}
+
+	/**
+	 * @return Median der Einschwingzeiten aller Felder
+	 */
+	long medianSettleNanos() {
+		long[] values = new long[columns * rows];
+		for(int col = 0; col < columns; col++)
+			for(int row = 0; row < rows; row++)
+				values[col * rows + row] = Math.max(settle[col][row], 0);
+
+		Arrays.sort(values);
+		return values[values.length / 2];
+	}
+
+	/**
+	 * Berechnet aus den gemessenen Zeiten ein Scan-Zeitverhalten für den Scanner.
+	 * Die Settle-Zeit muss sowohl das Einschwingen der aktuellen als auch das Abfallen der vorherigen Spalte abdecken,
+	 * eine Hold-Zeit wird nicht benötigt. Fehlerhafte Felder werden dabei nicht berücksichtigt.
+	 * @return empfohlenes Zeitverhalten
+	 */
+	public ScanTiming recommendedTiming() {
+		long worst = 0;
+		for(int col = 0; col < columns; col++)
+			for(int row = 0; row < rows; row++)
+				if(!status[col][row].isFaulty())
+					worst = Math.max(worst, Math.max(settle[col][row], release[col][row]));
+
+		long settleMicros = (long) (worst / 1000 * TIMING_SAFETY_FACTOR) + TIMING_MARGIN_MICROS;
+		return new ScanTiming(Math.max(settleMicros, TIMING_MIN_SETTLE_MICROS), 0);
+	}
+
+	/**
+	 * Zeigt die Einschwingzeiten als Heatmap auf der LED Matrix an. Langsame Felder leuchten heller, fehlerhafte Felder
+	 * leuchten voll. Die Helligkeitsstufen werden durch schnelles Umschalten mehrerer Teilbilder erzeugt.
+	 * Der vorherige Inhalt der Matrix wird danach wiederhergestellt.
+	 * @param leds - LED Matrix
+	 * @param durationMillis - Anzeigedauer in Millisekunden
+	 */
+	public void showHeatmap(LedMatrixController leds, long durationMillis) {
+		int[][] levels = heatmapLevels();
+		BitGrid[] frames = new BitGrid[HEATMAP_LEVELS - 1];
+
+		//Die Teilbilder werden getrennt vom Buffer der Matrix aufgebaut, dessen Inhalt bleibt bis zur Anzeige unverändert
+		for(int level = 1; level < HEATMAP_LEVELS; level++) {
+			BitGrid frame = new BitGrid(leds.getWidth(), leds.getHeight());
+			for(int col = 0; col < columns && col < leds.getWidth(); col++)
+				for(int row = 0; row < rows && row < leds.getHeight(); row++)
+					frame.set(col, row, levels[col][row] >= level);
+			frames[level - 1] = frame;
+		}
+
+		BitGrid originalbuffer = leds.getGrid().copy();
+		BitGrid empty = new BitGrid(leds.getWidth(), leds.getHeight());
+		long end = System.currentTimeMillis() + durationMillis;
+
+		//Die Teilbilder müssen sofort sichtbar sein, ein verzögertes refresh() würde die Helligkeitsstufen verfälschen
+
+		while(System.currentTimeMillis() < end) {
+			for(BitGrid frame : frames) {
+				leds.overwriteBuffer(frame);
+				leds.flushNow();
+				pause(HEATMAP_FRAME_MILLIS);
+			}
+			leds.overwriteBuffer(empty);
+			leds.flushNow();
+			pause(HEATMAP_FRAME_MILLIS);
+		}
+
+		leds.overwriteBuffer(originalbuffer);
+		leds.flushNow();
+	}
+
+	/**
+	 * Ordnet jedem Feld eine Helligkeitsstufe zwischen 0 und {@link #HEATMAP_LEVELS} - 1 zu
+	 */
+	private int[][] heatmapLevels() {
+		long max = 1;
+		for(int col = 0; col < columns; col++)
+			for(int row = 0; row < rows; row++)
+				if(!status[col][row].isFaulty())
+					max = Math.max(max, settle[col][row]);
+
+		int[][] levels = new int[columns][rows];
+		for(int col = 0; col < columns; col++)
+			for(int row = 0; row < rows; row++) {
+				if(status[col][row].isFaulty())
+					levels[col][row] = HEATMAP_LEVELS - 1;
+				else
+					levels[col][row] = (int) Math.min(HEATMAP_LEVELS - 1, Math.max(settle[col][row], 0) * HEATMAP_LEVELS / (max + 1));
+			}
+
+		return levels;
+	}
+
+	private static void pause(long millis) {
+		try {
+			Thread.sleep(millis);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Gibt den Bericht als JSON Objekt aus. Die Felder sind spaltenweise als Arrays [Spalte][Zeile] abgelegt.
+	 * @return JSON Darstellung des Berichts
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder();
+		ScanTiming recommended = recommendedTiming();
+
+		json.append("{\"timestamp\":").append(timestamp)
+			.append(",\"columns\":").append(columns)
+			.append(",\"rows\":").append(rows)
+			.append(",\"passed\":").append(isPassed())
+			.append(",\"stuckRows\":").append(stuckRows)
+			.append(",\"testedTiming\":{\"settleMicros\":").append(testedTiming.getSettleMicros())
+			.append(",\"holdMicros\":").append(testedTiming.getHoldMicros()).append('}')
+			.append(",\"recommendedTiming\":{\"settleMicros\":").append(recommended.getSettleMicros())
+			.append(",\"holdMicros\":").append(recommended.getHoldMicros()).append('}')
+			.append(",\"spi\":{\"transferNanos\":").append(spiTransferNanos)
+			.append(",\"frameMinNanos\":").append(frameMinNanos)
+			.append(",\"frameAvgNanos\":").append(frameAvgNanos)
+			.append(",\"frameMaxNanos\":").append(frameMaxNanos).append('}');
+
+		json.append(",\"status\":[");
+		for(int col = 0; col < columns; col++) {
+			json.append(col == 0 ? "[" : ",[");
+			for(int row = 0; row < rows; row++)
+				json.append(row == 0 ? "\"" : ",\"").append(status[col][row]).append('"');
+			json.append(']');
+		}
+		json.append(']');
+
+		appendMatrix(json, "responseNanos", response);
+		appendMatrix(json, "settleNanos", settle);
+		appendMatrix(json, "releaseNanos", release);
+
+		return json.append('}').toString();
+	}
+
+	private void appendMatrix(StringBuilder json, String name, long[][] values) {
+		json.append(",\"").append(name).append("\":[");
+		for(int col = 0; col < columns; col++) {
+			json.append(col == 0 ? "[" : ",[");
+			for(int row = 0; row < rows; row++)
+				json.append(row == 0 ? "" : ",").append(values[col][row]);
+			json.append(']');
+		}
+		json.append(']');
+	}
+
+	@Override
+	public String toString() {
+		return toJson();
+	}
+}
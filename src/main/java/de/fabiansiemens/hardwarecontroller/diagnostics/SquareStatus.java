@@ -0,0 +1,34 @@
+package de.fabiansiemens.hardwarecontroller.diagnostics;
+
+/**
+ * Ergebnis des Selbsttests für ein einzelnes Feld
+ */
+public enum SquareStatus {
+	/**
+	 * Feld verhält sich wie erwartet
+	 */
+	OK,
+	/**
+	 * Die Zeile des Felds ist HIGH, obwohl keine Spalte angesteuert wird, oder das Feld wird trotz erwarteter Figur nie HIGH
+	 */
+	STUCK,
+	/**
+	 * Feld meldet eine Figur, obwohl keine erwartet wurde, oder fällt nach dem Abschalten der Spalte nicht mehr auf LOW
+	 */
+	SHORTED,
+	/**
+	 * Feld ist kurz nach dem Ansteuern der Spalte HIGH, fällt danach aber wieder auf LOW (Übersprechen/Restladung)
+	 */
+	GHOSTING,
+	/**
+	 * Feld funktioniert, braucht aber deutlich länger als der Rest des Bretts bis es stabil ist
+	 */
+	SLOW;
+
+	/**
+	 * @return true, wenn das Feld nicht zuverlässig eingelesen werden kann
+	 */
+	public boolean isFaulty() {
+		return this == STUCK || this == SHORTED || this == GHOSTING;
+	}
+}
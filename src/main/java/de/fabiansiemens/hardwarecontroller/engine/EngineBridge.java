@@ -0,0 +1,104 @@
+package de.fabiansiemens.hardwarecontroller.engine;
+
+import java.io.IOException;
+
+import de.fabiansiemens.hardwarecontroller.chess.ChessGame;
+import de.fabiansiemens.hardwarecontroller.chess.MoveDetected;
+import de.fabiansiemens.hardwarecontroller.chess.MoveListener;
+import de.fabiansiemens.hardwarecontroller.chess.Squares;
+import de.fabiansiemens.hardwarecontroller.led.LedMatrixController;
+
+/**
+ * Verbindet eine {@link ChessGame} Partie mit einer {@link UciEngine}.
+ *
+ * Nach jedem ausgeführten Zug wird die neue Stellung sofort an die Engine gesendet, eine noch laufende Suche wird dabei
+ * abgebrochen. Der beste Zug der Engine wird als Spur vom Start- zum Zielfeld auf der LED Matrix angezeigt
+ * (gleiche Geometrie wie {@link de.fabiansiemens.hardwarecontroller.HardwareController#blinkTrace(int, int, int, int, int)}),
+ * bis der nächste Zug erkannt wird. Die Spur wird von der Partie als eigene Ebene neben den Zughinweisen angezeigt
+ * ({@link ChessGame#showTrace(long)}), damit sich beide Anzeigen nicht gegenseitig überschreiben.
+ */
+public class EngineBridge implements MoveListener, EngineListener {
+
+	/**
+	 * Standard Bedenkzeit der Engine
+	 */
+	public static final long DEFAULT_MOVETIME_MILLIS = 1000;
+
+	private final UciEngine engine;
+	private final ChessGame game;
+	private final LedMatrixController leds;
+
+	private volatile long movetimeMillis;
+
+	/**
+	 * @param engine - Engine, die die Stellungen analysiert
+	 * @param game - Partie, deren Züge an die Engine gesendet werden
+	 * @param leds - LED Matrix der Partie, null wenn der beste Zug nicht angezeigt werden soll @Nullable
+	 */
+	public EngineBridge(UciEngine engine, ChessGame game, LedMatrixController leds) {
+		this.engine = engine;
+		this.game = game;
+		this.leds = leds;
+		this.movetimeMillis = DEFAULT_MOVETIME_MILLIS;
+
+		engine.addListener(this);
+		game.addListener(this);
+	}
+
+	public UciEngine getEngine() {
+		return engine;
+	}
+
+	public void setMovetime(long millis) {
+		this.movetimeMillis = millis;
+	}
+
+	/**
+	 * Startet eine Suche in der aktuellen Stellung der Partie, z.B. zu Beginn oder nach dem Laden einer Stellung
+	 */
+	public void analyze() {
+		clearTrace();
+
+		try {
+			engine.search(game.getPosition().toFen(), movetimeMillis);
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Trennt die Partie von der Engine und beendet die Engine
+	 */
+	public void close() {
+		game.removeListener(this);
+		engine.removeListener(this);
+		clearTrace();
+
+		try {
+			engine.close();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void onMoveDetected(MoveDetected move) {
+		analyze();
+	}
+
+	@Override
+	public void onBestMove(String move, String ponder) {
+		if(leds == null || move.length() < 4 || move.equals("0000"))
+			return;
+
+		int from = Squares.parse(move.substring(0, 2));
+		int to = Squares.parse(move.substring(2, 4));
+		game.showTrace(LedMatrixController.traceBitboard(Squares.col(from), Squares.row(from), Squares.col(to), Squares.row(to)));
+	}
+
+	private void clearTrace() {
+		game.clearTrace();
+	}
+}
@@ -0,0 +1,102 @@
+package de.fabiansiemens.hardwarecontroller.engine;
+
+import java.util.Arrays;
+
+/**
+ * Ausgewertete "info" Zeile einer UCI Engine.
+ * Nicht gesendete Werte sind -1 bzw. null.
+ */
+public final class EngineInfo {
+
+	private final int depth;
+	private final int scoreCp;
+	private final int mate;
+	private final long nodes;
+	private final String pv;
+
+	public EngineInfo(int depth, int scoreCp, int mate, long nodes, String pv) {
+		this.depth = depth;
+		this.scoreCp = scoreCp;
+		this.mate = mate;
+		this.nodes = nodes;
+		this.pv = pv;
+	}
+
+	/**
+	 * Wertet eine "info" Zeile aus. Unbekannte Schlüssel werden übersprungen.
+	 * @param line - Zeile ohne Zeilenumbruch, beginnend mit "info"
+	 * @return ausgewertete Zeile
+	 */
+	public static EngineInfo parse(String line) {
+		String[] tokens = line.trim().split("\\s+");
+		int depth = -1;
+		int scoreCp = -1;
+		int mate = -1;
+		long nodes = -1;
+		String pv = null;
+
+		try {
+			for(int i = 1; i < tokens.length; i++) {
+				switch(tokens[i]) {
+				case "depth":
+					depth = Integer.parseInt(tokens[++i]);
+				break;
+				case "nodes":
+					nodes = Long.parseLong(tokens[++i]);
+				break;
+				case "score":
+					if(i + 2 < tokens.length && tokens[i + 1].equals("cp"))
+						scoreCp = Integer.parseInt(tokens[i + 2]);
+					else if(i + 2 < tokens.length && tokens[i + 1].equals("mate"))
+						mate = Integer.parseInt(tokens[i + 2]);
+					i += 2;
+				break;
+				case "pv":
+					pv = String.join(" ", Arrays.copyOfRange(tokens, i + 1, tokens.length));
+					i = tokens.length;
+				break;
+				default:
+				}
+			}
+		}
+		catch(NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			//Unvollständige Zeile, bis hierhin gelesene Werte behalten
+		}
+
+		return new EngineInfo(depth, scoreCp, mate, nodes, pv);
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return Bewertung in Centipawns aus Sicht der Seite am Zug, -1 wenn nicht gesendet (siehe auch {@link #getMate()})
+	 */
+	public int getScoreCp() {
+		return scoreCp;
+	}
+
+	/**
+	 * @return Züge bis Matt, -1 wenn nicht gesendet
+	 */
+	public int getMate() {
+		return mate;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return Hauptvariante in Koordinatennotation, null wenn nicht gesendet
+	 */
+	public String getPv() {
+		return pv;
+	}
+
+	@Override
+	public String toString() {
+		return "EngineInfo[depth=" + depth + ", cp=" + scoreCp + ", mate=" + mate + ", nodes=" + nodes + ", pv=" + pv + "]";
+	}
+}
@@ -0,0 +1,21 @@
+package de.fabiansiemens.hardwarecontroller.engine;
+
+/**
+ * Implementiere dieses Interface um über die Ausgaben einer {@link UciEngine} benachrichtigt zu werden.
+ * Die Methoden werden im Lese-Thread der Engine ausgeführt und sollten daher schnell zurückkehren.
+ */
+public interface EngineListener {
+	/**
+	 * Wird für jede "info" Zeile der aktuellen Suche aufgerufen
+	 * @param info - ausgewertete Zeile
+	 */
+	public default void onInfo(EngineInfo info) {
+	}
+
+	/**
+	 * Wird aufgerufen, wenn die aktuelle Suche beendet ist. Ergebnisse abgebrochener Suchen werden nicht gemeldet.
+	 * @param move - bester Zug in Koordinatennotation, z.B. "e2e4"
+	 * @param ponder - erwartete Antwort oder null
+	 */
+	public void onBestMove(String move, String ponder);
+}
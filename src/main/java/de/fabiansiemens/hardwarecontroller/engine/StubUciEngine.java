@@ -0,0 +1,171 @@
+package de.fabiansiemens.hardwarecontroller.engine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.fabiansiemens.hardwarecontroller.chess.Piece;
+import de.fabiansiemens.hardwarecontroller.chess.Position;
+import de.fabiansiemens.hardwarecontroller.chess.Squares;
+
+/**
+ * Minimale UCI Engine zum Testen der {@link UciEngine} ohne echte Schach-Engine.
+ *
+ * Die Engine versteht "uci", "isready", "position", "go", "stop" und "quit". Eine Suche wartet die Bedenkzeit ab
+ * (oder bis "stop") und meldet den ersten legalen Zug der Stellung. Damit lassen sich Abbruch und veraltete Ergebnisse
+ * reproduzierbar prüfen.
+ * Start als eigener Prozess, z.B. über {@link #command()}.
+ */
+public class StubUciEngine {
+
+	private static final long DEFAULT_MOVETIME_MILLIS = 1000;
+
+	private final PrintStream out;
+	private Position position;
+	private Thread search;
+
+	private StubUciEngine(PrintStream out) {
+		this.out = out;
+		this.position = Position.startPosition();
+	}
+
+	/**
+	 * @return Befehl, um diese Klasse mit der laufenden JVM als eigenen Prozess zu starten
+	 */
+	public static List<String> command() {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+
+		String modulePath = System.getProperty("jdk.module.path");
+		if(modulePath != null) {
+			command.add("-p");
+			command.add(modulePath);
+			command.add("-m");
+			command.add(StubUciEngine.class.getModule().getName() + "/" + StubUciEngine.class.getName());
+		}
+		else {
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(StubUciEngine.class.getName());
+		}
+
+		return command;
+	}
+
+	public static void main(String[] args) throws IOException {
+		PrintStream out = new PrintStream(System.out, true, StandardCharsets.US_ASCII);
+		StubUciEngine engine = new StubUciEngine(out);
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+
+		String line;
+		while((line = in.readLine()) != null && !line.equals("quit"))
+			engine.handle(line.trim().split("\\s+"));
+
+		engine.stop();
+	}
+
+	private void handle(String[] tokens) {
+		switch(tokens[0]) {
+		case "uci":
+			out.println("id name StubUciEngine");
+			out.println("uciok");
+		break;
+		case "isready":
+			out.println("readyok");
+		break;
+		case "position":
+			stop();
+			position = parsePosition(tokens);
+		break;
+		case "go":
+			stop();
+			go(movetime(tokens));
+		break;
+		case "stop":
+			stop();
+		break;
+		default:
+		}
+	}
+
+	private static Position parsePosition(String[] tokens) {
+		int i = 1;
+		Position position;
+
+		if(tokens.length > 1 && tokens[1].equals("fen")) {
+			StringBuilder fen = new StringBuilder();
+			for(i = 2; i < tokens.length && !tokens[i].equals("moves"); i++)
+				fen.append(tokens[i]).append(' ');
+			position = Position.fromFen(fen.toString());
+		}
+		else {
+			position = Position.startPosition();
+			i = 2;
+		}
+
+		for(i++; i < tokens.length; i++) {
+			String move = tokens[i];
+			Piece promotion = move.length() > 4 ? Piece.bySymbol(move.charAt(4)) : null;
+			position.play(Squares.parse(move.substring(0, 2)), Squares.parse(move.substring(2, 4)), promotion);
+		}
+
+		return position;
+	}
+
+	private static long movetime(String[] tokens) {
+		for(int i = 1; i + 1 < tokens.length; i++)
+			if(tokens[i].equals("movetime"))
+				return Long.parseLong(tokens[i + 1]);
+
+		return DEFAULT_MOVETIME_MILLIS;
+	}
+
+	private void go(long movetimeMillis) {
+		String move = firstLegalMove(position);
+
+		search = new Thread(() -> {
+			out.println("info depth 1 score cp 0 nodes 1 pv " + move);
+			try {
+				Thread.sleep(movetimeMillis);
+			}
+			catch(InterruptedException e) {
+				//stop: Ergebnis sofort melden
+			}
+			out.println("bestmove " + move);
+		}, "StubSearch");
+		search.start();
+	}
+
+	/**
+	 * Beendet eine laufende Suche und wartet, bis ihr "bestmove" gesendet wurde
+	 */
+	private void stop() {
+		if(search == null)
+			return;
+
+		search.interrupt();
+		try {
+			search.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		search = null;
+	}
+
+	private static String firstLegalMove(Position position) {
+		for(long own = position.getPieces(position.getSideToMove()); own != 0; own &= own - 1) {
+			int from = Long.numberOfTrailingZeros(own);
+			long targets = position.legalTargets(from);
+			if(targets != 0)
+				return Squares.name(from) + Squares.name(Long.numberOfTrailingZeros(targets));
+		}
+
+		return "0000";
+	}
+}
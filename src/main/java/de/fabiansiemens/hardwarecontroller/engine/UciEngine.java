@@ -0,0 +1,204 @@
+package de.fabiansiemens.hardwarecontroller.engine;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Anbindung einer UCI Schach-Engine, die als lokaler Prozess läuft.
+ *
+ * Befehle werden gesammelt und pro Suche mit einem einzigen Schreibvorgang an die Engine gesendet. Die Ausgabe wird in einem
+ * eigenen Thread blockweise gelesen und zerlegt, unvollständige Zeilen werden bis zum nächsten Block aufbewahrt. Damit wartet
+ * weder der Aufrufer auf die Engine noch der Lese-Thread auf einzelne Zeilen.
+ *
+ * Eine neue Suche bricht die laufende ab ("stop"). Da UCI Engines auch für abgebrochene Suchen ein "bestmove" senden, wird
+ * mitgezählt, wie viele Suchen abgebrochen wurden, und deren Ausgaben werden verworfen. Veraltete Ergebnisse erreichen die
+ * Listener daher nie.
+ */
+public class UciEngine implements Closeable {
+
+	private static final int READ_BUFFER_SIZE = 8192;
+	private static final long QUIT_TIMEOUT_MILLIS = 1000;
+
+	private final Process process;
+	private final OutputStream out;
+	private final Thread reader;
+	private final List<EngineListener> listener;
+
+	private boolean searching;
+	private int staleSearches;
+
+	/**
+	 * Startet die Engine und sendet die Initialisierung ("uci", "isready")
+	 * @param command - Programm und Argumente der Engine
+	 * @throws IOException wenn der Prozess nicht gestartet werden kann
+	 */
+	public UciEngine(List<String> command) throws IOException {
+		this.process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+		this.out = new BufferedOutputStream(process.getOutputStream());
+		this.listener = new CopyOnWriteArrayList<EngineListener>();
+
+		this.reader = new Thread(this::read, "UciEngine");
+		reader.setDaemon(true);
+		reader.start();
+
+		send("uci\nisready\n");
+	}
+
+	/**
+	 * Registriert einen Listener. Wenn der übergebene Listener null ist, wird nichts hinzugefügt.
+	 * @param listener - Objekt vom Typ {@link EngineListener} @Nullable
+	 */
+	public void addListener(EngineListener listener) {
+		if(listener == null)
+			return;
+
+		this.listener.add(listener);
+	}
+
+	public void removeListener(EngineListener listener) {
+		this.listener.remove(listener);
+	}
+
+	/**
+	 * Startet eine Suche in der übergebenen Stellung. Eine laufende Suche wird abgebrochen, ihr Ergebnis wird verworfen.
+	 * Die Methode kehrt sofort zurück, das Ergebnis wird über {@link EngineListener#onBestMove(String, String)} gemeldet.
+	 * @param fen - Stellung in FEN
+	 * @param movetimeMillis - Bedenkzeit der Engine
+	 * @throws IOException wenn die Engine nicht mehr erreichbar ist
+	 */
+	public synchronized void search(String fen, long movetimeMillis) throws IOException {
+		StringBuilder commands = new StringBuilder();
+		if(searching) {
+			commands.append("stop\n");
+			staleSearches++;
+		}
+
+		commands.append("position fen ").append(fen).append('\n');
+		commands.append("go movetime ").append(movetimeMillis).append('\n');
+		searching = true;
+		send(commands);
+	}
+
+	/**
+	 * Bricht die laufende Suche ab, ohne ihr Ergebnis zu melden
+	 * @throws IOException wenn die Engine nicht mehr erreichbar ist
+	 */
+	public synchronized void cancel() throws IOException {
+		if(!searching)
+			return;
+
+		staleSearches++;
+		searching = false;
+		send("stop\n");
+	}
+
+	public synchronized boolean isSearching() {
+		return searching;
+	}
+
+	public boolean isAlive() {
+		return process.isAlive();
+	}
+
+	/**
+	 * Beendet die Engine. Reagiert sie nicht auf "quit", wird der Prozess beendet.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			send("quit\n");
+			if(!process.waitFor(QUIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+				process.destroyForcibly();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			process.destroyForcibly();
+		}
+		catch(IOException e) {
+			process.destroyForcibly();
+		}
+	}
+
+	private synchronized void send(CharSequence commands) throws IOException {
+		out.write(commands.toString().getBytes(StandardCharsets.US_ASCII));
+		out.flush();
+	}
+
+	/**
+	 * Liest die Ausgabe der Engine blockweise und zerlegt sie in Zeilen
+	 */
+	private void read() {
+		byte[] buffer = new byte[READ_BUFFER_SIZE];
+		byte[] line = new byte[READ_BUFFER_SIZE];
+		int length = 0;
+
+		try(InputStream in = process.getInputStream()) {
+			int read;
+			while((read = in.read(buffer)) >= 0) {
+				for(int i = 0; i < read; i++) {
+					byte b = buffer[i];
+					if(b == '\n') {
+						onLine(new String(line, 0, length, StandardCharsets.US_ASCII));
+						length = 0;
+					}
+					else if(b != '\r') {
+						if(length == line.length)
+							line = Arrays.copyOf(line, line.length * 2);
+						line[length++] = b;
+					}
+				}
+			}
+		}
+		catch(IOException e) {
+			if(process.isAlive())
+				e.printStackTrace();
+		}
+	}
+
+	private void onLine(String line) {
+		if(line.startsWith("info ")) {
+			if(isCurrent())
+				for(EngineListener lis : listener)
+					lis.onInfo(EngineInfo.parse(line));
+		}
+		else if(line.startsWith("bestmove")) {
+			String[] tokens = line.trim().split("\\s+");
+			if(!finishSearch() || tokens.length < 2)
+				return;
+
+			String ponder = tokens.length > 3 && tokens[2].equals("ponder") ? tokens[3] : null;
+			for(EngineListener lis : listener)
+				lis.onBestMove(tokens[1], ponder);
+		}
+	}
+
+	/**
+	 * @return true, wenn die aktuelle Ausgabe zur laufenden Suche gehört
+	 */
+	private synchronized boolean isCurrent() {
+		return staleSearches == 0;
+	}
+
+	/**
+	 * Ordnet ein "bestmove" einer Suche zu
+	 * @return true, wenn es das Ergebnis der laufenden Suche ist
+	 */
+	private synchronized boolean finishSearch() {
+		if(staleSearches > 0) {
+			staleSearches--;
+			return false;
+		}
+
+		boolean current = searching;
+		searching = false;
+		return current;
+	}
+}
@@ -0,0 +1,233 @@
+package de.fabiansiemens.hardwarecontroller.flow;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Flow.Publisher} für Werte der Hardware mit begrenztem Puffer pro Abonnent.
+ *
+ * {@link #submit(Object)} blockiert nie und wird im Thread des Scanners bzw. GPIO aufgerufen. Jeder Abonnent erhält die Werte
+ * über den {@link Executor} in seinem eigenen Tempo und nur so viele, wie er mit {@link Flow.Subscription#request(long)}
+ * angefordert hat. Was er noch nicht angefordert hat, wird je nach {@link Overflow} auf den neuesten Wert zusammengefasst oder
+ * bis zur Kapazität gepuffert, sodass langsame Abonnenten keine unbegrenzten Warteschlangen aufbauen. Ein Abonnent mit
+ * ausreichender Nachfrage erhält jeden Wert.
+ * @param <T> Art der Werte
+ */
+public class BoardPublisher<T> implements Flow.Publisher<T> {
+
+	/**
+	 * Höchstens so viele Werte werden in einem Durchlauf ausgeliefert, bevor der Executor für andere Abonnenten freigegeben wird
+	 */
+	private static final int BATCH_SIZE = 32;
+
+	private final Executor executor;
+	private final Overflow overflow;
+	private final int capacity;
+	private final List<BoardSubscription> subscriptions;
+	private volatile boolean closed;
+
+	/**
+	 * @param executor - Executor, in dem die Abonnenten benachrichtigt werden
+	 * @param overflow - Verhalten bei fehlender Nachfrage
+	 * @param capacity - höchste Anzahl gepufferter Werte pro Abonnent
+	 */
+	public BoardPublisher(Executor executor, Overflow overflow, int capacity) {
+		if(capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive");
+
+		this.executor = executor;
+		this.overflow = overflow;
+		this.capacity = capacity;
+		this.subscriptions = new CopyOnWriteArrayList<BoardSubscription>();
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		if(subscriber == null)
+			throw new NullPointerException("Subscriber must not be null");
+
+		BoardSubscription subscription = new BoardSubscription(subscriber);
+		if(closed)
+			subscription.done = true;
+		else
+			subscriptions.add(subscription);
+
+		//onSubscribe wird wie alle weiteren Signale im Executor aufgerufen
+		subscription.schedule();
+	}
+
+	/**
+	 * Veröffentlicht einen Wert an alle Abonnenten. Blockiert nicht.
+	 * @param item - Wert, nicht null
+	 */
+	public void submit(T item) {
+		if(closed)
+			return;
+
+		for(BoardSubscription subscription : subscriptions)
+			subscription.offer(item);
+	}
+
+	/**
+	 * @return true, wenn mindestens ein Abonnent vorhanden ist, z.B. um das Erzeugen von Werten zu sparen
+	 */
+	public boolean hasSubscribers() {
+		return !subscriptions.isEmpty();
+	}
+
+	public int getSubscriberCount() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * Beendet den Publisher. Abonnenten erhalten noch gepufferte Werte, danach onComplete.
+	 */
+	public void close() {
+		closed = true;
+		for(BoardSubscription subscription : subscriptions) {
+			subscription.done = true;
+			subscription.schedule();
+		}
+		subscriptions.clear();
+	}
+
+	/**
+	 * Abonnement eines Subscribers. Alle Signale an den Subscriber werden nacheinander in {@link #run()} ausgeführt,
+	 * der Zähler wip stellt sicher, dass höchstens ein Durchlauf gleichzeitig aktiv ist.
+	 */
+	private final class BoardSubscription implements Flow.Subscription, Runnable {
+
+		private final Flow.Subscriber<? super T> subscriber;
+		private final ArrayDeque<T> queue;
+		private final AtomicLong requested;
+		private final AtomicInteger wip;
+		private boolean subscribed;
+		private volatile boolean cancelled;
+		private volatile boolean done;
+		private volatile Throwable error;
+
+		BoardSubscription(Flow.Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+			this.queue = new ArrayDeque<T>();
+			this.requested = new AtomicLong();
+			this.wip = new AtomicInteger();
+		}
+
+		void offer(T item) {
+			synchronized(queue) {
+				//Ohne Nachfrage sind ältere Zustände veraltet, bevor sie abgeholt werden
+				if(overflow == Overflow.CONFLATE && requested.get() == 0)
+					queue.clear();
+				else if(queue.size() == capacity)
+					queue.poll();
+				queue.add(item);
+			}
+			schedule();
+		}
+
+		@Override
+		public void request(long n) {
+			if(n <= 0) {
+				error = new IllegalArgumentException("Requested " + n + " items, must be positive");
+				subscriptions.remove(this);
+			}
+			else
+				requested.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			subscriptions.remove(this);
+		}
+
+		void schedule() {
+			if(wip.getAndIncrement() == 0)
+				executor.execute(this);
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			int batch = 0;
+			do {
+				if(!subscribed) {
+					subscribed = true;
+					if(!signal(() -> subscriber.onSubscribe(this)))
+						return;
+				}
+
+				long demand = requested.get();
+				long emitted = 0;
+				while(emitted != demand && !cancelled) {
+					//Ein langsamer Abonnent mit ständiger Nachfrage darf den Executor nicht für sich behalten
+					if(batch == BATCH_SIZE) {
+						executor.execute(this);
+						return;
+					}
+
+					T item;
+					synchronized(queue) {
+						item = queue.poll();
+					}
+					if(item == null)
+						break;
+
+					//Nachfrage vor der Auslieferung verringern, damit während onNext eintreffende Snapshots zusammengefasst werden
+					if(demand != Long.MAX_VALUE)
+						requested.decrementAndGet();
+					if(!signal(() -> subscriber.onNext(item)))
+						return;
+					emitted++;
+					batch++;
+				}
+
+				if(cancelled)
+					return;
+
+				Throwable failure = error;
+				if(failure != null) {
+					cancelled = true;
+					subscriber.onError(failure);
+					return;
+				}
+
+				boolean empty;
+				synchronized(queue) {
+					empty = queue.isEmpty();
+				}
+				if(done && empty) {
+					cancelled = true;
+					subscriber.onComplete();
+					return;
+				}
+
+				missed = wip.addAndGet(-missed);
+			}
+			while(missed != 0);
+		}
+
+		/**
+		 * Ruft den Subscriber auf. Eine Exception des Subscribers beendet sein Abonnement.
+		 * @return false, wenn das Abonnement beendet wurde
+		 */
+		private boolean signal(Runnable signal) {
+			try {
+				signal.run();
+				return true;
+			}
+			catch(RuntimeException e) {
+				e.printStackTrace();
+				cancel();
+				return false;
+			}
+		}
+	}
+}
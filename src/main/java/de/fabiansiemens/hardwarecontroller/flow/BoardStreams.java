@@ -0,0 +1,117 @@
+package de.fabiansiemens.hardwarecontroller.flow;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+import de.fabiansiemens.hardwarecontroller.BoardListener;
+import de.fabiansiemens.hardwarecontroller.ButtonEvent;
+import de.fabiansiemens.hardwarecontroller.HardwareController;
+import de.fabiansiemens.hardwarecontroller.HardwareListener;
+import de.fabiansiemens.hardwarecontroller.SquareEvent;
+import de.fabiansiemens.hardwarecontroller.chess.MoveDetected;
+import de.fabiansiemens.hardwarecontroller.chess.MoveListener;
+import de.fabiansiemens.hardwarecontroller.sensor.ScanListener;
+import de.fabiansiemens.hardwarecontroller.sensor.ScanResult;
+
+/**
+ * Stellt die Daten der Hardware als {@link Flow.Publisher} bereit: Belegungs-Snapshots jedes Scans, Änderungen einzelner
+ * Felder, erkannte Züge und Gesten des Confirm-Move Knopfs.
+ *
+ * Ein Abonnent mit offener Nachfrage erhält jeden Scan. Fordert er nichts an, werden Snapshots zusammengefasst und er erhält
+ * bei der nächsten Anforderung den neuesten Scan statt einer Warteschlange veralteter. Ereignisse werden pro Abonnent bis
+ * {@link #EVENT_CAPACITY} gepuffert. Die Listener dieser Klasse kehren sofort zurück und halten weder Scanner noch GPIO auf.
+ */
+public class BoardStreams implements ScanListener, BoardListener, HardwareListener, MoveListener {
+
+	/**
+	 * Gepufferte Ereignisse pro Abonnent, bevor die ältesten verworfen werden
+	 */
+	public static final int EVENT_CAPACITY = 256;
+	/**
+	 * Gepufferte Snapshots pro Abonnent mit offener Nachfrage, z.B. wenn sein Thread kurz nicht zum Zug kommt
+	 */
+	public static final int SNAPSHOT_CAPACITY = 64;
+
+	private final BoardPublisher<ScanResult> snapshots;
+	private final BoardPublisher<SquareEvent> squares;
+	private final BoardPublisher<MoveDetected> moves;
+	private final BoardPublisher<ButtonEvent> buttons;
+
+	/**
+	 * @param executor - Executor, in dem die Abonnenten benachrichtigt werden
+	 */
+	public BoardStreams(Executor executor) {
+		this.snapshots = new BoardPublisher<ScanResult>(executor, Overflow.CONFLATE, SNAPSHOT_CAPACITY);
+		this.squares = new BoardPublisher<SquareEvent>(executor, Overflow.DROP_OLDEST, EVENT_CAPACITY);
+		this.moves = new BoardPublisher<MoveDetected>(executor, Overflow.DROP_OLDEST, EVENT_CAPACITY);
+		this.buttons = new BoardPublisher<ButtonEvent>(executor, Overflow.DROP_OLDEST, EVENT_CAPACITY);
+	}
+
+	/**
+	 * @return Ergebnis jedes Scans, auch ohne Änderung der Belegung. Nicht abgeholte Snapshots werden durch neuere ersetzt.
+	 */
+	public Flow.Publisher<ScanResult> snapshots() {
+		return snapshots;
+	}
+
+	/**
+	 * @return Änderungen einzelner Felder
+	 */
+	public Flow.Publisher<SquareEvent> squareEvents() {
+		return squares;
+	}
+
+	/**
+	 * @return vom Zugdetektor erkannte Züge
+	 */
+	public Flow.Publisher<MoveDetected> moves() {
+		return moves;
+	}
+
+	/**
+	 * @return Flanken und Gesten des Confirm-Move Knopfs
+	 */
+	public Flow.Publisher<ButtonEvent> buttonEvents() {
+		return buttons;
+	}
+
+	@Override
+	public void onScan(ScanResult result) {
+		snapshots.submit(result);
+	}
+
+	@Override
+	public void onBoardChanged(HardwareController controller, ScanResult result) {
+		//Wird bereits über onScan veröffentlicht
+	}
+
+	@Override
+	public void onSquareChanged(HardwareController controller, SquareEvent event) {
+		squares.submit(event);
+	}
+
+	@Override
+	public void onConfirmButtonPressed(HardwareController controller) {
+		//Wird über onButtonEvent als PRESS veröffentlicht
+	}
+
+	@Override
+	public void onButtonEvent(HardwareController controller, ButtonEvent event) {
+		buttons.submit(event);
+	}
+
+	@Override
+	public void onMoveDetected(MoveDetected move) {
+		moves.submit(move);
+	}
+
+	/**
+	 * Beendet alle Streams, die Abonnenten erhalten noch gepufferte Werte und danach onComplete
+	 */
+	public void close() {
+		snapshots.close();
+		squares.close();
+		moves.close();
+		buttons.close();
+	}
+}
@@ -0,0 +1,18 @@
+package de.fabiansiemens.hardwarecontroller.flow;
+
+/**
+ * Verhalten eines {@link BoardPublisher}, wenn ein Abonnent weniger anfordert als veröffentlicht wird
+ */
+public enum Overflow {
+	/**
+	 * Solange der Abonnent Nachfrage hat, werden Werte bis zur Kapazität gepuffert und alle ausgeliefert. Ohne Nachfrage wird
+	 * nur der neueste Wert vorgehalten, ältere werden ersetzt. Für Zustände wie Belegungs-Snapshots, bei denen ein langsamer
+	 * Abonnent nur den aktuellen Stand braucht.
+	 */
+	CONFLATE,
+	/**
+	 * Werte werden bis zur Kapazität gepuffert, bei vollem Puffer wird der älteste verworfen. Für Ereignisse wie Feldänderungen
+	 * oder Züge, die ein Abonnent möglichst vollständig erhalten soll.
+	 */
+	DROP_OLDEST
+}
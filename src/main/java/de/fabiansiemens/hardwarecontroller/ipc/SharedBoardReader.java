@@ -0,0 +1,208 @@
+package de.fabiansiemens.hardwarecontroller.ipc;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+
+/**
+ * Liest den von {@link SharedBoardState} veröffentlichten Zustand in einem anderen Prozess und fordert LED Bilder an.
+ *
+ * {@link #read()} kopiert einen konsistenten Zustand in die Felder dieses Objekts, ohne Systemaufruf und ohne Allokation.
+ * Die Getter liefern danach den gelesenen Zustand, die zurückgegebenen Bitfelder werden beim nächsten Lesen überschrieben.
+ * Die Abbildung der Datei wird freigegeben, sobald das Objekt nicht mehr referenziert wird. Instanzen dieser Klasse sind nicht
+ * threadsicher.
+ */
+public class SharedBoardReader {
+
+	private final MappedByteBuffer buffer;
+	private final BitGrid occupancy;
+	private final BitGrid ledFrame;
+	private final int ledOffset;
+	private final int commandOffset;
+	private long scanSequence;
+	private long timestampNanos;
+	private boolean buttonPressed;
+	private int buttonGesture;
+	private long buttonEvents;
+	private long ledFrames;
+
+	/**
+	 * Öffnet eine von {@link SharedBoardState} erstellte Datei
+	 * @throws IOException wenn die Datei nicht geöffnet werden kann oder kein unterstütztes Format hat
+	 */
+	public SharedBoardReader(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+		}
+		buffer.order(ByteOrder.nativeOrder());
+
+		if(buffer.capacity() < SharedBoardState.GRID || buffer.getInt(SharedBoardState.MAGIC_OFFSET) != SharedBoardState.MAGIC)
+			throw new IOException("Not a shared board state file: " + path);
+
+		//Der Kopf wird wie der Zustand unter dem Seqlock gelesen
+		int[] header = new int[5];
+		long deadline = System.nanoTime() + SharedBoardState.LOCK_TIMEOUT_MILLIS * 1_000_000L;
+		while(true) {
+			long seq = (long) SharedBoardState.LONG.getAcquire(buffer, SharedBoardState.STATE_SEQ);
+			if((seq & 1) == 0) {
+				header[0] = buffer.getInt(SharedBoardState.VERSION_OFFSET);
+				header[1] = buffer.getInt(SharedBoardState.WIDTH);
+				header[2] = buffer.getInt(SharedBoardState.HEIGHT);
+				header[3] = buffer.getInt(SharedBoardState.LED_WIDTH);
+				header[4] = buffer.getInt(SharedBoardState.LED_HEIGHT);
+
+				VarHandle.loadLoadFence();
+				if((long) SharedBoardState.LONG.getOpaque(buffer, SharedBoardState.STATE_SEQ) == seq)
+					break;
+			}
+
+			if(System.nanoTime() - deadline > 0)
+				throw new IOException("Shared board state is locked by a writer: " + path);
+			Thread.onSpinWait();
+		}
+
+		if(header[0] != SharedBoardState.VERSION)
+			throw new IOException("Not a shared board state file: " + path);
+
+		this.occupancy = new BitGrid(header[1], header[2]);
+		this.ledFrame = new BitGrid(header[3], header[4]);
+		this.ledOffset = SharedBoardState.GRID + occupancy.getWordCount() * 8;
+		this.commandOffset = SharedBoardState.align(ledOffset + ledFrame.getWordCount() * 8);
+
+		if(buffer.capacity() < commandOffset + SharedBoardState.CMD_FRAME + ledFrame.getWordCount() * 8)
+			throw new IOException("Shared board state file is truncated: " + path);
+	}
+
+	/**
+	 * Liest einen konsistenten Zustand. Wird gerade geschrieben, wird höchstens {@link SharedBoardState#LOCK_TIMEOUT_MILLIS}
+	 * gewartet und erneut gelesen.
+	 * @return Seqlock Zähler des gelesenen Zustands, ändert sich bei jeder Veröffentlichung. -1, wenn in der Wartezeit kein
+	 * konsistenter Zustand gelesen werden konnte, z.B. weil der Controller während des Schreibens beendet wurde. Die Getter
+	 * liefern dann eventuell einen unvollständigen Zustand.
+	 */
+	public long read() {
+		long deadline = System.nanoTime() + SharedBoardState.LOCK_TIMEOUT_MILLIS * 1_000_000L;
+		while(true) {
+			long seq = (long) SharedBoardState.LONG.getAcquire(buffer, SharedBoardState.STATE_SEQ);
+			if((seq & 1) != 0) {
+				if(System.nanoTime() - deadline > 0)
+					return -1;
+				Thread.onSpinWait();
+				continue;
+			}
+
+			scanSequence = buffer.getLong(SharedBoardState.SCAN_SEQUENCE);
+			timestampNanos = buffer.getLong(SharedBoardState.TIMESTAMP);
+			buttonPressed = buffer.getInt(SharedBoardState.BUTTON_PRESSED) != 0;
+			buttonGesture = buffer.getInt(SharedBoardState.BUTTON_GESTURE);
+			buttonEvents = buffer.getLong(SharedBoardState.BUTTON_EVENTS);
+			ledFrames = buffer.getLong(SharedBoardState.LED_FRAMES);
+			for(int i = 0; i < occupancy.getWordCount(); i++)
+				occupancy.setWord(i, buffer.getLong(SharedBoardState.GRID + i * 8));
+			for(int i = 0; i < ledFrame.getWordCount(); i++)
+				ledFrame.setWord(i, buffer.getLong(ledOffset + i * 8));
+
+			VarHandle.loadLoadFence();
+			if((long) SharedBoardState.LONG.getOpaque(buffer, SharedBoardState.STATE_SEQ) == seq)
+				return seq;
+			if(System.nanoTime() - deadline > 0)
+				return -1;
+		}
+	}
+
+	/**
+	 * @return Seqlock Zähler des aktuellen Zustands, ohne ihn zu lesen, z.B. um günstig auf Änderungen zu prüfen
+	 */
+	public long getVersion() {
+		return (long) SharedBoardState.LONG.getAcquire(buffer, SharedBoardState.STATE_SEQ);
+	}
+
+	/**
+	 * Fordert ein Bild auf der LED Matrix an. Der Controller übernimmt es innerhalb weniger Millisekunden, ein noch nicht
+	 * übernommenes Bild wird ersetzt. Mehrere schreibende Prozesse werden über den Seqlock des Befehlsbereichs ausgeschlossen.
+	 * Auf einen anderen Schreiber wird höchstens {@link SharedBoardState#LOCK_TIMEOUT_MILLIS} gewartet. Wurde er während des
+	 * Schreibens beendet, bleibt der Befehlsbereich bis zum nächsten Start des Controllers gesperrt.
+	 * @param frame - Bild in der Größe der LED Matrix
+	 * @return Nummer des Befehls, siehe {@link #isAcknowledged(long)}, -1 wenn der Befehlsbereich nicht frei wurde
+	 */
+	public long requestLedFrame(BitGrid frame) {
+		if(frame.getWidth() != ledFrame.getWidth() || frame.getHeight() != ledFrame.getHeight())
+			throw new IllegalArgumentException("Frame must be " + ledFrame.getWidth() + "x" + ledFrame.getHeight());
+
+		int seqOffset = commandOffset + SharedBoardState.CMD_SEQ;
+		long deadline = System.nanoTime() + SharedBoardState.LOCK_TIMEOUT_MILLIS * 1_000_000L;
+		long seq;
+		while(true) {
+			seq = (long) SharedBoardState.LONG.getVolatile(buffer, seqOffset);
+			if((seq & 1) == 0 && SharedBoardState.LONG.compareAndSet(buffer, seqOffset, seq, seq + 1))
+				break;
+			if(System.nanoTime() - deadline > 0)
+				return -1;
+			Thread.onSpinWait();
+		}
+
+		for(int i = 0; i < frame.getWordCount(); i++)
+			buffer.putLong(commandOffset + SharedBoardState.CMD_FRAME + i * 8, frame.getWord(i));
+
+		SharedBoardState.LONG.setRelease(buffer, seqOffset, seq + 2);
+		return seq + 2;
+	}
+
+	/**
+	 * @param command - Nummer aus {@link #requestLedFrame(BitGrid)}
+	 * @return true, wenn der Controller diesen oder einen späteren Befehl übernommen hat
+	 */
+	public boolean isAcknowledged(long command) {
+		return (long) SharedBoardState.LONG.getAcquire(buffer, commandOffset + SharedBoardState.CMD_ACK) >= command;
+	}
+
+	/**
+	 * @return gelesene Belegung, wird beim nächsten {@link #read()} überschrieben
+	 */
+	public BitGrid getOccupancy() {
+		return occupancy;
+	}
+
+	/**
+	 * @return gelesenes, zuletzt angezeigtes LED Bild, wird beim nächsten {@link #read()} überschrieben
+	 */
+	public BitGrid getLedFrame() {
+		return ledFrame;
+	}
+
+	public long getScanSequence() {
+		return scanSequence;
+	}
+
+	/**
+	 * @return Zeitpunkt der letzten Veröffentlichung (System.nanoTime bzw. CLOCK_MONOTONIC)
+	 */
+	public long getTimestampNanos() {
+		return timestampNanos;
+	}
+
+	public boolean isButtonPressed() {
+		return buttonPressed;
+	}
+
+	/**
+	 * @return Ordinal der letzten {@link de.fabiansiemens.hardwarecontroller.ButtonGesture}, -1 wenn es noch keine gab
+	 */
+	public int getButtonGesture() {
+		return buttonGesture;
+	}
+
+	public long getButtonEvents() {
+		return buttonEvents;
+	}
+
+	public long getLedFrames() {
+		return ledFrames;
+	}
+}
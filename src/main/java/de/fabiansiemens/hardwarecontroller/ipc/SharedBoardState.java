@@ -0,0 +1,273 @@
+package de.fabiansiemens.hardwarecontroller.ipc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+import de.fabiansiemens.hardwarecontroller.BoardListener;
+import de.fabiansiemens.hardwarecontroller.ButtonEvent;
+import de.fabiansiemens.hardwarecontroller.ButtonGesture;
+import de.fabiansiemens.hardwarecontroller.HardwareController;
+import de.fabiansiemens.hardwarecontroller.HardwareListener;
+import de.fabiansiemens.hardwarecontroller.led.LedMatrixController;
+import de.fabiansiemens.hardwarecontroller.sensor.ScanResult;
+
+/**
+ * Veröffentlicht den Zustand des Bretts in einer kleinen, in den Speicher abgebildeten Datei für andere Prozesse auf dem Pi,
+ * z.B. GUI oder Engine. Leser greifen ohne Kopie und ohne Systemaufruf pro Lesevorgang direkt auf den Speicher zu.
+ *
+ * Der Zustandsbereich wird über ein Seqlock geschützt: Vor dem Schreiben wird der Zähler {@link #STATE_SEQ} ungerade, danach
+ * wieder gerade. Ein Leser liest den Zähler, die Daten und den Zähler erneut und wiederholt den Vorgang, wenn der Zähler
+ * ungerade war oder sich verändert hat. Der Befehlsbereich funktioniert umgekehrt: ein fremder Prozess schreibt ein LED Bild
+ * unter seinem eigenen Seqlock, der Controller fragt den Zähler regelmäßig ab, übernimmt das Bild und bestätigt es in
+ * {@link #CMD_ACK}. Alle Werte liegen in nativer Bytereihenfolge, die Zähler sind auf 8 Byte ausgerichtet.
+ * Auch die Größenangaben im Kopf werden unter dem Seqlock des Zustands geschrieben. Leser warten höchstens
+ * {@link #LOCK_TIMEOUT_MILLIS} auf einen Seqlock, damit ein während des Schreibens beendeter Prozess sie nicht blockiert.
+ *
+ * <pre>
+ *   0  i32 Magic "BRD1"      4  i32 Version
+ *   8  i32 Brett Breite     12  i32 Brett Höhe
+ *  16  i32 LED Breite       20  i32 LED Höhe
+ *  24  i32 Wörter Belegung  28  i32 Wörter LED Bild
+ *  64  i64 Seqlock Zustand
+ *  72  i64 Scan Nummer      80  i64 Zeitpunkt der letzten Änderung (CLOCK_MONOTONIC, ns)
+ *  88  i32 Knopf gedrückt   92  i32 letzte Geste (Ordinal von ButtonGesture, -1 = keine)
+ *  96  i64 Anzahl Knopf-Ereignisse
+ * 104  i64 Anzahl angezeigter LED Bilder
+ * 112  i64[] Belegung (Bit y * Breite + x), danach i64[] angezeigtes LED Bild
+ * CMD (auf 64 Byte ausgerichtet): i64 Seqlock Befehl, i64 bestätigte Befehlsnummer, i64[] angefordertes LED Bild
+ * </pre>
+ */
+public class SharedBoardState implements Closeable, BoardListener, HardwareListener {
+
+	/**
+	 * Standard Pfad, /dev/shm liegt im Arbeitsspeicher
+	 */
+	public static final String DEFAULT_PATH = "/dev/shm/chessboard";
+
+	public static final int MAGIC = 0x42524431;
+	public static final int VERSION = 1;
+
+	static final int MAGIC_OFFSET = 0;
+	static final int VERSION_OFFSET = 4;
+	static final int WIDTH = 8;
+	static final int HEIGHT = 12;
+	static final int LED_WIDTH = 16;
+	static final int LED_HEIGHT = 20;
+	static final int GRID_WORDS = 24;
+	static final int LED_WORDS = 28;
+	static final int STATE_SEQ = 64;
+	static final int SCAN_SEQUENCE = 72;
+	static final int TIMESTAMP = 80;
+	static final int BUTTON_PRESSED = 88;
+	static final int BUTTON_GESTURE = 92;
+	static final int BUTTON_EVENTS = 96;
+	static final int LED_FRAMES = 104;
+	static final int GRID = 112;
+
+	/**
+	 * Abstand der Befehlsfelder vom Beginn des Befehlsbereichs
+	 */
+	static final int CMD_SEQ = 0;
+	static final int CMD_ACK = 8;
+	static final int CMD_FRAME = 16;
+
+	/**
+	 * Maximale Wartezeit auf einen ungeraden Seqlock, danach gilt der schreibende Prozess als abgebrochen
+	 */
+	public static final long LOCK_TIMEOUT_MILLIS = 100;
+
+	/**
+	 * Zugriff auf die Zähler mit Speicherordnung, erfordert einen direkten Puffer und ausgerichtete Offsets
+	 */
+	static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	/**
+	 * Intervall, in dem der Befehlsbereich abgefragt wird
+	 */
+	private static final long COMMAND_POLL_MILLIS = 10;
+
+	private final MappedByteBuffer buffer;
+	private final LedMatrixController leds;
+	private final BitGrid command;
+	private final int ledOffset;
+	private final int commandOffset;
+	private final ScheduledExecutorService poller;
+	private long buttonEvents;
+	private long ledFrames;
+
+	/**
+	 * Erstellt oder überschreibt die Datei und veröffentlicht den aktuellen Zustand
+	 * @param path - Pfad der Datei, z.B. {@link #DEFAULT_PATH}
+	 * @param occupancy - aktuelle Belegung
+	 * @param leds - LED Matrix, deren angezeigte Bilder veröffentlicht und die über den Befehlsbereich angesteuert wird
+	 * @throws IOException wenn die Datei nicht erstellt werden kann
+	 */
+	public SharedBoardState(Path path, BitGrid occupancy, LedMatrixController leds) throws IOException {
+		this.leds = leds;
+		this.command = new BitGrid(leds.getWidth(), leds.getHeight());
+		this.ledOffset = GRID + occupancy.getWordCount() * 8;
+		this.commandOffset = align(ledOffset + command.getWordCount() * 8);
+
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			int size = commandOffset + CMD_FRAME + command.getWordCount() * 8;
+			channel.truncate(size);
+			//Die Abbildung bleibt nach dem Schließen des Kanals gültig
+			this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+		buffer.order(ByteOrder.nativeOrder());
+
+		//Zähler einer vorherigen Instanz fortsetzen, damit laufende Leser konsistent bleiben
+		long seq = (long) LONG.getVolatile(buffer, STATE_SEQ);
+		LONG.setVolatile(buffer, STATE_SEQ, (seq | 1) + 1);
+
+		beginWrite();
+		buffer.putInt(VERSION_OFFSET, VERSION);
+		buffer.putInt(WIDTH, occupancy.getWidth());
+		buffer.putInt(HEIGHT, occupancy.getHeight());
+		buffer.putInt(LED_WIDTH, command.getWidth());
+		buffer.putInt(LED_HEIGHT, command.getHeight());
+		buffer.putInt(GRID_WORDS, occupancy.getWordCount());
+		buffer.putInt(LED_WORDS, command.getWordCount());
+		buffer.putInt(BUTTON_GESTURE, -1);
+		putWords(GRID, occupancy);
+		putWords(ledOffset, leds.getGrid());
+		endWrite();
+
+		//Ein ungerader Befehlszähler stammt von einem abgebrochenen Schreiber und wird freigegeben, ältere Befehle gelten als bestätigt
+		long commandSeq = (long) LONG.getVolatile(buffer, commandOffset + CMD_SEQ);
+		if((commandSeq & 1) != 0)
+			LONG.setVolatile(buffer, commandOffset + CMD_SEQ, ++commandSeq);
+		LONG.setRelease(buffer, commandOffset + CMD_ACK, commandSeq);
+		buffer.putInt(MAGIC_OFFSET, MAGIC);
+
+		this.poller = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "SharedBoardState");
+			thread.setDaemon(true);
+			return thread;
+		});
+		poller.scheduleWithFixedDelay(this::pollCommand, COMMAND_POLL_MILLIS, COMMAND_POLL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void onBoardChanged(HardwareController controller, ScanResult result) {
+		publishOccupancy(result.getGrid(), result.getSequence());
+	}
+
+	@Override
+	public void onConfirmButtonPressed(HardwareController controller) {
+		//Wird über onButtonEvent als PRESS veröffentlicht
+	}
+
+	@Override
+	public void onButtonEvent(HardwareController controller, ButtonEvent event) {
+		publishButton(event);
+	}
+
+	/**
+	 * Veröffentlicht eine neue Belegung
+	 * @param occupancy - Belegung in der Größe des Bretts
+	 * @param sequence - Scan Nummer
+	 */
+	public synchronized void publishOccupancy(BitGrid occupancy, long sequence) {
+		beginWrite();
+		buffer.putLong(SCAN_SEQUENCE, sequence);
+		putWords(GRID, occupancy);
+		endWrite();
+	}
+
+	/**
+	 * Veröffentlicht den Zustand des Knopfs nach einem Ereignis
+	 */
+	public synchronized void publishButton(ButtonEvent event) {
+		beginWrite();
+		if(event.getGesture() == ButtonGesture.PRESS)
+			buffer.putInt(BUTTON_PRESSED, 1);
+		else if(event.getGesture() == ButtonGesture.RELEASE)
+			buffer.putInt(BUTTON_PRESSED, 0);
+		buffer.putInt(BUTTON_GESTURE, event.getGesture().ordinal());
+		buffer.putLong(BUTTON_EVENTS, ++buttonEvents);
+		endWrite();
+	}
+
+	/**
+	 * Veröffentlicht ein auf der LED Matrix angezeigtes Bild, wird von {@link de.fabiansiemens.hardwarecontroller.led.MAX7219#addFlushListener}
+	 * nach jeder vollständigen Übertragung aufgerufen
+	 */
+	public synchronized void publishLedFrame(BitGrid frame) {
+		beginWrite();
+		buffer.putLong(LED_FRAMES, ++ledFrames);
+		putWords(ledOffset, frame);
+		endWrite();
+	}
+
+	/**
+	 * Übernimmt ein angefordertes LED Bild, wenn seit dem letzten Aufruf ein neuer Befehl geschrieben wurde.
+	 * Die Abfrage kostet nur einen Speicherzugriff und wird daher regelmäßig ausgeführt.
+	 */
+	private void pollCommand() {
+		long seq = (long) LONG.getAcquire(buffer, commandOffset + CMD_SEQ);
+		if((seq & 1) != 0 || seq == (long) LONG.getOpaque(buffer, commandOffset + CMD_ACK))
+			return;
+
+		for(int i = 0; i < command.getWordCount(); i++)
+			command.setWord(i, buffer.getLong(commandOffset + CMD_FRAME + i * 8));
+
+		//Wurde währenddessen ein neuer Befehl begonnen, wird er beim nächsten Mal übernommen
+		VarHandle.loadLoadFence();
+		if((long) LONG.getOpaque(buffer, commandOffset + CMD_SEQ) != seq)
+			return;
+
+		try {
+			leds.overwriteBuffer(command);
+			leds.refresh();
+		}
+		catch(RuntimeException e) {
+			e.printStackTrace();
+		}
+		LONG.setRelease(buffer, commandOffset + CMD_ACK, seq);
+	}
+
+	private void beginWrite() {
+		long seq = (long) LONG.getOpaque(buffer, STATE_SEQ);
+		LONG.setOpaque(buffer, STATE_SEQ, seq + 1);
+		VarHandle.storeStoreFence();
+	}
+
+	private void endWrite() {
+		buffer.putLong(TIMESTAMP, System.nanoTime());
+		long seq = (long) LONG.getOpaque(buffer, STATE_SEQ);
+		LONG.setRelease(buffer, STATE_SEQ, seq + 1);
+	}
+
+	private void putWords(int offset, BitGrid grid) {
+		for(int i = 0; i < grid.getWordCount(); i++)
+			buffer.putLong(offset + i * 8, grid.getWord(i));
+	}
+
+	/**
+	 * @return Offset auf die nächste 64 Byte Grenze aufgerundet
+	 */
+	static int align(int offset) {
+		return (offset + 63) & ~63;
+	}
+
+	/**
+	 * Beendet die Abfrage des Befehlsbereichs. Die Datei bleibt mit dem letzten Zustand bestehen.
+	 */
+	@Override
+	public void close() {
+		poller.shutdownNow();
+		buffer.force();
+	}
+}
@@ -0,0 +1,291 @@
+package de.fabiansiemens.hardwarecontroller.led;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+
+/**
+ * Compiled {@link Timeline}: an array of frames with their durations for a display of a fixed size.
+ *
+ * Each frame consists of the pixels forced on, the pixels forced off and an optional brightness. Playing a table only walks
+ * over these arrays and combines every frame with the display content at the start of the playback, nothing is recomputed.
+ * Consecutive equal frames are merged during compilation. Tables are cached by timeline and display size, the least recently
+ * used tables are dropped beyond {@link #CACHE_SIZE}.
+ *
+ * Tables can be stored in a compact binary format, e.g. to ship precompiled effects:
+ * <pre>
+ * i32 Magic "LFT1", u8 width, u8 height, i32 frame count
+ * per frame: i32 duration in milliseconds, i8 brightness (-1 = unchanged), i64[] pixels on, i64[] pixels off
+ * </pre>
+ */
+public final class FrameTable {
+
+    public static final int MAGIC = 0x4C465431;
+
+    /**
+     * Maximum number of cached tables
+     */
+    public static final int CACHE_SIZE = 64;
+
+    private static final Map<String, FrameTable> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, FrameTable>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, FrameTable> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private final int width;
+    private final int height;
+    private final int words;
+    private final long[] on;
+    private final long[] off;
+    private final int[] millis;
+    private final byte[] brightness;
+    private final long totalMillis;
+
+    private FrameTable(int width, int height, long[] on, long[] off, int[] millis, byte[] brightness) {
+        this.width = width;
+        this.height = height;
+        this.words = new BitGrid(width, height).getWordCount();
+        this.on = on;
+        this.off = off;
+        this.millis = millis;
+        this.brightness = brightness;
+
+        long total = 0;
+        for (int duration : millis) {
+            total += duration;
+        }
+        this.totalMillis = total;
+    }
+
+    /**
+     * Returns the cached table of a timeline or compiles it.
+     *
+     * @param timeline Timeline to compile
+     * @param width    Display width
+     * @param height   Display height
+     * @return Frame table
+     */
+    static FrameTable of(Timeline timeline, int width, int height) {
+        final String key = width + "x" + height + " " + timeline;
+        FrameTable table = CACHE.get(key);
+        if (table == null) {
+            table = compile(timeline, width, height);
+            CACHE.put(key, table);
+        }
+        return table;
+    }
+
+    private static FrameTable compile(Timeline timeline, int width, int height) {
+        final List<Timeline.Segment> segments = new ArrayList<>();
+        timeline.compile(segments, width, height);
+
+        // Merge consecutive equal frames
+        final List<Timeline.Segment> merged = new ArrayList<>();
+        for (Timeline.Segment segment : segments) {
+            final int last = merged.size() - 1;
+            if (last >= 0 && sameFrame(merged.get(last), segment)) {
+                merged.set(last, segment.withMillis(merged.get(last).millis + segment.millis));
+            } else {
+                merged.add(segment);
+            }
+        }
+
+        final int words = new BitGrid(width, height).getWordCount();
+        final long[] on = new long[merged.size() * words];
+        final long[] off = new long[merged.size() * words];
+        final int[] millis = new int[merged.size()];
+        final byte[] brightness = new byte[merged.size()];
+        for (int i = 0; i < merged.size(); i++) {
+            final Timeline.Segment segment = merged.get(i);
+            for (int w = 0; w < words; w++) {
+                on[i * words + w] = segment.on.getWord(w);
+                off[i * words + w] = segment.off.getWord(w);
+            }
+            millis[i] = segment.millis;
+            brightness[i] = (byte) segment.brightness;
+        }
+        return new FrameTable(width, height, on, off, millis, brightness);
+    }
+
+    private static boolean sameFrame(Timeline.Segment a, Timeline.Segment b) {
+        return a.brightness == b.brightness && a.on.equals(b.on) && a.off.equals(b.off);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of frames.
+     *
+     * @return Number of frames
+     */
+    public int size() {
+        return millis.length;
+    }
+
+    /**
+     * Returns the duration of a frame.
+     *
+     * @param index Frame index
+     * @return Duration in milliseconds
+     */
+    public int getMillis(int index) {
+        return millis[index];
+    }
+
+    /**
+     * Returns the duration of the whole table.
+     *
+     * @return Duration in milliseconds
+     */
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    /**
+     * Combines a frame with the given display content.
+     *
+     * @param index  Frame index
+     * @param base   Display content at the start of the playback
+     * @param target Receives the frame, may be the same size as base
+     * @return target
+     */
+    public BitGrid frame(int index, BitGrid base, BitGrid target) {
+        final int offset = index * words;
+        for (int w = 0; w < words; w++) {
+            target.setWord(w, (base.getWord(w) & ~off[offset + w]) | on[offset + w]);
+        }
+        return target;
+    }
+
+    /**
+     * Plays the table on the given display in the calling thread and restores the display content and brightness afterwards.
+     * Frames are shown at absolute deadlines from the start, so delays of single refreshes do not add up.
+     * Every frame is written with {@link MAX7219#flushNow()}, a frame rate limit or refresh executor does not delay it.
+     * Brightness changes of the table are only applied if the brightness of the display is known
+     * ({@link MAX7219#getBrightness()}), otherwise it could not be restored and the frames are shown at the current brightness.
+     * An interrupt stops the playback early and keeps the interrupt flag set.
+     *
+     * @param leds Display with the size of this table
+     */
+    public void play(LedMatrixController leds) {
+        if (leds.getWidth() != width || leds.getHeight() != height) {
+            throw new IllegalArgumentException("Frame table is compiled for " + width + "x" + height + " pixels");
+        }
+
+        final BitGrid base = leds.getGrid().copy();
+        final BitGrid frame = new BitGrid(width, height);
+        final int originalBrightness = leds.getBrightness();
+        final boolean brightnessKnown = originalBrightness >= 0;
+        boolean brightnessChanged = false;
+        long deadline = System.nanoTime();
+
+        try {
+            for (int i = 0; i < millis.length; i++) {
+                leds.overwriteBuffer(frame(i, base, frame));
+                if (brightness[i] >= 0 && brightnessKnown) {
+                    leds.setBrightness(brightness[i]);
+                    brightnessChanged = true;
+                }
+                leds.flushNow();
+
+                deadline += millis[i] * 1_000_000L;
+                for (long wait = deadline - System.nanoTime(); wait > 0; wait = deadline - System.nanoTime()) {
+                    LockSupport.parkNanos(this, wait);
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                }
+            }
+        } finally {
+            leds.overwriteBuffer(base);
+            if (brightnessChanged) {
+                leds.setBrightness(originalBrightness);
+            }
+            leds.flushNow();
+        }
+    }
+
+    /**
+     * Writes the table in the binary format.
+     *
+     * @param out Target stream, is not closed
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(width);
+        data.writeByte(height);
+        data.writeInt(millis.length);
+        for (int i = 0; i < millis.length; i++) {
+            data.writeInt(millis[i]);
+            data.writeByte(brightness[i]);
+            for (int w = 0; w < words; w++) {
+                data.writeLong(on[i * words + w]);
+            }
+            for (int w = 0; w < words; w++) {
+                data.writeLong(off[i * words + w]);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a table written with {@link #write(OutputStream)}.
+     *
+     * @param in Source stream, is not closed
+     * @return Frame table
+     * @throws IOException if the stream cannot be read or is not a frame table
+     */
+    public static FrameTable read(InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a frame table");
+        }
+
+        final int width = data.readUnsignedByte();
+        final int height = data.readUnsignedByte();
+        final int count = data.readInt();
+        final int words = new BitGrid(width, height).getWordCount();
+        if (count < 0 || (long) count * words > Integer.MAX_VALUE) {
+            throw new IOException("Invalid frame count " + count);
+        }
+
+        final long[] on = new long[count * words];
+        final long[] off = new long[count * words];
+        final int[] millis = new int[count];
+        final byte[] brightness = new byte[count];
+        for (int i = 0; i < count; i++) {
+            millis[i] = data.readInt();
+            brightness[i] = data.readByte();
+            for (int w = 0; w < words; w++) {
+                on[i * words + w] = data.readLong();
+            }
+            for (int w = 0; w < words; w++) {
+                off[i * words + w] = data.readLong();
+            }
+        }
+        return new FrameTable(width, height, on, off, millis, brightness);
+    }
+}
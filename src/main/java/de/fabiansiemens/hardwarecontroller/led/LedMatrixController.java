@@ -11,7 +11,9 @@ import com.pi4j.context.Context;
 import com.pi4j.io.spi.Spi;
 import com.pi4j.io.spi.SpiConfig;
 
+import de.fabiansiemens.hardwarecontroller.BitGrid;
 import de.fabiansiemens.hardwarecontroller.led.print.Direction;
+import de.fabiansiemens.hardwarecontroller.led.print.MessageTemplate;
 import de.fabiansiemens.hardwarecontroller.led.print.Symbol;
 
 /**
@@ -35,6 +37,20 @@ public class LedMatrixController extends MAX7219 {
      * Default direction for scroll operations
      */
     protected static final Direction DEFAULT_SCROLL_DIRECTION = Direction.LEFT;
+    /**
+     * Default number of empty columns between two proportional glyphs
+     */
+    protected static final int DEFAULT_LETTER_SPACING = 1;
+    /**
+     * Number of empty columns scrolled for a proportional glyph without pixels, e.g. a space
+     */
+    protected static final int SPACE_WIDTH = 3;
+
+    /**
+     * Horizontally scrolled text uses the tight width of each glyph instead of all 8 columns, see {@link Symbol#getGlyphWidth()}
+     */
+    private volatile boolean proportional = true;
+    private volatile int letterSpacing = DEFAULT_LETTER_SPACING;
 
     /**
      * Creates a new LED matrix component with the default channel and baud rate.
@@ -53,7 +69,20 @@ public class LedMatrixController extends MAX7219 {
      * @param baud    SPI baud rate
      */
     public LedMatrixController(Context pi4j, int channel, int baud) {
-        super(pi4j.create(buildSpiConfig(pi4j, channel, baud)));
+        this(pi4j, channel, baud, 1, 1);
+    }
+
+    /**
+     * Creates a new LED matrix component for a display of several daisy-chained 8x8 modules.
+     *
+     * @param pi4j     Pi4J context
+     * @param channel  SPI channel
+     * @param baud     SPI baud rate
+     * @param modulesX Number of modules horizontally
+     * @param modulesY Number of modules vertically
+     */
+    public LedMatrixController(Context pi4j, int channel, int baud, int modulesX, int modulesY) {
+        super(pi4j.create(buildSpiConfig(pi4j, channel, baud)), modulesX, modulesY);
     }
 
     /**
@@ -109,85 +138,93 @@ public class LedMatrixController extends MAX7219 {
 
     /**
      * Scrolls the display upwards and fills the now empty row based on scroll mode.
-     * This works by copying the buffer array with an offset using {@link System#arraycopy(Object, int, Object, int, int)}.
+     * This works by moving each row of the buffer up by one.
      *
      * @param scrollMode Desired scroll mode
      * @param newBuffer  Only if {@link ScrollMode#REPLACE}: New buffer for replacement values
      * @param newOffset  Only if {@link ScrollMode#REPLACE}: Desired row offset for new buffer
      */
-    @SuppressWarnings("SuspiciousSystemArraycopy")
     private void scrollUp(ScrollMode scrollMode, byte[] newBuffer, int newOffset) {
+        final int height = getHeight();
+
         // Preserve first row and scroll buffer upwards
-        final var firstRow = buffer[0];
-        System.arraycopy(buffer, 1, buffer, 0, HEIGHT - 1);
+        final long firstRow = buffer.getRow(0);
+        for (int y = 0; y < height - 1; y++) {
+            buffer.setRow(y, buffer.getRow(y + 1));
+        }
 
         // Determine target value for last row based on scroll mode
-        final byte lastRow;
+        final long lastRow;
         if (scrollMode == ScrollMode.ROTATE) {
             lastRow = firstRow;
         } else if (scrollMode == ScrollMode.REPLACE) {
-            lastRow = newBuffer[newOffset];
+            lastRow = symbolRow(newBuffer, newOffset);
         } else {
             lastRow = 0;
         }
 
         // Set last row to determined value
-        buffer[HEIGHT - 1] = lastRow;
+        buffer.setRow(height - 1, lastRow);
     }
 
     /**
      * Scrolls the display downwards and fills the now empty row based on scroll mode.
-     * This works by copying the buffer array with an offset using {@link System#arraycopy(Object, int, Object, int, int)}.
+     * This works by moving each row of the buffer down by one.
      *
      * @param scrollMode Desired scroll mode
      * @param newBuffer  Only if {@link ScrollMode#REPLACE}: New buffer for replacement values
      * @param newOffset  Only if {@link ScrollMode#REPLACE}: Desired row offset for new buffer
      */
-    @SuppressWarnings("SuspiciousSystemArraycopy")
     private void scrollDown(ScrollMode scrollMode, byte[] newBuffer, int newOffset) {
+        final int height = getHeight();
+
         // Preserve last row and scroll buffer downwards
-        final var lastRow = buffer[HEIGHT - 1];
-        System.arraycopy(buffer, 0, buffer, 1, HEIGHT - 1);
+        final long lastRow = buffer.getRow(height - 1);
+        for (int y = height - 1; y > 0; y--) {
+            buffer.setRow(y, buffer.getRow(y - 1));
+        }
 
         // Determine target value for first row based on scroll mode
-        final byte firstRow;
+        final long firstRow;
         if (scrollMode == ScrollMode.ROTATE) {
             firstRow = lastRow;
         } else if (scrollMode == ScrollMode.REPLACE) {
-            firstRow = newBuffer[HEIGHT - 1 - newOffset];
+            firstRow = symbolRow(newBuffer, HEIGHT - 1 - newOffset);
         } else {
             firstRow = 0;
         }
 
         // Set first row to determined value
-        buffer[0] = firstRow;
+        buffer.setRow(0, firstRow);
     }
 
     /**
      * Scrolls the display to the left and fills the now empty column based on scroll mode.
      * This works by shifting each row to the left and combining the new column value with a binary OR.
+     * Pixel X is stored in bit X, so moving the pixels to the left is a right shift of the row.
      *
      * @param scrollMode Desired scroll mode
      * @param newBuffer  Only if {@link ScrollMode#REPLACE}: New buffer for replacement values
      * @param newOffset  Only if {@link ScrollMode#REPLACE}: Desired column offset for new buffer
      */
     private void scrollLeft(ScrollMode scrollMode, byte[] newBuffer, int newOffset) {
+        final int last = getWidth() - 1;
+
         // Scroll each row individually to the left
-        for (int row = 0; row < HEIGHT; row++) {
-            // Convert byte to integer to ensure proper bit operations
-            final int tmp = buffer[row] & 0xFF;
+        for (int y = 0; y < getHeight(); y++) {
+            final long row = buffer.getRow(y);
 
             if (scrollMode == ScrollMode.ROTATE) {
-                // Shift left by one (therefore moving the columns) and wrap the value around
-                buffer[row] = (byte) ((tmp << 1) | (tmp >>> 7));
+                // Shift by one (therefore moving the columns) and wrap the value around
+                buffer.setRow(y, (row >>> 1) | ((row & 1) << last));
             } else if (scrollMode == ScrollMode.REPLACE) {
                 // Determine target value for last column based on new buffer
-                final int lastColumn = getBitFromByte(newBuffer[row], WIDTH - 1 - newOffset);
+                final long lastColumn = symbolBit(newBuffer, y, WIDTH - 1 - newOffset);
                 // Combine shifted row (without last column) with last column
-                buffer[row] = (byte) ((tmp << 1) | lastColumn);
+                buffer.setRow(y, (row >>> 1) | (lastColumn << last));
             } else {
-                // Shift left by one, causing the last column to be empty
-                buffer[row] = (byte) (tmp << 1);
+                // Shift by one, causing the last column to be empty
+                buffer.setRow(y, row >>> 1);
             }
         }
     }
@@ -195,32 +232,62 @@ public class LedMatrixController extends MAX7219 {
     /**
      * Scrolls the display to the right and fills the now empty column based on scroll mode.
      * This works by shifting each row to the right and combining the new column value with a binary OR.
+     * Bits shifted beyond the display width are dropped by the buffer.
      *
      * @param scrollMode Desired scroll mode
      * @param newBuffer  Only if {@link ScrollMode#REPLACE}: New buffer for replacement values
      * @param newOffset  Only if {@link ScrollMode#REPLACE}: Desired column offset for new buffer
      */
     private void scrollRight(ScrollMode scrollMode, byte[] newBuffer, int newOffset) {
+        final int last = getWidth() - 1;
+
         // Scroll each row individually to the right
-        for (int row = 0; row < HEIGHT; row++) {
-            // Convert byte to integer to ensure proper bit operations
-            final int tmp = buffer[row] & 0xFF;
+        for (int y = 0; y < getHeight(); y++) {
+            final long row = buffer.getRow(y);
 
             if (scrollMode == ScrollMode.ROTATE) {
-                // Shift right by one (therefore moving the columns) and wrap the value around
-                buffer[row] = (byte) ((tmp >>> 1) | (tmp << 7));
+                // Shift by one (therefore moving the columns) and wrap the value around
+                buffer.setRow(y, (row << 1) | (row >>> last));
             } else if (scrollMode == ScrollMode.REPLACE) {
                 // Determine target value for first column based on new buffer
-                final int firstColumn = getBitFromByte(newBuffer[row], newOffset) << 7;
+                final long firstColumn = symbolBit(newBuffer, y, newOffset);
                 // Combine shifted row (without first column) with first column
-                buffer[row] = (byte) ((tmp >>> 1) | firstColumn);
+                buffer.setRow(y, (row << 1) | firstColumn);
             } else {
-                // Shift right by one, causing the first column to be empty
-                buffer[row] = (byte) (tmp >>> 1);
+                // Shift by one, causing the first column to be empty
+                buffer.setRow(y, row << 1);
             }
         }
     }
 
+    /**
+     * Returns a row of an 8x8 symbol as buffer row, horizontally centered on the display.
+     *
+     * @param rows Rows of the symbol
+     * @param row  Row of the symbol
+     * @return Buffer row with the symbol pixels
+     */
+    private long symbolRow(byte[] rows, int row) {
+        return (Integer.reverse(rows[row] & 0xFF) >>> 24) << ((getWidth() - WIDTH) / 2);
+    }
+
+    /**
+     * Returns a single pixel of an 8x8 symbol for a display row, the symbol is vertically centered on the display.
+     *
+     * @param rows Rows of the symbol
+     * @param y    Display row
+     * @param bit  Bit within the symbol row (7 = left)
+     * @return Pixel (0 or 1)
+     */
+    private long symbolBit(byte[] rows, int y, int bit) {
+        final int row = y - (getHeight() - HEIGHT) / 2;
+        if (row < 0 || row >= HEIGHT) {
+            return 0;
+        }
+
+        return getBitFromByte(rows[row], bit);
+    }
+
     /**
      * Prints the given string to the LED matrix by scrolling each character in from left to right with the default scroll delay.
      * This method is blocking until the string has been fully printed and will both start and end with an empty display.
@@ -263,20 +330,50 @@ public class LedMatrixController extends MAX7219 {
      * @param scrollDelay     Delay in milliseconds between scroll operations
      */
     public void print(String string, Direction scrollDirection, long scrollDelay) {
-        // Convert string to list of symbols
-        final var symbols = convertToSymbols(string);
+        print(convertToSymbols(string), scrollDirection, scrollDelay);
+    }
+
+    /**
+     * Prints a message template with the given values using the default scroll direction and delay.
+     * The template was parsed once, only its parameter slots are filled in here, see {@link MessageTemplate#render(Object...)}.
+     *
+     * @param template Compiled message template
+     * @param values   One value per parameter slot
+     */
+    public void print(MessageTemplate template, Object... values) {
+        print(template.render(values), DEFAULT_SCROLL_DIRECTION, DEFAULT_SCROLL_DELAY);
+    }
 
+    /**
+     * Prints the given symbols by scrolling them in one after another, see {@link #print(String, Direction, long)}.
+     * This method is blocking until all symbols have been printed and will both start and end with an empty display.
+     *
+     * @param symbols         Symbols to be displayed
+     * @param scrollDirection Direction towards symbols should be scrolled in
+     * @param scrollDelay     Delay in milliseconds between scroll operations
+     */
+    public void print(List<Symbol> symbols, Direction scrollDirection, long scrollDelay) {
         // Immediately print a space to clear the current display
         print(Symbol.SPACE);
 
-        // Display each symbol one after another by transitioning them into the display
+        // Display each symbol one after another by scrolling them into the display
+        // On displays wider than one module several symbols are visible at once, like a ticker
+        // Horizontal text only scrolls the used columns of each glyph, which is much faster for narrow characters
+        final boolean narrow = proportional && (scrollDirection == Direction.LEFT || scrollDirection == Direction.RIGHT);
         for (Symbol symbol : symbols) {
-            transition(symbol, scrollDirection, scrollDelay);
+            if (narrow) {
+                scrollGlyph(symbol, scrollDirection, scrollDelay);
+            } else {
+                scrollIn(symbol, scrollDirection, scrollDelay);
+            }
         }
 
-        // Transition to a space symbol to clear the current display at the end
+        // Scroll the text out to clear the current display at the end
         // Without this we would still see the last letter of the provided string
-        transition(Symbol.SPACE, scrollDirection, scrollDelay);
+        for (int i = 0; i < scrollDistance(scrollDirection); i++) {
+            scroll(scrollDirection);
+            sleep(scrollDelay);
+        }
     }
 
     /**
@@ -307,12 +404,11 @@ public class LedMatrixController extends MAX7219 {
                 // Enable reference mode and silently skip this character for now
                 referenceMode = true;
             } else if (referenceMode && c == '}') {
-                try {
-                    // Attempt to find a symbol with the given name written between the curly braces
-                    final var symbolName = buffer.toString().toUpperCase();
-                    final var symbol = Symbol.valueOf(symbolName);
+                // Attempt to find a symbol with the given name written between the curly braces
+                final var symbol = Symbol.getByName(buffer.toString());
+                if (symbol != null) {
                     symbols.add(symbol);
-                } catch (IllegalArgumentException e) {
+                } else {
                     // We have not found a symbol with this name, so add the buffer as-is to our list of symbols to output
                     // We also have to add the curly braces here, as they are NOT contained within the buffer
                     symbols.add(Symbol.BRACE_LEFT);
@@ -320,11 +416,11 @@ public class LedMatrixController extends MAX7219 {
                         symbols.add(lookupSymbol(buffer.charAt(j)));
                     }
                     symbols.add(Symbol.BRACE_RIGHT);
-                } finally {
-                    // Clear the buffer and disable reference mode
-                    buffer.delete(0, buffer.length());
-                    referenceMode = false;
                 }
+
+                // Clear the buffer and disable reference mode
+                buffer.delete(0, buffer.length());
+                referenceMode = false;
             } else if (referenceMode) {
                 // We are in reference mode but this is not a closing curly brace, so lets add the character to the buffer
                 buffer.append(c);
@@ -362,7 +458,13 @@ public class LedMatrixController extends MAX7219 {
      * @param symbol Symbol to display
      */
     public void print(Symbol symbol) {
-        System.arraycopy(symbol.getRows(), 0, buffer, 0, HEIGHT);
+        final byte[] rows = symbol.getRows();
+        final int top = (getHeight() - HEIGHT) / 2;
+
+        clear();
+        for (int row = 0; row < HEIGHT; row++) {
+            buffer.setRow(top + row, symbolRow(rows, row));
+        }
         refresh();
     }
 
@@ -390,18 +492,107 @@ public class LedMatrixController extends MAX7219 {
     /**
      * Transitions the current LED matrix display to the given symbol by gradually scrolling the symbol in.
      * This works by scrolling each column in one-by-one towards the given scroll direction with the specified scroll delay.
+     * On displays larger than one module, the symbol keeps scrolling until it is centered.
      *
      * @param symbol          New symbol to display
      * @param scrollDirection Desired scrolling direction, e.g. {@link Direction#LEFT} means the new symbol scrolls in from right towards left
      * @param scrollDelay     Delay in milliseconds between each scrolled column
      */
     public void transition(Symbol symbol, Direction scrollDirection, long scrollDelay) {
+        scrollIn(symbol, scrollDirection, scrollDelay);
+
+        for (int i = 0; i < (scrollDistance(scrollDirection) - WIDTH) / 2; i++) {
+            scroll(scrollDirection);
+            sleep(scrollDelay);
+        }
+    }
+
+    /**
+     * Scrolls all columns or rows of the given symbol into the display, see {@link #transition(Symbol, Direction, long)}.
+     */
+    private void scrollIn(Symbol symbol, Direction scrollDirection, long scrollDelay) {
         for (int i = 0; i < WIDTH; i++) {
             scroll(scrollDirection, ScrollMode.REPLACE, symbol.getRows(), i);
             sleep(scrollDelay);
         }
     }
 
+    /**
+     * Scrolls only the used columns of the given symbol into the display followed by the letter spacing.
+     * Symbols without any pixels scroll {@link #SPACE_WIDTH} empty columns instead.
+     *
+     * @param symbol          Symbol to scroll in
+     * @param scrollDirection Either {@link Direction#LEFT} or {@link Direction#RIGHT}
+     * @param scrollDelay     Delay in milliseconds between each scrolled column
+     */
+    private void scrollGlyph(Symbol symbol, Direction scrollDirection, long scrollDelay) {
+        final int width = symbol.getGlyphWidth();
+        if (width == 0) {
+            scrollBlank(scrollDirection, SPACE_WIDTH, scrollDelay);
+            return;
+        }
+
+        // Scrolling left consumes the columns from the left, scrolling right from the right
+        // The offset counts columns from the left for LEFT and bits from the right for RIGHT, see scrollLeft/scrollRight
+        final int first = scrollDirection == Direction.LEFT ? symbol.getFirstColumn() : WIDTH - symbol.getFirstColumn() - width;
+        for (int i = first; i < first + width; i++) {
+            scroll(scrollDirection, ScrollMode.REPLACE, symbol.getRows(), i);
+            sleep(scrollDelay);
+        }
+        scrollBlank(scrollDirection, letterSpacing, scrollDelay);
+    }
+
+    /**
+     * Scrolls the given number of empty columns or rows into the display.
+     */
+    private void scrollBlank(Direction scrollDirection, int count, long scrollDelay) {
+        for (int i = 0; i < count; i++) {
+            scroll(scrollDirection);
+            sleep(scrollDelay);
+        }
+    }
+
+    /**
+     * Enables or disables proportional text for {@link #print(String, Direction, long)}.
+     * While enabled (default), horizontally scrolled text only uses the columns each glyph needs plus the letter spacing,
+     * otherwise every glyph takes all 8 columns. Vertically scrolled text always uses whole glyphs.
+     *
+     * @param proportional True for proportional, false for fixed-width glyphs
+     */
+    public void setProportional(boolean proportional) {
+        this.proportional = proportional;
+    }
+
+    public boolean isProportional() {
+        return proportional;
+    }
+
+    /**
+     * Changes the number of empty columns between two proportional glyphs.
+     *
+     * @param letterSpacing Number of columns, at least 0
+     */
+    public void setLetterSpacing(int letterSpacing) {
+        if (letterSpacing < 0) {
+            throw new IllegalArgumentException("Letter spacing must not be negative");
+        }
+        this.letterSpacing = letterSpacing;
+    }
+
+    public int getLetterSpacing() {
+        return letterSpacing;
+    }
+
+    /**
+     * Returns the number of scroll steps needed to move content across the whole display in the given direction.
+     *
+     * @param direction Scroll direction
+     * @return Display width for horizontal and display height for vertical directions
+     */
+    private int scrollDistance(Direction direction) {
+        return direction == Direction.UP || direction == Direction.DOWN ? getHeight() : getWidth();
+    }
+
     /**
      * Returns a {@link Symbol} which is associated with the given ASCII character.
      * Throws an {@link IllegalArgumentException} if no symbol associated with this character was found.
@@ -427,7 +618,7 @@ public class LedMatrixController extends MAX7219 {
      */
     public void draw(Consumer<Graphics2D> drawer) {
         // Create new 1-bit buffered image with same size as LED matrix
-        final var image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_BINARY);
+        final var image = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_BYTE_BINARY);
         final var graphics = image.createGraphics();
 
         // Call consumer and pass graphics context for drawing
@@ -448,7 +639,7 @@ public class LedMatrixController extends MAX7219 {
      * @param y     Y coordinate where visible area should start
      */
     public void draw(BufferedImage image, int x, int y) {
-        draw(image.getSubimage(x, y, WIDTH, HEIGHT));
+        draw(image.getSubimage(x, y, getWidth(), getHeight()));
     }
 
     /**
@@ -466,16 +657,16 @@ public class LedMatrixController extends MAX7219 {
         }
 
         // Ensure image has correct size
-        if (image.getWidth() != WIDTH || image.getHeight() != HEIGHT) {
-            throw new IllegalArgumentException("Image must be exactly " + WIDTH + "x" + HEIGHT + " pixels");
+        if (image.getWidth() != getWidth() || image.getHeight() != getHeight()) {
+            throw new IllegalArgumentException("Image must be exactly " + getWidth() + "x" + getHeight() + " pixels");
         }
 
         // Copy image into buffer pixel-by-pixel by looping over Y and X coordinates
         // While retrieving the data buffer (which happens to have the same format) would be slightly quicker, it breaks with sub-images
         // As a slight optimization we first clear the buffer and then only call setPixel() when true
         clear();
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
+        for (int y = 0; y < getHeight(); y++) {
+            for (int x = 0; x < getWidth(); x++) {
                 if (image.getRGB(x, y) != Color.BLACK.getRGB()) {
                     setPixel(x, y, true);
                 }
@@ -486,6 +677,84 @@ public class LedMatrixController extends MAX7219 {
         refresh();
     }
 
+    /**
+     * Displays a 64 bit board on the LED matrix, bit (y * 8 + x) enables the pixel at X/Y.
+     * This matches the square index of the sensor matrix (x = file, y = rank), so occupancy masks and move hints can be shown directly.
+     * On a single module the bitboard has the same layout as the buffer and is copied in one step, no per-pixel loop is needed.
+     * Larger displays show the bitboard in their top left 8x8 area and are cleared elsewhere.
+     * The drawn bitboard will be immediately displayed on the LED matrix.
+     *
+     * @param bitboard Bitboard to display
+     */
+    public void drawBitboard(long bitboard) {
+        if (getWidth() == WIDTH && getHeight() == HEIGHT) {
+            buffer.setLong(bitboard);
+        } else {
+            clear();
+            for (int y = 0; y < HEIGHT; y++) {
+                buffer.setRow(y, (bitboard >>> (y * WIDTH)) & 0xFF);
+            }
+        }
+
+        refresh();
+    }
+
+    /**
+     * Displays a grid of any size on the LED matrix, e.g. the occupancy of a larger board.
+     * The grid is drawn from the top left corner, pixels outside the grid are left unchanged.
+     * The drawn grid will be immediately displayed on the LED matrix.
+     *
+     * @param grid Grid to display
+     */
+    public void drawGrid(BitGrid grid) {
+        buffer.copyFrom(grid);
+        refresh();
+    }
+
+    /**
+     * Calculates the pixels of a straight trace between two positions, ordered from start to destination.
+     * The trace takes one step per pixel along the longer axis and rounds the other axis, so diagonal, straight and knight-like
+     * traces all end exactly on the destination.
+     *
+     * @param startX X position of the start pixel
+     * @param startY Y position of the start pixel
+     * @param destX  X position of the destination pixel
+     * @param destY  Y position of the destination pixel
+     * @return Pixels of the trace as {x, y} pairs
+     */
+    public static int[][] tracePoints(int startX, int startY, int destX, int destY) {
+        final int steps = Math.max(Math.abs(destX - startX), Math.abs(destY - startY));
+        final int[][] points = new int[steps + 1][];
+
+        // A trace without distance consists of its start pixel only
+        final float dx = steps == 0 ? 0 : (float) (destX - startX) / steps;
+        final float dy = steps == 0 ? 0 : (float) (destY - startY) / steps;
+
+        float x = startX;
+        float y = startY;
+        for (int i = 0; i <= steps; i++) {
+            points[i] = new int[] {Math.round(x), Math.round(y)};
+            x += dx;
+            y += dy;
+        }
+
+        return points;
+    }
+
+    /**
+     * Calculates the pixels of a straight trace as bitboard, see {@link #tracePoints(int, int, int, int)} and {@link #drawBitboard(long)}.
+     *
+     * @return Bitboard with bit (y * 8 + x) set for every pixel of the trace
+     */
+    public static long traceBitboard(int startX, int startY, int destX, int destY) {
+        long bitboard = 0;
+        for (int[] point : tracePoints(startX, startY, destX, destY)) {
+            bitboard |= 1L << (point[1] * WIDTH + point[0]);
+        }
+
+        return bitboard;
+    }
+
     /**
      * Helper method for extracting a single bit from a byte value.
      * The result will be returned as an integer to guarantee that further bit operations are handled correctly.
@@ -498,13 +767,58 @@ public class LedMatrixController extends MAX7219 {
         return (((value & 0xFF) >> bit) & 0x1);
     }
     
-    public byte[] getBuffer() {
+    /**
+     * Returns the internal buffer, pixel X/Y is bit (y * width + x).
+     * Changes will not be visible until {@link #refresh()} gets called.
+     *
+     * @return Internal buffer
+     */
+    public BitGrid getGrid() {
     	return buffer;
     }
     
+    /**
+     * Returns a copy of the buffer in the byte layout of a single module: one byte per module row, bit 7 is the left pixel.
+     * Chained displays use byte (y * modules horizontally + module column).
+     * Changes to the returned array are not applied to the display, use {@link #overwriteBuffer(byte[])} for that.
+     *
+     * @return Copy of the buffer as bytes
+     * @deprecated Use {@link #getGrid()}, which works on the buffer directly
+     */
+    @Deprecated
+    public byte[] getBuffer() {
+    	final int modules = getWidth() / WIDTH;
+    	final byte[] bytes = new byte[getHeight() * modules];
+    	for (int i = 0; i < bytes.length; i++) {
+    		final long pixels = buffer.getRow(i / modules) >>> (i % modules * WIDTH);
+    		bytes[i] = (byte) (Integer.reverse((int) pixels & 0xFF) >>> 24);
+    	}
+    	return bytes;
+    }
+    
+    /**
+     * Copies the given buffer into the internal buffer, e.g. to restore a copy taken with {@link BitGrid#copy()}.
+     *
+     * @param buffer Buffer to copy, only the area overlapping the display is used
+     */
+    public void overwriteBuffer(BitGrid buffer) {
+    	this.buffer.copyFrom(buffer);
+    }
+    
+    /**
+     * Copies bytes in the layout of {@link #getBuffer()} into the internal buffer, surplus bytes are ignored.
+     *
+     * @param buffer Bytes to copy
+     * @deprecated Use {@link #overwriteBuffer(BitGrid)}
+     */
+    @Deprecated
     public void overwriteBuffer(byte[] buffer) {
-    	for(int i = 0; i < buffer.length && i < this.buffer.length; i++) {
-    		this.buffer[i] = buffer[i];
+    	final int modules = getWidth() / WIDTH;
+    	for (int i = 0; i < buffer.length && i < getHeight() * modules; i++) {
+    		final int shift = i % modules * WIDTH;
+    		final long pixels = Integer.reverse(buffer[i] & 0xFF) >>> 24;
+    		final int y = i / modules;
+    		this.buffer.setRow(y, (this.buffer.getRow(y) & ~(0xFFL << shift)) | (pixels << shift));
     	}
     }
 
@@ -557,7 +871,7 @@ public class LedMatrixController extends MAX7219 {
      * Aktiviert alle LEDs und refresht die Matrix
      */
 	public void enableAll() {
-		overwriteBuffer(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF});
+		buffer.fill();
     	refresh();
 	}
 }
\ No newline at end of file
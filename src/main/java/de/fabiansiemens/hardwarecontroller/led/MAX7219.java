@@ -2,13 +2,24 @@ package de.fabiansiemens.hardwarecontroller.led;
 
 import com.pi4j.io.spi.Spi;
 
-import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
 
 /**
  * Klasse adaptiert aus folgender Quelle: {@link https://github.com/Pi4J/pi4j-example-crowpi/blob/main/src/main/java/com/pi4j/crowpi/components/events/SimpleEventHandler.java}
  * 
  * Implementation of MAX7219 driver chip used for 8x8 LED matrix displays.
  * Uses SPI via Pi4J for controlling the chip programmatically.
+ * Larger displays are built from several daisy-chained chips, each driving an 8x8 module. Module 0 is connected to the Pi,
+ * modules are numbered row by row from the top left corner of the display.
  */
 public class MAX7219 {
     // MAX7219: Internal Commands
@@ -20,26 +31,62 @@ public class MAX7219 {
     private static final byte CMD_DISPLAY_TEST = 0x0F;
 
     /**
-     * Width of MAX7219 LED matrix
+     * Width of a single MAX7219 LED matrix module
      */
     public static final int WIDTH = 8;
 
     /**
-     * Height of MAX7219 LED matrix
+     * Height of a single MAX7219 LED matrix module, equals the number of row registers
      */
     public static final int HEIGHT = 8;
 
     /**
-     * Internal buffer to store the 8x8 matrix
-     * A byte[] array is used as each of the 8 bits is used to represent a column
+     * Maximum number of modules per direction, a display row must fit into a single 64 bit word
      */
-    protected final byte[] buffer = new byte[HEIGHT];
+    public static final int MAX_MODULES = 8;
+
+    /**
+     * Internal buffer to store the whole display
+     * Pixel X/Y is stored as bit (y * width + x), a display with a single module fits into one word
+     */
+    protected final BitGrid buffer;
+
+    /**
+     * Number of modules horizontally and vertically
+     */
+    private final int modulesX;
+    private final int modulesY;
 
     /**
      * Pi4J SPI instance
      */
     protected final Spi spi;
 
+    /**
+     * Optional executor for asynchronous refreshes and flag to coalesce pending refreshes
+     */
+    private volatile Executor refreshExecutor;
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+
+    /**
+     * Optional frame rate limit: while set, {@link #refresh()} only marks the frame dirty and the frame timer writes the changed
+     * rows at most once per interval. The last written frame is kept to find the changed rows, null if unknown.
+     */
+    private volatile long frameIntervalNanos;
+    private final AtomicBoolean framePending = new AtomicBoolean();
+    private volatile long lastFrameNanos;
+    private BitGrid committed;
+
+    /**
+     * Last brightness set through {@link #setBrightness(int)}, -1 if unknown
+     */
+    private volatile int brightness = -1;
+
+    /**
+     * Listeners which are notified after the whole buffer was written to the chips
+     */
+    private final List<Consumer<BitGrid>> flushListeners = new CopyOnWriteArrayList<>();
+
     /**
      * Utility function to sleep for the specified amount of milliseconds.
      * An {@link InterruptedException} will be catched and ignored while setting the interrupt flag again.
@@ -60,7 +107,43 @@ public class MAX7219 {
      * @param spi SPI instance
      */
     public MAX7219(Spi spi) {
+        this(spi, 1, 1);
+    }
+
+    /**
+     * Creates a new MAX7219 instance for a display of several daisy-chained modules using the given SPI instance from Pi4J.
+     *
+     * @param spi      SPI instance
+     * @param modulesX Number of modules horizontally (1-8)
+     * @param modulesY Number of modules vertically (1-8)
+     */
+    public MAX7219(Spi spi, int modulesX, int modulesY) {
+        if (modulesX < 1 || modulesX > MAX_MODULES || modulesY < 1 || modulesY > MAX_MODULES) {
+            throw new IllegalArgumentException("Number of modules must be an integer in the range 1-" + MAX_MODULES);
+        }
+
         this.spi = spi;
+        this.modulesX = modulesX;
+        this.modulesY = modulesY;
+        this.buffer = new BitGrid(modulesX * WIDTH, modulesY * HEIGHT);
+    }
+
+    /**
+     * Returns the width of the whole display in pixels.
+     *
+     * @return Display width
+     */
+    public int getWidth() {
+        return buffer.getWidth();
+    }
+
+    /**
+     * Returns the height of the whole display in pixels.
+     *
+     * @return Display height
+     */
+    public int getHeight() {
+        return buffer.getHeight();
     }
 
     /**
@@ -68,21 +151,196 @@ public class MAX7219 {
      * This means that the current contents of the displays are still being shown until {@link #refresh()} is called.
      */
     public void clear() {
-        Arrays.fill(buffer, (byte) 0);
+        buffer.clear();
     }
 
     /**
      * Flushes the internal buffer for all rows to the chip, causing it to be displayed.
      * The contents of the buffer will be preserved by this command.
+     * If a refresh executor is set, the transfer happens asynchronously on that executor and refreshes requested
+     * while one is still pending are merged into it. With a frame rate limit the frame is only written by the next timed frame.
+     * The display may therefore not show the buffer yet when this method returns, use {@link #flushNow()} for timed output
+     * such as animations or measurements.
      */
     public void refresh() {
+        if (frameIntervalNanos > 0) {
+            scheduleFrame();
+            return;
+        }
+
+        final Executor executor = refreshExecutor;
+        if (executor == null) {
+            flush();
+            return;
+        }
+
+        // Only schedule a transfer if none is pending, the pending one will pick up the latest buffer
+        if (refreshPending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                refreshPending.set(false);
+                flush();
+            });
+        }
+    }
+
+    /**
+     * Sets an executor for asynchronous refreshes, e.g. a {@link de.fabiansiemens.hardwarecontroller.sensor.ScanScheduler}
+     * shared by several boards so SPI transfers are interleaved with sensor scans.
+     *
+     * @param executor Executor for refreshes, null to refresh synchronously in the calling thread
+     */
+    public void setRefreshExecutor(Executor executor) {
+        this.refreshExecutor = executor;
+    }
+
+    /**
+     * Limits how often refreshes reach the chips. While a limit is set, {@link #refresh()} only marks the frame dirty, no matter how
+     * often it is called. Once per frame interval a timer writes the rows which changed since the last written frame, on the
+     * refresh executor if one is set. Use {@link #flushNow()} when a frame has to be visible immediately.
+     *
+     * @param fps Maximum number of frames per second, 0 to write every refresh as before
+     */
+    public void setMaxFrameRate(int fps) {
+        if (fps < 0) {
+            throw new IllegalArgumentException("Frame rate must not be negative");
+        }
+
+        synchronized (this) {
+            committed = null;
+        }
+        this.frameIntervalNanos = fps == 0 ? 0 : 1_000_000_000L / fps;
+    }
+
+    /**
+     * Returns the current frame rate limit.
+     *
+     * @return Maximum number of frames per second, 0 if every refresh is written
+     */
+    public int getMaxFrameRate() {
+        final long interval = frameIntervalNanos;
+        return interval == 0 ? 0 : (int) (1_000_000_000L / interval);
+    }
+
+    /**
+     * Writes the buffer to the chips immediately in the calling thread, bypassing the frame rate limit.
+     * With a limit set only the changed rows are written and the next timed frame is due one interval later.
+     */
+    public void flushNow() {
+        if (frameIntervalNanos > 0) {
+            lastFrameNanos = System.nanoTime();
+            flushChanged();
+        } else {
+            flush();
+        }
+    }
+
+    /**
+     * Schedules a frame on the frame timer unless one is already pending, the pending frame will pick up the latest buffer
+     */
+    private void scheduleFrame() {
+        if (!framePending.compareAndSet(false, true)) {
+            return;
+        }
+
+        final long delay = lastFrameNanos + frameIntervalNanos - System.nanoTime();
+        FrameTimer.INSTANCE.schedule(() -> {
+            final Executor executor = refreshExecutor;
+            if (executor != null) {
+                executor.execute(this::writeFrame);
+            } else {
+                writeFrame();
+            }
+        }, Math.max(0, delay), TimeUnit.NANOSECONDS);
+    }
+
+    private void writeFrame() {
+        lastFrameNanos = System.nanoTime();
+        // Refreshes from now on schedule the next frame, they may change rows this frame has already written
+        framePending.set(false);
+        flushChanged();
+    }
+
+    /**
+     * Writes only the row registers whose pixels differ from the last written frame, on chains a register row covers one row
+     * of every module. The buffer is copied first so a concurrent change is either written completely or left for the next frame.
+     */
+    private synchronized void flushChanged() {
+        final BitGrid frame = buffer.copy();
+        boolean changed = false;
+
+        for (int row = 0; row < HEIGHT; row++) {
+            if (committed == null || rowChanged(frame, row)) {
+                writeRow(frame, row);
+                changed = true;
+            }
+        }
+        committed = frame;
+
+        if (changed) {
+            for (Consumer<BitGrid> listener : flushListeners) {
+                listener.accept(frame);
+            }
+        }
+    }
+
+    private boolean rowChanged(BitGrid frame, int row) {
+        for (int y = row; y < frame.getHeight(); y += HEIGHT) {
+            if (frame.getRow(y) != committed.getRow(y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes all rows of the internal buffer to the chip in the calling thread and remembers them as the last written frame.
+     */
+    protected synchronized void flush() {
+        final BitGrid frame = buffer.copy();
         for (int row = 0; row < HEIGHT; row++) {
-            refreshRow(row);
+            writeRow(frame, row);
+        }
+        committed = frame;
+
+        for (Consumer<BitGrid> listener : flushListeners) {
+            listener.accept(frame);
         }
     }
 
     /**
-     * Flushes the internal buffer for a single row to the chip, causing it to be displayed.
+     * Writes only the row registers which changed since the last written frame to the chips in the calling thread, independent of
+     * the frame rate limit. Meant for content that changes in a few rows at a time, e.g. a clock, where a full refresh would
+     * rewrite rows that did not change.
+     */
+    public void refreshChanged() {
+        flushChanged();
+    }
+
+    /**
+     * Adds a listener which receives the committed frame after every full flush, e.g. to mirror the display elsewhere.
+     * The listener is called in the flushing thread and must copy the buffer if it keeps it.
+     * Nothing is added if the listener is null.
+     *
+     * @param listener Listener for flushed frames
+     */
+    public void addFlushListener(Consumer<BitGrid> listener) {
+        if (listener != null) {
+            flushListeners.add(listener);
+        }
+    }
+
+    /**
+     * Removes a listener added with {@link #addFlushListener(Consumer)}
+     *
+     * @param listener Listener to remove
+     */
+    public void removeFlushListener(Consumer<BitGrid> listener) {
+        flushListeners.remove(listener);
+    }
+
+    /**
+     * Flushes the internal buffer for a single row register to the chips, causing it to be displayed.
+     * On displays with several modules this row is written on every module, e.g. row 1 also flushes rows 9, 17, ...
      * The contents of the buffer will be preserved by this command.
      *
      * @param row Row to be flushed
@@ -92,7 +350,46 @@ public class MAX7219 {
             throw new IllegalArgumentException("Row must be an integer in the range 0-" + HEIGHT);
         }
 
-        execute((byte) (CMD_SET_FIRST_ROW + row), buffer[row]);
+        writeRow(buffer, row);
+    }
+
+    /**
+     * Writes a single row register of the given frame to the chips.
+     *
+     * @param frame Frame with the size of the display
+     * @param row   Row register (0-7)
+     */
+    private void writeRow(BitGrid frame, int row) {
+        final byte command = (byte) (CMD_SET_FIRST_ROW + row);
+
+        // Single module: the row is the low byte of the buffer row, one transfer per row as before
+        if (modulesX == 1 && modulesY == 1) {
+            spi.write(command, rowData((int) frame.getRow(row)));
+            return;
+        }
+
+        // Chain: the first command shifted out ends up in the last module, so the modules are sent in reverse order
+        final int modules = modulesX * modulesY;
+        final byte[] data = new byte[modules * 2];
+        for (int module = 0; module < modules; module++) {
+            final int y = (module / modulesX) * HEIGHT + row;
+            final int x = (module % modulesX) * WIDTH;
+            final int offset = (modules - 1 - module) * 2;
+            data[offset] = command;
+            data[offset + 1] = rowData((int) (frame.getRow(y) >>> x));
+        }
+        spi.write(data);
+    }
+
+    /**
+     * Converts the 8 pixels of a module row into the register value of the chip.
+     * The buffer stores pixel X in bit X while the chip shows bit 7 on the left, so the bits are reversed.
+     *
+     * @param pixels Pixels of the module row in the lowest 8 bits
+     * @return Register value
+     */
+    private static byte rowData(int pixels) {
+        return (byte) (Integer.reverse(pixels & 0xFF) >>> 24);
     }
 
     /**
@@ -103,6 +400,9 @@ public class MAX7219 {
      */
     public void setEnabled(boolean enabled) {
         if (enabled) {
+            synchronized (this) {
+                committed = null;
+            }
             execute(CMD_SHUTDOWN, (byte) 0x01);
             execute(CMD_DECODE_MODE, (byte) 0x00);
             execute(CMD_SCAN_LIMIT, (byte) 0x07);
@@ -134,6 +434,16 @@ public class MAX7219 {
             throw new IllegalArgumentException("Brightness must be an integer in the range 0-15");
         }
         execute(CMD_INTENSITY, (byte) brightness);
+        this.brightness = brightness;
+    }
+
+    /**
+     * Returns the brightness last set with {@link #setBrightness(int)}.
+     *
+     * @return Brightness from 0-15 or -1 if it was never set
+     */
+    public int getBrightness() {
+        return brightness;
     }
 
     /**
@@ -149,13 +459,7 @@ public class MAX7219 {
         if(!checkPixelBounds(x, y))
         	return;
 
-        // Generate bitmask and set/unset specific bit
-        final byte mask = (byte) (1 << (WIDTH - 1 - x));
-        if (enabled) {
-            buffer[y] |= mask;
-        } else {
-            buffer[y] &= ~mask;
-        }
+        buffer.set(x, y, enabled);
     }
     
     /**
@@ -183,9 +487,7 @@ public class MAX7219 {
         if(!checkPixelBounds(x, y))
         	return false;
 
-        // Generate bitmask and retrieve specific bit
-        final byte mask = (byte) (1 << (WIDTH - 1 - x));
-        return (buffer[y] & mask) != 0;
+        return buffer.get(x, y);
     }
 
     /**
@@ -196,23 +498,46 @@ public class MAX7219 {
      * @param y Y coordinate to check
      */
     private boolean checkPixelBounds(int x, int y) {
-        if (x < 0 || x >= WIDTH) {
+        if (x < 0 || x >= getWidth()) {
             return false;
         }
-        if (y < 0 || y >= WIDTH) {
+        if (y < 0 || y >= getHeight()) {
             return false;
         }
         return true;
     }
 
     /**
-     * Helper method for sending a command to the MAX7219 chip with data. Communication happens over SPI by simply sending two pieces of
+     * Helper method for sending a command to the MAX7219 chips with data. Communication happens over SPI by simply sending two pieces of
      * data, more specifically the desired command as a byte value, followed by the data as another byte value.
+     * On displays with several modules the command is sent to every module within one transfer.
      *
      * @param command Command to be executed
      * @param data    Data for the given command
      */
     private void execute(byte command, byte data) {
-        spi.write(command, data);
+        final int modules = modulesX * modulesY;
+        if (modules == 1) {
+            spi.write(command, data);
+            return;
+        }
+
+        final byte[] frame = new byte[modules * 2];
+        for (int i = 0; i < frame.length; i += 2) {
+            frame[i] = command;
+            frame[i + 1] = data;
+        }
+        spi.write(frame);
+    }
+
+    /**
+     * Timer shared by all displays with a frame rate limit, created on first use
+     */
+    private static final class FrameTimer {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(task -> {
+            final Thread thread = new Thread(task, "MAX7219-FrameTimer");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 }
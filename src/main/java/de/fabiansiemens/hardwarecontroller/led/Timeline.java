@@ -0,0 +1,601 @@
+package de.fabiansiemens.hardwarecontroller.led;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+import de.fabiansiemens.hardwarecontroller.led.print.Direction;
+
+/**
+ * Declarative description of an LED animation, e.g. a blinking pixel, a trace between two squares or a brightness fade.
+ * Timelines are composed with {@link #sequence(Timeline...)}, {@link #parallel(Timeline...)} and {@link #repeat(int, Timeline)}
+ * and compiled once per display size into a {@link FrameTable}, which is cached and played back without recomputing anything.
+ *
+ * Every frame is an overlay over the display content at the start of the playback: pixels can be forced on or off, all other
+ * pixels keep their original state. In parallel timelines forced on pixels win over forced off pixels.
+ *
+ * Timelines have a compact text form, {@link #toString()} and {@link #parse(String)} are inverse to each other.
+ * Custom effects can therefore be loaded from a file with {@link #load(Path)} without new Java code:
+ * <pre>
+ * # Comment until the end of the line
+ * error   = blink 4 4 100 100 10
+ * welcome = seq(sweep RIGHT 60 par(fade 0 15 40 trace 0 0 7 7 80 1) hold 500)
+ * pulse   = repeat 3 seq(fade 15 0 30 fade 0 15 30)
+ * logo    = pixels 1000 0x8142241818244281
+ * </pre>
+ * Durations are given in milliseconds, brightness in the range 0-15. Bitmaps of {@code pixels} are hex words of the display
+ * buffer (bit y * width + x), several words are separated by ':'.
+ */
+public abstract class Timeline {
+
+    Timeline() {
+    }
+
+    /**
+     * A single pixel blinks, it is forced on and then forced off.
+     *
+     * @param x        X position of the pixel
+     * @param y        Y position of the pixel
+     * @param onMillis Duration of the on phase
+     * @param offMillis Duration of the off phase
+     * @param times    Number of blinks
+     * @return Timeline
+     */
+    public static Timeline blink(int x, int y, int onMillis, int offMillis, int times) {
+        return new Blink(x, y, onMillis, offMillis, times);
+    }
+
+    /**
+     * A pixel travels along a straight line from start to destination, see {@link LedMatrixController#tracePoints(int, int, int, int)}.
+     * Visited pixels stay off until the playback ends.
+     *
+     * @param stepMillis Time per pixel
+     * @param times      Number of runs
+     * @return Timeline
+     */
+    public static Timeline trace(int startX, int startY, int destX, int destY, int stepMillis, int times) {
+        return new Trace(startX, startY, destX, destY, stepMillis, times);
+    }
+
+    /**
+     * A lit row or column moves across the whole display.
+     *
+     * @param direction  Direction of the movement, e.g. {@link Direction#RIGHT} moves a column from left to right
+     * @param stepMillis Time per row or column
+     * @return Timeline
+     */
+    public static Timeline sweep(Direction direction, int stepMillis) {
+        return new Sweep(direction, stepMillis);
+    }
+
+    /**
+     * Changes the brightness of the whole display step by step, pixels keep their state.
+     * Only has an effect on displays whose brightness was set before, see {@link FrameTable#play(LedMatrixController)}.
+     *
+     * @param from       Brightness of the first step (0-15)
+     * @param to         Brightness of the last step (0-15)
+     * @param stepMillis Time per brightness step
+     * @return Timeline
+     */
+    public static Timeline fade(int from, int to, int stepMillis) {
+        if (from < 0 || from > 15 || to < 0 || to > 15) {
+            throw new IllegalArgumentException("Brightness must be an integer in the range 0-15");
+        }
+        return new Fade(from, to, stepMillis);
+    }
+
+    /**
+     * Shows the original display content for the given time.
+     *
+     * @param millis Duration
+     * @return Timeline
+     */
+    public static Timeline hold(int millis) {
+        return new Pixels(millis, new long[0]);
+    }
+
+    /**
+     * Forces the set pixels of a bitmap on for the given time.
+     *
+     * @param millis Duration
+     * @param pixels Pixels to switch on, bit (y * width + x)
+     * @return Timeline
+     */
+    public static Timeline pixels(int millis, BitGrid pixels) {
+        final long[] words = new long[pixels.getWordCount()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = pixels.getWord(i);
+        }
+        return new Pixels(millis, words);
+    }
+
+    /**
+     * Plays the given timelines one after another.
+     *
+     * @param parts Timelines
+     * @return Timeline
+     */
+    public static Timeline sequence(Timeline... parts) {
+        return new Composite(false, parts.clone());
+    }
+
+    /**
+     * Plays the given timelines at the same time, the result lasts as long as the longest one.
+     *
+     * @param parts Timelines
+     * @return Timeline
+     */
+    public static Timeline parallel(Timeline... parts) {
+        return new Composite(true, parts.clone());
+    }
+
+    /**
+     * Plays a timeline several times in a row.
+     *
+     * @param times Number of runs
+     * @param part  Timeline
+     * @return Timeline
+     */
+    public static Timeline repeat(int times, Timeline part) {
+        return new Repeat(times, part);
+    }
+
+    /**
+     * Compiles this timeline for a display of the given size. The result is cached, compiling the same timeline again returns
+     * the cached table.
+     *
+     * @param width  Display width
+     * @param height Display height
+     * @return Frame table
+     */
+    public FrameTable compile(int width, int height) {
+        return FrameTable.of(this, width, height);
+    }
+
+    /**
+     * Parses a timeline from its text form.
+     *
+     * @param text Text form, see {@link Timeline}
+     * @return Timeline
+     */
+    public static Timeline parse(String text) {
+        final Parser parser = new Parser(text);
+        final Timeline timeline = parser.timeline();
+        parser.expectEnd();
+        return timeline;
+    }
+
+    /**
+     * Loads named timelines from a file with lines of the form {@code name = timeline}, see {@link Timeline}.
+     *
+     * @param path File to load
+     * @return Timelines by name in file order
+     * @throws IOException if the file cannot be read
+     */
+    public static Map<String, Timeline> load(Path path) throws IOException {
+        final Parser parser = new Parser(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+        final Map<String, Timeline> timelines = new LinkedHashMap<>();
+        while (!parser.atEnd()) {
+            final String name = parser.next();
+            parser.expect("=");
+            timelines.put(name, parser.timeline());
+        }
+        return timelines;
+    }
+
+    /**
+     * Appends the frames of this timeline.
+     *
+     * @param out    Frames in playback order
+     * @param width  Display width
+     * @param height Display height
+     */
+    abstract void compile(List<Segment> out, int width, int height);
+
+    /**
+     * Returns the text form of this timeline, which is also the key of the compiled frame table cache.
+     */
+    @Override
+    public abstract String toString();
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Timeline && toString().equals(obj.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    /**
+     * Single frame during compilation: pixels forced on and off, brightness (-1 = unchanged) and duration.
+     */
+    static final class Segment {
+        final BitGrid on;
+        final BitGrid off;
+        final int brightness;
+        final int millis;
+
+        Segment(BitGrid on, BitGrid off, int brightness, int millis) {
+            this.on = on;
+            this.off = off;
+            this.brightness = brightness;
+            this.millis = millis;
+        }
+
+        Segment withMillis(int millis) {
+            return new Segment(on, off, brightness, millis);
+        }
+    }
+
+    private static BitGrid point(int width, int height, int x, int y) {
+        final BitGrid grid = new BitGrid(width, height);
+        if (x >= 0 && x < width && y >= 0 && y < height) {
+            grid.set(x, y, true);
+        }
+        return grid;
+    }
+
+    private static void add(List<Segment> out, BitGrid on, BitGrid off, int brightness, int millis) {
+        if (millis > 0) {
+            out.add(new Segment(on, off, brightness, millis));
+        }
+    }
+
+    private static final class Blink extends Timeline {
+        private final int x, y, onMillis, offMillis, times;
+
+        Blink(int x, int y, int onMillis, int offMillis, int times) {
+            this.x = x;
+            this.y = y;
+            this.onMillis = onMillis;
+            this.offMillis = offMillis;
+            this.times = times;
+        }
+
+        @Override
+        void compile(List<Segment> out, int width, int height) {
+            final BitGrid pixel = point(width, height, x, y);
+            final BitGrid none = new BitGrid(width, height);
+            for (int i = 0; i < times; i++) {
+                add(out, pixel, none, -1, onMillis);
+                add(out, none, pixel, -1, offMillis);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "blink " + x + " " + y + " " + onMillis + " " + offMillis + " " + times;
+        }
+    }
+
+    private static final class Trace extends Timeline {
+        private final int startX, startY, destX, destY, stepMillis, times;
+
+        Trace(int startX, int startY, int destX, int destY, int stepMillis, int times) {
+            this.startX = startX;
+            this.startY = startY;
+            this.destX = destX;
+            this.destY = destY;
+            this.stepMillis = stepMillis;
+            this.times = times;
+        }
+
+        @Override
+        void compile(List<Segment> out, int width, int height) {
+            final int[][] points = LedMatrixController.tracePoints(startX, startY, destX, destY);
+            final BitGrid visited = new BitGrid(width, height);
+            for (int i = 0; i < times; i++) {
+                for (int[] point : points) {
+                    // The current pixel wins over a visited one in the overlay, so the visited pixels can be shared
+                    add(out, point(width, height, point[0], point[1]), visited.copy(), -1, stepMillis);
+                    if (point[0] >= 0 && point[0] < width && point[1] >= 0 && point[1] < height) {
+                        visited.set(point[0], point[1], true);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "trace " + startX + " " + startY + " " + destX + " " + destY + " " + stepMillis + " " + times;
+        }
+    }
+
+    private static final class Sweep extends Timeline {
+        private final Direction direction;
+        private final int stepMillis;
+
+        Sweep(Direction direction, int stepMillis) {
+            this.direction = direction;
+            this.stepMillis = stepMillis;
+        }
+
+        @Override
+        void compile(List<Segment> out, int width, int height) {
+            final boolean columns = direction == Direction.LEFT || direction == Direction.RIGHT;
+            final int steps = columns ? width : height;
+            final BitGrid none = new BitGrid(width, height);
+            for (int i = 0; i < steps; i++) {
+                final int line = direction == Direction.RIGHT || direction == Direction.DOWN ? i : steps - 1 - i;
+                final BitGrid on = new BitGrid(width, height);
+                if (columns) {
+                    on.setColumn(line, -1L);
+                } else {
+                    on.setRow(line, -1L);
+                }
+                add(out, on, none, -1, stepMillis);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "sweep " + direction + " " + stepMillis;
+        }
+    }
+
+    private static final class Fade extends Timeline {
+        private final int from, to, stepMillis;
+
+        Fade(int from, int to, int stepMillis) {
+            this.from = from;
+            this.to = to;
+            this.stepMillis = stepMillis;
+        }
+
+        @Override
+        void compile(List<Segment> out, int width, int height) {
+            final BitGrid none = new BitGrid(width, height);
+            final int step = to >= from ? 1 : -1;
+            for (int brightness = from; brightness != to + step; brightness += step) {
+                add(out, none, none, brightness, stepMillis);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "fade " + from + " " + to + " " + stepMillis;
+        }
+    }
+
+    private static final class Pixels extends Timeline {
+        private final int millis;
+        private final long[] words;
+
+        Pixels(int millis, long[] words) {
+            this.millis = millis;
+            this.words = words;
+        }
+
+        @Override
+        void compile(List<Segment> out, int width, int height) {
+            final BitGrid on = new BitGrid(width, height);
+            // Bits beyond the display are dropped
+            for (int i = 0; i < words.length && i < on.getWordCount(); i++) {
+                on.setWord(i, words[i]);
+            }
+            add(out, on, new BitGrid(width, height), -1, millis);
+        }
+
+        @Override
+        public String toString() {
+            if (words.length == 0) {
+                return "hold " + millis;
+            }
+
+            final StringBuilder sb = new StringBuilder("pixels ").append(millis).append(' ');
+            for (int i = 0; i < words.length; i++) {
+                sb.append(i == 0 ? "0x" : ":0x").append(Long.toHexString(words[i]));
+            }
+            return sb.toString();
+        }
+    }
+
+    private static final class Repeat extends Timeline {
+        private final int times;
+        private final Timeline part;
+
+        Repeat(int times, Timeline part) {
+            this.times = times;
+            this.part = part;
+        }
+
+        @Override
+        void compile(List<Segment> out, int width, int height) {
+            final List<Segment> once = new ArrayList<>();
+            part.compile(once, width, height);
+            for (int i = 0; i < times; i++) {
+                out.addAll(once);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "repeat " + times + " " + part;
+        }
+    }
+
+    private static final class Composite extends Timeline {
+        private final boolean parallel;
+        private final Timeline[] parts;
+
+        Composite(boolean parallel, Timeline[] parts) {
+            this.parallel = parallel;
+            this.parts = parts;
+        }
+
+        @Override
+        void compile(List<Segment> out, int width, int height) {
+            if (!parallel) {
+                for (Timeline part : parts) {
+                    part.compile(out, width, height);
+                }
+                return;
+            }
+
+            List<Segment> merged = new ArrayList<>();
+            for (Timeline part : parts) {
+                final List<Segment> frames = new ArrayList<>();
+                part.compile(frames, width, height);
+                merged = merge(merged, frames);
+            }
+            out.addAll(merged);
+        }
+
+        /**
+         * Merges two frame lists running at the same time, frames are split at every change of either list
+         */
+        private static List<Segment> merge(List<Segment> a, List<Segment> b) {
+            final List<Segment> out = new ArrayList<>();
+            int i = 0, j = 0;
+            int restA = a.isEmpty() ? 0 : a.get(0).millis;
+            int restB = b.isEmpty() ? 0 : b.get(0).millis;
+
+            while (i < a.size() || j < b.size()) {
+                final Segment sa = i < a.size() ? a.get(i) : null;
+                final Segment sb = j < b.size() ? b.get(j) : null;
+                final int step = sa == null ? restB : sb == null ? restA : Math.min(restA, restB);
+
+                if (sa == null) {
+                    out.add(sb.withMillis(step));
+                } else if (sb == null) {
+                    out.add(sa.withMillis(step));
+                } else {
+                    final BitGrid on = sa.on.copy();
+                    final BitGrid off = sa.off.copy();
+                    for (int w = 0; w < on.getWordCount(); w++) {
+                        on.setWord(w, on.getWord(w) | sb.on.getWord(w));
+                        off.setWord(w, (off.getWord(w) | sb.off.getWord(w)) & ~on.getWord(w));
+                    }
+                    out.add(new Segment(on, off, sb.brightness >= 0 ? sb.brightness : sa.brightness, step));
+                }
+
+                if (sa != null && (restA -= step) == 0 && ++i < a.size()) {
+                    restA = a.get(i).millis;
+                }
+                if (sb != null && (restB -= step) == 0 && ++j < b.size()) {
+                    restB = b.get(j).millis;
+                }
+            }
+            return out;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder(parallel ? "par(" : "seq(");
+            for (int i = 0; i < parts.length; i++) {
+                sb.append(i == 0 ? "" : " ").append(parts[i]);
+            }
+            return sb.append(')').toString();
+        }
+    }
+
+    /**
+     * Recursive descent parser of the text form, tokens are separated by whitespace, '(', ')' and '='
+     */
+    private static final class Parser {
+        private final List<String> tokens = new ArrayList<>();
+        private int position;
+
+        Parser(String text) {
+            for (String line : text.split("\\R")) {
+                final int comment = line.indexOf('#');
+                final String code = comment < 0 ? line : line.substring(0, comment);
+                final String spaced = code.replace("(", " ( ").replace(")", " ) ").replace("=", " = ");
+                tokens.addAll(Arrays.asList(spaced.trim().split("\\s+")));
+            }
+            tokens.removeIf(String::isEmpty);
+        }
+
+        boolean atEnd() {
+            return position >= tokens.size();
+        }
+
+        String peek() {
+            if (atEnd()) {
+                throw new IllegalArgumentException("Unexpected end of timeline");
+            }
+            return tokens.get(position);
+        }
+
+        String next() {
+            if (atEnd()) {
+                throw new IllegalArgumentException("Unexpected end of timeline");
+            }
+            return tokens.get(position++);
+        }
+
+        void expect(String token) {
+            final String found = next();
+            if (!found.equals(token)) {
+                throw new IllegalArgumentException("Expected '" + token + "' but found '" + found + "'");
+            }
+        }
+
+        void expectEnd() {
+            if (!atEnd()) {
+                throw new IllegalArgumentException("Unexpected '" + tokens.get(position) + "' after timeline");
+            }
+        }
+
+        int number() {
+            final String token = next();
+            try {
+                return Integer.parseInt(token);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a number but found '" + token + "'");
+            }
+        }
+
+        Timeline timeline() {
+            final String keyword = next();
+            switch (keyword.toLowerCase(Locale.ROOT)) {
+                case "blink":
+                    return blink(number(), number(), number(), number(), number());
+                case "trace":
+                    return trace(number(), number(), number(), number(), number(), number());
+                case "sweep":
+                    return sweep(Direction.valueOf(next().toUpperCase(Locale.ROOT)), number());
+                case "fade":
+                    return fade(number(), number(), number());
+                case "hold":
+                    return hold(number());
+                case "pixels":
+                    return pixels();
+                case "repeat":
+                    return repeat(number(), timeline());
+                case "seq":
+                case "par":
+                    expect("(");
+                    final List<Timeline> parts = new ArrayList<>();
+                    while (!peek().equals(")")) {
+                        parts.add(timeline());
+                    }
+                    expect(")");
+                    final Timeline[] array = parts.toArray(new Timeline[0]);
+                    return keyword.equalsIgnoreCase("par") ? parallel(array) : sequence(array);
+                default:
+                    throw new IllegalArgumentException("Unknown timeline '" + keyword + "'");
+            }
+        }
+
+        Timeline pixels() {
+            final int millis = number();
+            final String[] hex = next().split(":");
+            final long[] words = new long[hex.length];
+            for (int i = 0; i < hex.length; i++) {
+                words[i] = Long.parseUnsignedLong(hex[i].replaceFirst("^0[xX]", ""), 16);
+            }
+            return new Pixels(millis, words);
+        }
+    }
+}
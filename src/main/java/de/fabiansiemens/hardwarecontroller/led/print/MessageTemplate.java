@@ -0,0 +1,243 @@
+package de.fabiansiemens.hardwarecontroller.led.print;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Message for the LED matrix which is parsed once into glyphs and filled with changing values at render time.
+ * <p>
+ * The pattern uses the same "{SYMBOL-NAME}" references as {@link de.fabiansiemens.hardwarecontroller.led.LedMatrixController#print(String)}.
+ * A reference with a type after a colon is a parameter slot instead:
+ * <ul>
+ *     <li>"{PLAYER:text}": any value, printed with {@link String#valueOf(Object)}</li>
+ *     <li>"{MOVES:number}": an integral {@link Number}</li>
+ *     <li>"{ICON:symbol}": a {@link Symbol}</li>
+ *     <li>"{TIME:clock}": a {@link Duration} or milliseconds as {@link Number}, printed as M:SS or H:MM:SS</li>
+ * </ul>
+ * E.g. "{PLAYER:text} wins {HEART}" has one text slot and a fixed heart. A reference without a type must name a {@link Symbol},
+ * so a misspelled symbol is rejected instead of silently becoming a slot. Templates are immutable and can be shared between threads.
+ */
+public final class MessageTemplate {
+
+    /**
+     * Type of a parameter slot
+     */
+    public enum SlotType {
+        TEXT,
+        NUMBER,
+        SYMBOL,
+        CLOCK
+    }
+
+    private final String pattern;
+
+    /**
+     * Fixed glyphs before each slot, the last entry follows the last slot
+     */
+    private final Symbol[][] literals;
+    private final String[] slotNames;
+    private final SlotType[] slotTypes;
+
+    private MessageTemplate(String pattern, Symbol[][] literals, String[] slotNames, SlotType[] slotTypes) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.slotNames = slotNames;
+        this.slotTypes = slotTypes;
+    }
+
+    /**
+     * Parses a pattern into a template.
+     * Characters outside of references must be supported by {@link Symbol#getByChar(char)}, an unterminated "{" is printed as-is.
+     *
+     * @param pattern Pattern with symbol references and parameter slots
+     * @return Compiled template
+     * @throws IllegalArgumentException if the pattern contains an unsupported character, an unknown symbol or slot type or a
+     *                                  slot without a name
+     */
+    public static MessageTemplate compile(String pattern) {
+        final List<Symbol[]> literals = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        final List<SlotType> types = new ArrayList<>();
+        final List<Symbol> current = new ArrayList<>();
+
+        int i = 0;
+        while (i < pattern.length()) {
+            final char c = pattern.charAt(i);
+            final int end = c == '{' ? pattern.indexOf('}', i + 1) : -1;
+            if (end < 0) {
+                current.add(glyph(c));
+                i++;
+                continue;
+            }
+
+            final String reference = pattern.substring(i + 1, end);
+            final int colon = reference.indexOf(':');
+            if (colon < 0) {
+                final Symbol symbol = Symbol.getByName(reference);
+                if (symbol == null) {
+                    throw new IllegalArgumentException("Unknown symbol '" + reference + "', parameter slots need a type, e.g. '{"
+                            + reference + ":text}'");
+                }
+                current.add(symbol);
+            } else {
+                if (colon == 0) {
+                    throw new IllegalArgumentException("Slot '{" + reference + "}' has no name");
+                }
+                literals.add(current.toArray(new Symbol[0]));
+                current.clear();
+                names.add(reference.substring(0, colon));
+                types.add(slotType(reference.substring(colon + 1)));
+            }
+            i = end + 1;
+        }
+        literals.add(current.toArray(new Symbol[0]));
+
+        return new MessageTemplate(pattern, literals.toArray(new Symbol[0][]), names.toArray(new String[0]),
+                types.toArray(new SlotType[0]));
+    }
+
+    private static SlotType slotType(String name) {
+        for (SlotType type : SlotType.values()) {
+            if (type.name().equalsIgnoreCase(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown slot type '" + name + "'");
+    }
+
+    private static Symbol glyph(char c) {
+        final Symbol symbol = Symbol.getByChar(c);
+        if (symbol == null) {
+            throw new IllegalArgumentException("Character '" + c + "' is not supported by LED matrix");
+        }
+        return symbol;
+    }
+
+    /**
+     * Returns the number of parameter slots.
+     *
+     * @return Number of values expected by {@link #render(Object...)}
+     */
+    public int getSlotCount() {
+        return slotNames.length;
+    }
+
+    public String getSlotName(int index) {
+        return slotNames[index];
+    }
+
+    public SlotType getSlotType(int index) {
+        return slotTypes[index];
+    }
+
+    /**
+     * Fills the slots with the given values in the order of the pattern and returns the glyphs to print.
+     *
+     * @param values One value per slot
+     * @return New list of glyphs
+     * @throws IllegalArgumentException if the number of values does not match or a value does not fit its slot
+     */
+    public List<Symbol> render(Object... values) {
+        final List<Symbol> out = new ArrayList<>();
+        render(out, values);
+        return out;
+    }
+
+    /**
+     * Fills the slots with the given values and appends the glyphs to the given list, e.g. to reuse the list for every update.
+     *
+     * @param out    Receives the glyphs
+     * @param values One value per slot
+     * @throws IllegalArgumentException if the number of values does not match or a value does not fit its slot
+     */
+    public void render(List<Symbol> out, Object... values) {
+        if (values.length != slotNames.length) {
+            throw new IllegalArgumentException("Template '" + pattern + "' expects " + slotNames.length + " values");
+        }
+
+        for (int i = 0; i < slotNames.length; i++) {
+            append(out, literals[i]);
+            renderSlot(out, i, values[i]);
+        }
+        append(out, literals[slotNames.length]);
+    }
+
+    private static void append(List<Symbol> out, Symbol[] symbols) {
+        for (Symbol symbol : symbols) {
+            out.add(symbol);
+        }
+    }
+
+    private void renderSlot(List<Symbol> out, int slot, Object value) {
+        switch (slotTypes[slot]) {
+            case TEXT:
+                appendText(out, String.valueOf(value));
+                break;
+            case NUMBER:
+                if (!(value instanceof Number)) {
+                    throw mismatch(slot, value);
+                }
+                appendText(out, Long.toString(((Number) value).longValue()));
+                break;
+            case SYMBOL:
+                if (!(value instanceof Symbol)) {
+                    throw mismatch(slot, value);
+                }
+                out.add((Symbol) value);
+                break;
+            case CLOCK:
+                final long millis;
+                if (value instanceof Duration) {
+                    millis = ((Duration) value).toMillis();
+                } else if (value instanceof Number) {
+                    millis = ((Number) value).longValue();
+                } else {
+                    throw mismatch(slot, value);
+                }
+                appendText(out, formatClock(millis));
+                break;
+        }
+    }
+
+    private IllegalArgumentException mismatch(int slot, Object value) {
+        return new IllegalArgumentException("Slot '" + slotNames[slot] + "' expects "
+                + slotTypes[slot].name().toLowerCase(Locale.ROOT) + " but got " + value);
+    }
+
+    private static void appendText(List<Symbol> out, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            out.add(glyph(text.charAt(i)));
+        }
+    }
+
+    /**
+     * Formats a time as M:SS, or H:MM:SS from one hour on. Negative times are printed as 0:00.
+     *
+     * @param millis Time in milliseconds, seconds are truncated
+     * @return Formatted time
+     */
+    public static String formatClock(long millis) {
+        final long seconds = Math.max(0, millis) / 1000;
+        final long hours = seconds / 3600;
+        final long minutes = seconds / 60 % 60;
+        final StringBuilder sb = new StringBuilder(8);
+        if (hours > 0) {
+            sb.append(hours).append(':');
+            if (minutes < 10) {
+                sb.append('0');
+            }
+        }
+        sb.append(minutes).append(':');
+        if (seconds % 60 < 10) {
+            sb.append('0');
+        }
+        return sb.append(seconds % 60).toString();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -1,5 +1,9 @@
 package de.fabiansiemens.hardwarecontroller.led.print;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
 /**
  * Mapping of various symbols to their respective 8x8 encoding.
  * Each symbol can be linked to an optional ASCII code which can be looked up using {@link #getByChar(char)}.
@@ -20,6 +24,18 @@ public enum Symbol {
     ARROW_LEFT((byte) 0x10, (byte) 0x30, (byte) 0x70, (byte) 0xFF, (byte) 0xFF, (byte) 0x70, (byte) 0x30, (byte) 0x10),
     ARROW_RIGHT((byte) 0x08, (byte) 0x0C, (byte) 0x0E, (byte) 0xFF, (byte) 0xFF, (byte) 0x0E, (byte) 0x0C, (byte) 0x08),
 
+    // Icons: compact 3x5 digits in the top left corner, e.g. for clocks
+    SMALL_ZERO((byte) 0xE0, (byte) 0xA0, (byte) 0xA0, (byte) 0xA0, (byte) 0xE0, (byte) 0x00, (byte) 0x00, (byte) 0x00),
+    SMALL_ONE((byte) 0x40, (byte) 0xC0, (byte) 0x40, (byte) 0x40, (byte) 0xE0, (byte) 0x00, (byte) 0x00, (byte) 0x00),
+    SMALL_TWO((byte) 0xE0, (byte) 0x20, (byte) 0xE0, (byte) 0x80, (byte) 0xE0, (byte) 0x00, (byte) 0x00, (byte) 0x00),
+    SMALL_THREE((byte) 0xE0, (byte) 0x20, (byte) 0x60, (byte) 0x20, (byte) 0xE0, (byte) 0x00, (byte) 0x00, (byte) 0x00),
+    SMALL_FOUR((byte) 0xA0, (byte) 0xA0, (byte) 0xE0, (byte) 0x20, (byte) 0x20, (byte) 0x00, (byte) 0x00, (byte) 0x00),
+    SMALL_FIVE((byte) 0xE0, (byte) 0x80, (byte) 0xE0, (byte) 0x20, (byte) 0xE0, (byte) 0x00, (byte) 0x00, (byte) 0x00),
+    SMALL_SIX((byte) 0xE0, (byte) 0x80, (byte) 0xE0, (byte) 0xA0, (byte) 0xE0, (byte) 0x00, (byte) 0x00, (byte) 0x00),
+    SMALL_SEVEN((byte) 0xE0, (byte) 0x20, (byte) 0x40, (byte) 0x40, (byte) 0x40, (byte) 0x00, (byte) 0x00, (byte) 0x00),
+    SMALL_EIGHT((byte) 0xE0, (byte) 0xA0, (byte) 0xE0, (byte) 0xA0, (byte) 0xE0, (byte) 0x00, (byte) 0x00, (byte) 0x00),
+    SMALL_NINE((byte) 0xE0, (byte) 0xA0, (byte) 0xE0, (byte) 0x20, (byte) 0xE0, (byte) 0x00, (byte) 0x00, (byte) 0x00),
+
     // ASCII: Uppercase Letters
     A('A', (byte) 0x30, (byte) 0x78, (byte) 0xCC, (byte) 0xCC, (byte) 0xFC, (byte) 0xCC, (byte) 0xCC, (byte) 0x00),
     B('B', (byte) 0xFC, (byte) 0x66, (byte) 0x66, (byte) 0x7C, (byte) 0x66, (byte) 0x66, (byte) 0xFC, (byte) 0x00),
@@ -133,6 +149,31 @@ public enum Symbol {
      */
     private final byte[] rows;
 
+    /**
+     * Leftmost column with at least one pixel and number of columns up to the rightmost one, both 0 for an empty symbol.
+     * Derived once from the rows, used for proportional text.
+     */
+    private final int firstColumn;
+    private final int glyphWidth;
+
+    /**
+     * Lookup tables for {@link #getByChar(char)} and {@link #getByName(String)}, built once when the enum is loaded
+     */
+    private static final Symbol[] BY_CHAR = new Symbol[128];
+    private static final Map<String, Symbol> BY_NAME = new HashMap<>();
+    private static final Symbol[] SMALL_DIGITS = {
+            SMALL_ZERO, SMALL_ONE, SMALL_TWO, SMALL_THREE, SMALL_FOUR, SMALL_FIVE, SMALL_SIX, SMALL_SEVEN, SMALL_EIGHT, SMALL_NINE
+    };
+
+    static {
+        for (Symbol symbol : values()) {
+            if (symbol.ascii >= 0 && symbol.ascii < BY_CHAR.length && BY_CHAR[symbol.ascii] == null) {
+                BY_CHAR[symbol.ascii] = symbol;
+            }
+            BY_NAME.putIfAbsent(symbol.name().toUpperCase(Locale.ROOT), symbol);
+        }
+    }
+
     /**
      * Creates a new symbol without any ASCII character association
      *
@@ -155,6 +196,19 @@ public enum Symbol {
 
         this.ascii = ascii != null ? ascii : -1;
         this.rows = rows;
+
+        // Combine all rows to find the used columns, bit 7 is the leftmost column
+        int columns = 0;
+        for (byte row : rows) {
+            columns |= row & 0xFF;
+        }
+        if (columns == 0) {
+            this.firstColumn = 0;
+            this.glyphWidth = 0;
+        } else {
+            this.firstColumn = Integer.numberOfLeadingZeros(columns) - 24;
+            this.glyphWidth = 8 - Integer.numberOfTrailingZeros(columns) - this.firstColumn;
+        }
     }
 
     /**
@@ -175,6 +229,24 @@ public enum Symbol {
         return this.rows;
     }
 
+    /**
+     * Returns the leftmost column which contains at least one pixel.
+     *
+     * @return Column from 0 (left) to 7, 0 for an empty symbol
+     */
+    public int getFirstColumn() {
+        return this.firstColumn;
+    }
+
+    /**
+     * Returns the number of columns from the leftmost to the rightmost pixel, e.g. 4 for "I" and 7 for "W".
+     *
+     * @return Width of the glyph from 1-8 or 0 for an empty symbol like {@link #SPACE}
+     */
+    public int getGlyphWidth() {
+        return this.glyphWidth;
+    }
+
     /**
      * Attempts to find a symbol associated to the given character and returns it.
      * Returns null if no symbol exists for the given character.
@@ -183,11 +255,30 @@ public enum Symbol {
      * @return Symbol if found or null
      */
     public static Symbol getByChar(char c) {
-        for (Symbol symbol : Symbol.values()) {
-            if (symbol.getAscii() == c) {
-                return symbol;
-            }
+        return c < BY_CHAR.length ? BY_CHAR[c] : null;
+    }
+
+    /**
+     * Returns the compact 3x5 glyph of a digit, see {@link #SMALL_ZERO}.
+     *
+     * @param digit Digit from 0-9
+     * @return Compact digit symbol
+     */
+    public static Symbol getSmallDigit(int digit) {
+        if (digit < 0 || digit > 9) {
+            throw new IllegalArgumentException("Digit must be an integer in the range 0-9");
         }
-        return null;
+        return SMALL_DIGITS[digit];
+    }
+
+    /**
+     * Attempts to find a symbol by its name, ignoring the case like "{heart}" references in printed strings.
+     * Returns null instead of throwing an exception if no symbol has the given name.
+     *
+     * @param name Symbol name to lookup, e.g. "ARROW_UP"
+     * @return Symbol if found or null
+     */
+    public static Symbol getByName(String name) {
+        return BY_NAME.get(name.toUpperCase(Locale.ROOT));
     }
 }
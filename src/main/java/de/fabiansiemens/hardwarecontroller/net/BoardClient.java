@@ -0,0 +1,157 @@
+package de.fabiansiemens.hardwarecontroller.net;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+import de.fabiansiemens.hardwarecontroller.ButtonEvent;
+import de.fabiansiemens.hardwarecontroller.chess.MoveDetected;
+
+/**
+ * Blockierender Client für einen {@link BoardServer}, z.B. für eine entfernte Anzeige oder zum Testen über Loopback.
+ *
+ * {@link #readFrame()} liest den nächsten Frame und wendet ihn auf den lokalen Zustand an, danach können Belegung, letzter Zug
+ * und letztes Knopf-Ereignis abgefragt werden. Lesen ist für einen einzelnen Thread gedacht, Befehle können aus beliebigen
+ * Threads gesendet werden.
+ */
+public class BoardClient implements Closeable {
+
+	private final SocketChannel channel;
+	private final ByteBuffer in;
+	private BitGrid grid;
+	private long sequence;
+	private MoveDetected move;
+	private ButtonEvent buttonEvent;
+
+	/**
+	 * Verbindet sich mit einem Server
+	 * @throws IOException wenn keine Verbindung aufgebaut werden kann
+	 */
+	public BoardClient(String host, int port) throws IOException {
+		this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+		this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		this.in = ByteBuffer.allocate(2 + BoardProtocol.MAX_FRAME_LENGTH);
+		this.in.flip();
+	}
+
+	/**
+	 * Liest den nächsten Frame und übernimmt ihn in den lokalen Zustand. Blockiert, bis ein vollständiger Frame empfangen wurde.
+	 * @return Typ des Frames, z.B. {@link BoardProtocol#DELTA}
+	 * @throws IOException bei Verbindungsfehlern oder wenn der Server die Verbindung beendet hat
+	 */
+	public int readFrame() throws IOException {
+		while(true) {
+			if(in.remaining() >= 2) {
+				int start = in.position();
+				int length = in.getShort(start) & 0xFFFF;
+				if(length < 1)
+					throw new IOException("Empty frame");
+
+				if(in.remaining() >= 2 + length) {
+					ByteBuffer payload = in.duplicate();
+					payload.position(start + BoardProtocol.HEADER_SIZE).limit(start + 2 + length);
+					in.position(start + 2 + length);
+
+					int type = in.get(start + 2) & 0xFF;
+					handle(type, payload.slice());
+					return type;
+				}
+			}
+
+			in.compact();
+			int read = channel.read(in);
+			in.flip();
+			if(read < 0)
+				throw new EOFException("Connection closed by server");
+		}
+	}
+
+	private void handle(int type, ByteBuffer payload) throws IOException {
+		switch(type) {
+		case BoardProtocol.SNAPSHOT:
+			int width = payload.get() & 0xFF;
+			int height = payload.get() & 0xFF;
+			sequence = payload.getLong();
+			grid = new BitGrid(width, height);
+			BoardProtocol.readWords(payload, grid);
+		break;
+		case BoardProtocol.DELTA:
+			if(grid == null)
+				throw new IOException("Delta received before snapshot");
+
+			sequence = payload.getLong();
+			BoardProtocol.applyDelta(payload, grid);
+		break;
+		case BoardProtocol.MOVE:
+			move = BoardProtocol.readMove(payload, System.nanoTime());
+		break;
+		case BoardProtocol.BUTTON:
+			buttonEvent = BoardProtocol.readButton(payload, System.nanoTime());
+		break;
+		default:
+			//Unbekannte Frames späterer Versionen werden übersprungen
+		}
+	}
+
+	/**
+	 * @return Kopie der zuletzt empfangenen Belegung, null vor dem ersten Snapshot @Nullable
+	 */
+	public BitGrid getGrid() {
+		return grid == null ? null : grid.copy();
+	}
+
+	/**
+	 * @return Scan Nummer der zuletzt empfangenen Belegung
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return zuletzt empfangener Zug @Nullable
+	 */
+	public MoveDetected getMove() {
+		return move;
+	}
+
+	/**
+	 * @return zuletzt empfangenes Knopf-Ereignis @Nullable
+	 */
+	public ButtonEvent getButtonEvent() {
+		return buttonEvent;
+	}
+
+	/**
+	 * Zeigt ein Bild auf der LED Matrix des Servers an und beendet eine laufende Animation
+	 * @param frame - Bildspeicher in der Größe der LED Matrix
+	 */
+	public void sendLedFrame(BitGrid frame) throws IOException {
+		send(BoardProtocol.ledFrame(frame));
+	}
+
+	/**
+	 * Spielt eine Animation auf der LED Matrix des Servers ab
+	 * @param frames - Bilder in der Größe der LED Matrix, höchstens 255
+	 * @param frameMillis - Anzeigedauer pro Bild
+	 * @param loops - Anzahl Durchläufe, 0 = bis zum nächsten Befehl
+	 */
+	public void sendAnimation(List<BitGrid> frames, int frameMillis, int loops) throws IOException {
+		send(BoardProtocol.ledAnimation(frames, frameMillis, loops));
+	}
+
+	private synchronized void send(ByteBuffer frame) throws IOException {
+		while(frame.hasRemaining())
+			channel.write(frame);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
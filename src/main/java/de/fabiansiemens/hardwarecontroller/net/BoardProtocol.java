@@ -0,0 +1,204 @@
+package de.fabiansiemens.hardwarecontroller.net;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+import de.fabiansiemens.hardwarecontroller.ButtonEvent;
+import de.fabiansiemens.hardwarecontroller.ButtonGesture;
+import de.fabiansiemens.hardwarecontroller.chess.MoveDetected;
+import de.fabiansiemens.hardwarecontroller.chess.MoveType;
+
+/**
+ * Binärprotokoll zwischen {@link BoardServer} und {@link BoardClient}.
+ *
+ * Jeder Frame besteht aus einem Header (u16 Länge von Typ und Nutzdaten, u8 Typ) und den Nutzdaten, alle Zahlen in
+ * Netzwerk-Bytereihenfolge. Nach dem Verbindungsaufbau sendet der Server einen {@link #SNAPSHOT} mit der vollständigen
+ * Belegung, danach nur noch {@link #DELTA} Frames: die XOR-Differenz der Belegung, beschränkt auf die geänderten Wörter, und
+ * die Scan Nummer. Bei einem 8x8 Brett ist ein Delta damit 21 Bytes lang. Kommt ein Client mit dem Lesen nicht hinterher,
+ * verwirft der Server seine ausstehenden Frames und sendet stattdessen einen neuen Snapshot.
+ *
+ * <pre>
+ * SNAPSHOT  u8 Breite, u8 Höhe, i64 Scan Nummer, u8 Anzahl Wörter, i64[] Wörter
+ * DELTA     i64 Scan Nummer, u8 Anzahl, (u8 Wortindex, i64 XOR)[]
+ * MOVE      u8 Art, u8 Start, u8 Ziel, u8 geschlagen, u8 Turm Start, u8 Turm Ziel, i64 Belegung (Feld 0xFF = keins)
+ * BUTTON    u8 Geste, i64 Dauer in Nanosekunden
+ * LED_FRAME u8 Anzahl Wörter, i64[] Wörter (Bildspeicher der LED Matrix, Bit y * Breite + x)
+ * LED_ANIMATION u16 Millisekunden pro Bild, u16 Durchläufe (0 = endlos), u8 Anzahl Wörter, u8 Anzahl Bilder, i64[] Wörter
+ * </pre>
+ */
+public final class BoardProtocol {
+
+	/** Server an Client: vollständige Belegung */
+	public static final int SNAPSHOT = 0x01;
+	/** Server an Client: Änderung der Belegung */
+	public static final int DELTA = 0x02;
+	/** Server an Client: erkannter Zug */
+	public static final int MOVE = 0x03;
+	/** Server an Client: Ereignis des Confirm-Move Knopfs */
+	public static final int BUTTON = 0x04;
+	/** Client an Server: Bild für die LED Matrix */
+	public static final int LED_FRAME = 0x10;
+	/** Client an Server: Animation für die LED Matrix */
+	public static final int LED_ANIMATION = 0x11;
+
+	/**
+	 * Länge des Headers: u16 Länge, u8 Typ
+	 */
+	public static final int HEADER_SIZE = 3;
+	/**
+	 * Größte Länge von Typ und Nutzdaten eines Frames
+	 */
+	public static final int MAX_FRAME_LENGTH = 0xFFFF;
+
+	private static final int NO_SQUARE = 0xFF;
+
+	private BoardProtocol() {
+	}
+
+	/**
+	 * @return Frame mit der vollständigen Belegung, bereit zum Senden
+	 */
+	public static ByteBuffer snapshot(long sequence, BitGrid grid) {
+		ByteBuffer frame = allocate(SNAPSHOT, 2 + 8 + 1 + grid.getWordCount() * 8);
+		frame.put((byte) grid.getWidth()).put((byte) grid.getHeight()).putLong(sequence);
+		putWords(frame, grid);
+		return frame.flip();
+	}
+
+	/**
+	 * @param changed - XOR-Differenz zur vorherigen Belegung
+	 * @return Frame mit den geänderten Wörtern, bereit zum Senden
+	 */
+	public static ByteBuffer delta(long sequence, BitGrid changed) {
+		int count = 0;
+		for(int i = 0; i < changed.getWordCount(); i++)
+			if(changed.getWord(i) != 0)
+				count++;
+
+		ByteBuffer frame = allocate(DELTA, 8 + 1 + count * 9);
+		frame.putLong(sequence).put((byte) count);
+		for(int i = 0; i < changed.getWordCount(); i++)
+			if(changed.getWord(i) != 0)
+				frame.put((byte) i).putLong(changed.getWord(i));
+
+		return frame.flip();
+	}
+
+	public static ByteBuffer move(MoveDetected move) {
+		ByteBuffer frame = allocate(MOVE, 6 + 8);
+		frame.put((byte) move.getType().ordinal())
+				.put(square(move.getFrom()))
+				.put(square(move.getTo()))
+				.put(square(move.getCaptured()))
+				.put(square(move.getRookFrom()))
+				.put(square(move.getRookTo()))
+				.putLong(move.getOccupancy());
+		return frame.flip();
+	}
+
+	public static ByteBuffer button(ButtonEvent event) {
+		ByteBuffer frame = allocate(BUTTON, 1 + 8);
+		frame.put((byte) event.getGesture().ordinal()).putLong(event.getDurationNanos());
+		return frame.flip();
+	}
+
+	public static ByteBuffer ledFrame(BitGrid frame) {
+		ByteBuffer buffer = allocate(LED_FRAME, 1 + frame.getWordCount() * 8);
+		putWords(buffer, frame);
+		return buffer.flip();
+	}
+
+	/**
+	 * @param frames - Bilder gleicher Größe, höchstens 255
+	 * @param frameMillis - Anzeigedauer pro Bild
+	 * @param loops - Anzahl Durchläufe, 0 = bis zum nächsten Befehl
+	 */
+	public static ByteBuffer ledAnimation(List<BitGrid> frames, int frameMillis, int loops) {
+		if(frames.isEmpty() || frames.size() > 0xFF)
+			throw new IllegalArgumentException("Animation must have 1-255 frames");
+
+		int words = frames.get(0).getWordCount();
+		ByteBuffer buffer = allocate(LED_ANIMATION, 2 + 2 + 1 + 1 + frames.size() * words * 8);
+		buffer.putShort((short) frameMillis).putShort((short) loops).put((byte) words).put((byte) frames.size());
+		for(BitGrid frame : frames)
+			for(int i = 0; i < words; i++)
+				buffer.putLong(frame.getWord(i));
+
+		return buffer.flip();
+	}
+
+	/**
+	 * Liest die Wörter eines {@link #SNAPSHOT} oder {@link #LED_FRAME} in ein Bitfeld. Fehlende Wörter werden als leer
+	 * angenommen, überzählige Wörter werden ignoriert.
+	 * @param payload - Nutzdaten ab dem Feld "Anzahl Wörter"
+	 */
+	public static void readWords(ByteBuffer payload, BitGrid target) {
+		int count = payload.get() & 0xFF;
+		for(int i = 0; i < target.getWordCount(); i++)
+			target.setWord(i, i < count ? payload.getLong() : 0L);
+
+		//Überzählige Wörter überspringen
+		if(count > target.getWordCount())
+			payload.position(payload.position() + (count - target.getWordCount()) * 8);
+	}
+
+	/**
+	 * Wendet die Nutzdaten eines {@link #DELTA} auf eine Belegung an
+	 * @param payload - Nutzdaten ab dem Feld "Anzahl"
+	 */
+	public static void applyDelta(ByteBuffer payload, BitGrid target) {
+		int count = payload.get() & 0xFF;
+		for(int i = 0; i < count; i++) {
+			int index = payload.get() & 0xFF;
+			long xor = payload.getLong();
+			if(index < target.getWordCount())
+				target.setWord(index, target.getWord(index) ^ xor);
+		}
+	}
+
+	/**
+	 * @param payload - Nutzdaten eines {@link #MOVE}
+	 * @param timestampNanos - Empfangszeitpunkt (System.nanoTime)
+	 */
+	public static MoveDetected readMove(ByteBuffer payload, long timestampNanos) {
+		MoveType type = MoveType.values()[payload.get()];
+		int from = square(payload.get());
+		int to = square(payload.get());
+		int captured = square(payload.get());
+		int rookFrom = square(payload.get());
+		int rookTo = square(payload.get());
+		return new MoveDetected(type, from, to, captured, rookFrom, rookTo, payload.getLong(), timestampNanos);
+	}
+
+	/**
+	 * @param payload - Nutzdaten eines {@link #BUTTON}
+	 * @param timestampNanos - Empfangszeitpunkt (System.nanoTime)
+	 */
+	public static ButtonEvent readButton(ByteBuffer payload, long timestampNanos) {
+		ButtonGesture gesture = ButtonGesture.values()[payload.get()];
+		return new ButtonEvent(gesture, timestampNanos, payload.getLong());
+	}
+
+	private static ByteBuffer allocate(int type, int payload) {
+		int length = 1 + payload;
+		if(length > MAX_FRAME_LENGTH)
+			throw new IllegalArgumentException("Frame too large: " + length);
+
+		return ByteBuffer.allocate(2 + length).putShort((short) length).put((byte) type);
+	}
+
+	private static void putWords(ByteBuffer frame, BitGrid grid) {
+		frame.put((byte) grid.getWordCount());
+		for(int i = 0; i < grid.getWordCount(); i++)
+			frame.putLong(grid.getWord(i));
+	}
+
+	private static byte square(int square) {
+		return (byte) (square < 0 ? NO_SQUARE : square);
+	}
+
+	private static int square(byte square) {
+		return (square & 0xFF) == NO_SQUARE ? -1 : square & 0xFF;
+	}
+}
@@ -0,0 +1,496 @@
+package de.fabiansiemens.hardwarecontroller.net;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+import de.fabiansiemens.hardwarecontroller.BoardListener;
+import de.fabiansiemens.hardwarecontroller.ButtonEvent;
+import de.fabiansiemens.hardwarecontroller.HardwareController;
+import de.fabiansiemens.hardwarecontroller.HardwareListener;
+import de.fabiansiemens.hardwarecontroller.chess.MoveDetected;
+import de.fabiansiemens.hardwarecontroller.chess.MoveListener;
+import de.fabiansiemens.hardwarecontroller.led.LedMatrixController;
+import de.fabiansiemens.hardwarecontroller.sensor.ScanResult;
+
+/**
+ * Eingebetteter Server, über den entfernte Spieler und Zuschauer ein Brett verfolgen und die LED Matrix ansteuern können.
+ *
+ * Alle Verbindungen werden von einem einzigen Thread über einen NIO {@link Selector} mit nicht blockierenden Sockets bedient.
+ * Änderungen der Belegung, erkannte Züge und Knopf-Ereignisse werden einmal als Frame kodiert ({@link BoardProtocol}) und
+ * an alle Clients verteilt, die Clients teilen sich dabei den Inhalt des Frames. Ereignisse aus anderen Threads (Scanner,
+ * GPIO) werden in eine Warteschlange gelegt und im Selector Thread verarbeitet, sodass der Zustand des Servers nur von
+ * diesem Thread verändert wird. Ein langsamer Client blockiert weder den Server noch die übrigen Clients: Überschreiten seine
+ * ausstehenden Daten {@link #MAX_QUEUED_BYTES}, werden sie verworfen und durch einen Snapshot der aktuellen Belegung ersetzt.
+ * Züge und Knopf-Ereignisse gehen diesem Client dabei verloren.
+ * LED Befehle der Clients werden in einem eigenen Thread ausgeführt, damit SPI Übertragungen den Selector nicht aufhalten.
+ */
+public class BoardServer implements Closeable, BoardListener, HardwareListener, MoveListener {
+
+	/**
+	 * Standard Port des Servers
+	 */
+	public static final int DEFAULT_PORT = 7219;
+	/**
+	 * Ausstehende Bytes pro Client, ab denen seine Frames durch einen Snapshot ersetzt werden
+	 */
+	public static final int MAX_QUEUED_BYTES = 64 * 1024;
+
+	private static final int READ_BUFFER_SIZE = 4096;
+
+	private final LedMatrixController leds;
+	private final Selector selector;
+	private final ServerSocketChannel server;
+	private final int port;
+	private final Thread thread;
+	private final ConcurrentLinkedQueue<Runnable> tasks;
+	private final ScheduledExecutorService ledExecutor;
+
+	//Nur im Selector Thread verwendet
+	private final List<Client> clients;
+	private final List<Client> dirty;
+	private BitGrid state;
+	private long sequence;
+
+	//Nur im LED Thread verwendet
+	private ScheduledFuture<?> animation;
+
+	private volatile boolean running;
+	private volatile int clientCount;
+
+	/**
+	 * Startet den Server
+	 * @param port - TCP Port, 0 für einen freien Port
+	 * @param initial - aktuelle Belegung, wird als erster Snapshot gesendet
+	 * @param leds - LED Matrix für die Befehle der Clients, null wenn keine Befehle angenommen werden @Nullable
+	 * @throws IOException wenn der Port nicht geöffnet werden kann
+	 */
+	public BoardServer(int port, BitGrid initial, LedMatrixController leds) throws IOException {
+		this.leds = leds;
+		this.state = initial.copy();
+		this.tasks = new ConcurrentLinkedQueue<Runnable>();
+		this.clients = new ArrayList<Client>();
+		this.dirty = new ArrayList<Client>();
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+
+		try {
+			server.configureBlocking(false);
+			server.bind(new InetSocketAddress(port));
+			server.register(selector, SelectionKey.OP_ACCEPT);
+		}
+		catch(IOException e) {
+			server.close();
+			selector.close();
+			throw e;
+		}
+
+		this.port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+		this.ledExecutor = Executors.newSingleThreadScheduledExecutor(task -> {
+			Thread thread = new Thread(task, "BoardServer-Leds");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		running = true;
+		thread = new Thread(this::run, "BoardServer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	/**
+	 * @return Anzahl der verbundenen Clients
+	 */
+	public int getClientCount() {
+		return clientCount;
+	}
+
+	@Override
+	public void onBoardChanged(HardwareController controller, ScanResult result) {
+		publishScan(result);
+	}
+
+	@Override
+	public void onConfirmButtonPressed(HardwareController controller) {
+		//Wird über onButtonEvent als PRESS gemeldet
+	}
+
+	@Override
+	public void onButtonEvent(HardwareController controller, ButtonEvent event) {
+		publishButton(event);
+	}
+
+	@Override
+	public void onMoveDetected(MoveDetected move) {
+		publishMove(move);
+	}
+
+	/**
+	 * Sendet die Änderung der Belegung an alle Clients. Kann aus beliebigen Threads aufgerufen werden.
+	 * @param result - Scan mit geänderter Belegung
+	 */
+	public void publishScan(ScanResult result) {
+		BitGrid current = result.getGrid();
+		long scan = result.getSequence();
+
+		submit(() -> {
+			//Die Differenz wird zum Zustand des Servers gebildet, damit Clients immer konsistent bleiben
+			ByteBuffer frame = BoardProtocol.delta(scan, state.xor(current));
+			state = current;
+			sequence = scan;
+			broadcast(frame);
+		});
+	}
+
+	/**
+	 * Sendet einen Zug an alle Clients. Kann aus beliebigen Threads aufgerufen werden.
+	 */
+	public void publishMove(MoveDetected move) {
+		ByteBuffer frame = BoardProtocol.move(move);
+		submit(() -> broadcast(frame));
+	}
+
+	/**
+	 * Sendet ein Knopf-Ereignis an alle Clients. Kann aus beliebigen Threads aufgerufen werden.
+	 */
+	public void publishButton(ButtonEvent event) {
+		ByteBuffer frame = BoardProtocol.button(event);
+		submit(() -> broadcast(frame));
+	}
+
+	/**
+	 * Trennt alle Clients und beendet den Server
+	 */
+	@Override
+	public void close() throws IOException {
+		if(!running)
+			return;
+
+		running = false;
+		selector.wakeup();
+
+		try {
+			thread.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		ledExecutor.shutdownNow();
+	}
+
+	private void submit(Runnable task) {
+		if(!running)
+			return;
+
+		tasks.add(task);
+		selector.wakeup();
+	}
+
+	private void run() {
+		try {
+			while(running) {
+				selector.select();
+
+				//Alle anstehenden Ereignisse einreihen und danach jeden Client einmal schreiben, statt einmal pro Frame
+				Runnable task;
+				while((task = tasks.poll()) != null)
+					task.run();
+				flushDirty();
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					if(!key.isValid())
+						continue;
+
+					if(key.isAcceptable()) {
+						accept();
+						continue;
+					}
+
+					Client client = (Client) key.attachment();
+					try {
+						if(key.isReadable())
+							client.read();
+						if(key.isValid() && key.isWritable())
+							client.flush();
+					}
+					catch(IOException | RuntimeException e) {
+						//Verbindungsfehler oder fehlerhafte Frames trennen nur diesen Client
+						disconnect(client);
+					}
+				}
+			}
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+		finally {
+			for(Client client : new ArrayList<Client>(clients))
+				disconnect(client);
+
+			try {
+				server.close();
+				selector.close();
+			}
+			catch(IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+			Client client = new Client(channel);
+			client.key = channel.register(selector, SelectionKey.OP_READ, client);
+			clients.add(client);
+			clientCount = clients.size();
+
+			client.enqueue(BoardProtocol.snapshot(sequence, state));
+		}
+		flushDirty();
+	}
+
+	private void broadcast(ByteBuffer frame) {
+		for(Client client : clients)
+			client.enqueue(frame.duplicate());
+	}
+
+	/**
+	 * Schreibt alle Clients, die seit dem letzten Aufruf neue Frames erhalten haben. Clients, die noch auf Schreibbereitschaft
+	 * warten, werden übersprungen und beim nächsten OP_WRITE geschrieben.
+	 */
+	private void flushDirty() {
+		for(Client client : dirty) {
+			client.dirty = false;
+			if(!client.key.isValid() || (client.key.interestOps() & SelectionKey.OP_WRITE) != 0)
+				continue;
+
+			try {
+				client.flush();
+			}
+			catch(IOException e) {
+				disconnect(client);
+			}
+		}
+		dirty.clear();
+	}
+
+	private void disconnect(Client client) {
+		clients.remove(client);
+		clientCount = clients.size();
+		client.key.cancel();
+
+		try {
+			client.channel.close();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Führt einen LED Befehl eines Clients aus
+	 * @param type - {@link BoardProtocol#LED_FRAME} oder {@link BoardProtocol#LED_ANIMATION}
+	 * @param payload - Nutzdaten des Frames
+	 */
+	private void handleCommand(int type, ByteBuffer payload) throws IOException {
+		switch(type) {
+		case BoardProtocol.LED_FRAME:
+			if(leds == null)
+				return;
+
+			BitGrid frame = new BitGrid(leds.getWidth(), leds.getHeight());
+			BoardProtocol.readWords(payload, frame);
+			ledExecutor.execute(() -> showFrame(frame));
+		break;
+		case BoardProtocol.LED_ANIMATION:
+			if(leds == null)
+				return;
+
+			long frameMillis = Math.max(1, payload.getShort() & 0xFFFF);
+			int loops = payload.getShort() & 0xFFFF;
+			int words = payload.get() & 0xFF;
+			int count = payload.get() & 0xFF;
+			List<BitGrid> frames = new ArrayList<BitGrid>(count);
+			for(int i = 0; i < count; i++) {
+				BitGrid grid = new BitGrid(leds.getWidth(), leds.getHeight());
+				for(int w = 0; w < words; w++) {
+					long word = payload.getLong();
+					if(w < grid.getWordCount())
+						grid.setWord(w, word);
+				}
+				frames.add(grid);
+			}
+
+			if(!frames.isEmpty())
+				ledExecutor.execute(() -> playAnimation(frames, frameMillis, loops));
+		break;
+		default:
+			throw new IOException("Unknown frame type " + type);
+		}
+	}
+
+	private void showFrame(BitGrid frame) {
+		cancelAnimation();
+		leds.overwriteBuffer(frame);
+		leds.refresh();
+	}
+
+	/**
+	 * Spielt eine Animation im LED Thread ab. Ein neuer Befehl beendet die laufende Animation.
+	 */
+	private void playAnimation(List<BitGrid> frames, long frameMillis, int loops) {
+		cancelAnimation();
+
+		int[] shown = new int[1];
+		animation = ledExecutor.scheduleAtFixedRate(() -> {
+			showFrameOfAnimation(frames.get(shown[0] % frames.size()));
+			shown[0]++;
+
+			if(loops > 0 && shown[0] >= frames.size() * loops)
+				cancelAnimation();
+		}, 0, frameMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void showFrameOfAnimation(BitGrid frame) {
+		leds.overwriteBuffer(frame);
+		leds.refresh();
+	}
+
+	private void cancelAnimation() {
+		if(animation == null)
+			return;
+
+		animation.cancel(false);
+		animation = null;
+	}
+
+	/**
+	 * Verbindung zu einem Client. Wird nur im Selector Thread verwendet.
+	 */
+	private final class Client {
+
+		private final SocketChannel channel;
+		private final ArrayDeque<ByteBuffer> out;
+		private ByteBuffer in;
+		private SelectionKey key;
+		private int queued;
+		private boolean dirty;
+
+		Client(SocketChannel channel) {
+			this.channel = channel;
+			this.out = new ArrayDeque<ByteBuffer>();
+			this.in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		}
+
+		/**
+		 * Hängt einen Frame an. Passt er nicht mehr in die Warteschlange, wird sie durch einen Snapshot ersetzt.
+		 * Ein bereits angefangener Frame bleibt erhalten, damit der Datenstrom lesbar bleibt.
+		 */
+		void enqueue(ByteBuffer frame) {
+			if(!dirty) {
+				dirty = true;
+				BoardServer.this.dirty.add(this);
+			}
+
+			if(queued + frame.remaining() <= MAX_QUEUED_BYTES) {
+				out.add(frame);
+				queued += frame.remaining();
+				return;
+			}
+
+			ByteBuffer started = out.peek();
+			out.clear();
+			queued = 0;
+			if(started != null && started.position() > 0) {
+				out.add(started);
+				queued += started.remaining();
+			}
+
+			//Der Zustand enthält bereits die Änderung des verworfenen Frames
+			ByteBuffer snapshot = BoardProtocol.snapshot(sequence, state);
+			out.add(snapshot);
+			queued += snapshot.remaining();
+		}
+
+		/**
+		 * Schreibt so viele ausstehende Frames wie möglich mit einem Aufruf. Bleiben Daten übrig, wird auf Schreibbereitschaft gewartet.
+		 */
+		void flush() throws IOException {
+			while(!out.isEmpty()) {
+				long written = channel.write(out.toArray(new ByteBuffer[out.size()]));
+				queued -= written;
+
+				while(!out.isEmpty() && !out.peek().hasRemaining())
+					out.poll();
+
+				if(written == 0)
+					break;
+			}
+
+			key.interestOps(out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+
+		/**
+		 * Liest verfügbare Daten und führt alle vollständigen Befehle aus
+		 */
+		void read() throws IOException {
+			if(channel.read(in) < 0)
+				throw new EOFException();
+
+			in.flip();
+			while(in.remaining() >= 2) {
+				int start = in.position();
+				int length = in.getShort(start) & 0xFFFF;
+				if(length < 1)
+					throw new IOException("Empty frame");
+
+				if(in.remaining() < 2 + length) {
+					//Frames größer als der Puffer: Puffer vergrößern und beim nächsten Mal weiterlesen
+					if(2 + length > in.capacity()) {
+						ByteBuffer larger = ByteBuffer.allocate(2 + length);
+						larger.put(in);
+						in = larger;
+						return;
+					}
+					break;
+				}
+
+				ByteBuffer payload = in.duplicate();
+				payload.position(start + BoardProtocol.HEADER_SIZE).limit(start + 2 + length);
+				in.position(start + 2 + length);
+				handleCommand(in.get(start + 2) & 0xFF, payload.slice());
+			}
+			in.compact();
+		}
+	}
+}
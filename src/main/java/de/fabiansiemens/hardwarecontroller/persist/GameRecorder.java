@@ -0,0 +1,404 @@
+package de.fabiansiemens.hardwarecontroller.persist;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import de.fabiansiemens.hardwarecontroller.chess.ChessGame;
+import de.fabiansiemens.hardwarecontroller.chess.KnownPosition;
+import de.fabiansiemens.hardwarecontroller.chess.MoveDetected;
+import de.fabiansiemens.hardwarecontroller.chess.MoveListener;
+import de.fabiansiemens.hardwarecontroller.chess.Piece;
+import de.fabiansiemens.hardwarecontroller.chess.Position;
+import de.fabiansiemens.hardwarecontroller.chess.PositionListener;
+import de.fabiansiemens.hardwarecontroller.chess.Side;
+import de.fabiansiemens.hardwarecontroller.chess.Squares;
+
+/**
+ * Zeichnet die auf dem Brett gespielten Partien als PGN mit FEN Stellungen in einer Datei auf.
+ *
+ * Jeder Zug wird als eigene Zeile in kurzer algebraischer Notation angehängt, gefolgt von der FEN Stellung danach als Kommentar.
+ * Die Zeile wird aus einer mitgeführten Kopie des Spielstands berechnet, der Aufwand pro Zug ist unabhängig von der Länge der
+ * Partie. Die Zeilen werden nur in eine Warteschlange gestellt, ein eigener Thread schreibt alle angefallenen Zeilen gesammelt
+ * in die Datei. Scanner und LED Matrix warten daher nie auf den Datenträger.
+ *
+ * Wird als MoveListener an der Partie und als PositionListener am Verzeichnis bekannter Stellungen (nach dem Listener des
+ * Controllers) registriert. Eine neue Partie beginnt, wenn eine bekannte Stellung aufgebaut wird oder der Spielstand der Partie
+ * nicht mehr zur Aufzeichnung passt (z.B. nach dem Fortsetzen aus einem {@link StateJournal}), dann mit dem FEN Header.
+ * Die Header werden mit dem ersten Zug geschrieben, der Result Header mit "*" und so vielen Leerzeichen nach der Klammer, dass
+ * jedes Ergebnis hineinpasst. Am Ende der Partie wird er an seiner Stelle in der Datei mit dem Ergebnis überschrieben. Nach einem
+ * Absturz bleiben so alle geschriebenen Züge einer laufenden Partie mit Result "*" erhalten.
+ */
+public class GameRecorder implements MoveListener, PositionListener, Closeable {
+
+	/**
+	 * Maximale Wartezeit von {@link #flush()}
+	 */
+	public static final long FLUSH_TIMEOUT_MILLIS = 5_000;
+
+	private static final Object CLOSE = new Object();
+	private static final String RESULT_TAG = "[Result \"1/2-1/2\"]";
+	private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy.MM.dd");
+
+	private final ChessGame game;
+	private final FileChannel out;
+	private final BlockingQueue<Object> queue;
+	private final Thread writer;
+
+	private Position current;
+	private boolean open;
+	private boolean closed;
+
+	/**
+	 * Öffnet die Datei zum Anhängen und startet den Schreib-Thread. Die erste Partie beginnt mit dem aktuellen Spielstand.
+	 * @param path - PGN Datei, wird bei Bedarf angelegt
+	 * @param game - aufgezeichnete Partie
+	 * @throws IOException wenn die Datei nicht geöffnet werden kann
+	 */
+	public GameRecorder(Path path, ChessGame game) throws IOException {
+		this.game = game;
+		//Kein APPEND, der Result Header wird an seiner Position überschrieben
+		this.out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		this.out.position(out.size());
+		this.queue = new LinkedBlockingQueue<Object>();
+		this.current = game.getPosition();
+
+		this.writer = new Thread(this::write, "GameRecorder");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	@Override
+	public synchronized void onMoveDetected(MoveDetected move) {
+		if(closed)
+			return;
+
+		//Der Zug wird auf der eigenen Kopie nachgespielt, weicht sie vom Spielstand ab, wurde dieser von außen gesetzt
+		Position after = game.getPosition();
+		if(!current.isLegal(move.getFrom(), move.getTo())) {
+			newGame(after);
+			return;
+		}
+
+		Position start = open ? null : current.copy();
+		StringBuilder line = new StringBuilder(96);
+		appendMoveNumber(line);
+		appendSan(line, move.getFrom(), move.getTo());
+
+		if(current.getHash() != after.getHash()) {
+			newGame(after);
+			return;
+		}
+
+		if(!open)
+			beginGame(start);
+
+		//Matt oder Patt beendet die Partie mit dem Ergebnis in derselben Zeile
+		line.append(" {").append(current.toFen()).append('}');
+		String result = null;
+		if(!current.hasLegalMoves()) {
+			result = !current.isInCheck() ? "1/2-1/2" : current.getSideToMove() == Side.WHITE ? "0-1" : "1-0";
+			line.append(' ').append(result);
+		}
+
+		queue.add(line.append(System.lineSeparator()).toString());
+		if(result != null)
+			finishGame(result);
+	}
+
+	@Override
+	public synchronized void onPositionRecognized(KnownPosition known) {
+		if(closed || !known.hasPosition())
+			return;
+
+		//Der Controller hat die Stellung bereits als Spielstand übernommen, wenn sie nicht zur Partie passte
+		Position position = game.getPosition();
+		if(position.getHash() != current.getHash())
+			newGame(position);
+	}
+
+	/**
+	 * Beendet die laufende Partie mit einem Ergebnis, z.B. bei Aufgabe. Der nächste Zug beginnt eine neue Partie.
+	 * @param result - "1-0", "0-1", "1/2-1/2" oder "*"
+	 */
+	public synchronized void endGame(String result) {
+		if(closed || !open)
+			return;
+
+		queue.add(result + System.lineSeparator());
+		finishGame(result);
+	}
+
+	/**
+	 * Wartet höchstens {@link #FLUSH_TIMEOUT_MILLIS}, bis alle bisher aufgezeichneten Züge in die Datei geschrieben wurden
+	 * @return false, wenn der Recorder geschlossen ist, der Schreib-Thread nicht mehr läuft oder die Zeit abgelaufen ist
+	 */
+	public boolean flush() {
+		CountDownLatch written = new CountDownLatch(1);
+		synchronized(this) {
+			//Nach CLOSE oder einem Schreibfehler würde niemand mehr die Markierung aus der Warteschlange nehmen
+			if(closed || !writer.isAlive())
+				return false;
+
+			queue.add(written);
+		}
+
+		try {
+			return written.await(FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Schließt eine laufende Partie mit "*" ab, schreibt alle Züge und schließt die Datei
+	 */
+	@Override
+	public void close() {
+		synchronized(this) {
+			if(closed)
+				return;
+
+			endGame("*");
+			closed = true;
+			queue.add(CLOSE);
+		}
+
+		try {
+			writer.join();
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Beginnt eine neue Partie ab der gegebenen Stellung, eine laufende Partie wird mit "*" abgeschlossen.
+	 * Die Header werden erst mit dem ersten Zug geschrieben, damit aufgebaute, aber nicht gespielte Stellungen keine leeren
+	 * Partien erzeugen.
+	 */
+	private void newGame(Position position) {
+		endGame("*");
+		current = position.copy();
+	}
+
+	/**
+	 * Stellt die Header einer neuen Partie in die Warteschlange, der Result Header wird am Ende der Partie überschrieben
+	 * @param start - Stellung vor dem ersten Zug
+	 */
+	private void beginGame(Position start) {
+		String fen = start.toFen();
+		String nl = System.lineSeparator();
+		StringBuilder header = new StringBuilder(256);
+		header.append("[Event \"Hardware board\"]").append(nl);
+		header.append("[Site \"?\"]").append(nl);
+		header.append("[Date \"").append(LocalDate.now().format(DATE)).append("\"]").append(nl);
+		header.append("[Round \"-\"]").append(nl);
+		header.append("[White \"?\"]").append(nl);
+		header.append("[Black \"?\"]").append(nl);
+		int slot = header.length();
+		header.append(resultTag("*")).append(nl);
+		if(!fen.equals(Position.START_FEN)) {
+			header.append("[SetUp \"1\"]").append(nl);
+			header.append("[FEN \"").append(fen).append("\"]").append(nl);
+		}
+		queue.add(new Header(header.append(nl).toString(), slot));
+		open = true;
+	}
+
+	/**
+	 * Schließt die Züge der Partie ab und lässt den Result Header mit dem Ergebnis überschreiben
+	 * @param result - Ergebnis für den Result Header
+	 */
+	private void finishGame(String result) {
+		queue.add(System.lineSeparator());
+		queue.add(new Result(result));
+		open = false;
+	}
+
+	/**
+	 * @return Result Header mit Leerzeichen aufgefüllt auf die Länge des längsten Ergebnisses
+	 */
+	private static String resultTag(String result) {
+		StringBuilder tag = new StringBuilder(RESULT_TAG.length()).append("[Result \"").append(result).append("\"]");
+		while(tag.length() < RESULT_TAG.length())
+			tag.append(' ');
+
+		return tag.toString();
+	}
+
+	private void appendMoveNumber(StringBuilder line) {
+		line.append(current.getFullmoveNumber()).append(current.getSideToMove() == Side.WHITE ? ". " : "... ");
+	}
+
+	/**
+	 * Hängt den Zug in kurzer algebraischer Notation an und spielt ihn auf der Kopie
+	 */
+	private void appendSan(StringBuilder line, int from, int to) {
+		Side us = current.getSideToMove();
+		Piece piece = current.pieceAt(from);
+		boolean capture = current.pieceAt(to) != null || (piece == Piece.PAWN && to == current.getEnPassantSquare());
+
+		if(piece == Piece.KING && Math.abs(to - from) == 2) {
+			line.append(to > from ? "O-O" : "O-O-O");
+		}
+		else {
+			if(piece == Piece.PAWN) {
+				if(capture)
+					line.append((char) ('a' + Squares.col(from)));
+			}
+			else {
+				line.append(Character.toUpperCase(piece.getSymbol()));
+				appendDisambiguation(line, us, piece, from, to);
+			}
+
+			if(capture)
+				line.append('x');
+			line.append(Squares.name(to));
+
+			//Die Partie wandelt immer in eine Dame um
+			if(piece == Piece.PAWN && (Squares.row(to) == 0 || Squares.row(to) == 7))
+				line.append("=Q");
+		}
+
+		current.play(from, to, null);
+		if(current.isInCheck())
+			line.append(current.hasLegalMoves() ? '+' : '#');
+	}
+
+	/**
+	 * Ergänzt Linie, Reihe oder beides, wenn eine gleichartige Figur dasselbe Zielfeld erreichen kann
+	 */
+	private void appendDisambiguation(StringBuilder line, Side us, Piece piece, int from, int to) {
+		boolean ambiguous = false;
+		boolean sameCol = false;
+		boolean sameRow = false;
+
+		for(long others = current.getPieces(us, piece) & ~Squares.bit(from); others != 0; others &= others - 1) {
+			int square = Long.numberOfTrailingZeros(others);
+			if((current.legalTargets(square) & Squares.bit(to)) == 0)
+				continue;
+
+			ambiguous = true;
+			sameCol |= Squares.col(square) == Squares.col(from);
+			sameRow |= Squares.row(square) == Squares.row(from);
+		}
+
+		if(!ambiguous)
+			return;
+
+		if(!sameCol)
+			line.append((char) ('a' + Squares.col(from)));
+		else if(!sameRow)
+			line.append((char) ('1' + Squares.row(from)));
+		else
+			line.append(Squares.name(from));
+	}
+
+	/**
+	 * Schreib-Thread: sammelt alle angefallenen Zeilen und schreibt sie mit einem Aufruf, sobald die Warteschlange leer ist.
+	 * Merkt sich die Dateiposition des Result Headers der laufenden Partie und überschreibt ihn am Ende der Partie.
+	 */
+	private void write() {
+		ByteArrayOutputStream pending = new ByteArrayOutputStream(4096);
+		long resultPosition = -1;
+
+		try {
+			while(true) {
+				Object item = queue.take();
+				do {
+					if(item == CLOSE) {
+						writePending(pending);
+						out.close();
+						return;
+					}
+
+					if(item instanceof CountDownLatch) {
+						writePending(pending);
+						((CountDownLatch) item).countDown();
+					}
+					else if(item instanceof Header) {
+						Header header = (Header) item;
+						resultPosition = out.position() + pending.size()
+								+ header.text.substring(0, header.slot).getBytes(StandardCharsets.UTF_8).length;
+						pending.write(header.text.getBytes(StandardCharsets.UTF_8));
+					}
+					else if(item instanceof Result) {
+						writePending(pending);
+						if(resultPosition >= 0) {
+							byte[] tag = resultTag(((Result) item).value).getBytes(StandardCharsets.UTF_8);
+							writeFully(ByteBuffer.wrap(tag), resultPosition);
+						}
+						resultPosition = -1;
+					}
+					else {
+						pending.write(((String) item).getBytes(StandardCharsets.UTF_8));
+					}
+				} while((item = queue.poll()) != null);
+
+				writePending(pending);
+			}
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void writePending(ByteArrayOutputStream pending) throws IOException {
+		if(pending.size() == 0)
+			return;
+
+		ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+		while(buffer.hasRemaining())
+			out.write(buffer);
+
+		pending.reset();
+	}
+
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining())
+			position += out.write(buffer, position);
+	}
+
+	/**
+	 * Header einer Partie, slot ist der Index des Result Headers im Text
+	 */
+	private static final class Header {
+
+		private final String text;
+		private final int slot;
+
+		Header(String text, int slot) {
+			this.text = text;
+			this.slot = slot;
+		}
+	}
+
+	/**
+	 * Ergebnis einer Partie für den Result Header
+	 */
+	private static final class Result {
+
+		private final String value;
+
+		Result(String value) {
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package de.fabiansiemens.hardwarecontroller.persist;
+
+import java.util.function.Consumer;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+import de.fabiansiemens.hardwarecontroller.BoardListener;
+import de.fabiansiemens.hardwarecontroller.HardwareController;
+import de.fabiansiemens.hardwarecontroller.chess.ChessGame;
+import de.fabiansiemens.hardwarecontroller.chess.KnownPosition;
+import de.fabiansiemens.hardwarecontroller.chess.MoveDetected;
+import de.fabiansiemens.hardwarecontroller.chess.MoveDetector;
+import de.fabiansiemens.hardwarecontroller.chess.MoveListener;
+import de.fabiansiemens.hardwarecontroller.chess.Position;
+import de.fabiansiemens.hardwarecontroller.chess.PositionListener;
+import de.fabiansiemens.hardwarecontroller.sensor.ScanResult;
+
+/**
+ * Schreibt Belegung, Spielstand und angezeigte LED Bilder in ein {@link StateJournal} und setzt eine gespeicherte Partie fort.
+ *
+ * Wird als BoardListener im Controller, als MoveListener an der Partie, als PositionListener am Verzeichnis bekannter Stellungen
+ * (nach dem Listener des Controllers) und als Flush Listener an der LED Matrix registriert.
+ * Passt das Brett beim Start nicht zur gespeicherten Stellung, wird die Partie fortgesetzt, sobald die Stellung wieder
+ * aufgebaut ist. Bis dahin wird der gespeicherte Spielstand nicht überschrieben.
+ */
+public class JournalRecorder implements BoardListener, MoveListener, PositionListener, Consumer<BitGrid> {
+
+	private final StateJournal journal;
+	private final ChessGame game;
+	private final MoveDetector moves;
+	private volatile Position pending;
+
+	public JournalRecorder(StateJournal journal, ChessGame game, MoveDetector moves) {
+		this.journal = journal;
+		this.game = game;
+		this.moves = moves;
+	}
+
+	/**
+	 * Setzt die gespeicherte Partie fort, wenn die Belegung des Bretts ihr entspricht
+	 * @param occupancy - Belegung aus einem einzelnen Scan beim Start
+	 * @return true, wenn die Partie sofort fortgesetzt wurde
+	 */
+	public boolean resume(BitGrid occupancy) {
+		journal.appendOccupancy(occupancy);
+
+		Position saved = journal.getPosition();
+		if(saved == null)
+			return false;
+
+		if(occupancy.isSingleWord() && occupancy.toLong() == saved.getOccupancy()) {
+			apply(saved);
+			return true;
+		}
+
+		pending = saved;
+		return false;
+	}
+
+	/**
+	 * @return true, solange auf das Aufbauen der gespeicherten Stellung gewartet wird
+	 */
+	public boolean isResumePending() {
+		return pending != null;
+	}
+
+	/**
+	 * Verwirft eine noch nicht fortgesetzte Partie, z.B. wenn eine neue Partie begonnen werden soll
+	 */
+	public void discardPending() {
+		pending = null;
+	}
+
+	@Override
+	public void onBoardChanged(HardwareController controller, ScanResult result) {
+		journal.appendOccupancy(result.getGrid());
+
+		Position saved = pending;
+		if(saved != null && result.getOccupancy() == saved.getOccupancy())
+			apply(saved);
+	}
+
+	@Override
+	public void onMoveDetected(MoveDetected move) {
+		//Während auf die gespeicherte Stellung gewartet wird, stammen Züge vom Aufbauen des Bretts
+		if(pending == null)
+			journal.appendPosition(game.getPosition());
+	}
+
+	@Override
+	public void onPositionRecognized(KnownPosition known) {
+		//Eine aufgebaute bekannte Stellung wurde bereits vom Controller als Spielstand übernommen
+		if(pending == null && known.hasPosition())
+			journal.appendPosition(game.getPosition());
+	}
+
+	/**
+	 * Speichert ein auf der LED Matrix angezeigtes Bild
+	 */
+	@Override
+	public void accept(BitGrid frame) {
+		journal.appendLedFrame(frame);
+	}
+
+	private void apply(Position saved) {
+		pending = null;
+		game.setPosition(saved);
+		moves.reset(saved.getOccupancy());
+		journal.appendPosition(saved);
+	}
+}
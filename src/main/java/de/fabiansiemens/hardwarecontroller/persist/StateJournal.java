@@ -0,0 +1,353 @@
+package de.fabiansiemens.hardwarecontroller.persist;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+import de.fabiansiemens.hardwarecontroller.chess.Position;
+
+/**
+ * Absturzsicheres Journal für Spielstand, Belegung und LED Bild, damit eine Partie nach einem Neustart der JVM fortgesetzt
+ * werden kann.
+ *
+ * Die Datei wird in den Speicher abgebildet, neue Zustände werden als Datensätze angehängt. Ein Anhängen kostet damit nur
+ * wenige Speicherzugriffe und keinen Systemaufruf, die Daten liegen sofort im Page Cache des Kernels und überstehen einen
+ * Absturz der JVM. Jeder Datensatz trägt eine CRC32 Prüfsumme, seine Länge wird erst nach dem Inhalt geschrieben: ein beim
+ * Absturz unvollständiger Datensatz wird beim Öffnen erkannt und verworfen. Beim Öffnen, sowie in einem eigenen Thread sobald
+ * die Datei zu drei Vierteln gefüllt ist, wird sie kompaktiert: die jeweils neuesten Zustände werden in eine neue Datei
+ * geschrieben, die die alte atomar ersetzt. Während der Kompaktierung wird weiter an die alte Datei angehängt, die dabei
+ * geänderten Zustände werden beim Austausch in die neue Datei übernommen. Anhängende Threads warten daher nie auf das Anlegen,
+ * Synchronisieren oder Umbenennen einer Datei.
+ *
+ * <pre>
+ * Header    i32 Magic "BRJ1", i32 Version
+ * Datensatz i32 Länge von Typ und Inhalt (0 = Ende), u8 Typ, Inhalt, i32 CRC32 von Typ und Inhalt
+ * POSITION  FEN als UTF-8
+ * OCCUPANCY / LED_FRAME  u8 Breite, u8 Höhe, u8 Anzahl Wörter, i64[] Wörter
+ * </pre>
+ */
+public class StateJournal implements Closeable {
+
+	/**
+	 * Standard Größe der Datei, reicht für mehrere tausend Datensätze zwischen zwei Kompaktierungen
+	 */
+	public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+	public static final int MAGIC = 0x42524A31;
+	public static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 8;
+	private static final byte POSITION = 1;
+	private static final byte OCCUPANCY = 2;
+	private static final byte LED_FRAME = 3;
+
+	private final Path path;
+	private final int capacity;
+	private final CRC32 crc;
+	private final Object compactLock;
+	private final ExecutorService compactor;
+	private MappedByteBuffer buffer;
+	private boolean compacting;
+	private String position;
+	private BitGrid occupancy;
+	private BitGrid ledFrame;
+	private int compactions;
+
+	/**
+	 * Öffnet das Journal, liest den zuletzt gespeicherten Zustand und kompaktiert die Datei.
+	 * Existiert die Datei nicht oder ist sie unlesbar, beginnt ein leeres Journal.
+	 * @param path - Pfad der Datei
+	 * @param capacity - Größe der Datei in Bytes
+	 * @throws IOException wenn die Datei nicht geschrieben werden kann
+	 */
+	public StateJournal(Path path, int capacity) throws IOException {
+		if(capacity < 1024)
+			throw new IllegalArgumentException("Capacity must be at least 1024 bytes");
+
+		this.path = path;
+		this.capacity = capacity;
+		this.crc = new CRC32();
+		this.compactLock = new Object();
+
+		if(Files.exists(path))
+			replay(map(path, Math.max(Files.size(path), HEADER_SIZE)));
+
+		compact();
+
+		this.compactor = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "StateJournal");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public StateJournal(Path path) throws IOException {
+		this(path, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @return zuletzt gespeicherter Spielstand, null wenn keiner gespeichert wurde @Nullable
+	 */
+	public synchronized Position getPosition() {
+		return position == null ? null : Position.fromFen(position);
+	}
+
+	/**
+	 * @return Kopie der zuletzt gespeicherten Belegung @Nullable
+	 */
+	public synchronized BitGrid getOccupancy() {
+		return occupancy == null ? null : occupancy.copy();
+	}
+
+	/**
+	 * @return Kopie des zuletzt gespeicherten LED Bilds @Nullable
+	 */
+	public synchronized BitGrid getLedFrame() {
+		return ledFrame == null ? null : ledFrame.copy();
+	}
+
+	/**
+	 * @return Anzahl der Kompaktierungen seit dem Öffnen, inklusive der beim Öffnen
+	 */
+	public synchronized int getCompactions() {
+		return compactions;
+	}
+
+	/**
+	 * Speichert einen Spielstand. Unveränderte Zustände werden nicht erneut geschrieben.
+	 */
+	public synchronized void appendPosition(Position position) {
+		String fen = position.toFen();
+		if(fen.equals(this.position))
+			return;
+
+		this.position = fen;
+		append(POSITION, fen.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Speichert eine Belegung. Unveränderte Zustände werden nicht erneut geschrieben.
+	 */
+	public synchronized void appendOccupancy(BitGrid occupancy) {
+		if(occupancy.equals(this.occupancy))
+			return;
+
+		this.occupancy = occupancy.copy();
+		append(OCCUPANCY, encode(occupancy));
+	}
+
+	/**
+	 * Speichert ein angezeigtes LED Bild, z.B. als Flush Listener der LED Matrix. Unveränderte Bilder werden nicht erneut
+	 * geschrieben.
+	 */
+	public synchronized void appendLedFrame(BitGrid frame) {
+		if(frame.equals(ledFrame))
+			return;
+
+		this.ledFrame = frame.copy();
+		append(LED_FRAME, encode(frame));
+	}
+
+	/**
+	 * Schreibt die neuesten Zustände in eine neue Datei und ersetzt die alte atomar. Ein Absturz während der Kompaktierung
+	 * hinterlässt entweder die alte oder die neue Datei. Anlegen, Synchronisieren und Umbenennen der Datei finden ohne Sperre
+	 * statt, nur das Schreiben der Zustände in die abgebildete Datei sperrt das Journal kurz.
+	 * @throws IOException wenn die neue Datei nicht geschrieben werden kann
+	 */
+	public void compact() throws IOException {
+		synchronized(compactLock) {
+			Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+			Files.deleteIfExists(temp);
+			MappedByteBuffer next = map(temp, capacity);
+			//Der Kopf wird vor der Sperre geschrieben, damit die neue Seite nicht unter der Sperre eingelagert wird
+			next.putInt(0, MAGIC).putInt(4, VERSION).position(HEADER_SIZE);
+
+			String fen;
+			BitGrid occupancy;
+			BitGrid ledFrame;
+			synchronized(this) {
+				fen = this.position;
+				occupancy = this.occupancy;
+				ledFrame = this.ledFrame;
+
+				if(fen != null)
+					write(next, POSITION, fen.getBytes(StandardCharsets.UTF_8));
+				if(occupancy != null)
+					write(next, OCCUPANCY, encode(occupancy));
+				if(ledFrame != null)
+					write(next, LED_FRAME, encode(ledFrame));
+			}
+
+			next.force();
+			Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+			//Die Zustände werden bei jeder Änderung als neue Objekte übernommen, ein Vergleich der Referenzen genügt
+			synchronized(this) {
+				if(this.position != fen)
+					write(next, POSITION, this.position.getBytes(StandardCharsets.UTF_8));
+				if(this.occupancy != occupancy)
+					write(next, OCCUPANCY, encode(this.occupancy));
+				if(this.ledFrame != ledFrame)
+					write(next, LED_FRAME, encode(this.ledFrame));
+
+				buffer = next;
+				compactions++;
+			}
+		}
+	}
+
+	/**
+	 * Schreibt alle Datensätze auf den Datenträger, z.B. vor dem Ausschalten. Für einen Absturz der JVM ist das nicht nötig.
+	 */
+	public synchronized void force() {
+		buffer.force();
+	}
+
+	/**
+	 * Wartet auf eine laufende Kompaktierung und schreibt alle Datensätze auf den Datenträger
+	 */
+	@Override
+	public void close() {
+		compactor.shutdown();
+		try {
+			compactor.awaitTermination(5, TimeUnit.SECONDS);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		force();
+	}
+
+	/**
+	 * Hängt einen Datensatz an und startet die Kompaktierung, sobald die Datei zu drei Vierteln gefüllt ist
+	 */
+	private void append(byte type, byte[] payload) {
+		int size = 4 + 1 + payload.length + 4 + 4;
+		if(!compacting && !compactor.isShutdown() && buffer.remaining() - size < capacity / 4) {
+			compacting = true;
+			compactor.execute(this::compactInBackground);
+		}
+
+		//Passt der Datensatz nicht mehr, ist der Zustand bereits übernommen und wird beim Austausch der Datei geschrieben
+		if(buffer.remaining() >= size)
+			write(buffer, type, payload);
+	}
+
+	private void compactInBackground() {
+		try {
+			compact();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+		finally {
+			synchronized(this) {
+				compacting = false;
+			}
+		}
+	}
+
+	/**
+	 * Schreibt Inhalt und Prüfsumme vor der Länge, damit ein unvollständiger Datensatz als Ende des Journals gilt
+	 */
+	private void write(ByteBuffer target, byte type, byte[] payload) {
+		int start = target.position();
+		crc.reset();
+		crc.update(type);
+		crc.update(payload);
+
+		target.position(start + 4);
+		target.put(type).put(payload).putInt((int) crc.getValue());
+		target.putInt(start, 1 + payload.length);
+	}
+
+	/**
+	 * Liest alle vollständigen Datensätze und übernimmt jeweils den neuesten Zustand
+	 */
+	private void replay(ByteBuffer journal) {
+		if(journal.getInt(0) != MAGIC || journal.getInt(4) != VERSION)
+			return;
+
+		int offset = HEADER_SIZE;
+		while(offset + 4 <= journal.capacity()) {
+			int length = journal.getInt(offset);
+			if(length < 1 || offset + 4 + length + 4 > journal.capacity())
+				break;
+
+			ByteBuffer record = journal.duplicate();
+			record.position(offset + 4).limit(offset + 4 + length);
+			crc.reset();
+			crc.update(record.duplicate());
+			if((int) crc.getValue() != journal.getInt(offset + 4 + length))
+				break;
+
+			byte type = record.get();
+			byte[] payload = new byte[record.remaining()];
+			record.get(payload);
+			try {
+				apply(type, payload);
+			}
+			catch(RuntimeException e) {
+				//Fehlerhafter Inhalt trotz gültiger Prüfsumme, der bisherige Zustand bleibt erhalten
+				e.printStackTrace();
+			}
+			offset += 4 + length + 4;
+		}
+	}
+
+	private void apply(byte type, byte[] payload) {
+		switch(type) {
+		case POSITION:
+			String fen = new String(payload, StandardCharsets.UTF_8);
+			Position.fromFen(fen);
+			position = fen;
+		break;
+		case OCCUPANCY:
+			occupancy = decode(payload);
+		break;
+		case LED_FRAME:
+			ledFrame = decode(payload);
+		break;
+		default:
+			//Datensätze späterer Versionen werden übersprungen
+		}
+	}
+
+	private static byte[] encode(BitGrid grid) {
+		ByteBuffer data = ByteBuffer.allocate(3 + grid.getWordCount() * 8);
+		data.put((byte) grid.getWidth()).put((byte) grid.getHeight()).put((byte) grid.getWordCount());
+		for(int i = 0; i < grid.getWordCount(); i++)
+			data.putLong(grid.getWord(i));
+
+		return data.array();
+	}
+
+	private static BitGrid decode(byte[] payload) {
+		ByteBuffer data = ByteBuffer.wrap(payload);
+		BitGrid grid = new BitGrid(data.get() & 0xFF, data.get() & 0xFF);
+		int words = data.get() & 0xFF;
+		for(int i = 0; i < words && i < grid.getWordCount(); i++)
+			grid.setWord(i, data.getLong());
+
+		return grid;
+	}
+
+	private static MappedByteBuffer map(Path path, long size) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			//Eine kürzere Datei wird beim Abbilden verlängert, die Abbildung bleibt nach dem Schließen des Kanals gültig
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+	}
+}
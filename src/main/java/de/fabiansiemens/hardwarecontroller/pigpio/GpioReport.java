@@ -0,0 +1,73 @@
+package de.fabiansiemens.hardwarecontroller.pigpio;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Zugriff auf Berichte eines pigpio Benachrichtigungsstroms (gpioReport_t).
+ *
+ * Jeder Bericht ist {@link #SIZE} Bytes lang und enthält Sequenznummer, Flags, Tick in Mikrosekunden und die Pegel der GPIOs 0-31.
+ * Die Berichte werden direkt aus dem Puffer gelesen, damit beim Dekodieren großer Blöcke keine Objekte erzeugt werden.
+ * Der Puffer muss auf {@link java.nio.ByteOrder#LITTLE_ENDIAN} eingestellt sein.
+ */
+public final class GpioReport {
+
+	/**
+	 * Größe eines Berichts in Bytes
+	 */
+	public static final int SIZE = 12;
+
+	/**
+	 * Bericht wurde durch einen Watchdog Timeout erzeugt, die Pegel sind nicht aktuell
+	 */
+	public static final int FLAG_WATCHDOG = 1 << 5;
+	/**
+	 * Keep-Alive Bericht ohne Pegeländerung
+	 */
+	public static final int FLAG_ALIVE = 1 << 6;
+	/**
+	 * Bericht eines Events, keine Pegeländerung
+	 */
+	public static final int FLAG_EVENT = 1 << 7;
+
+	private GpioReport() {
+	}
+
+	public static int sequence(ByteBuffer buffer, int offset) {
+		return buffer.getShort(offset) & 0xFFFF;
+	}
+
+	public static int flags(ByteBuffer buffer, int offset) {
+		return buffer.getShort(offset + 2) & 0xFFFF;
+	}
+
+	/**
+	 * @return Tick in Mikrosekunden (vorzeichenlos, läuft nach ca. 72 Minuten über)
+	 */
+	public static long tick(ByteBuffer buffer, int offset) {
+		return buffer.getInt(offset + 4) & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * @return Pegel der GPIOs 0-31, Bit n entspricht GPIO n
+	 */
+	public static int level(ByteBuffer buffer, int offset) {
+		return buffer.getInt(offset + 8);
+	}
+
+	/**
+	 * @return true, wenn der Bericht eine Pegeländerung enthält
+	 */
+	public static boolean isLevelChange(ByteBuffer buffer, int offset) {
+		return (flags(buffer, offset) & (FLAG_WATCHDOG | FLAG_ALIVE | FLAG_EVENT)) == 0;
+	}
+
+	/**
+	 * Schreibt einen Bericht an die aktuelle Position des Puffers
+	 */
+	public static void put(ByteBuffer buffer, int sequence, int flags, long tick, int level) {
+		buffer.putShort((short) sequence);
+		buffer.putShort((short) flags);
+		buffer.putInt((int) tick);
+		buffer.putInt(level);
+	}
+}
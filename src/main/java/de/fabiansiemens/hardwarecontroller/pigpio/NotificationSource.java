@@ -0,0 +1,20 @@
+package de.fabiansiemens.hardwarecontroller.pigpio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Quelle für einen Strom von GPIO Berichten im Format von {@link GpioReport}.
+ * Implementiert von {@link PigpioNotificationStream} für echte Hardware und {@link SimulatedPigpio} für Tests ohne Hardware.
+ */
+public interface NotificationSource extends Closeable {
+	/**
+	 * Liest so viele Berichte wie verfügbar in den Puffer. Blockiert, bis mindestens ein Byte gelesen wurde.
+	 * Berichte können über mehrere Aufrufe verteilt sein.
+	 * @param buffer - Zielpuffer (Little Endian)
+	 * @return Anzahl gelesener Bytes, -1 wenn der Strom geschlossen wurde
+	 * @throws IOException bei Verbindungsfehlern
+	 */
+	public int read(ByteBuffer buffer) throws IOException;
+}
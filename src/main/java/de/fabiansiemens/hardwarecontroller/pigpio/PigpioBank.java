@@ -0,0 +1,177 @@
+package de.fabiansiemens.hardwarecontroller.pigpio;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Gebündelter Zugriff auf die GPIOs 0-31 über das Socket Interface von pigpio.
+ *
+ * Statt jeden GPIO einzeln zu lesen oder zu schalten, wird die ganze Bank mit einem Befehl gelesen ({@link PigpioCommand#BR1})
+ * bzw. über Bitmasken geschaltet ({@link PigpioCommand#BS1}, {@link PigpioCommand#BC1}). Ein kompletter Scan der Sensormatrix
+ * wird als {@link PigpioBatch} gesendet: pro Spalte ansteuern, im Daemon warten ({@link PigpioCommand#MICS}), Bank lesen,
+ * Tick lesen, warten und abschalten. Damit kostet ein Scan unabhängig von der Anzahl der GPIOs nur einen Roundtrip, die
+ * Wartezeiten werden vom Daemon eingehalten.
+ */
+public class PigpioBank implements Closeable {
+
+	/**
+	 * Längste Wartezeit eines einzelnen {@link PigpioCommand#MICS} Befehls, längere werden aufgeteilt
+	 */
+	public static final int MAX_DELAY_MICROS = 1_000_000;
+
+	private final PigpioSocket socket;
+	private final PigpioBatch batch;
+	private int[] reads;
+
+	/**
+	 * @param socket - Verbindung zum pigpio Daemon, wird mit {@link #close()} geschlossen
+	 */
+	public PigpioBank(PigpioSocket socket) {
+		this.socket = socket;
+		this.batch = new PigpioBatch(64);
+		this.reads = new int[8];
+	}
+
+	/**
+	 * Verbindet sich mit dem pigpio Daemon
+	 * @throws IOException wenn keine Verbindung aufgebaut werden kann
+	 */
+	public static PigpioBank connect(String host, int port) throws IOException {
+		return new PigpioBank(new PigpioSocket(host, port));
+	}
+
+	/**
+	 * Konfiguriert Ausgänge und Eingänge mit Pull-Down in einem Roundtrip. Die Ausgänge werden vorher auf LOW gesetzt.
+	 * @param outputMask - Bitmaske der Ausgangs GPIOs
+	 * @param inputMask - Bitmaske der Eingangs GPIOs
+	 * @throws IOException bei Verbindungsfehlern oder wenn pigpio einen Fehlercode zurückgibt
+	 */
+	public synchronized void configure(int outputMask, int inputMask) throws IOException {
+		batch.clear();
+		batch.add(PigpioCommand.BC1, outputMask, 0);
+		for(int pin = 0; pin < 32; pin++) {
+			if((outputMask & (1 << pin)) != 0)
+				batch.add(PigpioCommand.MODES, pin, 1);
+			if((inputMask & (1 << pin)) != 0) {
+				batch.add(PigpioCommand.MODES, pin, 0);
+				batch.add(PigpioCommand.PUD, pin, 1);
+			}
+		}
+
+		socket.execute(batch);
+		for(int i = 0; i < batch.size(); i++)
+			batch.checkResult(i);
+	}
+
+	/**
+	 * @return Pegel der GPIOs 0-31, Bit n ist gesetzt wenn GPIO n HIGH ist
+	 */
+	public synchronized int read() throws IOException {
+		batch.clear();
+		int index = batch.add(PigpioCommand.BR1, 0, 0);
+		socket.execute(batch);
+		return batch.getResult(index);
+	}
+
+	/**
+	 * Setzt alle GPIOs der Maske auf HIGH
+	 */
+	public synchronized void set(int mask) throws IOException {
+		batch.clear();
+		int index = batch.add(PigpioCommand.BS1, mask, 0);
+		socket.execute(batch);
+		batch.checkResult(index);
+	}
+
+	/**
+	 * Setzt alle GPIOs der Maske auf LOW
+	 */
+	public synchronized void clear(int mask) throws IOException {
+		batch.clear();
+		int index = batch.add(PigpioCommand.BC1, mask, 0);
+		socket.execute(batch);
+		batch.checkResult(index);
+	}
+
+	/**
+	 * Scannt mehrere Spalten in einem Roundtrip. Jede Spalte wird angesteuert, nach der Settle-Zeit wird die Bank gelesen,
+	 * nach der Hold-Zeit wird die Spalte wieder abgeschaltet. Vorher werden alle Spalten der Masken abgeschaltet.
+	 * Die Erfassungszeitpunkte werden aus den Ticks des Daemons relativ zum Empfang der Antwort berechnet und sind um die
+	 * Übertragungszeit der Antwort zu früh.
+	 * @param masks - Bitmaske der GPIOs je Spalte
+	 * @param first - erste zu scannende Spalte
+	 * @param count - Anzahl zu scannender Spalten
+	 * @param settleMicros - Wartezeit zwischen Ansteuern und Lesen
+	 * @param holdMicros - Wartezeit zwischen Lesen und Abschalten
+	 * @param levels - erhält ab Index first die Pegel der Bank je Spalte
+	 * @param sampleNanos - erhält ab Index first den Zeitpunkt des Einlesens (System.nanoTime) @Nullable
+	 * @throws IOException bei Verbindungsfehlern oder wenn pigpio einen Fehlercode zurückgibt
+	 */
+	public synchronized void scan(int[] masks, int first, int count, long settleMicros, long holdMicros,
+			int[] levels, long[] sampleNanos) throws IOException {
+		long range = count >= 64 ? -1L : (1L << count) - 1;
+		scan(masks, range << first, settleMicros, holdMicros, levels, sampleNanos);
+	}
+
+	/**
+	 * Wie {@link #scan(int[], int, int, long, long, int[], long[])}, scannt aber nur die ausgewählten Spalten, ebenfalls in
+	 * einem Roundtrip. Pegel und Erfassungszeitpunkte der übrigen Spalten bleiben unverändert.
+	 * @param columns - Bitmaske der zu scannenden Spalten, Bit n für Spalte n
+	 */
+	public synchronized void scan(int[] masks, long columns, long settleMicros, long holdMicros,
+			int[] levels, long[] sampleNanos) throws IOException {
+		int all = 0;
+		for(long rest = columns; rest != 0; rest &= rest - 1)
+			all |= masks[Long.numberOfTrailingZeros(rest)];
+
+		batch.clear();
+		batch.add(PigpioCommand.BC1, all, 0);
+
+		if(reads.length < masks.length)
+			reads = new int[masks.length];
+
+		for(long rest = columns; rest != 0; rest &= rest - 1) {
+			int col = Long.numberOfTrailingZeros(rest);
+			batch.add(PigpioCommand.BS1, masks[col], 0);
+			delay(settleMicros);
+			reads[col] = batch.add(PigpioCommand.BR1, 0, 0);
+			batch.add(PigpioCommand.TICK, 0, 0);
+			delay(holdMicros);
+			batch.add(PigpioCommand.BC1, masks[col], 0);
+		}
+		int end = batch.add(PigpioCommand.TICK, 0, 0);
+
+		socket.execute(batch);
+		long received = System.nanoTime();
+
+		//Pegel und Ticks dürfen negativ sein, nur Schalt- und Wartebefehle werden geprüft
+		for(int i = 0; i < batch.size(); i++)
+			if(batch.getCommand(i) != PigpioCommand.BR1 && batch.getCommand(i) != PigpioCommand.TICK)
+				batch.checkResult(i);
+
+		int endTick = batch.getResult(end);
+		for(long rest = columns; rest != 0; rest &= rest - 1) {
+			int col = Long.numberOfTrailingZeros(rest);
+			int read = reads[col];
+			levels[col] = batch.getResult(read);
+			if(sampleNanos != null)
+				sampleNanos[col] = received - ((endTick - batch.getResult(read + 1)) & 0xFFFFFFFFL) * 1000L;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	/**
+	 * Hängt Wartebefehle an, längere Wartezeiten werden aufgeteilt
+	 */
+	private void delay(long micros) {
+		while(micros > 0) {
+			int step = (int) Math.min(micros, MAX_DELAY_MICROS);
+			batch.add(PigpioCommand.MICS, step, 0);
+			micros -= step;
+		}
+	}
+}
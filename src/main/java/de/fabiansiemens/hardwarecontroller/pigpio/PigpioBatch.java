@@ -0,0 +1,115 @@
+package de.fabiansiemens.hardwarecontroller.pigpio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Folge von Befehlen ohne Zusatzdaten, die mit {@link PigpioSocket#execute(PigpioBatch)} in einem einzigen Roundtrip
+ * ausgeführt wird.
+ *
+ * pigpio arbeitet die Befehle einer Verbindung der Reihe nach ab. Alle Befehle werden daher hintereinander gesendet und
+ * die Antworten erst danach gelesen, sodass die Latenz des Sockets nur einmal statt einmal pro Befehl anfällt.
+ * Die Puffer werden wiederverwendet, ein Batch kann nach {@link #clear()} erneut befüllt werden.
+ */
+public class PigpioBatch {
+
+	private static final int HEADER_SIZE = 16;
+
+	private ByteBuffer requests;
+	private ByteBuffer responses;
+	private PigpioCommand[] commands;
+	private int size;
+
+	/**
+	 * @param capacity - erwartete Anzahl Befehle, bei Bedarf wird vergrößert
+	 */
+	public PigpioBatch(int capacity) {
+		this.requests = ByteBuffer.allocate(capacity * HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.responses = ByteBuffer.allocate(capacity * HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.commands = new PigpioCommand[capacity];
+	}
+
+	/**
+	 * Hängt einen Befehl an
+	 * @return Index des Befehls, unter dem nach der Ausführung sein Ergebnis abgefragt wird
+	 */
+	public int add(PigpioCommand command, int p1, int p2) {
+		if(size == commands.length)
+			grow();
+
+		requests.putInt(command.getCode()).putInt(p1).putInt(p2).putInt(0);
+		commands[size] = command;
+		return size++;
+	}
+
+	/**
+	 * Entfernt alle Befehle und Ergebnisse
+	 */
+	public void clear() {
+		requests.clear();
+		responses.clear();
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param index - Index aus {@link #add(PigpioCommand, int, int)}
+	 */
+	public PigpioCommand getCommand(int index) {
+		return commands[index];
+	}
+
+	/**
+	 * Gibt das unveränderte Ergebnis eines Befehls zurück. Auch negative Werte können gültig sein, z.B. bei {@link PigpioCommand#BR1}
+	 * mit gesetztem GPIO 31 oder einem übergelaufenen {@link PigpioCommand#TICK}.
+	 * @param index - Index aus {@link #add(PigpioCommand, int, int)}
+	 */
+	public int getResult(int index) {
+		return responses.getInt(index * HEADER_SIZE + 12);
+	}
+
+	/**
+	 * Gibt das Ergebnis eines Befehls zurück, der bei Erfolg nicht negativ ist
+	 * @param index - Index aus {@link #add(PigpioCommand, int, int)}
+	 * @throws IOException wenn pigpio einen Fehlercode zurückgegeben hat
+	 */
+	public int checkResult(int index) throws IOException {
+		int result = getResult(index);
+		if(result < 0)
+			throw new IOException("pigpio command " + commands[index] + " failed with error " + result);
+
+		return result;
+	}
+
+	/**
+	 * @return gesendete Befehle zwischen Position und Limit
+	 */
+	ByteBuffer prepareRequests() {
+		ByteBuffer view = requests.duplicate();
+		view.flip();
+		return view;
+	}
+
+	/**
+	 * @return leerer Puffer für alle Antworten
+	 */
+	ByteBuffer prepareResponses() {
+		responses.clear().limit(size * HEADER_SIZE);
+		return responses;
+	}
+
+	private void grow() {
+		int capacity = Math.max(4, commands.length * 2);
+		ByteBuffer larger = ByteBuffer.allocate(capacity * HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		requests.flip();
+		larger.put(requests);
+		requests = larger;
+		responses = ByteBuffer.allocate(capacity * HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		commands = Arrays.copyOf(commands, capacity);
+	}
+}
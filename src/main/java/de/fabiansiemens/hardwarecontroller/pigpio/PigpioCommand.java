@@ -0,0 +1,52 @@
+package de.fabiansiemens.hardwarecontroller.pigpio;
+
+/**
+ * Befehle des pigpio Socket Interfaces, die von dieser Bibliothek direkt verwendet werden.
+ * Die Codes entsprechen den PI_CMD_* Konstanten aus pigpio.h.
+ */
+public enum PigpioCommand {
+	/** Setzt den Modus eines GPIOs (0 = Eingang, 1 = Ausgang) */
+	MODES(0),
+	/** Setzt den Pull Widerstand eines GPIOs (0 = aus, 1 = Pull-Down, 2 = Pull-Up) */
+	PUD(2),
+	/** Liest die GPIOs 0-31 */
+	BR1(10),
+	/** Setzt die angegebenen GPIOs 0-31 auf LOW */
+	BC1(12),
+	/** Setzt die angegebenen GPIOs 0-31 auf HIGH */
+	BS1(14),
+	/** Aktueller Tick in Mikrosekunden */
+	TICK(16),
+	/** Startet einen Benachrichtigungsstrom für die angegebenen GPIOs */
+	NB(19),
+	/** Schließt einen Benachrichtigungsstrom */
+	NC(21),
+	/** Löscht alle Pulse der Wellenform in Vorbereitung */
+	WVCLR(27),
+	/** Fügt generische Pulse zur Wellenform in Vorbereitung hinzu */
+	WVAG(28),
+	/** Stoppt die aktuelle Wellenform */
+	WVHLT(33),
+	/** Wartet die angegebenen Mikrosekunden im Daemon, höchstens eine Sekunde */
+	MICS(46),
+	/** Erzeugt eine Wellenform aus den hinzugefügten Pulsen */
+	WVCRE(49),
+	/** Löscht eine Wellenform */
+	WVDEL(50),
+	/** Sendet eine Wellenform einmalig */
+	WVTX(51),
+	/** Sendet eine Wellenform in Dauerschleife */
+	WVTXR(52),
+	/** Wandelt den aktuellen Socket in einen Benachrichtigungsstrom um */
+	NOIB(99);
+
+	private final int code;
+
+	private PigpioCommand(int code) {
+		this.code = code;
+	}
+
+	public int getCode() {
+		return code;
+	}
+}
@@ -0,0 +1,55 @@
+package de.fabiansiemens.hardwarecontroller.pigpio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Benachrichtigungsstrom von pigpio über das Socket Interface.
+ *
+ * Eine eigene Verbindung wird mit {@link PigpioCommand#NOIB} in einen Strom umgewandelt, über den pigpio bei jeder
+ * Pegeländerung der überwachten GPIOs einen {@link GpioReport} sendet. Die GPIOs werden von pigpio mit der
+ * eingestellten Abtastrate (Standard 5µs) überwacht, die Zeitstempel stammen direkt aus dem Tick Zähler von pigpio.
+ */
+public class PigpioNotificationStream implements NotificationSource {
+
+	private final PigpioSocket control;
+	private final PigpioSocket stream;
+	private final int handle;
+
+	/**
+	 * Öffnet einen Benachrichtigungsstrom und startet die Überwachung der angegebenen GPIOs
+	 * @param control - Verbindung für Steuerbefehle
+	 * @param host - Hostname des Socket Interfaces
+	 * @param port - Port des Socket Interfaces
+	 * @param bits - Bitmaske der zu überwachenden GPIOs 0-31
+	 * @throws IOException wenn der Strom nicht geöffnet werden kann
+	 */
+	public PigpioNotificationStream(PigpioSocket control, String host, int port, int bits) throws IOException {
+		this.control = control;
+		this.stream = new PigpioSocket(host, port);
+
+		try {
+			this.handle = stream.command(PigpioCommand.NOIB, 0, 0);
+			control.command(PigpioCommand.NB, handle, bits);
+		}
+		catch(IOException e) {
+			stream.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public int read(ByteBuffer buffer) throws IOException {
+		return stream.getChannel().read(buffer);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			control.command(PigpioCommand.NC, handle, 0);
+		}
+		finally {
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package de.fabiansiemens.hardwarecontroller.pigpio;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Verbindung zum Socket Interface von pigpio.
+ *
+ * Das Socket Interface wird sowohl vom pigpio Daemon als auch von der nativen pigpio Bibliothek bereitgestellt,
+ * die Pi4J im nativen Modus lädt (Standardport {@link #DEFAULT_PORT}). Darüber sind Funktionen erreichbar,
+ * die Pi4J selbst nicht anbietet, z.B. Wellenformen und Benachrichtigungsströme.
+ * Ein Befehl besteht aus vier 32 Bit Werten (Befehl, p1, p2, p3) und optionalen Zusatzdaten der Länge p3,
+ * die Antwort aus vier 32 Bit Werten, deren letzter das Ergebnis enthält.
+ */
+public class PigpioSocket implements Closeable {
+
+	public static final String DEFAULT_HOST = "localhost";
+	public static final int DEFAULT_PORT = 8888;
+
+	private static final int HEADER_SIZE = 16;
+
+	private final SocketChannel channel;
+	private final ByteBuffer header;
+
+	/**
+	 * Verbindet sich mit dem pigpio Socket Interface
+	 * @param host - Hostname, im Normalfall {@link #DEFAULT_HOST}
+	 * @param port - Port, im Normalfall {@link #DEFAULT_PORT}
+	 * @throws IOException wenn keine Verbindung aufgebaut werden kann
+	 */
+	public PigpioSocket(String host, int port) throws IOException {
+		this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+		this.channel.socket().setTcpNoDelay(true);
+		this.header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Führt einen Befehl ohne Zusatzdaten aus
+	 * @return Ergebnis des Befehls
+	 * @throws IOException bei Verbindungsfehlern oder wenn pigpio einen Fehlercode zurückgibt
+	 */
+	public int command(PigpioCommand command, int p1, int p2) throws IOException {
+		return command(command, p1, p2, null);
+	}
+
+	/**
+	 * Führt einen Befehl mit Zusatzdaten aus
+	 * @param extension - Zusatzdaten (Little Endian) zwischen Position und Limit @Nullable
+	 * @return Ergebnis des Befehls
+	 * @throws IOException bei Verbindungsfehlern oder wenn pigpio einen Fehlercode zurückgibt
+	 */
+	public synchronized int command(PigpioCommand command, int p1, int p2, ByteBuffer extension) throws IOException {
+		header.clear();
+		header.putInt(command.getCode()).putInt(p1).putInt(p2).putInt(extension == null ? 0 : extension.remaining());
+		header.flip();
+
+		writeFully(header);
+		if(extension != null)
+			writeFully(extension);
+
+		header.clear();
+		readFully(header);
+
+		int result = header.getInt(12);
+		if(result < 0)
+			throw new IOException("pigpio command " + command + " failed with error " + result);
+
+		return result;
+	}
+
+	/**
+	 * Sendet alle Befehle eines Batches in einem Schreibvorgang und liest danach alle Antworten.
+	 * Die Ergebnisse werden nicht geprüft, siehe {@link PigpioBatch#checkResult(int)}.
+	 * @throws IOException bei Verbindungsfehlern
+	 */
+	public synchronized void execute(PigpioBatch batch) throws IOException {
+		writeFully(batch.prepareRequests());
+		readFully(batch.prepareResponses());
+	}
+
+	/**
+	 * Gibt den zugrunde liegenden Kanal zurück, z.B. um ihn mit {@link PigpioCommand#NOIB} in einen Benachrichtigungsstrom umzuwandeln
+	 */
+	SocketChannel getChannel() {
+		return channel;
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	private void readFully(ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining())
+			if(channel.read(buffer) < 0)
+				throw new EOFException("pigpio closed the connection");
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,56 @@
+package de.fabiansiemens.hardwarecontroller.pigpio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link WaveformDriver} über das pigpio Socket Interface. Die Wellenformen werden von pigpio per DMA ausgegeben und
+ * sind damit unabhängig vom Scheduling der JVM auf wenige Mikrosekunden genau.
+ */
+public class PigpioWaveformDriver implements WaveformDriver {
+
+	/**
+	 * Größe eines Pulses (gpioPulse_t) in Bytes
+	 */
+	private static final int PULSE_SIZE = 12;
+
+	private final PigpioSocket socket;
+
+	/**
+	 * @param socket - Verbindung zum pigpio Socket Interface
+	 */
+	public PigpioWaveformDriver(PigpioSocket socket) {
+		this.socket = socket;
+	}
+
+	@Override
+	public int create(int[] on, int[] off, int[] delayMicros) throws IOException {
+		if(on.length != off.length || on.length != delayMicros.length)
+			throw new IllegalArgumentException("Pulse arrays must have the same length");
+
+		ByteBuffer pulses = ByteBuffer.allocate(on.length * PULSE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		for(int i = 0; i < on.length; i++)
+			pulses.putInt(on[i]).putInt(off[i]).putInt(delayMicros[i]);
+		pulses.flip();
+
+		socket.command(PigpioCommand.WVCLR, 0, 0);
+		socket.command(PigpioCommand.WVAG, 0, 0, pulses);
+		return socket.command(PigpioCommand.WVCRE, 0, 0);
+	}
+
+	@Override
+	public void transmit(int wave, boolean repeat) throws IOException {
+		socket.command(repeat ? PigpioCommand.WVTXR : PigpioCommand.WVTX, wave, 0);
+	}
+
+	@Override
+	public void halt() throws IOException {
+		socket.command(PigpioCommand.WVHLT, 0, 0);
+	}
+
+	@Override
+	public void delete(int wave) throws IOException {
+		socket.command(PigpioCommand.WVDEL, wave, 0);
+	}
+}
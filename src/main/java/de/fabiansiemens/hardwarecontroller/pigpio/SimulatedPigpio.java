@@ -0,0 +1,140 @@
+package de.fabiansiemens.hardwarecontroller.pigpio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lokaler Ersatz für pigpio, der ein Spielbrett simuliert.
+ *
+ * Gesendete Wellenformen werden nicht in Echtzeit ausgegeben, sondern direkt in den Benachrichtigungsstrom übersetzt:
+ * Für jeden Puls wird ein {@link GpioReport} erzeugt, dessen Pegel die gesetzten Spalten und die dadurch HIGH werdenden
+ * Zeilen der simulierten Belegung enthält. Der Tick wird um die Wartezeit des Pulses erhöht.
+ * Damit lassen sich Scanner und Dekodierung ohne Hardware testen.
+ */
+public class SimulatedPigpio implements WaveformDriver, NotificationSource {
+
+	private final int[] columnPins;
+	private final int[] rowPins;
+	private final Map<Integer, int[][]> waves;
+
+	private volatile long occupancy;
+	private int nextWave;
+	private int[][] transmitting;
+	private boolean repeat;
+	private int pulse;
+	private int level;
+	private long tick;
+	private int sequence;
+	private boolean closed;
+
+	/**
+	 * @param columnPins - GPIOs der Spalten, Reihenfolge wie in der Sensormatrix
+	 * @param rowPins - GPIOs der Zeilen, Reihenfolge wie in der Sensormatrix
+	 */
+	public SimulatedPigpio(int[] columnPins, int[] rowPins) {
+		if(columnPins.length * rowPins.length > 64)
+			throw new IllegalArgumentException("The simulation supports at most 64 squares");
+
+		this.columnPins = columnPins.clone();
+		this.rowPins = rowPins.clone();
+		this.waves = new HashMap<Integer, int[][]>();
+	}
+
+	/**
+	 * Setzt die simulierte Belegung des Bretts
+	 * @param occupancy - Belegung, Bit row * Spaltenanzahl + col ist gesetzt wenn das Feld belegt ist,
+	 * wie bei {@link de.fabiansiemens.hardwarecontroller.sensor.SensorMatrix#index(int, int)}
+	 */
+	public void setOccupancy(long occupancy) {
+		this.occupancy = occupancy;
+	}
+
+	@Override
+	public synchronized int create(int[] on, int[] off, int[] delayMicros) {
+		if(on.length != off.length || on.length != delayMicros.length)
+			throw new IllegalArgumentException("Pulse arrays must have the same length");
+
+		waves.put(nextWave, new int[][] {on.clone(), off.clone(), delayMicros.clone()});
+		return nextWave++;
+	}
+
+	@Override
+	public synchronized void transmit(int wave, boolean repeat) throws IOException {
+		int[][] pulses = waves.get(wave);
+		if(pulses == null)
+			throw new IOException("Unknown wave " + wave);
+
+		this.transmitting = pulses;
+		this.repeat = repeat;
+		this.pulse = 0;
+		notifyAll();
+	}
+
+	@Override
+	public synchronized void halt() {
+		transmitting = null;
+	}
+
+	@Override
+	public synchronized void delete(int wave) {
+		waves.remove(wave);
+	}
+
+	@Override
+	public synchronized int read(ByteBuffer buffer) throws IOException {
+		while(transmitting == null && !closed) {
+			try {
+				wait();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for notifications", e);
+			}
+		}
+
+		if(closed)
+			return -1;
+
+		int start = buffer.position();
+		while(transmitting != null && buffer.remaining() >= GpioReport.SIZE) {
+			level = (level | transmitting[0][pulse]) & ~transmitting[1][pulse];
+			GpioReport.put(buffer, sequence++, 0, tick, level | rowLevels(level));
+			tick = (tick + transmitting[2][pulse]) & 0xFFFFFFFFL;
+
+			if(++pulse == transmitting[0].length) {
+				pulse = 0;
+				if(!repeat)
+					transmitting = null;
+			}
+		}
+
+		return buffer.position() - start;
+	}
+
+	/**
+	 * Berechnet die Pegel der Zeilen, die durch die aktuell angesteuerten Spalten HIGH sind
+	 */
+	private int rowLevels(int level) {
+		long occupancy = this.occupancy;
+		int rows = 0;
+
+		for(int col = 0; col < columnPins.length; col++) {
+			if((level & (1 << columnPins[col])) == 0)
+				continue;
+
+			for(int row = 0; row < rowPins.length; row++)
+				if((occupancy & (1L << (row * columnPins.length + col))) != 0)
+					rows |= 1 << rowPins[row];
+		}
+
+		return rows;
+	}
+
+	@Override
+	public synchronized void close() {
+		closed = true;
+		notifyAll();
+	}
+}
@@ -0,0 +1,38 @@
+package de.fabiansiemens.hardwarecontroller.pigpio;
+
+import java.io.IOException;
+
+/**
+ * Erzeugt und sendet Wellenformen auf GPIO Ausgängen, entsprechend der gpioWave* Funktionen von pigpio.
+ * Eine Wellenform besteht aus Pulsen: Jeder Puls setzt einige GPIOs auf HIGH, andere auf LOW und wartet dann eine feste Zeit.
+ * Implementiert von {@link PigpioWaveformDriver} für echte Hardware und {@link SimulatedPigpio} für Tests ohne Hardware.
+ */
+public interface WaveformDriver {
+	/**
+	 * Erzeugt eine neue Wellenform. Alle Arrays müssen gleich lang sein.
+	 * @param on - pro Puls die Bitmaske der GPIOs, die auf HIGH gesetzt werden
+	 * @param off - pro Puls die Bitmaske der GPIOs, die auf LOW gesetzt werden
+	 * @param delayMicros - pro Puls die Wartezeit nach dem Setzen in Mikrosekunden
+	 * @return ID der Wellenform
+	 * @throws IOException bei Verbindungsfehlern oder wenn pigpio die Wellenform ablehnt
+	 */
+	public int create(int[] on, int[] off, int[] delayMicros) throws IOException;
+
+	/**
+	 * Sendet eine Wellenform. Eine laufende Wellenform wird dabei ersetzt.
+	 * @param wave - ID der Wellenform
+	 * @param repeat - true = Dauerschleife, false = einmalig
+	 */
+	public void transmit(int wave, boolean repeat) throws IOException;
+
+	/**
+	 * Stoppt die laufende Wellenform
+	 */
+	public void halt() throws IOException;
+
+	/**
+	 * Löscht eine Wellenform
+	 * @param wave - ID der Wellenform
+	 */
+	public void delete(int wave) throws IOException;
+}
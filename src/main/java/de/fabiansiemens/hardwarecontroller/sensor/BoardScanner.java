@@ -0,0 +1,610 @@
+package de.fabiansiemens.hardwarecontroller.sensor;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.LockSupport;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+
+/**
+ * Scannt die {@link SensorMatrix} kontinuierlich in einem eigenen Thread und benachrichtigt registrierte {@link ScanListener}.
+ *
+ * Der Scanner kennt zwei Modi: Im aktiven Modus wird mit hoher Rate gescannt. Ändert sich für die eingestellte Ruhezeit
+ * nichts am Brett, wechselt der Scanner in den Ruhemodus und scannt nur noch selten. Sobald sich ein Feld ändert oder
+ * {@link #wake()} aufgerufen wird (z.B. beim Drücken des Confirm-Move Knopfs), wird sofort wieder in den aktiven Modus gewechselt.
+ * Wie im Ruhemodus gescannt wird, legt der {@link ScanMode} fest.
+ * Statt eines eigenen Threads kann der Scanner auch auf einem gemeinsamen {@link ScanScheduler} laufen
+ * ({@link #start(ScanScheduler)}), z.B. wenn ein Prozess mehrere Bretter betreibt.
+ */
+public class BoardScanner {
+
+	/**
+	 * Standard Pause zwischen zwei Scans im aktiven Modus
+	 */
+	public static final long DEFAULT_ACTIVE_INTERVAL_MILLIS = 20;
+	/**
+	 * Standard Pause zwischen zwei Scans im Ruhemodus
+	 */
+	public static final long DEFAULT_IDLE_INTERVAL_MILLIS = 500;
+	/**
+	 * Standard Zeit ohne Änderung, nach der in den Ruhemodus gewechselt wird
+	 */
+	public static final long DEFAULT_QUIET_PERIOD_MILLIS = 10_000;
+	/**
+	 * Standard Abstand der Kontrollscans im Modus {@link ScanMode#WAKE_ON_CHANGE}
+	 */
+	public static final long DEFAULT_CHECK_INTERVAL_MILLIS = 5_000;
+	/**
+	 * Maximale Wartezeit von {@link #stop()} auf das Ende des laufenden Scans
+	 */
+	public static final long STOP_TIMEOUT_MILLIS = 1_000;
+
+	private final SensorMatrix sensors;
+	private final List<ScanListener> listener;
+	private final ThreadMXBean threadBean;
+
+	private volatile long activeIntervalNanos;
+	private volatile long idleIntervalNanos;
+	private volatile long quietPeriodNanos;
+	private volatile long checkIntervalNanos;
+	private volatile ScanMode mode;
+	private boolean rowListenerRegistered;
+	private volatile boolean armed;
+	private volatile boolean rowEdge;
+	private volatile WaveformScan waveform;
+	private boolean waveformRepeating;
+	private ScanTiming waveformTiming;
+	private long hardwareTick;
+
+	private volatile Thread thread;
+	private volatile ScheduledScan scheduled;
+	private volatile boolean running;
+	private volatile boolean active;
+	private volatile long lastActivity;
+	private volatile BitGrid occupancy;
+
+	private volatile long startTime;
+	private volatile long scans;
+	private volatile long activeScans;
+	private volatile long changes;
+
+	/**
+	 * Erzeugt einen neuen Scanner mit den Standardwerten. Der Scanner muss mit {@link #start()} gestartet werden.
+	 * @param sensors - zu scannende Sensormatrix
+	 */
+	public BoardScanner(SensorMatrix sensors) {
+		this.sensors = sensors;
+		this.listener = new CopyOnWriteArrayList<ScanListener>();
+		this.threadBean = ManagementFactory.getThreadMXBean();
+		this.activeIntervalNanos = DEFAULT_ACTIVE_INTERVAL_MILLIS * 1_000_000L;
+		this.idleIntervalNanos = DEFAULT_IDLE_INTERVAL_MILLIS * 1_000_000L;
+		this.quietPeriodNanos = DEFAULT_QUIET_PERIOD_MILLIS * 1_000_000L;
+		this.checkIntervalNanos = DEFAULT_CHECK_INTERVAL_MILLIS * 1_000_000L;
+		this.mode = ScanMode.POLLING;
+		this.occupancy = sensors.newGrid();
+	}
+
+	/**
+	 * Registriert einen Listener. Wenn der übergebene Listener null ist, wird nichts hinzugefügt.
+	 * @param listener - Objekt vom Typ {@link ScanListener} @Nullable
+	 */
+	public void addListener(ScanListener listener) {
+		if(listener == null)
+			return;
+
+		this.listener.add(listener);
+	}
+
+	public void removeListener(ScanListener listener) {
+		this.listener.remove(listener);
+	}
+
+	/**
+	 * @param millis - Pause zwischen zwei Scans im aktiven Modus
+	 */
+	public void setActiveInterval(long millis) {
+		this.activeIntervalNanos = millis * 1_000_000L;
+	}
+
+	/**
+	 * @param millis - Pause zwischen zwei Scans im Ruhemodus
+	 */
+	public void setIdleInterval(long millis) {
+		this.idleIntervalNanos = millis * 1_000_000L;
+	}
+
+	/**
+	 * @param millis - Zeit ohne Änderung, nach der in den Ruhemodus gewechselt wird
+	 */
+	public void setQuietPeriod(long millis) {
+		this.quietPeriodNanos = millis * 1_000_000L;
+	}
+
+	/**
+	 * @param millis - Abstand der Kontrollscans im Modus {@link ScanMode#WAKE_ON_CHANGE}
+	 */
+	public void setCheckInterval(long millis) {
+		this.checkIntervalNanos = millis * 1_000_000L;
+	}
+
+	public ScanMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Legt fest, wie im Ruhemodus gescannt wird. Kann auch bei laufendem Scanner geändert werden.
+	 * @param mode - Arbeitsweise im Ruhemodus @NotNull
+	 */
+	public synchronized void setMode(ScanMode mode) {
+		if(mode == null)
+			throw new IllegalArgumentException("Mode must not be null");
+
+		if(mode != ScanMode.POLLING && scheduled != null)
+			throw new IllegalStateException("Only polling is supported on a shared scheduler");
+
+		if(mode == ScanMode.WAVEFORM && waveform == null)
+			throw new IllegalStateException("No waveform scan configured, call setWaveformScan() first");
+
+		if(mode == ScanMode.WAKE_ON_CHANGE && !rowListenerRegistered) {
+			sensors.addRowListener(row -> onRowEdge());
+			rowListenerRegistered = true;
+		}
+
+		this.mode = mode;
+		wake();
+	}
+
+	/**
+	 * Setzt den Wellenform-Scan für den Modus {@link ScanMode#WAVEFORM}
+	 * @param waveform - Wellenform-Scan, z.B. aus {@link WaveformScan#connect(SensorMatrix, String, int)} @Nullable
+	 */
+	public void setWaveformScan(WaveformScan waveform) {
+		if(waveform != null && !sensors.isSingleWord())
+			throw new IllegalArgumentException("Waveform scans support at most 64 squares");
+
+		this.waveform = waveform;
+	}
+
+	public WaveformScan getWaveformScan() {
+		return waveform;
+	}
+
+	/**
+	 * @return Belegung des letzten Scans, Bitindex siehe {@link SensorMatrix#index(int, int)}
+	 */
+	public long getOccupancy() {
+		return occupancy.toLong();
+	}
+
+	/**
+	 * @return Kopie der Belegung des letzten Scans, für Bretter beliebiger Größe
+	 */
+	public BitGrid getGrid() {
+		return occupancy.copy();
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	/**
+	 * Startet den Scanner Thread. Hat keine Auswirkung, wenn der Scanner bereits läuft.
+	 */
+	public synchronized void start() {
+		if(running)
+			return;
+
+		running = true;
+		active = true;
+		startTime = System.nanoTime();
+		lastActivity = startTime;
+		thread = new Thread(this::run, "BoardScanner");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Startet den Scanner auf einem gemeinsamen Taktgeber. Jeder Scan wird in Schritte pro Spalte zerlegt, die Wartezeiten
+	 * zwischen den Schritten blockieren keinen Thread. Es wird nur {@link ScanMode#POLLING} unterstützt.
+	 * Während der Scanner läuft, sollten keine weiteren Scans direkt auf der {@link SensorMatrix} ausgeführt werden,
+	 * da sich diese mit den Schritten des Scanners überschneiden können.
+	 * Hat keine Auswirkung, wenn der Scanner bereits läuft.
+	 * @param scheduler - gemeinsamer Taktgeber @NotNull
+	 */
+	public synchronized void start(ScanScheduler scheduler) {
+		if(running)
+			return;
+
+		if(mode != ScanMode.POLLING)
+			throw new IllegalStateException("Only polling is supported on a shared scheduler");
+
+		running = true;
+		active = true;
+		startTime = System.nanoTime();
+		lastActivity = startTime;
+		scheduled = new ScheduledScan(scheduler);
+		scheduler.execute(scheduled);
+	}
+
+	/**
+	 * Stoppt den Scanner und wartet höchstens {@link #STOP_TIMEOUT_MILLIS}, bis der laufende Scan beendet ist.
+	 * Aus dem Scanner-Thread selbst (z.B. aus einem ScanListener) wird nicht gewartet, der Thread endet nach dem laufenden Scan.
+	 */
+	public synchronized void stop() {
+		if(!running)
+			return;
+
+		running = false;
+
+		ScheduledScan scheduled = this.scheduled;
+		if(scheduled != null) {
+			scheduled.cancel();
+			this.scheduled = null;
+			return;
+		}
+
+		Thread thread = this.thread;
+		LockSupport.unpark(thread);
+		if(thread == Thread.currentThread())
+			return;
+
+		try {
+			thread.join(STOP_TIMEOUT_MILLIS);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Wechselt sofort in den aktiven Modus und startet den nächsten Scan ohne Pause.
+	 * Kann aus beliebigen Threads aufgerufen werden, z.B. aus einem GPIO Listener.
+	 */
+	public void wake() {
+		lastActivity = System.nanoTime();
+		active = true;
+
+		Thread thread = this.thread;
+		if(thread != null)
+			LockSupport.unpark(thread);
+
+		ScheduledScan scheduled = this.scheduled;
+		if(scheduled != null)
+			scheduled.wake();
+	}
+
+	/**
+	 * @return aktuelle Kennzahlen des Scanners
+	 */
+	public ScanMetrics getMetrics() {
+		long cpu = -1;
+		Thread thread = this.thread;
+		ScheduledScan scheduled = this.scheduled;
+		if(scheduled != null)
+			cpu = scheduled.getCpuNanos();
+		else if(thread != null && threadBean.isThreadCpuTimeSupported())
+			cpu = threadBean.getThreadCpuTime(thread.getId());
+
+		long uptime = running ? System.nanoTime() - startTime : 0;
+		return new ScanMetrics(active, scans, activeScans, changes, uptime, cpu);
+	}
+
+	private void run() {
+		long[] previousNanos = new long[sensors.getColumns()];
+		BitGrid previous = sensors.readGrid(sensors.newGrid(), previousNanos);
+		occupancy = previous;
+
+		//Ein nach stop() ohne Warten neu gestarteter Scanner ersetzt diesen Thread, dann endet er nach dem laufenden Scan
+		while(running && thread == Thread.currentThread()) {
+			long scanStart = System.nanoTime();
+			ScanMode mode = this.mode;
+			boolean paced = mode == ScanMode.WAVEFORM || (!active && mode == ScanMode.WAKE_ON_CHANGE);
+			long[] sampleNanos = previousNanos.clone();
+			BitGrid current;
+			hardwareTick = -1;
+
+			if(mode == ScanMode.WAVEFORM)
+				current = scanWaveform(previous, sampleNanos);
+			else if(paced)
+				current = waitForRowEdge(previous, sampleNanos);
+			else
+				current = sensors.readGrid(sensors.newGrid(), sampleNanos);
+
+			long now = System.nanoTime();
+
+			if(!running || thread != Thread.currentThread())
+				break;
+
+			publish(previous, current, sampleNanos, now);
+
+			previous = current;
+			previousNanos = sampleNanos;
+			if(!paced)
+				waitForNextScan(scanStart);
+		}
+
+		haltWaveform();
+	}
+
+	/**
+	 * Aktualisiert Modus und Kennzahlen nach einem vollständigen Scan und benachrichtigt die Listener
+	 */
+	private void publish(BitGrid previous, BitGrid current, long[] sampleNanos, long now) {
+		scans++;
+		if(active)
+			activeScans++;
+
+		ScanResult result = new ScanResult(previous, current, scans, sampleNanos, hardwareTick);
+		if(result.hasChanged()) {
+			changes++;
+			lastActivity = now;
+			active = true;
+		}
+		else if(active && now - lastActivity > quietPeriodNanos) {
+			active = false;
+		}
+
+		occupancy = current;
+		for(ScanListener lis : listener)
+			lis.onScan(result);
+	}
+
+	/**
+	 * Scannt mit der Wellenform. Im aktiven Modus läuft die Wellenform in Dauerschleife und jeder dekodierte Scan wird
+	 * direkt zurückgegeben, im Ruhemodus wird nach der Ruhe-Pause ein einzelner Scan ausgegeben.
+	 * Bei Verbindungsfehlern wird auf {@link ScanMode#POLLING} zurückgefallen.
+	 * @param previous - bisher bekannte Belegung
+	 * @param sampleNanos - erhält den Erfassungszeitpunkt jeder Spalte
+	 * @return neue Belegung
+	 */
+	private BitGrid scanWaveform(BitGrid previous, long[] sampleNanos) {
+		try {
+			ScanTiming timing = sensors.getTiming();
+			if(!active) {
+				haltWaveform();
+				waitForNextScan(System.nanoTime());
+				if(!running)
+					return previous;
+			}
+
+			if(!waveformRepeating || !timing.equals(waveformTiming)) {
+				waveform.start(timing, active);
+				waveformRepeating = active;
+				waveformTiming = timing;
+			}
+
+			long frame = waveform.readFrame();
+			Arrays.fill(sampleNanos, System.nanoTime());
+			hardwareTick = waveform.getLastTick();
+			return BitGrid.of(sensors.getColumns(), sensors.getRows(), frame);
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+			waveformRepeating = false;
+			mode = ScanMode.POLLING;
+			return sensors.readGrid(sensors.newGrid(), sampleNanos);
+		}
+	}
+
+	private void haltWaveform() {
+		if(!waveformRepeating)
+			return;
+
+		try {
+			waveform.halt();
+		}
+		catch(IOException e) {
+			e.printStackTrace();
+		}
+		waveformRepeating = false;
+	}
+
+	/**
+	 * Wird von den GPIO Listenern der Zeilen aufgerufen
+	 */
+	private void onRowEdge() {
+		if(!armed)
+			return;
+
+		rowEdge = true;
+		Thread thread = this.thread;
+		if(thread != null)
+			LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Steuert alle Spalten an und wartet auf eine Flanke der Zeilen, einen Aufruf von {@link #wake()} oder den nächsten Kontrollscan.
+	 * @param previous - bisher bekannte Belegung
+	 * @param sampleNanos - erhält den Erfassungszeitpunkt jeder gescannten Spalte
+	 * @return neue Belegung
+	 */
+	private BitGrid waitForRowEdge(BitGrid previous, long[] sampleNanos) {
+		sensors.driveAllColumns(true);
+		SensorMatrix.pause(sensors.getTiming().getSettleMicros());
+
+		int baseline = sensors.readRows();
+		long deadline = System.nanoTime() + checkIntervalNanos;
+		rowEdge = false;
+		armed = true;
+
+		try {
+			while(running) {
+				long remaining = deadline - System.nanoTime();
+				if(remaining <= 0 || active || mode != ScanMode.WAKE_ON_CHANGE)
+					return sensors.readGrid(sensors.newGrid(), sampleNanos);
+
+				LockSupport.parkNanos(this, remaining);
+
+				if(rowEdge) {
+					rowEdge = false;
+					int changed = sensors.readRows() ^ baseline;
+					if(changed != 0)
+						return sensors.locateChange(previous, changed, sampleNanos);
+				}
+			}
+
+			return previous;
+		}
+		finally {
+			armed = false;
+		}
+	}
+
+	/**
+	 * Wartet bis zum nächsten Scan. Ein Aufruf von {@link #wake()} im Ruhemodus beendet die Wartezeit vorzeitig.
+	 */
+	private void waitForNextScan(long scanStart) {
+		while(running) {
+			long interval = active ? activeIntervalNanos : idleIntervalNanos;
+			long remaining = scanStart + interval - System.nanoTime();
+			if(remaining <= 0)
+				return;
+
+			boolean wasActive = active;
+			LockSupport.parkNanos(this, remaining);
+
+			if(!wasActive && active)
+				return;
+		}
+	}
+
+	/**
+	 * Schrittweiser Scan auf einem {@link ScanScheduler}. Jeder Aufruf führt einen Schritt aus und plant den nächsten ein:
+	 * Spalte ansteuern, nach der Settle-Zeit einlesen, nach der Hold-Zeit abschalten und direkt die nächste Spalte ansteuern.
+	 * Nach der letzten Spalte wird der Scan veröffentlicht und der nächste Scan nach der Pause des aktuellen Modus eingeplant.
+	 */
+	private final class ScheduledScan implements Runnable {
+
+		private final ScanScheduler scheduler;
+		private final int columns;
+
+		private boolean started;
+		private BitGrid previous;
+		private long[] previousNanos;
+		private BitGrid current;
+		private long[] sampleNanos;
+		private long scanStart;
+		private int col;
+		private boolean driven;
+		private boolean sampled;
+		private ScheduledFuture<?> waiting;
+		private volatile long cpuNanos;
+
+		ScheduledScan(ScanScheduler scheduler) {
+			this.scheduler = scheduler;
+			this.columns = sensors.getColumns();
+			this.previousNanos = new long[columns];
+			this.previous = sensors.newGrid();
+			hardwareTick = -1;
+		}
+
+		long getCpuNanos() {
+			return cpuNanos;
+		}
+
+		@Override
+		public synchronized void run() {
+			waiting = null;
+			if(!running)
+				return;
+
+			boolean measure = threadBean.isCurrentThreadCpuTimeSupported();
+			long cpuStart = measure ? threadBean.getCurrentThreadCpuTime() : 0;
+
+			try {
+				step();
+			}
+			finally {
+				if(measure)
+					cpuNanos += threadBean.getCurrentThreadCpuTime() - cpuStart;
+			}
+		}
+
+		private void step() {
+			ScanTiming timing = sensors.getTiming();
+
+			while(true) {
+				if(!driven) {
+					if(col == 0) {
+						scanStart = System.nanoTime();
+						sampleNanos = previousNanos.clone();
+						current = previous.copy();
+					}
+
+					sensors.beginColumn(col);
+					driven = true;
+					schedule(timing.getSettleMicros() * 1000L);
+					return;
+				}
+
+				if(!sampled) {
+					sensors.setColumn(current, col, sensors.sampleColumn(col, sampleNanos));
+					sampled = true;
+
+					if(timing.getHoldMicros() > 0) {
+						schedule(timing.getHoldMicros() * 1000L);
+						return;
+					}
+				}
+
+				sensors.endColumn(col);
+				driven = false;
+				sampled = false;
+
+				if(++col < columns)
+					continue;
+
+				col = 0;
+				finishScan();
+				return;
+			}
+		}
+
+		private void finishScan() {
+			long now = System.nanoTime();
+
+			//Der erste Scan legt nur die Ausgangsbelegung fest
+			if(started)
+				publish(previous, current, sampleNanos, now);
+			else
+				occupancy = current;
+
+			started = true;
+			previous = current;
+			previousNanos = sampleNanos;
+			schedule(scanStart + (active ? activeIntervalNanos : idleIntervalNanos) - now);
+		}
+
+		private void schedule(long delayNanos) {
+			waiting = scheduler.schedule(this, delayNanos);
+		}
+
+		/**
+		 * Startet den nächsten Scan sofort, wenn gerade zwischen zwei Scans gewartet wird
+		 */
+		synchronized void wake() {
+			if(running && col == 0 && !driven && waiting != null && waiting.cancel(false))
+				schedule(0);
+		}
+
+		/**
+		 * Verwirft den nächsten Schritt und schaltet eine angesteuerte Spalte ab
+		 */
+		synchronized void cancel() {
+			if(waiting != null)
+				waiting.cancel(false);
+
+			if(driven)
+				sensors.endColumn(col);
+		}
+	}
+}
@@ -0,0 +1,423 @@
+package de.fabiansiemens.hardwarecontroller.sensor;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Einzelner Hardware Thread, der Spalten ansteuern, Einlesezeitpunkte, LED Übertragungen und Animationsschritte gegen
+ * Deadlines in Nanosekunden abarbeitet.
+ *
+ * Termingebundene Aufgaben ({@link #schedule(Runnable, long)}, {@link #every(Runnable, long)}) liegen in einer nach Deadline
+ * sortierten Warteschlange. Der Thread parkt mit {@link LockSupport#parkNanos(long)} bis kurz vor die nächste Deadline und
+ * wartet den Rest aktiv ab. Aufgaben ohne Termin ({@link #execute(Runnable)}, z.B. SPI Übertragungen der LED Matrix) laufen nur,
+ * wenn sie nach ihrer bisher gemessenen Dauer vor der nächsten Deadline fertig werden. So landet keine über die Schleife
+ * ausgeführte Übertragung mitten in einem Einschwingfenster und verschiebt den Einlesezeitpunkt. Wartet eine Aufgabe ohne Termin länger als
+ * {@link #MAX_BACKGROUND_DELAY_NANOS}, läuft sie trotzdem, damit sie bei dicht liegenden Deadlines nicht verhungert.
+ * Wird eine Aufgabe später als die Toleranz ausgeführt, gilt ihre Deadline als verpasst und die {@link MissListener} werden
+ * im Hardware Thread benachrichtigt.
+ *
+ * Mit {@link ScanScheduler#ScanScheduler(HardwareLoop)} laufen Scans und LED Aktualisierungen aller Bretter in dieser Schleife.
+ * Das gilt nur für Arbeit, die tatsächlich über die Schleife läuft: Scanner, die mit {@link BoardScanner#start(ScanScheduler)}
+ * gestartet wurden, und LED Matrizen mit diesem Taktgeber als
+ * {@link de.fabiansiemens.hardwarecontroller.led.MAX7219#setRefreshExecutor(Executor) Refresh Executor}, z.B. Controller, die
+ * mit {@link de.fabiansiemens.hardwarecontroller.HardwareController#HardwareController(de.fabiansiemens.hardwarecontroller.BoardConfig, ScanScheduler)}
+ * erzeugt wurden. Ein Scanner mit eigenem Thread ({@link BoardScanner#start()}), direkte Scans der {@link SensorMatrix},
+ * synchrone Übertragungen ({@link de.fabiansiemens.hardwarecontroller.led.MAX7219#flushNow()}, z.B. beim Abspielen von
+ * Animationen) sowie andere Prozesse umgehen die Schleife und können weiterhin in ein Einschwingfenster fallen.
+ */
+public class HardwareLoop implements Executor {
+
+	/**
+	 * Standard Verspätung, ab der eine Deadline als verpasst gilt
+	 */
+	public static final long DEFAULT_TOLERANCE_NANOS = 200_000;
+	/**
+	 * Die letzte Strecke vor einer Deadline wird aktiv gewartet, da parkNanos zu ungenau aufwacht
+	 */
+	public static final long SPIN_NANOS = 50_000;
+	/**
+	 * Längste Zeit, die eine Aufgabe ohne Termin zugunsten von Deadlines zurückgestellt wird
+	 */
+	public static final long MAX_BACKGROUND_DELAY_NANOS = 20_000_000;
+
+	/**
+	 * Anfangsschätzung der Dauer einer Aufgabe ohne Termin, bis die erste gemessen wurde
+	 */
+	private static final long INITIAL_BACKGROUND_NANOS = 200_000;
+
+	private static final AtomicInteger LOOPS = new AtomicInteger();
+
+	/**
+	 * Wird benachrichtigt, wenn eine Aufgabe nach ihrer Deadline plus Toleranz ausgeführt wurde
+	 */
+	public interface MissListener {
+		/**
+		 * @param task - verspätete Aufgabe
+		 * @param lateNanos - Verspätung gegenüber der Deadline
+		 */
+		public void onDeadlineMissed(Runnable task, long lateNanos);
+	}
+
+	private final Object lock;
+	private final PriorityQueue<Tick> deadlines;
+	private final ArrayDeque<Runnable> background;
+	private final ArrayDeque<Long> backgroundSince;
+	private final List<MissListener> listener;
+	private final Thread thread;
+	private final LongAdder ticks;
+	private final LongAdder missed;
+	private final AtomicLong maxLateNanos;
+	private volatile long toleranceNanos;
+	private volatile boolean running;
+	private long backgroundEstimate;
+	private long sequence;
+
+	/**
+	 * Erzeugt die Schleife und startet ihren Thread
+	 */
+	public HardwareLoop() {
+		this.lock = new Object();
+		this.deadlines = new PriorityQueue<Tick>();
+		this.background = new ArrayDeque<Runnable>();
+		this.backgroundSince = new ArrayDeque<Long>();
+		this.listener = new CopyOnWriteArrayList<MissListener>();
+		this.ticks = new LongAdder();
+		this.missed = new LongAdder();
+		this.maxLateNanos = new AtomicLong();
+		this.toleranceNanos = DEFAULT_TOLERANCE_NANOS;
+		this.backgroundEstimate = INITIAL_BACKGROUND_NANOS;
+		this.running = true;
+
+		this.thread = new Thread(this::loop, "HardwareLoop-" + LOOPS.incrementAndGet());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Registriert einen Listener. Wenn der übergebene Listener null ist, wird nichts hinzugefügt.
+	 * @param listener - Objekt vom Typ {@link MissListener} @Nullable
+	 */
+	public void addListener(MissListener listener) {
+		if(listener == null)
+			return;
+
+		this.listener.add(listener);
+	}
+
+	public void removeListener(MissListener listener) {
+		this.listener.remove(listener);
+	}
+
+	/**
+	 * @param nanos - Verspätung, ab der eine Deadline als verpasst gilt
+	 */
+	public void setTolerance(long nanos) {
+		this.toleranceNanos = nanos;
+	}
+
+	/**
+	 * Führt eine Aufgabe ohne Termin aus, sobald sie vor der nächsten Deadline Platz hat
+	 */
+	@Override
+	public void execute(Runnable task) {
+		synchronized(lock) {
+			if(!running)
+				return;
+
+			background.add(task);
+			backgroundSince.add(System.nanoTime());
+		}
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Führt eine Aufgabe zur angegebenen Deadline aus
+	 * @param task - Aufgabe
+	 * @param delayNanos - Verzögerung in Nanosekunden, 0 für sofort
+	 * @return Handle zum Abbrechen der Aufgabe
+	 */
+	public ScheduledFuture<?> schedule(Runnable task, long delayNanos) {
+		return enqueue(new Tick(task, System.nanoTime() + Math.max(0, delayNanos), 0));
+	}
+
+	/**
+	 * Führt eine Aufgabe periodisch aus, z.B. Animationsschritte. Die Deadlines ergeben sich aus der ersten Deadline und der
+	 * Periode, sodass sich Verspätungen nicht aufsummieren. Ist die Schleife mehr als eine Periode im Rückstand, werden die
+	 * verpassten Ausführungen übersprungen.
+	 * @param task - Aufgabe
+	 * @param periodNanos - Periode in Nanosekunden, die erste Ausführung folgt nach einer Periode
+	 * @return Handle zum Beenden der Ausführung
+	 */
+	public ScheduledFuture<?> every(Runnable task, long periodNanos) {
+		if(periodNanos <= 0)
+			throw new IllegalArgumentException("Period must be positive");
+
+		return enqueue(new Tick(task, System.nanoTime() + periodNanos, periodNanos));
+	}
+
+	/**
+	 * @return Anzahl ausgeführter termingebundener Aufgaben
+	 */
+	public long getTicks() {
+		return ticks.sum();
+	}
+
+	/**
+	 * @return Anzahl verpasster Deadlines
+	 */
+	public long getMissedDeadlines() {
+		return missed.sum();
+	}
+
+	/**
+	 * @return größte gemessene Verspätung einer Aufgabe
+	 */
+	public long getMaxLateNanos() {
+		return maxLateNanos.get();
+	}
+
+	/**
+	 * @return Thread der Schleife, z.B. um seine Priorität anzupassen
+	 */
+	public Thread getThread() {
+		return thread;
+	}
+
+	public boolean isShutdown() {
+		return !running;
+	}
+
+	/**
+	 * Beendet die Schleife. Geplante Aufgaben werden verworfen, eine laufende wird noch beendet.
+	 */
+	public void shutdown() {
+		synchronized(lock) {
+			running = false;
+			for(Tick tick : deadlines)
+				tick.finish(Tick.CANCELLED);
+			deadlines.clear();
+			background.clear();
+			backgroundSince.clear();
+		}
+		LockSupport.unpark(thread);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("HardwareLoop[ticks=%d, missed=%d, maxLate=%.3fms]",
+				getTicks(), getMissedDeadlines(), getMaxLateNanos() / 1_000_000.0);
+	}
+
+	private Tick enqueue(Tick tick) {
+		boolean first;
+		synchronized(lock) {
+			if(!running) {
+				tick.finish(Tick.CANCELLED);
+				return tick;
+			}
+
+			tick.sequence = sequence++;
+			deadlines.add(tick);
+			first = deadlines.peek() == tick;
+		}
+
+		//Nur eine neue früheste Deadline ändert die Wartezeit des Threads
+		if(first)
+			LockSupport.unpark(thread);
+		return tick;
+	}
+
+	private void loop() {
+		while(running) {
+			Tick due = null;
+			Runnable job = null;
+			long wait;
+
+			synchronized(lock) {
+				Tick next = deadlines.peek();
+				while(next != null && next.isDone()) {
+					deadlines.poll();
+					next = deadlines.peek();
+				}
+
+				long now = System.nanoTime();
+				wait = next == null ? Long.MAX_VALUE : next.deadline - now;
+
+				if(wait <= 0)
+					due = deadlines.poll();
+				else if(!background.isEmpty() && (wait > backgroundEstimate
+						|| now - backgroundSince.peek() > MAX_BACKGROUND_DELAY_NANOS)) {
+					job = background.poll();
+					backgroundSince.poll();
+				}
+			}
+
+			if(due != null)
+				runDue(due);
+			else if(job != null)
+				runBackground(job);
+			else if(wait > SPIN_NANOS)
+				LockSupport.parkNanos(this, wait == Long.MAX_VALUE ? Long.MAX_VALUE : wait - SPIN_NANOS);
+			else
+				Thread.onSpinWait();
+		}
+	}
+
+	private void runDue(Tick tick) {
+		long late = System.nanoTime() - tick.deadline;
+		ticks.increment();
+		maxLateNanos.accumulateAndGet(late, Math::max);
+		if(late > toleranceNanos) {
+			missed.increment();
+			for(MissListener lis : listener)
+				lis.onDeadlineMissed(tick.task, late);
+		}
+
+		try {
+			tick.task.run();
+		}
+		catch(RuntimeException e) {
+			e.printStackTrace();
+			tick.finish(Tick.DONE);
+			return;
+		}
+
+		if(tick.period == 0) {
+			tick.finish(Tick.DONE);
+			return;
+		}
+
+		//Nächste Deadline aus dem Raster der Periode, verpasste Ausführungen werden übersprungen
+		long now = System.nanoTime();
+		tick.deadline += tick.period;
+		if(tick.deadline - now < 0)
+			tick.deadline += ((now - tick.deadline) / tick.period + 1) * tick.period;
+
+		synchronized(lock) {
+			if(running && !tick.isDone())
+				deadlines.add(tick);
+		}
+	}
+
+	private void runBackground(Runnable job) {
+		long start = System.nanoTime();
+		try {
+			job.run();
+		}
+		catch(RuntimeException e) {
+			e.printStackTrace();
+		}
+
+		//Gleitender Mittelwert mit Gewicht 1/4 für die neueste Messung, Ausreißer nach oben werden sofort übernommen
+		long duration = System.nanoTime() - start;
+		synchronized(lock) {
+			backgroundEstimate = Math.max(duration, backgroundEstimate - (backgroundEstimate >> 2) + (duration >> 2));
+		}
+	}
+
+	/**
+	 * Termingebundene Aufgabe, sortiert nach Deadline und bei gleicher Deadline nach Reihenfolge des Einplanens
+	 */
+	private static final class Tick implements ScheduledFuture<Object> {
+
+		static final int PENDING = 0;
+		static final int DONE = 1;
+		static final int CANCELLED = 2;
+
+		final Runnable task;
+		final long period;
+		volatile long deadline;
+		long sequence;
+		private volatile int state;
+
+		Tick(Runnable task, long deadline, long period) {
+			this.task = task;
+			this.deadline = deadline;
+			this.period = period;
+		}
+
+		synchronized void finish(int state) {
+			if(this.state != PENDING)
+				return;
+
+			this.state = state;
+			notifyAll();
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			synchronized(this) {
+				if(state != PENDING)
+					return false;
+
+				finish(CANCELLED);
+				return true;
+			}
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return state == CANCELLED;
+		}
+
+		@Override
+		public boolean isDone() {
+			return state != PENDING;
+		}
+
+		@Override
+		public synchronized Object get() throws InterruptedException {
+			while(state == PENDING)
+				wait();
+
+			if(state == CANCELLED)
+				throw new CancellationException();
+			return null;
+		}
+
+		@Override
+		public synchronized Object get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+			long end = System.nanoTime() + unit.toNanos(timeout);
+			while(state == PENDING) {
+				long remaining = end - System.nanoTime();
+				if(remaining <= 0)
+					throw new TimeoutException();
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+
+			if(state == CANCELLED)
+				throw new CancellationException();
+			return null;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			if(other instanceof Tick) {
+				Tick tick = (Tick) other;
+				long diff = deadline - tick.deadline;
+				if(diff != 0)
+					return diff < 0 ? -1 : 1;
+				return Long.compare(sequence, tick.sequence);
+			}
+
+			return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+	}
+}
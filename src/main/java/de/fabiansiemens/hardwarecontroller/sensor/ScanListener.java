@@ -0,0 +1,13 @@
+package de.fabiansiemens.hardwarecontroller.sensor;
+
+/**
+ * Wird von einem {@link BoardScanner} nach jedem vollständigen Scan benachrichtigt.
+ */
+public interface ScanListener {
+	/**
+	 * Wird nach jedem Scan aufgerufen, auch wenn sich die Belegung nicht geändert hat.
+	 * Die Methode wird im Thread des Scanners ausgeführt und sollte daher schnell zurückkehren.
+	 * @param result - Ergebnis des Scans inklusive Erfassungszeitpunkten
+	 */
+	public void onScan(ScanResult result);
+}
@@ -0,0 +1,79 @@
+package de.fabiansiemens.hardwarecontroller.sensor;
+
+/**
+ * Momentaufnahme der Kennzahlen eines {@link BoardScanner}.
+ * Instanzen dieser Klasse sind unveränderlich.
+ */
+public final class ScanMetrics {
+
+	private static final long NANOS_PER_HOUR = 3_600_000_000_000L;
+
+	private final boolean active;
+	private final long scans;
+	private final long activeScans;
+	private final long changes;
+	private final long uptimeNanos;
+	private final long cpuNanos;
+
+	ScanMetrics(boolean active, long scans, long activeScans, long changes, long uptimeNanos, long cpuNanos) {
+		this.active = active;
+		this.scans = scans;
+		this.activeScans = activeScans;
+		this.changes = changes;
+		this.uptimeNanos = uptimeNanos;
+		this.cpuNanos = cpuNanos;
+	}
+
+	/**
+	 * @return true, wenn der Scanner gerade mit hoher Rate scannt
+	 */
+	public boolean isActive() {
+		return active;
+	}
+
+	public long getScans() {
+		return scans;
+	}
+
+	public long getActiveScans() {
+		return activeScans;
+	}
+
+	public long getIdleScans() {
+		return scans - activeScans;
+	}
+
+	/**
+	 * @return Anzahl der Scans, bei denen sich die Belegung geändert hat
+	 */
+	public long getChanges() {
+		return changes;
+	}
+
+	public long getUptimeNanos() {
+		return uptimeNanos;
+	}
+
+	/**
+	 * @return vom Scanner Thread verbrauchte CPU Zeit, -1 wenn die JVM dies nicht unterstützt
+	 */
+	public long getCpuNanos() {
+		return cpuNanos;
+	}
+
+	/**
+	 * @return verbrauchte CPU Zeit hochgerechnet auf eine Stunde Laufzeit in Millisekunden, -1 wenn unbekannt
+	 */
+	public double getCpuMillisPerHour() {
+		if(cpuNanos < 0 || uptimeNanos <= 0)
+			return -1;
+
+		return cpuNanos * ((double) NANOS_PER_HOUR / uptimeNanos) / 1_000_000.0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ScanMetrics[mode=%s, scans=%d (active=%d, idle=%d), changes=%d, cpu=%.1fms/h]",
+				active ? "ACTIVE" : "IDLE", scans, activeScans, getIdleScans(), changes, getCpuMillisPerHour());
+	}
+}
@@ -0,0 +1,24 @@
+package de.fabiansiemens.hardwarecontroller.sensor;
+
+/**
+ * Arbeitsweise eines {@link BoardScanner} im Ruhemodus
+ */
+public enum ScanMode {
+	/**
+	 * Das Brett wird im Ruhemodus weiterhin vollständig, aber mit niedriger Rate gescannt.
+	 */
+	POLLING,
+	/**
+	 * Im Ruhemodus werden alle Spalten gleichzeitig angesteuert und nur auf Flanken der Zeilen gewartet.
+	 * Eine Flanke weckt den Scanner, der dann gezielt die Spalte mit der Änderung sucht.
+	 * Da eine Zeile HIGH bleibt solange noch eine Figur in ihr steht, wird das Entfernen einer Figur aus einer
+	 * mehrfach belegten Zeile nicht erkannt. Solche Änderungen werden durch einen seltenen Kontrollscan erfasst.
+	 */
+	WAKE_ON_CHANGE,
+	/**
+	 * Die Spaltenfolge wird von pigpio per DMA als Wellenform ausgegeben und die Zeilen über einen Benachrichtigungsstrom
+	 * eingelesen (siehe {@link WaveformScan}). Im aktiven Modus läuft die Wellenform in Dauerschleife, im Ruhemodus wird
+	 * sie nur im Abstand der Ruhe-Pause einmalig ausgegeben.
+	 */
+	WAVEFORM
+}
@@ -0,0 +1,122 @@
+package de.fabiansiemens.hardwarecontroller.sensor;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+
+/**
+ * Ergebnis eines vollständigen Scans des {@link BoardScanner}.
+ *
+ * Neben der Belegung enthält das Ergebnis für jede Spalte den Zeitpunkt, an dem ihre Zeilen eingelesen wurden
+ * ({@link System#nanoTime()}), sodass jede Änderung einem monotonen Erfassungszeitpunkt zugeordnet werden kann.
+ * Bei Wellenform-Scans ist zusätzlich der pigpio Tick des letzten Berichts verfügbar.
+ * Die long Zugriffe liefern die Belegung als einzelnes Wort und sind für Bretter mit höchstens 64 Feldern gedacht,
+ * größere Bretter verwenden {@link #getGrid()}.
+ */
+public final class ScanResult {
+
+	private final BitGrid previous;
+	private final BitGrid occupancy;
+	private final long sequence;
+	private final long[] columnNanos;
+	private final long hardwareTick;
+
+	/**
+	 * @param previous - Belegung des vorherigen Scans, darf danach nicht mehr verändert werden
+	 * @param occupancy - Belegung dieses Scans, darf danach nicht mehr verändert werden
+	 * @param sequence - fortlaufende Nummer des Scans
+	 * @param columnNanos - Erfassungszeitpunkt jeder Spalte (System.nanoTime)
+	 * @param hardwareTick - pigpio Tick in Mikrosekunden, -1 wenn nicht verfügbar
+	 */
+	public ScanResult(BitGrid previous, BitGrid occupancy, long sequence, long[] columnNanos, long hardwareTick) {
+		this.previous = previous;
+		this.occupancy = occupancy;
+		this.sequence = sequence;
+		this.columnNanos = columnNanos;
+		this.hardwareTick = hardwareTick;
+	}
+
+	public long getPrevious() {
+		return previous.toLong();
+	}
+
+	/**
+	 * @return Belegung, Bitindex siehe {@link SensorMatrix#index(int, int)}
+	 */
+	public long getOccupancy() {
+		return occupancy.toLong();
+	}
+
+	/**
+	 * @return Kopie der Belegung, für Bretter beliebiger Größe
+	 */
+	public BitGrid getGrid() {
+		return occupancy.copy();
+	}
+
+	/**
+	 * @return Kopie der Belegung des vorherigen Scans
+	 */
+	public BitGrid getPreviousGrid() {
+		return previous.copy();
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return Bitmaske aller Felder, die sich seit dem vorherigen Scan geändert haben
+	 */
+	public long getChanged() {
+		return previous.toLong() ^ occupancy.toLong();
+	}
+
+	/**
+	 * @return alle Felder, die sich seit dem vorherigen Scan geändert haben, für Bretter beliebiger Größe
+	 */
+	public BitGrid getChangedGrid() {
+		return previous.xor(occupancy);
+	}
+
+	/**
+	 * @param col - Spaltenindex
+	 * @param row - Zeilenindex
+	 * @return true, wenn das Feld belegt ist
+	 */
+	public boolean isOccupied(int col, int row) {
+		return occupancy.get(col, row);
+	}
+
+	public boolean hasChanged() {
+		if(occupancy.isSingleWord())
+			return previous.toLong() != occupancy.toLong();
+
+		return !previous.equals(occupancy);
+	}
+
+	/**
+	 * @param col - Spaltenindex
+	 * @return Zeitpunkt, an dem die Spalte eingelesen wurde (System.nanoTime)
+	 */
+	public long getTimestampNanos(int col) {
+		return columnNanos[col];
+	}
+
+	/**
+	 * @return Zeitpunkt, an dem die zuletzt eingelesene Spalte erfasst wurde (System.nanoTime)
+	 */
+	public long getTimestampNanos() {
+		long latest = columnNanos[0];
+		for(long nanos : columnNanos)
+			if(nanos - latest > 0)
+				latest = nanos;
+
+		return latest;
+	}
+
+	/**
+	 * @return pigpio Tick in Mikrosekunden, -1 wenn nicht verfügbar
+	 */
+	public long getHardwareTick() {
+		return hardwareTick;
+	}
+}
@@ -0,0 +1,123 @@
+package de.fabiansiemens.hardwarecontroller.sensor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gemeinsamer Taktgeber für mehrere Bretter.
+ *
+ * Statt eines Threads pro Brett teilen sich alle Bretter einen kleinen, festen Thread Pool. Ein {@link BoardScanner}, der mit
+ * {@link BoardScanner#start(ScanScheduler)} gestartet wurde, zerlegt jeden Scan in kurze Schritte pro Spalte (ansteuern,
+ * einlesen, abschalten) und plant die Wartezeiten dazwischen als Verzögerung ein, statt den Thread zu blockieren. Während eine
+ * Spalte eines Bretts einschwingt, kann der Pool so Spalten anderer Bretter scannen oder LED Matrizen aktualisieren
+ * ({@link de.fabiansiemens.hardwarecontroller.led.MAX7219#setRefreshExecutor(Executor)}).
+ * Der Durchsatz wächst dadurch mit der Anzahl der Bretter, ohne dass die Anzahl der Threads wächst.
+ * Mit einer {@link HardwareLoop} ({@link #ScanScheduler(HardwareLoop)}) laufen alle über diesen Taktgeber eingeplanten Schritte
+ * und LED Übertragungen in einem einzigen Thread gegen Deadlines, sodass sich diese Übertragungen und Einschwingfenster nicht
+ * überschneiden. Arbeit außerhalb des Taktgebers ist davon nicht erfasst, siehe {@link HardwareLoop}.
+ */
+public class ScanScheduler implements Executor {
+
+	private static final AtomicInteger POOLS = new AtomicInteger();
+	private static ScanScheduler shared;
+
+	private final ScheduledThreadPoolExecutor executor;
+	private final HardwareLoop loop;
+
+	/**
+	 * @param threads - Anzahl der Threads im Pool
+	 */
+	public ScanScheduler(int threads) {
+		if(threads < 1)
+			throw new IllegalArgumentException("At least one thread is required");
+
+		int pool = POOLS.incrementAndGet();
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = task -> {
+			Thread thread = new Thread(task, "ScanScheduler-" + pool + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+
+		this.executor = new ScheduledThreadPoolExecutor(threads, factory);
+		this.loop = null;
+		executor.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Plant alle Schritte in einer Hardware Schleife statt in einem Thread Pool ein
+	 * @param loop - Hardware Schleife, wird mit {@link #shutdown()} beendet
+	 */
+	public ScanScheduler(HardwareLoop loop) {
+		if(loop == null)
+			throw new IllegalArgumentException("Loop must not be null");
+
+		this.executor = null;
+		this.loop = loop;
+	}
+
+	/**
+	 * Gibt den gemeinsamen Taktgeber des Prozesses zurück. Er wird beim ersten Aufruf mit einem Thread pro Prozessorkern
+	 * (höchstens vier) erzeugt.
+	 * @return gemeinsamer Taktgeber
+	 */
+	public static synchronized ScanScheduler getShared() {
+		if(shared == null || shared.isShutdown())
+			shared = new ScanScheduler(Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+		return shared;
+	}
+
+	/**
+	 * Führt eine Aufgabe so bald wie möglich im Pool aus
+	 */
+	@Override
+	public void execute(Runnable task) {
+		if(loop != null)
+			loop.execute(task);
+		else
+			executor.execute(task);
+	}
+
+	/**
+	 * Führt eine Aufgabe nach der angegebenen Verzögerung im Pool aus
+	 * @param task - Aufgabe
+	 * @param delayNanos - Verzögerung in Nanosekunden, 0 für sofort
+	 * @return Handle zum Abbrechen der Aufgabe
+	 */
+	public ScheduledFuture<?> schedule(Runnable task, long delayNanos) {
+		if(loop != null)
+			return loop.schedule(task, delayNanos);
+
+		return executor.schedule(task, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+	}
+
+	public int getThreads() {
+		return loop != null ? 1 : executor.getCorePoolSize();
+	}
+
+	/**
+	 * @return Hardware Schleife dieses Taktgebers, null bei einem Thread Pool @Nullable
+	 */
+	public HardwareLoop getLoop() {
+		return loop;
+	}
+
+	public boolean isShutdown() {
+		return loop != null ? loop.isShutdown() : executor.isShutdown();
+	}
+
+	/**
+	 * Beendet den Pool. Geplante Aufgaben werden verworfen, laufende werden noch beendet.
+	 */
+	public void shutdown() {
+		if(loop != null)
+			loop.shutdown();
+		else
+			executor.shutdownNow();
+	}
+}
@@ -0,0 +1,67 @@
+package de.fabiansiemens.hardwarecontroller.sensor;
+
+/**
+ * Zeitverhalten eines Spaltenscans.
+ *
+ * Beim Einlesen einer Spalte wird der Ausgang auf HIGH gesetzt, die Settle-Zeit abgewartet, die Zeilen eingelesen,
+ * die Hold-Zeit abgewartet und der Ausgang wieder auf LOW gesetzt.
+ * Die Werte können z.B. aus einem Selbsttest ({@link de.fabiansiemens.hardwarecontroller.diagnostics.SelfTestReport#recommendedTiming()})
+ * übernommen werden.
+ * Instanzen dieser Klasse sind unveränderlich.
+ */
+public final class ScanTiming {
+
+	/**
+	 * Ursprüngliches, konservatives Zeitverhalten (50ms vor und nach dem Einlesen)
+	 */
+	public static final ScanTiming DEFAULT = new ScanTiming(50_000, 50_000);
+
+	private final long settleMicros;
+	private final long holdMicros;
+
+	/**
+	 * @param settleMicros - Wartezeit zwischen Ansteuern der Spalte und Einlesen der Zeilen in Mikrosekunden
+	 * @param holdMicros - Wartezeit zwischen Einlesen der Zeilen und Abschalten der Spalte in Mikrosekunden
+	 */
+	public ScanTiming(long settleMicros, long holdMicros) {
+		if(settleMicros < 0 || holdMicros < 0)
+			throw new IllegalArgumentException("Scan timings must not be negative");
+
+		this.settleMicros = settleMicros;
+		this.holdMicros = holdMicros;
+	}
+
+	public long getSettleMicros() {
+		return settleMicros;
+	}
+
+	public long getHoldMicros() {
+		return holdMicros;
+	}
+
+	/**
+	 * @return Dauer eines Spaltenscans in Mikrosekunden (ohne GPIO Zugriffszeiten)
+	 */
+	public long getColumnMicros() {
+		return settleMicros + holdMicros;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(!(obj instanceof ScanTiming))
+			return false;
+
+		ScanTiming other = (ScanTiming) obj;
+		return settleMicros == other.settleMicros && holdMicros == other.holdMicros;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(settleMicros) * 31 + Long.hashCode(holdMicros);
+	}
+
+	@Override
+	public String toString() {
+		return "ScanTiming[settle=" + settleMicros + "us, hold=" + holdMicros + "us]";
+	}
+}
@@ -0,0 +1,842 @@
+package de.fabiansiemens.hardwarecontroller.sensor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import com.pi4j.context.Context;
+import com.pi4j.io.gpio.digital.DigitalInput;
+import com.pi4j.io.gpio.digital.DigitalInputConfigBuilder;
+import com.pi4j.io.gpio.digital.DigitalOutput;
+import com.pi4j.io.gpio.digital.DigitalOutputConfigBuilder;
+import com.pi4j.io.gpio.digital.DigitalState;
+import com.pi4j.io.gpio.digital.PullResistance;
+
+import de.fabiansiemens.hardwarecontroller.BitGrid;
+import de.fabiansiemens.hardwarecontroller.pigpio.PigpioBank;
+
+/**
+ * Sensormatrix des Spielbretts.
+ *
+ * Die Spalten werden über Ausgangs GPIOs nacheinander angesteuert, die Zeilen über Eingangs GPIOs eingelesen.
+ * Neben dem kompletten Einlesen des Feldes bietet diese Klasse den direkten Zugriff auf einzelne Spalten und Zeilen,
+ * z.B. für Selbsttests oder eigene Scanner.
+ * Die Matrix kann beliebig viele Spalten und bis zu 32 Zeilen haben, z.B. 10x10 Bretter oder Bretter mit zusätzlichen
+ * Sensoren für geschlagene Figuren. Die Belegung wird als {@link BitGrid} gelesen ({@link #readGrid(BitGrid, long[])}),
+ * Bretter mit höchstens 64 Feldern können sie zusätzlich als einzelnes Wort lesen ({@link #readOccupancy()}).
+ * Alle Scan Methoden sind synchronisiert, sodass sich z.B. ein {@link BoardScanner} und {@link #readField()} nicht überschneiden.
+ * Ein schrittweiser Scan ({@link #beginColumn(int)} bis {@link #endColumn(int)}) gibt den Monitor zwischen den Schritten frei,
+ * hält die Matrix aber für den ganzen Zyklus der Spalte belegt. Alle übrigen Scans warten so lange, damit nie zwei Spalten
+ * gleichzeitig angesteuert werden.
+ * Eine verzögert erzeugte Matrix registriert ihre GPIOs erst bei der ersten Verwendung oder mit {@link #provision()}, z.B. in
+ * einem eigenen Thread während des Starts.
+ * Mit einer {@link PigpioBank} ({@link #setBank(PigpioBank)}) werden die GPIOs gebündelt über den pigpio Daemon angesteuert,
+ * ein kompletter Scan kostet dann nur einen Roundtrip zum Daemon.
+ */
+public class SensorMatrix {
+
+	/**
+	 * Maximale Wartezeit eines Scans auf eine schrittweise angesteuerte Spalte. Danach gilt der schrittweise Scan als
+	 * abgebrochen, die Spalte wird abgeschaltet und der wartende Scan läuft weiter.
+	 */
+	public static final long STEP_TIMEOUT_MILLIS = 100;
+
+	private final Context pi4j;
+	private final String idPrefix;
+	private final List<DigitalOutput> outputs;
+	private final List<DigitalInput> inputs;
+	private final int[] outputPins;
+	private final int[] inputPins;
+	private volatile boolean provisioned;
+	private volatile ScanTiming timing;
+	private volatile PigpioBank bank;
+	private final int[] levels;
+	private int[] columnMasks;
+	private boolean allColumnsDriven;
+	//Spalte eines laufenden schrittweisen Scans, -1 wenn keiner läuft
+	private int steppedColumn = -1;
+
+	/**
+	 * Erzeugt die Sensormatrix und registriert alle benötigten GPIOs im Pi4J Kontext
+	 * @param pi4j - Pi4J Kontext
+	 * @param outputPins - BCM Nummern der Spalten GPIOs, Reihenfolge wichtig
+	 * @param inputPins - BCM Nummern der Zeilen GPIOs, Reihenfolge wichtig
+	 */
+	public SensorMatrix(Context pi4j, int[] outputPins, int[] inputPins) {
+		this(pi4j, outputPins, inputPins, "");
+	}
+
+	/**
+	 * Erzeugt die Sensormatrix und registriert alle benötigten GPIOs im Pi4J Kontext.
+	 * Werden mehrere Bretter im selben Kontext betrieben, unterscheiden sich ihre GPIOs über das Präfix der IDs.
+	 * @param pi4j - Pi4J Kontext
+	 * @param outputPins - BCM Nummern der Spalten GPIOs, Reihenfolge wichtig
+	 * @param inputPins - BCM Nummern der Zeilen GPIOs, Reihenfolge wichtig
+	 * @param idPrefix - Präfix der Pi4J IDs, z.B. "board2-"
+	 */
+	public SensorMatrix(Context pi4j, int[] outputPins, int[] inputPins, String idPrefix) {
+		this(pi4j, outputPins, inputPins, idPrefix, false);
+	}
+
+	/**
+	 * Erzeugt die Sensormatrix, die GPIOs werden sofort oder erst bei der ersten Verwendung registriert
+	 * @param idPrefix - Präfix der Pi4J IDs, z.B. "board2-"
+	 * @param lazy - true = GPIOs erst bei der ersten Verwendung oder mit {@link #provision()} registrieren
+	 * @see #SensorMatrix(Context, int[], int[], String)
+	 */
+	public SensorMatrix(Context pi4j, int[] outputPins, int[] inputPins, String idPrefix, boolean lazy) {
+		if(inputPins.length > 32)
+			throw new IllegalArgumentException("At most 32 rows are supported");
+
+		this.pi4j = pi4j;
+		this.idPrefix = idPrefix;
+		this.outputs = new ArrayList<DigitalOutput>(outputPins.length);
+		this.inputs = new ArrayList<DigitalInput>(inputPins.length);
+		this.outputPins = outputPins.clone();
+		this.inputPins = inputPins.clone();
+		this.timing = ScanTiming.DEFAULT;
+		this.levels = new int[outputPins.length];
+
+		if(!lazy)
+			provision();
+	}
+
+	/**
+	 * Konfiguriert die GPIOs, falls das noch nicht geschehen ist. Mit einer {@link PigpioBank} werden alle GPIOs in einem
+	 * Roundtrip konfiguriert, sonst werden sie im Pi4J Kontext registriert. Wird von allen Scan Methoden aufgerufen.
+	 */
+	public void provision() {
+		if(provisioned)
+			return;
+
+		synchronized(this) {
+			if(provisioned)
+				return;
+
+			PigpioBank bank = this.bank;
+			if(bank != null) {
+				try {
+					bank.configure(allColumns(), allRows());
+					provisioned = true;
+					return;
+				}
+				catch(IOException e) {
+					dropBank(e);
+				}
+			}
+
+			createGpios();
+			provisioned = true;
+		}
+	}
+
+	/**
+	 * @return true, wenn die GPIOs bereits konfiguriert sind
+	 */
+	public boolean isProvisioned() {
+		return provisioned;
+	}
+
+	/**
+	 * Registriert die GPIOs im Pi4J Kontext, wenn sie noch nicht registriert sind
+	 */
+	private synchronized void createGpios() {
+		if(!outputs.isEmpty() || !inputs.isEmpty())
+			return;
+
+		//Erstelle Config für Output GPIOs
+		DigitalOutputConfigBuilder outputConfig = DigitalOutput.newConfigBuilder(pi4j)
+		        .shutdown(DigitalState.LOW)
+		        .initial(DigitalState.LOW)
+		        .provider("pigpio-digital-output");
+
+		//Erstelle Config für Input GPIOs
+		DigitalInputConfigBuilder inputConfig = DigitalInput.newConfigBuilder(pi4j)
+				.debounce(3000L)
+				.pull(PullResistance.PULL_DOWN)		//Trotz externer Pull_downs ist das aktivieren der internen Pull_downs zum Vermeiden von Fehlern wichtig
+		        .provider("pigpio-digital-input");
+
+		//Config anwenden und Ausgangs GPIOS registrieren
+		for(int i = 0; i < outputPins.length; i++)
+			outputs.add(pi4j.create(outputConfig.id(idPrefix + "column" + (i + 1)).name("Column " + (i + 1)).address(outputPins[i])));
+
+		//Config anwenden und Eingangs GPIOS registrieren
+		for(int i = 0; i < inputPins.length; i++)
+			inputs.add(pi4j.create(inputConfig.id(idPrefix + "row" + (i + 1)).name("Row " + (i + 1)).address(inputPins[i])));
+	}
+
+	/**
+	 * Berechnet den Bitindex eines Felds in der Belegungs-Bitmaske eines 8x8 Bretts ({@link #readOccupancy()})
+	 * @param col - Spaltenindex (0-7)
+	 * @param row - Zeilenindex (0-7)
+	 * @return Bitindex row * 8 + col
+	 */
+	public static int squareIndex(int col, int row) {
+		return row * 8 + col;
+	}
+
+	/**
+	 * Berechnet den Bitindex eines Felds in der Belegung dieser Matrix, bei 8 Spalten entspricht er {@link #squareIndex(int, int)}
+	 * @param col - Spaltenindex
+	 * @param row - Zeilenindex
+	 * @return Bitindex row * Spalten + col
+	 */
+	public int index(int col, int row) {
+		return row * getColumns() + col;
+	}
+
+	/**
+	 * @return true, wenn die Belegung in ein einzelnes Wort passt (höchstens 64 Felder)
+	 */
+	public boolean isSingleWord() {
+		return getColumns() * getRows() <= 64;
+	}
+
+	/**
+	 * @return leere Belegung mit der Größe dieser Matrix
+	 */
+	public BitGrid newGrid() {
+		return new BitGrid(getColumns(), getRows());
+	}
+
+	public int getColumns() {
+		return outputPins.length;
+	}
+
+	public int getRows() {
+		return inputPins.length;
+	}
+
+	/**
+	 * @return BCM Nummern der Spalten GPIOs
+	 */
+	public int[] getOutputPins() {
+		return outputPins.clone();
+	}
+
+	/**
+	 * @return BCM Nummern der Zeilen GPIOs
+	 */
+	public int[] getInputPins() {
+		return inputPins.clone();
+	}
+
+	public ScanTiming getTiming() {
+		return timing;
+	}
+
+	/**
+	 * Setzt das Zeitverhalten für alle folgenden Scans
+	 * @param timing - neues Zeitverhalten @NotNull
+	 */
+	public void setTiming(ScanTiming timing) {
+		if(timing == null)
+			throw new IllegalArgumentException("Timing must not be null");
+
+		this.timing = timing;
+	}
+
+	/**
+	 * Steuert die GPIOs ab jetzt gebündelt über den pigpio Daemon an. Die Pi4J GPIOs bleiben registriert und werden bei einem
+	 * Verbindungsfehler wieder verwendet.
+	 * @param bank - Verbindung zum pigpio Daemon, null um wieder Pi4J zu verwenden @Nullable
+	 */
+	public synchronized void setBank(PigpioBank bank) {
+		if(bank != null) {
+			int[] masks = new int[outputPins.length];
+			for(int col = 0; col < outputPins.length; col++)
+				masks[col] = bankMask(outputPins[col]);
+			for(int pin : inputPins)
+				bankMask(pin);
+
+			this.columnMasks = masks;
+		}
+
+		this.bank = bank;
+	}
+
+	public PigpioBank getBank() {
+		return bank;
+	}
+
+	/**
+	 * Setzt den Ausgang einer Spalte direkt, ohne Wartezeiten
+	 * @param col - Spaltenindex
+	 * @param high - true = Spalte wird angesteuert
+	 */
+	public void driveColumn(int col, boolean high) {
+		provision();
+		PigpioBank bank = this.bank;
+		if(bank != null) {
+			try {
+				if(high)
+					bank.set(columnMasks[col]);
+				else
+					bank.clear(columnMasks[col]);
+				return;
+			}
+			catch(IOException e) {
+				dropBank(e);
+			}
+		}
+
+		createGpios();
+		if(high)
+			outputs.get(col).high();
+		else
+			outputs.get(col).low();
+	}
+
+	/**
+	 * Steuert alle Spalten gleichzeitig an oder schaltet sie ab. Solange alle Spalten angesteuert sind, ist eine Zeile HIGH,
+	 * sobald mindestens ein Feld in ihr belegt ist. Der nächste Scan schaltet die Spalten automatisch wieder ab.
+	 * @param high - true = alle Spalten ansteuern
+	 */
+	public synchronized void driveAllColumns(boolean high) {
+		awaitStep();
+		provision();
+		PigpioBank bank = this.bank;
+		if(bank != null) {
+			int all = allColumns();
+			try {
+				if(high)
+					bank.set(all);
+				else
+					bank.clear(all);
+				allColumnsDriven = high;
+				return;
+			}
+			catch(IOException e) {
+				dropBank(e);
+			}
+		}
+
+		for(int col = 0; col < getColumns(); col++)
+			driveColumn(col, high);
+
+		allColumnsDriven = high;
+	}
+
+	/**
+	 * Registriert einen Listener auf allen Zeilen GPIOs, der bei jeder Flanke mit dem Zeilenindex aufgerufen wird.
+	 * Der Listener wird im GPIO Thread von Pi4J ausgeführt.
+	 * @param listener - wird mit dem Index der geänderten Zeile aufgerufen
+	 */
+	public void addRowListener(IntConsumer listener) {
+		provision();
+		createGpios();
+		for(int row = 0; row < getRows(); row++) {
+			final int index = row;
+			inputs.get(row).addListener(event -> listener.accept(index));
+		}
+	}
+
+	/**
+	 * Liest alle Zeilen direkt, ohne Wartezeiten ein.
+	 * @return Bitmaske der Zeilen, Bit n ist gesetzt wenn Zeile n HIGH ist
+	 */
+	public int readRows() {
+		provision();
+		PigpioBank bank = this.bank;
+		if(bank != null) {
+			try {
+				return toRows(bank.read());
+			}
+			catch(IOException e) {
+				dropBank(e);
+			}
+		}
+
+		createGpios();
+		int rows = 0;
+		for(int row = 0; row < inputs.size(); row++)
+			if(inputs.get(row).state().isHigh())
+				rows |= 1 << row;
+
+		return rows;
+	}
+
+	/**
+	 * Liest den aktuellen Zustand des Felds ein
+	 * @return Zustand des Spielfelds als 2D Boolean Array [Spalte][Zeile]
+	 */
+	public synchronized boolean[][] readField() {
+		boolean[][] matrix = new boolean[getColumns()][getRows()];
+
+		for(int col = 0; col < getColumns(); col++)
+			readColumn(col, matrix);
+
+		return matrix;
+	}
+
+	/**
+	 * Liest den aktuellen Zustand des Felds als Bitmaske ein. Bit {@link #index(int, int)} ist gesetzt, wenn das Feld belegt ist.
+	 * Nur für Bretter mit höchstens 64 Feldern, sonst {@link #readGrid(BitGrid, long[])} verwenden.
+	 * @return Belegung des Spielfelds
+	 */
+	public long readOccupancy() {
+		return readOccupancy(null);
+	}
+
+	/**
+	 * Liest den aktuellen Zustand des Felds als Bitmaske ein und merkt sich den Erfassungszeitpunkt jeder Spalte.
+	 * @param sampleNanos - erhält pro Spalte den Zeitpunkt des Einlesens (System.nanoTime) @Nullable
+	 * @return Belegung des Spielfelds
+	 */
+	public synchronized long readOccupancy(long[] sampleNanos) {
+		if(!isSingleWord())
+			throw new IllegalStateException("More than 64 squares, use readGrid()");
+
+		long occupancy = 0;
+
+		if(scanBank(sampleNanos)) {
+			for(int col = 0; col < getColumns(); col++)
+				occupancy = setColumn(occupancy, col, toRows(levels[col]));
+			return occupancy;
+		}
+
+		for(int col = 0; col < getColumns(); col++)
+			occupancy = setColumn(occupancy, col, scanColumn(col, sampleNanos));
+
+		return occupancy;
+	}
+
+	/**
+	 * Liest den aktuellen Zustand des Felds in eine Belegung ein und merkt sich den Erfassungszeitpunkt jeder Spalte
+	 * @param target - Belegung mit der Größe dieser Matrix, wird überschrieben
+	 * @param sampleNanos - erhält pro Spalte den Zeitpunkt des Einlesens (System.nanoTime) @Nullable
+	 * @return target
+	 */
+	public synchronized BitGrid readGrid(BitGrid target, long[] sampleNanos) {
+		checkSize(target);
+		if(scanBank(sampleNanos)) {
+			for(int col = 0; col < getColumns(); col++)
+				setColumn(target, col, toRows(levels[col]));
+			return target;
+		}
+
+		for(int col = 0; col < getColumns(); col++)
+			setColumn(target, col, scanColumn(col, sampleNanos));
+
+		return target;
+	}
+
+	/**
+	 * Liest ein einzelnes Feld ein. Dafür wird nur dessen Spalte angesteuert, die Zeilen einer Spalte werden gemeinsam gelesen.
+	 * @param col - Spaltenindex
+	 * @param row - Zeilenindex
+	 * @return true, wenn das Feld belegt ist
+	 * @throws IndexOutOfBoundsException wenn Spalte oder Zeile außerhalb der Matrix liegt
+	 */
+	public synchronized boolean readSquare(int col, int row) {
+		if(col < 0 || col >= getColumns())
+			throw new IndexOutOfBoundsException("Column " + col + " is not on the board");
+		if(row < 0 || row >= getRows())
+			throw new IndexOutOfBoundsException("Row " + row + " is not on the board");
+
+		return (scanColumn(col) & (1 << row)) != 0;
+	}
+
+	/**
+	 * Liest nur die ausgewählten Spalten ein, z.B. Start- und Zielspalte eines Zugs. Mit einer {@link PigpioBank} werden alle
+	 * ausgewählten Spalten in einem Roundtrip gescannt.
+	 * @param columns - Bitmaske der Spalten, Bit n für Spalte n, Bits außerhalb der Matrix werden ignoriert
+	 * @return Belegung, in der nur die ausgewählten Spalten gesetzt sein können
+	 */
+	public BitGrid readColumns(long columns) {
+		return readColumns(columns, newGrid(), null);
+	}
+
+	/**
+	 * Liest nur die ausgewählten Spalten in eine Belegung ein, die übrigen Spalten von target bleiben unverändert
+	 * @param columns - Bitmaske der Spalten, Bit n für Spalte n, Bits außerhalb der Matrix werden ignoriert
+	 * @param target - Belegung mit der Größe dieser Matrix
+	 * @param sampleNanos - erhält für jede gescannte Spalte den Zeitpunkt des Einlesens (System.nanoTime) @Nullable
+	 * @return target
+	 */
+	public synchronized BitGrid readColumns(long columns, BitGrid target, long[] sampleNanos) {
+		checkSize(target);
+		columns &= columnRange();
+		if(columns == 0)
+			return target;
+
+		if(scanBank(columns, sampleNanos)) {
+			for(long rest = columns; rest != 0; rest &= rest - 1) {
+				int col = Long.numberOfTrailingZeros(rest);
+				setColumn(target, col, toRows(levels[col]));
+			}
+			return target;
+		}
+
+		for(long rest = columns; rest != 0; rest &= rest - 1) {
+			int col = Long.numberOfTrailingZeros(rest);
+			setColumn(target, col, scanColumn(col, sampleNanos));
+		}
+
+		return target;
+	}
+
+	/**
+	 * Prüft, ob das Brett der erwarteten Belegung entspricht, siehe {@link #verifyExpected(BitGrid, long)}
+	 * @param expected - erwartete Belegung mit der Größe dieser Matrix
+	 * @return true, wenn alle Felder übereinstimmen
+	 */
+	public boolean verifyExpected(BitGrid expected) {
+		return verifyExpected(expected, columnRange());
+	}
+
+	/**
+	 * Prüft, ob die ausgewählten Spalten der erwarteten Belegung entsprechen. Die Spalten werden einzeln gescannt und die
+	 * Prüfung endet bei der ersten Abweichung, die übrigen Spalten werden dann nicht mehr angesteuert. Mit einer
+	 * {@link PigpioBank} werden alle ausgewählten Spalten in einem Roundtrip gescannt, da ein Roundtrip länger dauert als das
+	 * Ansteuern der übrigen Spalten.
+	 * @param expected - erwartete Belegung mit der Größe dieser Matrix
+	 * @param columns - Bitmaske der zu prüfenden Spalten, Bit n für Spalte n
+	 * @return true, wenn alle ausgewählten Felder übereinstimmen
+	 * @throws IllegalArgumentException wenn die Belegung nicht die Größe dieser Matrix hat
+	 */
+	public synchronized boolean verifyExpected(BitGrid expected, long columns) {
+		checkSize(expected);
+		columns &= columnRange();
+		if(columns == 0)
+			return true;
+
+		if(scanBank(columns, null)) {
+			for(long rest = columns; rest != 0; rest &= rest - 1) {
+				int col = Long.numberOfTrailingZeros(rest);
+				if(toRows(levels[col]) != (int) expected.getColumn(col))
+					return false;
+			}
+			return true;
+		}
+
+		for(long rest = columns; rest != 0; rest &= rest - 1) {
+			int col = Long.numberOfTrailingZeros(rest);
+			if(scanColumn(col) != (int) expected.getColumn(col))
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Prüft, ob eine Belegung die Größe dieser Matrix hat
+	 */
+	private void checkSize(BitGrid grid) {
+		if(grid.getWidth() != getColumns() || grid.getHeight() != getRows())
+			throw new IllegalArgumentException("Grid is " + grid.getWidth() + "x" + grid.getHeight() + ", matrix is "
+					+ getColumns() + "x" + getRows());
+	}
+
+	/**
+	 * Überträgt die Zeilen einer Spalte in eine Belegungs-Bitmaske
+	 */
+	long setColumn(long occupancy, int col, int rows) {
+		for(int row = 0; row < getRows(); row++) {
+			long bit = 1L << index(col, row);
+			if((rows & (1 << row)) != 0)
+				occupancy |= bit;
+			else
+				occupancy &= ~bit;
+		}
+
+		return occupancy;
+	}
+
+	/**
+	 * Überträgt die Zeilen einer Spalte in eine Belegung
+	 */
+	void setColumn(BitGrid grid, int col, int rows) {
+		grid.setColumn(col, rows & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Sucht gezielt die Spalten, in denen sich die angegebenen Zeilen geändert haben. Die Spalten werden der Reihe nach
+	 * gescannt, bis für jede geänderte Zeile eine Abweichung zur vorherigen Belegung gefunden wurde.
+	 * Nicht gescannte Spalten werden aus der vorherigen Belegung übernommen.
+	 * @param previous - bisher bekannte Belegung
+	 * @param changedRows - Bitmaske der Zeilen, in denen eine Änderung erwartet wird
+	 * @param sampleNanos - erhält für jede gescannte Spalte den Zeitpunkt des Einlesens (System.nanoTime) @Nullable
+	 * @return aktualisierte Belegung
+	 */
+	public synchronized long locateChange(long previous, int changedRows, long[] sampleNanos) {
+		long occupancy = previous;
+		int pending = changedRows;
+
+		for(int col = 0; col < getColumns() && pending != 0; col++) {
+			int rows = scanColumn(col, sampleNanos);
+			int before = 0;
+
+			for(int row = 0; row < getRows(); row++)
+				if((previous & (1L << index(col, row))) != 0)
+					before |= 1 << row;
+
+			occupancy = setColumn(occupancy, col, rows);
+			pending &= ~(rows ^ before);
+		}
+
+		return occupancy;
+	}
+
+	/**
+	 * Wie {@link #locateChange(long, int, long[])} für Belegungen beliebiger Größe
+	 * @param previous - bisher bekannte Belegung, wird nicht verändert
+	 * @return aktualisierte Belegung
+	 */
+	public synchronized BitGrid locateChange(BitGrid previous, int changedRows, long[] sampleNanos) {
+		checkSize(previous);
+		BitGrid occupancy = previous.copy();
+		int pending = changedRows;
+
+		for(int col = 0; col < getColumns() && pending != 0; col++) {
+			int rows = scanColumn(col, sampleNanos);
+			int before = (int) previous.getColumn(col);
+
+			setColumn(occupancy, col, rows);
+			pending &= ~(rows ^ before);
+		}
+
+		return occupancy;
+	}
+
+	/**
+	 * Liest eine einzelne spezifizierte Spalte ein
+	 * @param col - Spaltenindex
+	 * @param matrix - 2D Boolean Matrix wo die eingelesenen Werte eingetragen werden.
+	 */
+	public synchronized void readColumn(int col, boolean[][] matrix) {
+		int rows = scanColumn(col);
+
+		for(int row = 0; row < getRows(); row++)
+			matrix[col][row] = (rows & (1 << row)) != 0;
+	}
+
+	/**
+	 * Steuert eine Spalte mit dem aktuellen Zeitverhalten an und liest die Zeilen ein
+	 * @param col - Spaltenindex
+	 * @return Bitmaske der Zeilen, Bit n ist gesetzt wenn Zeile n HIGH ist
+	 */
+	public int scanColumn(int col) {
+		return scanColumn(col, null);
+	}
+
+	/**
+	 * Steuert eine Spalte mit dem aktuellen Zeitverhalten an und liest die Zeilen ein
+	 * @param col - Spaltenindex
+	 * @param sampleNanos - erhält an Index col den Zeitpunkt des Einlesens (System.nanoTime) @Nullable
+	 * @return Bitmaske der Zeilen, Bit n ist gesetzt wenn Zeile n HIGH ist
+	 */
+	public synchronized int scanColumn(int col, long[] sampleNanos) {
+		awaitStep();
+		ScanTiming timing = this.timing;
+
+		if(allColumnsDriven)
+			driveAllColumns(false);
+
+		provision();
+		PigpioBank bank = this.bank;
+		if(bank != null) {
+			try {
+				bank.scan(columnMasks, col, 1, timing.getSettleMicros(), timing.getHoldMicros(), levels, sampleNanos);
+				return toRows(levels[col]);
+			}
+			catch(IOException e) {
+				dropBank(e);
+			}
+		}
+
+		driveColumn(col, true);
+		pause(timing.getSettleMicros());
+
+		int rows = readRows();
+		if(sampleNanos != null)
+			sampleNanos[col] = System.nanoTime();
+
+		pause(timing.getHoldMicros());
+		driveColumn(col, false);
+
+		return rows;
+	}
+
+	/**
+	 * Steuert eine Spalte für einen schrittweisen Scan an. Die Zeilen werden nach der Settle-Zeit mit
+	 * {@link #sampleColumn(int, long[])} eingelesen, danach wird die Spalte mit {@link #endColumn(int)} abgeschaltet.
+	 * Zwischen den Schritten wird nicht gewartet, die Wartezeiten plant der Aufrufer ein (siehe {@link ScanScheduler}).
+	 * Bis zu {@link #endColumn(int)} warten alle anderen Scans dieser Matrix.
+	 * @param col - Spaltenindex
+	 */
+	public synchronized void beginColumn(int col) {
+		awaitStep();
+		if(allColumnsDriven)
+			driveAllColumns(false);
+
+		driveColumn(col, true);
+		steppedColumn = col;
+	}
+
+	/**
+	 * Schaltet eine mit {@link #beginColumn(int)} angesteuerte Spalte ab und gibt die Matrix für andere Scans frei
+	 * @param col - Spaltenindex
+	 */
+	public synchronized void endColumn(int col) {
+		driveColumn(col, false);
+		if(steppedColumn == col) {
+			steppedColumn = -1;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Wartet, bis keine Spalte eines schrittweisen Scans mehr angesteuert ist. Nach {@link #STEP_TIMEOUT_MILLIS} wird die
+	 * Spalte abgeschaltet, z.B. wenn der Taktgeber des schrittweisen Scans nicht mehr läuft.
+	 */
+	private void awaitStep() {
+		if(steppedColumn < 0)
+			return;
+
+		boolean interrupted = false;
+		long deadline = System.nanoTime() + STEP_TIMEOUT_MILLIS * 1_000_000L;
+		long remaining;
+		while(steppedColumn >= 0 && (remaining = deadline - System.nanoTime()) > 0) {
+			try {
+				wait(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
+			}
+			catch(InterruptedException e) {
+				interrupted = true;
+			}
+		}
+
+		if(steppedColumn >= 0) {
+			driveColumn(steppedColumn, false);
+			steppedColumn = -1;
+		}
+
+		if(interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Liest die Zeilen einer mit {@link #beginColumn(int)} angesteuerten Spalte ein
+	 * @param col - Spaltenindex
+	 * @param sampleNanos - erhält an Index col den Zeitpunkt des Einlesens (System.nanoTime) @Nullable
+	 * @return Bitmaske der Zeilen, Bit n ist gesetzt wenn Zeile n HIGH ist
+	 */
+	public synchronized int sampleColumn(int col, long[] sampleNanos) {
+		int rows = readRows();
+		if(sampleNanos != null)
+			sampleNanos[col] = System.nanoTime();
+
+		return rows;
+	}
+
+	/**
+	 * Scannt alle Spalten in einem Roundtrip über die {@link PigpioBank}, die Pegel stehen danach in {@link #levels}
+	 * @return false, wenn keine Bank gesetzt ist oder die Verbindung fehlgeschlagen ist
+	 */
+	private boolean scanBank(long[] sampleNanos) {
+		return scanBank(columnRange(), sampleNanos);
+	}
+
+	/**
+	 * Scannt die ausgewählten Spalten in einem Roundtrip über die {@link PigpioBank}, die Pegel stehen danach in {@link #levels}
+	 * @param columns - Bitmaske der Spalten
+	 * @return false, wenn keine Bank gesetzt ist oder die Verbindung fehlgeschlagen ist
+	 */
+	private boolean scanBank(long columns, long[] sampleNanos) {
+		awaitStep();
+		provision();
+		PigpioBank bank = this.bank;
+		if(bank == null)
+			return false;
+
+		//Der Batch schaltet nur die ausgewählten Spalten ab, alle übrigen müssen vorher abgeschaltet sein
+		if(allColumnsDriven && columns != columnRange())
+			driveAllColumns(false);
+
+		ScanTiming timing = this.timing;
+		allColumnsDriven = false;
+		try {
+			bank.scan(columnMasks, columns, timing.getSettleMicros(), timing.getHoldMicros(), levels, sampleNanos);
+			return true;
+		}
+		catch(IOException e) {
+			dropBank(e);
+			return false;
+		}
+	}
+
+	/**
+	 * Überträgt die Pegel der GPIO Bank in eine Bitmaske der Zeilen
+	 */
+	private int toRows(int levels) {
+		int rows = 0;
+		for(int row = 0; row < inputPins.length; row++)
+			if((levels & (1 << inputPins[row])) != 0)
+				rows |= 1 << row;
+
+		return rows;
+	}
+
+	/**
+	 * Fällt bei einem Verbindungsfehler auf die einzeln angesteuerten Pi4J GPIOs zurück
+	 */
+	private void dropBank(IOException e) {
+		e.printStackTrace();
+		bank = null;
+	}
+
+	/**
+	 * @return Bitmaske aller Spalten dieser Matrix
+	 */
+	private long columnRange() {
+		return getColumns() >= 64 ? -1L : (1L << getColumns()) - 1;
+	}
+
+	private int allColumns() {
+		int all = 0;
+		for(int mask : columnMasks)
+			all |= mask;
+
+		return all;
+	}
+
+	private int allRows() {
+		int all = 0;
+		for(int pin : inputPins)
+			all |= bankMask(pin);
+
+		return all;
+	}
+
+	private static int bankMask(int pin) {
+		if(pin < 0 || pin > 31)
+			throw new IllegalArgumentException("GPIO " + pin + " is not in bank 0-31");
+
+		return 1 << pin;
+	}
+
+	/**
+	 * Wartet die angegebene Zeit. Kurze Wartezeiten unter einer Millisekunde werden aktiv abgewartet,
+	 * da {@link Thread#sleep(long)} hier zu ungenau ist.
+	 * @param micros - Wartezeit in Mikrosekunden
+	 */
+	static void pause(long micros) {
+		if(micros <= 0)
+			return;
+
+		if(micros < 1000) {
+			long deadline = System.nanoTime() + micros * 1000L;
+			while(System.nanoTime() < deadline)
+				Thread.onSpinWait();
+			return;
+		}
+
+		try {
+			Thread.sleep(micros / 1000, (int) (micros % 1000) * 1000);
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
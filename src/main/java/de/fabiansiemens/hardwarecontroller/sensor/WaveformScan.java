@@ -0,0 +1,241 @@
+package de.fabiansiemens.hardwarecontroller.sensor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import de.fabiansiemens.hardwarecontroller.pigpio.GpioReport;
+import de.fabiansiemens.hardwarecontroller.pigpio.NotificationSource;
+import de.fabiansiemens.hardwarecontroller.pigpio.PigpioNotificationStream;
+import de.fabiansiemens.hardwarecontroller.pigpio.PigpioSocket;
+import de.fabiansiemens.hardwarecontroller.pigpio.PigpioWaveformDriver;
+import de.fabiansiemens.hardwarecontroller.pigpio.SimulatedPigpio;
+import de.fabiansiemens.hardwarecontroller.pigpio.WaveformDriver;
+
+/**
+ * Hardware-zeitgesteuerter Scan der Sensormatrix.
+ *
+ * Die Spaltenfolge wird als pigpio Wellenform per DMA ausgegeben: Jede Spalte wird für Settle- und Hold-Zeit angesteuert
+ * und danach kurz abgeschaltet. Die Pegel der Spalten und Zeilen werden über einen Benachrichtigungsstrom erfasst,
+ * blockweise gelesen und dekodiert. Der Zustand einer Spalte ist der letzte gemeldete Pegel der Zeilen, bevor die
+ * Spalte abgeschaltet wurde. Die Scanrate ist damit unabhängig vom Scheduling der JVM.
+ * Mit {@link SimulatedPigpio} als Treiber und Quelle kann der Scan ohne Hardware verwendet werden.
+ */
+public class WaveformScan implements Closeable {
+
+	/**
+	 * Pause ohne angesteuerte Spalte zwischen zwei Spalten. Trennt die Spalten eindeutig im Benachrichtigungsstrom.
+	 */
+	private static final int GAP_MICROS = 10;
+	/**
+	 * Anzahl Berichte, die pro Lesevorgang maximal gelesen werden
+	 */
+	private static final int BUFFER_REPORTS = 256;
+
+	private final WaveformDriver driver;
+	private final NotificationSource source;
+	private final Closeable connection;
+	private final int[] columnPins;
+	private final int columnMask;
+	private final int[] columnOfPin;
+	private final int[] rowPins;
+	private final ByteBuffer buffer;
+
+	private ScanTiming waveTiming;
+	private int wave = -1;
+	private int currentColumn = -1;
+	private int currentRows;
+	private long frame;
+	private int seenColumns;
+	private long lastTick;
+
+	/**
+	 * Erzeugt einen Wellenform-Scan mit beliebigem Treiber und beliebiger Quelle
+	 * @param driver - gibt die Spaltenfolge aus
+	 * @param source - liefert die Pegel der Spalten und Zeilen
+	 * @param columnPins - GPIOs der Spalten
+	 * @param rowPins - GPIOs der Zeilen
+	 * @param connection - wird beim Schließen ebenfalls geschlossen @Nullable
+	 */
+	public WaveformScan(WaveformDriver driver, NotificationSource source, int[] columnPins, int[] rowPins, Closeable connection) {
+		this.driver = driver;
+		this.source = source;
+		this.connection = connection;
+		if(columnPins.length * rowPins.length > 64)
+			throw new IllegalArgumentException("Waveform scans support at most 64 squares");
+
+		this.columnPins = columnPins.clone();
+		this.rowPins = rowPins.clone();
+		this.columnOfPin = new int[32];
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_REPORTS * GpioReport.SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.buffer.flip();
+
+		int mask = 0;
+		for(int col = 0; col < columnPins.length; col++) {
+			mask |= 1 << columnPins[col];
+			columnOfPin[columnPins[col]] = col;
+		}
+		this.columnMask = mask;
+	}
+
+	/**
+	 * Verbindet sich mit dem pigpio Socket Interface und erzeugt einen Wellenform-Scan für die Sensormatrix
+	 * @param sensors - Sensormatrix, deren GPIOs bereits konfiguriert sind
+	 * @param host - Hostname des Socket Interfaces
+	 * @param port - Port des Socket Interfaces
+	 * @throws IOException wenn keine Verbindung aufgebaut werden kann
+	 */
+	public static WaveformScan connect(SensorMatrix sensors, String host, int port) throws IOException {
+		int[] columns = sensors.getOutputPins();
+		int[] rows = sensors.getInputPins();
+		int bits = 0;
+		for(int pin : columns)
+			bits |= 1 << pin;
+		for(int pin : rows)
+			bits |= 1 << pin;
+
+		PigpioSocket control = new PigpioSocket(host, port);
+		try {
+			PigpioNotificationStream stream = new PigpioNotificationStream(control, host, port, bits);
+			return new WaveformScan(new PigpioWaveformDriver(control), stream, columns, rows, control);
+		}
+		catch(IOException e) {
+			control.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Startet die Ausgabe der Spaltenfolge. Die Wellenform wird nur neu erzeugt, wenn sich das Zeitverhalten geändert hat.
+	 * @param timing - Zeitverhalten pro Spalte
+	 * @param repeat - true = Dauerschleife, false = ein einzelner Scan
+	 */
+	public void start(ScanTiming timing, boolean repeat) throws IOException {
+		if(wave < 0 || !timing.equals(waveTiming)) {
+			driver.halt();
+			if(wave >= 0)
+				driver.delete(wave);
+
+			wave = createWave(timing);
+			waveTiming = timing;
+		}
+
+		resetFrame();
+		currentColumn = -1;
+		driver.transmit(wave, repeat);
+	}
+
+	/**
+	 * Stoppt die Ausgabe der Spaltenfolge
+	 */
+	public void halt() throws IOException {
+		driver.halt();
+	}
+
+	/**
+	 * @return pigpio Tick (Mikrosekunden) des letzten dekodierten Berichts
+	 */
+	public long getLastTick() {
+		return lastTick;
+	}
+
+	private int createWave(ScanTiming timing) throws IOException {
+		int pulses = columnPins.length * 2;
+		int[] on = new int[pulses];
+		int[] off = new int[pulses];
+		int[] delay = new int[pulses];
+
+		for(int col = 0; col < columnPins.length; col++) {
+			int bit = 1 << columnPins[col];
+			on[col * 2] = bit;
+			delay[col * 2] = (int) timing.getColumnMicros();
+			off[col * 2 + 1] = bit;
+			delay[col * 2 + 1] = GAP_MICROS;
+		}
+
+		return driver.create(on, off, delay);
+	}
+
+	/**
+	 * Liest und dekodiert Berichte, bis ein vollständiger Scan aller Spalten vorliegt
+	 * @return Belegung, Bitindex siehe {@link SensorMatrix#index(int, int)}
+	 * @throws IOException bei Verbindungsfehlern oder wenn der Strom geschlossen wurde
+	 */
+	public long readFrame() throws IOException {
+		while(true) {
+			while(buffer.remaining() >= GpioReport.SIZE) {
+				int offset = buffer.position();
+				buffer.position(offset + GpioReport.SIZE);
+
+				if(!GpioReport.isLevelChange(buffer, offset))
+					continue;
+
+				lastTick = GpioReport.tick(buffer, offset);
+				if(process(GpioReport.level(buffer, offset))) {
+					long result = frame;
+					resetFrame();
+					return result;
+				}
+			}
+
+			buffer.compact();
+			int read = source.read(buffer);
+			buffer.flip();
+
+			if(read < 0)
+				throw new IOException("Notification stream closed");
+		}
+	}
+
+	/**
+	 * Verarbeitet den Pegel eines Berichts
+	 * @return true, wenn damit ein vollständiger Scan vorliegt
+	 */
+	private boolean process(int level) {
+		int columns = level & columnMask;
+		int column = Integer.bitCount(columns) == 1 ? columnOfPin[Integer.numberOfTrailingZeros(columns)] : -1;
+
+		if(column == currentColumn) {
+			currentRows = level;
+			return false;
+		}
+
+		boolean complete = false;
+		if(currentColumn >= 0)
+			complete = finishColumn(currentColumn, currentRows);
+
+		if(column == 0)
+			resetFrame();
+
+		currentColumn = column;
+		currentRows = level;
+		return complete;
+	}
+
+	private boolean finishColumn(int col, int level) {
+		for(int row = 0; row < rowPins.length; row++)
+			if((level & (1 << rowPins[row])) != 0)
+				frame |= 1L << (row * columnPins.length + col);
+
+		seenColumns |= 1 << col;
+		return seenColumns == (1 << columnPins.length) - 1;
+	}
+
+	private void resetFrame() {
+		frame = 0;
+		seenColumns = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			driver.halt();
+			source.close();
+		}
+		finally {
+			if(connection != null)
+				connection.close();
+		}
+	}
+}
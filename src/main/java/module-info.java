@@ -9,6 +9,7 @@ module de.fabiansiemens.hardwarecontroller {
     requires org.slf4j.simple;
     
 	requires java.desktop;
+	requires java.management;
 
     uses com.pi4j.extension.Extension;
     uses com.pi4j.provider.Provider;